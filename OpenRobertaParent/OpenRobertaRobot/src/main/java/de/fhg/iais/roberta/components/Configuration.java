@@ -1,5 +1,6 @@
 package de.fhg.iais.roberta.components;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -16,7 +17,10 @@ import de.fhg.iais.roberta.util.dbc.DbcException;
 /**
  * This class represents model of the hardware configuration of a robot (assume we have "left" and "right" motor). It is used in the code generation. <br>
  * <br>
- * The {@link Configuration} contains four sensor ports and four actor ports. Client cannot connect more than that.
+ * The {@link Configuration} contains four sensor ports and four actor ports. Client cannot connect more than that.<br>
+ * <br>
+ * A configuration is not modified after it has been created (the robot name may be set once), because parsed configurations are cached and shared by
+ * concurrent requests, see {@link de.fhg.iais.roberta.factory.ConfigurationCache}
  */
 public abstract class Configuration {
     protected String robotName;
@@ -40,13 +44,20 @@ public abstract class Configuration {
     public Configuration(Map<IActorPort, Actor> actors, Map<ISensorPort, Sensor> sensors, double wheelDiameterCM, double trackWidthCM) {
         super();
         this.robotName = "";
-        this.actors = actors;
-        this.sensors = sensors;
+        this.actors = actors == null ? null : Collections.unmodifiableMap(actors);
+        this.sensors = sensors == null ? null : Collections.unmodifiableMap(sensors);
         this.wheelDiameterCM = wheelDiameterCM;
         this.trackWidthCM = trackWidthCM;
     }
 
+    /**
+     * set the name of the robot plugin, this configuration is used for. Must be called before the configuration is shared. The name can be set only once.
+     *
+     * @param robotName the name of the robot plugin, e.g. "ev3lejos"
+     */
     public void setRobotName(String robotName) {
+        Assert.notNull(robotName);
+        Assert.isTrue(this.robotName.isEmpty() || this.robotName.equals(robotName), "the robot name of a configuration can be set only once");
         this.robotName = robotName;
     }
 
@@ -1,60 +1,146 @@
-package de.fhg.iais.roberta.factory;
-
-import java.io.File;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
-import org.apache.commons.io.FileUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import de.fhg.iais.roberta.components.Configuration;
-import de.fhg.iais.roberta.inter.mode.action.ILanguage;
-import de.fhg.iais.roberta.transformer.BlocklyProgramAndConfigTransformer;
-import de.fhg.iais.roberta.util.Key;
-import de.fhg.iais.roberta.util.dbc.Assert;
-import de.fhg.iais.roberta.util.dbc.DbcException;
-
-public abstract class AbstractCompilerWorkflow implements ICompilerWorkflow {
-    private static final Logger LOG = LoggerFactory.getLogger(AbstractCompilerWorkflow.class);
-
-    @Override
-    public abstract String generateSourceCode(String token, String programName, BlocklyProgramAndConfigTransformer transformer, ILanguage language);
-
-    @Override
-    public abstract Key compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider);
-
-    /*
-     * (non-Javadoc)
-     * some subclasses overwrite this method to return "null" (simulator e.g.)
-     */
-    @Override
-    public Key generateSourceAndCompile(String token, String programName, BlocklyProgramAndConfigTransformer transformer, ILanguage language) {
-        String sourceCode = generateSourceCode(token, programName, transformer, language);
-        return compileSourceCode(token, programName, sourceCode, language, null);
-    }
-
-    @Override
-    public abstract Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception;
-
-    @Override
-    public abstract String getCompiledCode();
-
-    protected final void storeGeneratedProgram(String token, String programName, String sourceCode, String pathToCrosscompilerBaseDir, String ext) {
-        Assert.isTrue(token != null && programName != null && sourceCode != null);
-        File sourceFile = new File(pathToCrosscompilerBaseDir + token + "/" + programName + "/src/" + programName + ext);
-        Path path = Paths.get(pathToCrosscompilerBaseDir + token + "/" + programName + "/target/");
-        try {
-            Files.createDirectories(path);
-            FileUtils.writeStringToFile(sourceFile, sourceCode, StandardCharsets.UTF_8.displayName());
-        } catch ( IOException e ) {
-            String msg = "could not write source code to file system";
-            LOG.error(msg, e);
-            throw new DbcException(msg, e);
-        }
-        LOG.info("stored under: " + sourceFile.getPath());
-    }
-}
\ No newline at end of file
+package de.fhg.iais.roberta.factory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Function;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.components.Configuration;
+import de.fhg.iais.roberta.inter.mode.action.ILanguage;
+import de.fhg.iais.roberta.transformer.BlocklyProgramAndConfigTransformer;
+import de.fhg.iais.roberta.util.Clock;
+import de.fhg.iais.roberta.util.Key;
+import de.fhg.iais.roberta.util.dbc.Assert;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+public abstract class AbstractCompilerWorkflow implements ICompilerWorkflow {
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractCompilerWorkflow.class);
+
+    @Override
+    public abstract String generateSourceCode(String token, String programName, BlocklyProgramAndConfigTransformer transformer, ILanguage language);
+
+    @Override
+    public abstract CompilationResult compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider);
+
+    /*
+     * (non-Javadoc)
+     * some subclasses overwrite this method to return "null" (simulator e.g.)
+     */
+    @Override
+    public CompilationResult generateSourceAndCompile(String token, String programName, BlocklyProgramAndConfigTransformer transformer, ILanguage language) {
+        String sourceCode = generateSourceCode(token, programName, transformer, language);
+        return compileSourceCode(token, programName, sourceCode, language, null);
+    }
+
+    @Override
+    public abstract Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception;
+
+    /**
+     * compile using the {@link CompilationCache}. If an artifact for the same toolchain, source and flags was compiled before, the compiler is <b>not</b>
+     * run, the cached artifact is restored instead. Otherwise the compiler is run under the control of the {@link CompilerScheduler}, the lane used is the
+     * package of the workflow (e.g. "arduino.mbot").
+     *
+     * @param token the credential of the user, used for fair queueing; may be null
+     * @param programName the name of the program, its workspace is managed by the {@link WorkspaceManager}
+     * @param toolchain the resources directory of the compiler of the robot plugin. Prefixed by the class name of the workflow, its fingerprint is part
+     *        of the key, see {@link CompilationCache#getToolchainFingerprint(String)}
+     * @param sourceCode the generated program
+     * @param flagProvider the compiler flags; may be null
+     * @param compiler runs the compiler and returns the artifact; returns null, if the compilation failed
+     * @param restorer makes a cached artifact available as if the compiler had produced it (writes the target file, e.g.); may be null
+     * @param toCompiledCode maps the artifact to the compiled code sent to the client; null, if the robot downloads the program itself
+     * @return the result of this compilation; never null
+     */
+    protected final CompilationResult compileCached(
+        String token,
+        String programName,
+        String toolchain,
+        String sourceCode,
+        Object flagProvider,
+        ArtifactCompiler compiler,
+        ArtifactRestorer restorer,
+        Function<byte[], String> toCompiledCode) {
+        Clock clock = Clock.start();
+        CompilationCache cache = CompilationCache.getInstance();
+        String toolchainId = getClass().getName() + ":" + toolchain + ":" + cache.getToolchainFingerprint(toolchain);
+        String key = CompilationCache.makeKey(toolchainId, sourceCode, flagProvider);
+        StringBuilder messages = new StringBuilder();
+        byte[] artifact = cache.get(key);
+        try {
+            if ( artifact != null ) {
+                if ( restorer != null ) {
+                    restorer.restore(artifact);
+                }
+                LOG.info("compilation skipped, artifact " + key + " taken from the cache");
+            } else {
+                artifact = CompilerScheduler.getInstance().execute(getLaneName(), token, () -> compiler.compile(messages));
+                if ( artifact == null ) {
+                    LOG.error("compilation failed. Messages from the compiler are:\n" + messages);
+                    return CompilationResult.failure(Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED, messages.toString(), clock.elapsedMsec());
+                }
+                cache.put(key, artifact);
+            }
+            WorkspaceManager.getInstance().compiled(token, programName, artifact);
+            String compiledCode = toCompiledCode == null ? null : toCompiledCode.apply(artifact);
+            return CompilationResult.success(compiledCode, messages.toString(), clock.elapsedMsec());
+        } catch ( CompilerScheduler.OverloadException e ) {
+            LOG.error("compilation rejected: " + e.getMessage());
+            return CompilationResult.failure(Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_OVERLOAD, messages.toString(), clock.elapsedMsec());
+        } catch ( CompilerScheduler.TimeoutException e ) {
+            LOG.error("compilation aborted: " + e.getMessage());
+            return CompilationResult.failure(Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_TIMEOUT, messages.toString(), clock.elapsedMsec());
+        } catch ( Exception e ) {
+            LOG.error("compilation or restoring artifact " + key + " failed", e);
+            return CompilationResult.failure(Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED, messages.toString(), clock.elapsedMsec());
+        }
+    }
+
+    private String getLaneName() {
+        String packageName = getClass().getPackage().getName();
+        String factoryPackage = AbstractCompilerWorkflow.class.getPackage().getName() + ".";
+        return packageName.startsWith(factoryPackage) ? packageName.substring(factoryPackage.length()) : packageName;
+    }
+
+    protected final void storeGeneratedProgram(String token, String programName, String sourceCode, String pathToCrosscompilerBaseDir, String ext) {
+        Assert.isTrue(token != null && programName != null && sourceCode != null);
+        File sourceFile = new File(pathToCrosscompilerBaseDir + token + "/" + programName + "/src/" + programName + ext);
+        Path path = Paths.get(pathToCrosscompilerBaseDir + token + "/" + programName + "/target/");
+        WorkspaceManager.getInstance().use(token, programName);
+        try {
+            Files.createDirectories(path);
+            FileUtils.writeStringToFile(sourceFile, sourceCode, StandardCharsets.UTF_8.displayName());
+        } catch ( IOException e ) {
+            String msg = "could not write source code to file system";
+            LOG.error(msg, e);
+            throw new DbcException(msg, e);
+        }
+        LOG.info("stored under: " + sourceFile.getPath());
+    }
+
+    /**
+     * runs a compiler, see {@link AbstractCompilerWorkflow#compileCached(String, String, String, String, Object, ArtifactCompiler, ArtifactRestorer, Function)}
+     */
+    @FunctionalInterface
+    protected interface ArtifactCompiler {
+        /**
+         * @param messages the messages of the compiler are appended to this builder
+         * @return the artifact; null, if the compilation failed
+         */
+        byte[] compile(StringBuilder messages) throws Exception;
+    }
+
+    /**
+     * makes a cached artifact available, see {@link AbstractCompilerWorkflow#compileCached(String, String, String, String, Object, ArtifactCompiler, ArtifactRestorer, Function)}
+     */
+    @FunctionalInterface
+    protected interface ArtifactRestorer {
+        void restore(byte[] artifact) throws Exception;
+    }
+}
@@ -0,0 +1,337 @@
+package de.fhg.iais.roberta.factory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.util.dbc.Assert;
+
+/**
+ * a content-addressed cache for compiled programs (jar, rxe, hex, ...). The key of an artifact is the SHA-256 of the toolchain (robot plugin), the
+ * generated source and the compiler flags. If a class runs the same program 30 times, the external compiler is called only once.<br>
+ * <br>
+ * The toolchain is identified by the version of the server and a fingerprint of its resources directory (path, size and modification time of all
+ * files). Artifacts built before an upgrade of the server or an update of the crosscompiler resources in place are not found anymore and are evicted
+ * like any other unused artifact. The fingerprint is computed at most once per {@link #FINGERPRINT_TTL_MSEC}, an update in place is noticed after
+ * that time.<br>
+ * <br>
+ * The cache has two levels, both bounded by size and evicting the least recently used artifacts first:<br>
+ * - memory: property <code>compiler.cache.memory.maxsize</code> (bytes)<br>
+ * - disk: property <code>compiler.cache.disk.maxsize</code> (bytes). The artifacts are stored in the temp directory <code>compilerCache</code> and survive
+ * a restart of the server<br>
+ * A size of 0 disables the respective level. Until {@link #configure(Properties, String)} is called, a small memory-only cache is used.
+ */
+public class CompilationCache {
+    private static final Logger LOG = LoggerFactory.getLogger(CompilationCache.class);
+    private static final long DEFAULT_MEMORY_MAX_SIZE = 8L * 1024 * 1024;
+    private static final String ARTIFACT_EXT = ".bin";
+    private static final String TMP_PREFIX = "artifact";
+    private static final String TMP_EXT = ".tmp";
+    public static final long FINGERPRINT_TTL_MSEC = 60000;
+
+    private static volatile CompilationCache instance = new CompilationCache(DEFAULT_MEMORY_MAX_SIZE, 0, null);
+
+    private final long memoryMaxSize;
+    private final long diskMaxSize;
+    private final File diskDir;
+    private final String serverVersion;
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
+    // both maps are in access order: the first entry is the least recently used one
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private long memorySize = 0;
+    private long diskSize = 0;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    /**
+     * create a cache. Artifacts already stored in the disk directory are re-used, temporary files left over by an interrupted write are removed.
+     *
+     * @param memoryMaxSize max number of bytes kept in memory; 0 disables the memory cache
+     * @param diskMaxSize max number of bytes kept on disk; 0 disables the disk cache
+     * @param diskDir directory for the disk cache; may be null, if the disk cache is disabled
+     */
+    public CompilationCache(long memoryMaxSize, long diskMaxSize, File diskDir) {
+        this(memoryMaxSize, diskMaxSize, diskDir, "");
+    }
+
+    /**
+     * create a cache. Artifacts already stored in the disk directory are re-used, temporary files left over by an interrupted write are removed.
+     *
+     * @param memoryMaxSize max number of bytes kept in memory; 0 disables the memory cache
+     * @param diskMaxSize max number of bytes kept on disk; 0 disables the disk cache
+     * @param diskDir directory for the disk cache; may be null, if the disk cache is disabled
+     * @param serverVersion the version of the server, part of the fingerprint of every toolchain
+     */
+    public CompilationCache(long memoryMaxSize, long diskMaxSize, File diskDir, String serverVersion) {
+        Assert.isTrue(memoryMaxSize >= 0 && diskMaxSize >= 0, "sizes of the compilation cache must not be negative");
+        Assert.isTrue(diskMaxSize == 0 || diskDir != null, "the disk cache needs a directory");
+        this.memoryMaxSize = memoryMaxSize;
+        this.diskMaxSize = diskMaxSize;
+        this.diskDir = diskMaxSize == 0 ? null : diskDir;
+        this.serverVersion = serverVersion == null ? "" : serverVersion;
+        if ( this.diskDir != null ) {
+            loadDiskIndex();
+        }
+    }
+
+    /**
+     * replace the cache used by all compiler workflows by a cache configured from the server properties.
+     *
+     * @param properties the server properties
+     * @param diskDir directory for the disk cache
+     */
+    public static void configure(Properties properties, String diskDir) {
+        long memoryMaxSize = Long.parseLong(properties.getProperty("compiler.cache.memory.maxsize", String.valueOf(DEFAULT_MEMORY_MAX_SIZE)).trim());
+        long diskMaxSize = Long.parseLong(properties.getProperty("compiler.cache.disk.maxsize", "0").trim());
+        String serverVersion = properties.getProperty("openRobertaServer.version", "");
+        instance = new CompilationCache(memoryMaxSize, diskMaxSize, new File(diskDir), serverVersion);
+        LOG.info("compilation cache: " + memoryMaxSize + " bytes in memory, " + diskMaxSize + " bytes on disk in " + diskDir);
+    }
+
+    public static CompilationCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the key of an artifact compiled by a toolchain from some source using some compiler flags
+     */
+    public static String makeKey(String toolchain, String sourceCode, Object flags) {
+        Assert.notNull(toolchain);
+        Assert.notNull(sourceCode);
+        StringBuilder sb = new StringBuilder();
+        sb.append(toolchain).append('\u0000').append(flags == null ? "" : flags.toString()).append('\u0000').append(sourceCode);
+        return DigestUtils.sha256Hex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param resourcesDir the resources directory of a toolchain
+     * @return the fingerprint of the toolchain: the version of the server and the state of its resources. Computed again after
+     *         {@link #FINGERPRINT_TTL_MSEC}
+     */
+    public String getToolchainFingerprint(String resourcesDir) {
+        long now = System.currentTimeMillis();
+        Fingerprint fingerprint = this.fingerprints.get(resourcesDir);
+        if ( fingerprint == null || now - fingerprint.computed > FINGERPRINT_TTL_MSEC ) {
+            fingerprint = new Fingerprint(this.serverVersion + ":" + fingerprintOf(new File(resourcesDir)), now);
+            this.fingerprints.put(resourcesDir, fingerprint);
+        }
+        return fingerprint.value;
+    }
+
+    /**
+     * @param dir the resources directory of a toolchain
+     * @return the number of files and a hash of the relative path, the size and the modification time of all files in the directory; "-", if the
+     *         directory doesn't exist
+     */
+    public static String fingerprintOf(File dir) {
+        if ( !dir.isDirectory() ) {
+            return "-";
+        }
+        Path root = dir.toPath();
+        AtomicLong files = new AtomicLong(0);
+        AtomicLong hash = new AtomicLong(0);
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    files.incrementAndGet();
+                    // a sum doesn't depend on the order of the walk
+                    hash.addAndGet(Objects.hash(root.relativize(file).toString(), attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch ( IOException e ) {
+            LOG.warn("the fingerprint of " + dir + " could not be computed: " + e.getMessage());
+        }
+        return files.get() + ":" + Long.toHexString(hash.get());
+    }
+
+    /**
+     * get an artifact. The memory is searched first, then the disk. An artifact found on disk is promoted to memory.
+     *
+     * @param key the key of the artifact, see {@link #makeKey(String, String, Object)}
+     * @return the artifact or null, if not found
+     */
+    public byte[] get(String key) {
+        synchronized ( this ) {
+            byte[] artifact = this.memory.get(key);
+            if ( artifact != null ) {
+                this.hits.incrementAndGet();
+                return artifact;
+            }
+            if ( this.disk.get(key) == null ) {
+                this.misses.incrementAndGet();
+                return null;
+            }
+        }
+        try {
+            File artifactFile = artifactFile(key);
+            byte[] artifact = FileUtils.readFileToByteArray(artifactFile);
+            artifactFile.setLastModified(System.currentTimeMillis());
+            synchronized ( this ) {
+                putIntoMemory(key, artifact);
+            }
+            this.hits.incrementAndGet();
+            return artifact;
+        } catch ( IOException e ) {
+            // evicted concurrently or damaged. Treat as a miss
+            LOG.info("artifact " + key + " could not be read from the disk cache: " + e.getMessage());
+            synchronized ( this ) {
+                removeFromDisk(key);
+            }
+            this.misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * store an artifact in memory and on disk. Least recently used artifacts are evicted to respect the size limits. Artifacts larger than a limit are not
+     * stored at that level.
+     *
+     * @param key the key of the artifact, see {@link #makeKey(String, String, Object)}
+     * @param artifact the compiled program; never null
+     */
+    public void put(String key, byte[] artifact) {
+        Assert.notNull(artifact);
+        synchronized ( this ) {
+            putIntoMemory(key, artifact);
+        }
+        if ( this.diskDir == null || artifact.length > this.diskMaxSize ) {
+            return;
+        }
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile(TMP_PREFIX, TMP_EXT, this.diskDir);
+            FileUtils.writeByteArrayToFile(tmpFile, artifact);
+            Files.move(tmpFile.toPath(), artifactFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch ( IOException e ) {
+            LOG.error("artifact " + key + " could not be written to the disk cache", e);
+            FileUtils.deleteQuietly(tmpFile);
+            return;
+        }
+        synchronized ( this ) {
+            Long oldSize = this.disk.put(key, (long) artifact.length);
+            this.diskSize += artifact.length - (oldSize == null ? 0 : oldSize);
+            Iterator<Map.Entry<String, Long>> lru = this.disk.entrySet().iterator();
+            while ( this.diskSize > this.diskMaxSize && lru.hasNext() ) {
+                Map.Entry<String, Long> eldest = lru.next();
+                lru.remove();
+                this.diskSize -= eldest.getValue();
+                this.evictions.incrementAndGet();
+                FileUtils.deleteQuietly(artifactFile(eldest.getKey()));
+            }
+        }
+    }
+
+    /**
+     * @return the statistics of this cache for the <i>/alive</i> service
+     */
+    public synchronized JSONObject getStatistics() throws JSONException {
+        JSONObject statistics = new JSONObject();
+        statistics.put("hits", this.hits.get()).put("misses", this.misses.get()).put("evictions", this.evictions.get());
+        statistics.put("memoryEntries", this.memory.size()).put("memoryBytes", this.memorySize);
+        statistics.put("diskEntries", this.disk.size()).put("diskBytes", this.diskSize);
+        return statistics;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    private void putIntoMemory(String key, byte[] artifact) {
+        if ( artifact.length > this.memoryMaxSize ) {
+            return;
+        }
+        byte[] old = this.memory.put(key, artifact);
+        this.memorySize += artifact.length - (old == null ? 0 : old.length);
+        Iterator<Map.Entry<String, byte[]>> lru = this.memory.entrySet().iterator();
+        while ( this.memorySize > this.memoryMaxSize && lru.hasNext() ) {
+            Map.Entry<String, byte[]> eldest = lru.next();
+            lru.remove();
+            this.memorySize -= eldest.getValue().length;
+            this.evictions.incrementAndGet();
+        }
+    }
+
+    private void removeFromDisk(String key) {
+        Long size = this.disk.remove(key);
+        if ( size != null ) {
+            this.diskSize -= size;
+        }
+    }
+
+    private File artifactFile(String key) {
+        return new File(this.diskDir, key + ARTIFACT_EXT);
+    }
+
+    private static final class Fingerprint {
+        private final String value;
+        private final long computed;
+
+        private Fingerprint(String value, long computed) {
+            this.value = value;
+            this.computed = computed;
+        }
+    }
+
+    private void loadDiskIndex() {
+        try {
+            Files.createDirectories(this.diskDir.toPath());
+        } catch ( IOException e ) {
+            LOG.error("directory " + this.diskDir + " for the compilation cache could not be created", e);
+        }
+        File[] tmpFiles = this.diskDir.listFiles((dir, name) -> name.startsWith(TMP_PREFIX) && name.endsWith(TMP_EXT));
+        if ( tmpFiles != null && tmpFiles.length > 0 ) {
+            for ( File tmpFile : tmpFiles ) {
+                FileUtils.deleteQuietly(tmpFile);
+            }
+            LOG.info(tmpFiles.length + " stale temporary files removed from the disk cache");
+        }
+        File[] files = this.diskDir.listFiles((dir, name) -> name.endsWith(ARTIFACT_EXT));
+        if ( files == null ) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for ( File file : files ) {
+            String name = file.getName();
+            this.disk.put(name.substring(0, name.length() - ARTIFACT_EXT.length()), file.length());
+            this.diskSize += file.length();
+        }
+        LOG.info(this.disk.size() + " compiled programs found in the disk cache");
+    }
+}
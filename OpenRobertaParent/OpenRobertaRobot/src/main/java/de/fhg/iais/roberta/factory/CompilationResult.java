@@ -0,0 +1,76 @@
+package de.fhg.iais.roberta.factory;
+
+import de.fhg.iais.roberta.util.Key;
+import de.fhg.iais.roberta.util.dbc.Assert;
+
+/**
+ * the immutable result of one compilation, see {@link ICompilerWorkflow#compileSourceCode(String, String, String, de.fhg.iais.roberta.inter.mode.action.ILanguage, Object)}.
+ * Compiler workflows are singletons shared by all users, thus the result of a compilation must <b>never</b> be stored in a workflow.
+ */
+public final class CompilationResult {
+    private final Key key;
+    private final String compiledCode;
+    private final String messages;
+    private final long durationMsec;
+
+    private CompilationResult(Key key, String compiledCode, String messages, long durationMsec) {
+        Assert.notNull(key);
+        this.key = key;
+        this.compiledCode = compiledCode;
+        this.messages = messages == null ? "" : messages;
+        this.durationMsec = durationMsec;
+    }
+
+    /**
+     * @param compiledCode the compiled program, if it is sent to the client (arduino, calliope, ...); null otherwise (the program is downloaded by the robot)
+     * @param messages from the compiler; may be null
+     * @param durationMsec time needed for the compilation
+     */
+    public static CompilationResult success(String compiledCode, String messages, long durationMsec) {
+        return new CompilationResult(Key.COMPILERWORKFLOW_SUCCESS, compiledCode, messages, durationMsec);
+    }
+
+    /**
+     * @param key the error key; must not be {@link Key#COMPILERWORKFLOW_SUCCESS}
+     * @param messages from the compiler; may be null
+     * @param durationMsec time needed until the compilation failed
+     */
+    public static CompilationResult failure(Key key, String messages, long durationMsec) {
+        Assert.isTrue(key != Key.COMPILERWORKFLOW_SUCCESS, "a failure needs an error key");
+        return new CompilationResult(key, null, messages, durationMsec);
+    }
+
+    public boolean isSuccess() {
+        return this.key == Key.COMPILERWORKFLOW_SUCCESS;
+    }
+
+    /**
+     * @return {@link Key#COMPILERWORKFLOW_SUCCESS} or the error key; never null
+     */
+    public Key getKey() {
+        return this.key;
+    }
+
+    /**
+     * @return the compiled program (for arduino, calliope, ... a hex); null, if the compilation failed or if the robot downloads the program itself
+     */
+    public String getCompiledCode() {
+        return this.compiledCode;
+    }
+
+    /**
+     * @return the messages of the compiler; never null
+     */
+    public String getMessages() {
+        return this.messages;
+    }
+
+    public long getDurationMsec() {
+        return this.durationMsec;
+    }
+
+    @Override
+    public String toString() {
+        return "CompilationResult [key=" + this.key + ", durationMsec=" + this.durationMsec + ", compiledCode=" + (this.compiledCode != null) + "]";
+    }
+}
@@ -0,0 +1,392 @@
+package de.fhg.iais.roberta.factory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.util.Clock;
+import de.fhg.iais.roberta.util.HashedWheelTimer;
+import de.fhg.iais.roberta.util.dbc.Assert;
+
+/**
+ * controls, how many external compilers (arduino-builder, nbc, the calliope compile script, ...) run at the same time. A start-of-lesson burst must not fork
+ * hundreds of toolchain processes at once.<br>
+ * <br>
+ * For each toolchain a <i>lane</i> exists. A lane allows a bounded number of compilations to run in parallel. Further compilations are queued. The queue is
+ * fair: the waiting compilations are granted round robin by token (i.e. by user session), thus a single user can't starve the others. If the queue is full
+ * or a compilation waits too long, it is rejected with {@link de.fhg.iais.roberta.util.Key#COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_OVERLOAD}. An external
+ * compiler running longer than the compile timeout is killed together with the processes it started (the compilers called by a build script, e.g.). On
+ * Linux the compiler is started by <code>setsid</code> as the leader of a new process group, the group is killed. Without <code>setsid</code> only the
+ * compiler itself is killed.<br>
+ * <br>
+ * Properties (all optional):<br>
+ * - <code>compiler.scheduler.parallelism</code>: default number of parallel compilations per toolchain. May be overwritten for a toolchain by
+ * <code>compiler.scheduler.parallelism.&lt;toolchain&gt;</code>, e.g. <code>compiler.scheduler.parallelism.arduino.mbot</code><br>
+ * - <code>compiler.scheduler.queue.maxsize</code>: max number of compilations waiting per toolchain<br>
+ * - <code>compiler.scheduler.queue.maxwait</code>: max time (msec) a compilation waits for its turn<br>
+ * - <code>compiler.scheduler.timeout</code>: max time (msec) an external compiler may run
+ */
+public class CompilerScheduler {
+    private static final Logger LOG = LoggerFactory.getLogger(CompilerScheduler.class);
+    private static final String PREFIX = "compiler.scheduler.";
+    private static final String SETSID = findSetsid();
+
+    private static volatile CompilerScheduler instance = new CompilerScheduler(new Properties());
+
+    private final Properties properties;
+    private final int defaultParallelism;
+    private final int maxQueueSize;
+    private final long maxWaitMsec;
+    private final long timeoutMsec;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final HashedWheelTimer watchdog = new HashedWheelTimer("CompilerWatchdog", 100, TimeUnit.MILLISECONDS, 512);
+
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong killed = new AtomicLong(0);
+
+    /**
+     * create a scheduler
+     *
+     * @param properties the server properties, see the class comment for the properties used
+     */
+    public CompilerScheduler(Properties properties) {
+        this.properties = properties;
+        String processors = String.valueOf(Runtime.getRuntime().availableProcessors());
+        this.defaultParallelism = Integer.parseInt(properties.getProperty(PREFIX + "parallelism", processors).trim());
+        this.maxQueueSize = Integer.parseInt(properties.getProperty(PREFIX + "queue.maxsize", "100").trim());
+        this.maxWaitMsec = Long.parseLong(properties.getProperty(PREFIX + "queue.maxwait", "60000").trim());
+        this.timeoutMsec = Long.parseLong(properties.getProperty(PREFIX + "timeout", "120000").trim());
+        Assert.isTrue(
+            this.defaultParallelism > 0 && this.maxQueueSize >= 0 && this.maxWaitMsec > 0 && this.timeoutMsec > 0,
+            "invalid compiler scheduler properties");
+    }
+
+    /**
+     * replace the scheduler used by all compiler workflows by a scheduler configured from the server properties.
+     */
+    public static void configure(Properties properties) {
+        CompilerScheduler old = instance;
+        instance = new CompilerScheduler(properties);
+        old.shutdown();
+        LOG.info(
+            "compiler scheduler: "
+                + instance.defaultParallelism
+                + " parallel compilations per toolchain, queue size "
+                + instance.maxQueueSize
+                + ", max wait "
+                + instance.maxWaitMsec
+                + " msec, timeout "
+                + instance.timeoutMsec
+                + " msec");
+    }
+
+    public static CompilerScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * run a compilation, when the lane of the toolchain grants it. Blocks the calling thread until the compilation has finished.
+     *
+     * @param toolchain the name of the lane, e.g. "arduino.mbot"
+     * @param token identifies the user session for fair queueing; may be null
+     * @param compilation to be run
+     * @return the result of the compilation
+     * @throws OverloadException if the queue is full or the compilation waited too long
+     */
+    public <T> T execute(String toolchain, String token, Callable<T> compilation) throws Exception {
+        Lane lane = this.lanes.computeIfAbsent(toolchain, this::makeLane);
+        lane.acquire(token == null ? "" : token);
+        try {
+            return compilation.call();
+        } finally {
+            lane.release();
+        }
+    }
+
+    /**
+     * start a process and copy its standard output into a stream. If the process runs longer than the compile timeout, it is killed with all processes
+     * it started. The output is copied by a thread of its own, the caller returns as soon as the process is killed, even if a process not killed still
+     * holds the output open.
+     *
+     * @param procBuilder ready to start the external compiler. Not modified
+     * @param output receives the standard output of the process
+     * @return the exit code of the process
+     * @throws TimeoutException if the process was killed
+     */
+    public int runProcess(ProcessBuilder procBuilder, OutputStream output) throws IOException, InterruptedException {
+        Process p = inNewProcessGroup(procBuilder).start();
+        AtomicBoolean isKilled = new AtomicBoolean(false);
+        HashedWheelTimer.Timeout timeout = this.watchdog.newTimeout(() -> {
+            isKilled.set(true);
+            killProcessGroup(p);
+        }, this.timeoutMsec, TimeUnit.MILLISECONDS);
+        Thread copier = new Thread(() -> {
+            try ( InputStream input = p.getInputStream() ) {
+                IOUtils.copy(input, output);
+            } catch ( IOException e ) {
+                // the process was killed
+            }
+        }, "compilerOutput");
+        copier.setDaemon(true);
+        try {
+            copier.start();
+            while ( copier.isAlive() && !isKilled.get() ) {
+                copier.join(100);
+            }
+            int ecode = p.waitFor();
+            if ( isKilled.get() ) {
+                this.killed.incrementAndGet();
+                throw new TimeoutException("external compiler killed after " + this.timeoutMsec + " msec");
+            }
+            return ecode;
+        } finally {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * @return the statistics of all lanes for the <i>/alive</i> service
+     */
+    public JSONObject getStatistics() throws JSONException {
+        JSONObject statistics = new JSONObject();
+        statistics.put("rejected", this.rejected.get()).put("killed", this.killed.get());
+        for ( Lane lane : this.lanes.values() ) {
+            statistics.put(lane.name, lane.getStatistics());
+        }
+        return statistics;
+    }
+
+    /**
+     * @return the number of compilations waiting for their turn (sum over all toolchains)
+     */
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for ( Lane lane : this.lanes.values() ) {
+            synchronized ( lane ) {
+                queueDepth += lane.queued;
+            }
+        }
+        return queueDepth;
+    }
+
+    public void shutdown() {
+        this.watchdog.stop();
+    }
+
+    /**
+     * @return a copy of the process builder, that starts the command by <code>setsid</code>; the builder itself, if <code>setsid</code> is not
+     *         available
+     */
+    private static ProcessBuilder inNewProcessGroup(ProcessBuilder procBuilder) {
+        if ( SETSID == null ) {
+            return procBuilder;
+        }
+        List<String> command = new ArrayList<>(procBuilder.command());
+        command.add(0, SETSID);
+        ProcessBuilder inGroup = new ProcessBuilder(command).directory(procBuilder.directory()).redirectErrorStream(procBuilder.redirectErrorStream());
+        inGroup.redirectInput(procBuilder.redirectInput()).redirectOutput(procBuilder.redirectOutput()).redirectError(procBuilder.redirectError());
+        inGroup.environment().clear();
+        inGroup.environment().putAll(procBuilder.environment());
+        return inGroup;
+    }
+
+    /**
+     * kill a process started by {@link #inNewProcessGroup(ProcessBuilder)} and all processes of its group. <code>setsid</code> doesn't fork, the pid of
+     * the process is the id of the group
+     */
+    private static void killProcessGroup(Process p) {
+        long pid = SETSID == null ? -1 : pidOf(p);
+        if ( pid > 0 ) {
+            try {
+                Process kill = new ProcessBuilder("kill", "-KILL", "--", "-" + pid).redirectErrorStream(true).start();
+                if ( !kill.waitFor(5, TimeUnit.SECONDS) ) {
+                    kill.destroyForcibly();
+                }
+            } catch ( Exception e ) {
+                LOG.error("the process group " + pid + " of an external compiler could not be killed", e);
+            }
+        }
+        p.destroyForcibly();
+    }
+
+    /**
+     * @return the pid of a process; -1, if it cannot be determined. Java 8 has no API for it
+     */
+    private static long pidOf(Process p) {
+        try {
+            return (Long) Process.class.getMethod("pid").invoke(p);
+        } catch ( Exception e ) {
+            // before Java 9
+        }
+        try {
+            Field pid = p.getClass().getDeclaredField("pid");
+            pid.setAccessible(true);
+            return pid.getInt(p);
+        } catch ( Exception e ) {
+            return -1;
+        }
+    }
+
+    private static String findSetsid() {
+        for ( String setsid : new String[] {
+            "/usr/bin/setsid",
+            "/bin/setsid"
+        } ) {
+            if ( new File(setsid).canExecute() ) {
+                return setsid;
+            }
+        }
+        return null;
+    }
+
+    private Lane makeLane(String toolchain) {
+        String parallelism = this.properties.getProperty(PREFIX + "parallelism." + toolchain);
+        return new Lane(toolchain, parallelism == null ? this.defaultParallelism : Integer.parseInt(parallelism.trim()));
+    }
+
+    /**
+     * thrown, if a compilation is rejected, because the toolchain is overloaded
+     */
+    public static class OverloadException extends RuntimeException {
+        private static final long serialVersionUID = -2906253947434946436L;
+
+        public OverloadException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * thrown, if an external compiler was killed, because it ran too long
+     */
+    public static class TimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 3567935167011863398L;
+
+        public TimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Waiter {
+        private boolean granted = false;
+    }
+
+    private final class Lane {
+        private final String name;
+        private final int parallelism;
+        // token -> waiting compilations of that token. The map is in insertion order, a token whose compilation is granted is moved to the end (round robin)
+        private final LinkedHashMap<String, ArrayDeque<Waiter>> waiting = new LinkedHashMap<>();
+        private int running = 0;
+        private int queued = 0;
+        private int maxQueued = 0;
+        private long granted = 0;
+        private long totalWaitMsec = 0;
+        private long maxWaitMsec = 0;
+
+        private Lane(String name, int parallelism) {
+            Assert.isTrue(parallelism > 0, "parallelism of toolchain " + name + " must be positive");
+            this.name = name;
+            this.parallelism = parallelism;
+        }
+
+        private synchronized void acquire(String token) throws InterruptedException {
+            if ( this.running < this.parallelism && this.queued == 0 ) {
+                this.running++;
+                remember(0);
+                return;
+            }
+            if ( this.queued >= CompilerScheduler.this.maxQueueSize ) {
+                CompilerScheduler.this.rejected.incrementAndGet();
+                throw new OverloadException("toolchain " + this.name + " overloaded: " + this.queued + " compilations are waiting");
+            }
+            Waiter waiter = new Waiter();
+            this.waiting.computeIfAbsent(token, t -> new ArrayDeque<>()).add(waiter);
+            this.queued++;
+            this.maxQueued = Math.max(this.maxQueued, this.queued);
+            Clock clock = Clock.start();
+            long remaining = CompilerScheduler.this.maxWaitMsec;
+            try {
+                while ( !waiter.granted && remaining > 0 ) {
+                    wait(remaining);
+                    remaining = CompilerScheduler.this.maxWaitMsec - clock.elapsedMsec();
+                }
+            } catch ( InterruptedException e ) {
+                if ( waiter.granted ) {
+                    // granted after the interrupt, but before the monitor was re-acquired. The compilation is not run, hand the permit to the next waiter
+                    release();
+                }
+                throw e;
+            } finally {
+                if ( !waiter.granted ) {
+                    remove(token, waiter);
+                }
+            }
+            if ( !waiter.granted ) {
+                CompilerScheduler.this.rejected.incrementAndGet();
+                throw new OverloadException("toolchain " + this.name + " overloaded: compilation waited " + clock.elapsedMsec() + " msec");
+            }
+            remember(clock.elapsedMsec());
+        }
+
+        private synchronized void release() {
+            this.running--;
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> tokens = this.waiting.entrySet().iterator();
+            if ( tokens.hasNext() ) {
+                Map.Entry<String, ArrayDeque<Waiter>> next = tokens.next();
+                tokens.remove();
+                Waiter waiter = next.getValue().poll();
+                if ( !next.getValue().isEmpty() ) {
+                    this.waiting.put(next.getKey(), next.getValue());
+                }
+                this.queued--;
+                this.running++;
+                waiter.granted = true;
+                notifyAll();
+            }
+        }
+
+        private void remove(String token, Waiter waiter) {
+            ArrayDeque<Waiter> waitersOfToken = this.waiting.get(token);
+            if ( waitersOfToken != null && waitersOfToken.remove(waiter) ) {
+                this.queued--;
+                if ( waitersOfToken.isEmpty() ) {
+                    this.waiting.remove(token);
+                }
+            }
+        }
+
+        private void remember(long waitMsec) {
+            this.granted++;
+            this.totalWaitMsec += waitMsec;
+            this.maxWaitMsec = Math.max(this.maxWaitMsec, waitMsec);
+        }
+
+        private synchronized JSONObject getStatistics() throws JSONException {
+            JSONObject statistics = new JSONObject();
+            statistics.put("parallelism", this.parallelism).put("running", this.running);
+            statistics.put("queueDepth", this.queued).put("maxQueueDepth", this.maxQueued);
+            statistics.put("compilations", this.granted).put("avgWaitMsec", this.granted == 0 ? 0 : this.totalWaitMsec / this.granted);
+            statistics.put("maxWaitMsec", this.maxWaitMsec);
+            return statistics;
+        }
+    }
+}
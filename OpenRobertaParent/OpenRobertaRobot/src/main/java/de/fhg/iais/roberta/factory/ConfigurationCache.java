@@ -0,0 +1,131 @@
+package de.fhg.iais.roberta.factory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.components.Configuration;
+import de.fhg.iais.roberta.util.dbc.Assert;
+
+/**
+ * a cache for parsed robot configurations. Most programs are run with the default configuration of the robot plugin or with one of a few named
+ * configurations. Parsing the configuration XML again and again for each run is a waste of time.<br>
+ * <br>
+ * The key of a configuration is the robot plugin and the SHA-256 of the configuration text (the same hash, that identifies the configuration text in the
+ * database). The robot name is set when the configuration is parsed; afterwards the {@link Configuration} is never modified and thus shared by all
+ * requests. The number of configurations kept is bounded (property <code>configuration.cache.maxsize</code>), the least recently used are evicted first.
+ * A size of 0 disables the cache. Until {@link #configure(Properties)} is called, a cache of {@link #DEFAULT_MAX_SIZE} configurations is used.
+ */
+public class ConfigurationCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigurationCache.class);
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static volatile ConfigurationCache instance = new ConfigurationCache(DEFAULT_MAX_SIZE);
+
+    private final int maxSize;
+
+    // access order: the first entry is the least recently used one
+    private final LinkedHashMap<String, Configuration> configurations = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    /**
+     * create a cache
+     *
+     * @param maxSize max number of configurations kept; 0 disables the cache
+     */
+    public ConfigurationCache(int maxSize) {
+        Assert.isTrue(maxSize >= 0, "size of the configuration cache must not be negative");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * replace the cache used for all program runs by a cache configured from the server properties.
+     *
+     * @param properties the server properties
+     */
+    public static void configure(Properties properties) {
+        int maxSize = Integer.parseInt(properties.getProperty("configuration.cache.maxsize", String.valueOf(DEFAULT_MAX_SIZE)).trim());
+        instance = new ConfigurationCache(maxSize);
+        LOG.info("configuration cache: " + maxSize + " configurations");
+    }
+
+    public static ConfigurationCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the key of a configuration text used with a robot plugin
+     */
+    public static String makeKey(String robotName, String configurationText) {
+        return robotName + ":" + DigestUtils.sha256Hex(configurationText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * get the parsed configuration. If it is not cached, it is parsed by the compiler workflow of the robot plugin and cached. Configurations, that can't
+     * be parsed, are not cached.
+     *
+     * @param robotName the name of the robot plugin, stored in the configuration
+     * @param factory the factory of the robot plugin
+     * @param configurationText the configuration XML; never null
+     * @return the configuration; it must not be modified
+     * @throws Exception if the configuration could not be parsed
+     */
+    public Configuration getConfiguration(String robotName, IRobotFactory factory, String configurationText) throws Exception {
+        Assert.notNull(robotName);
+        Assert.notNull(configurationText, "the configuration text is missing");
+        String key = makeKey(robotName, configurationText);
+        synchronized ( this ) {
+            Configuration configuration = this.configurations.get(key);
+            if ( configuration != null ) {
+                this.hits.incrementAndGet();
+                return configuration;
+            }
+        }
+        this.misses.incrementAndGet();
+        // parsing is done outside of the lock. If two requests parse the same configuration concurrently, the second one wins
+        Configuration configuration = factory.getRobotCompilerWorkflow().generateConfiguration(factory, configurationText);
+        configuration.setRobotName(robotName);
+        if ( this.maxSize > 0 ) {
+            synchronized ( this ) {
+                this.configurations.put(key, configuration);
+                Iterator<Map.Entry<String, Configuration>> lru = this.configurations.entrySet().iterator();
+                while ( this.configurations.size() > this.maxSize && lru.hasNext() ) {
+                    lru.next();
+                    lru.remove();
+                    this.evictions.incrementAndGet();
+                }
+            }
+        }
+        return configuration;
+    }
+
+    /**
+     * @return the statistics of this cache for the <i>/alive</i> service
+     */
+    public synchronized JSONObject getStatistics() throws JSONException {
+        JSONObject statistics = new JSONObject();
+        statistics.put("hits", this.hits.get()).put("misses", this.misses.get()).put("evictions", this.evictions.get());
+        statistics.put("entries", this.configurations.size());
+        return statistics;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
@@ -3,7 +3,6 @@ package de.fhg.iais.roberta.factory;
 import de.fhg.iais.roberta.components.Configuration;
 import de.fhg.iais.roberta.inter.mode.action.ILanguage;
 import de.fhg.iais.roberta.transformer.BlocklyProgramAndConfigTransformer;
-import de.fhg.iais.roberta.util.Key;
 
 public interface ICompilerWorkflow {
 
@@ -28,12 +27,18 @@ public interface ICompilerWorkflow {
      * <b>Note:</b> the library is prepared for being "uploaded" to the robot, but that is NOT done here. There are different "upload" strategies, among
      * others:<br>
      * - robots get the library after a handshake between robot (e.g. ev3) or USB program (acting for the robot, e.g. nxt) and the server<br>
-     * - for other robots code is sent to a download directory of the client computer (e.g. Calliope)
-     * @param flagProvider TODO
+     * - for other robots code is sent to a download directory of the client computer (e.g. Calliope)<br>
+     * <br>
+     * This method must be thread safe: the result of the compilation is returned, it must <b>not</b> be stored in the workflow.
      *
-     * @return a message key in case of an error; null otherwise
+     * @param token the credential supplied by the user. Needed to provide a unique directory name for crosscompilation
+     * @param programName name of the program
+     * @param sourceCode the program to be compiled
+     * @param language locale to be used for messages
+     * @param flagProvider robot specific compiler flags (e.g. an EnumSet of compiler flags); may be null
+     * @return the result of the compilation; simulation workflows return null
      */
-    Key compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider);
+    CompilationResult compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider);
 
     /**
      * - take the program given<br>
@@ -51,9 +56,9 @@ public interface ICompilerWorkflow {
      * @param programName name of the program
      * @param transformer to acces the AST of program and configuration
      * @param language the locale to be used for messages
-     * @return a message key in case of an error; null otherwise
+     * @return the result of the compilation; simulation workflows return null
      */
-    Key generateSourceAndCompile(String token, String programName, BlocklyProgramAndConfigTransformer transformer, ILanguage language);
+    CompilationResult generateSourceAndCompile(String token, String programName, BlocklyProgramAndConfigTransformer transformer, ILanguage language);
 
     /**
      * return the robot configuration for a given XML configuration text.
@@ -64,10 +69,16 @@ public interface ICompilerWorkflow {
     Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception;
 
     /**
-     * return the compilation result. This is needed for some robots (e.g. arduino). Some implementations return null.
-     *
-     * @return the compilation result.
+     * prepare the program independent artifacts of the crosscompiler (e.g. prebuilt libraries), before the first program is compiled. Called once at
+     * server startup, must return immediately and do the work in the background. The default does nothing.
+     */
+    default void warmUp() {
+    }
+
+    /**
+     * release the resources held by the compiler workflow (open files, threads). Called once, when the server terminates. The default does nothing.
      */
-    String getCompiledCode();
+    default void shutdown() {
+    }
 
 }
\ No newline at end of file
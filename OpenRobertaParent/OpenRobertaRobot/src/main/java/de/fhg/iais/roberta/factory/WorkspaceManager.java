@@ -0,0 +1,523 @@
+package de.fhg.iais.roberta.factory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.util.dbc.Assert;
+
+/**
+ * manages the workspaces of the crosscompilers. A workspace is the directory <code>&lt;tempDirForUserProjects&gt;/&lt;token&gt;</code>, in which the
+ * programs of a token are stored and compiled. Without the manager these directories are never removed.<br>
+ * <br>
+ * - a workspace is removed, when the robot of its token disconnects or its token is replaced by a new one (see <code>RobotCommunicator</code>), when it
+ * is not used for <code>workspace.ttl</code> (sec) or - least recently used first - when all workspaces together exceed
+ * <code>workspace.disk.maxsize</code> (bytes). Workspaces used within the compiler timeout are never removed, a compilation may be running<br>
+ * - if a workspace exceeds <code>workspace.quota</code> (bytes) after a compilation, the other programs of the token are removed, oldest first. A
+ * program is the directory <code>&lt;token&gt;/&lt;program&gt;</code> and its files <code>&lt;program&gt;.*</code> in the directory
+ * <code>&lt;token&gt;/target</code>, which is shared by all programs of the token (the leJOS jars are stored there)<br>
+ * - the artifacts downloaded by the robots are kept in memory, at most <code>workspace.artifacts.maxsize</code> bytes, least recently used ones are
+ * evicted first. An artifact is read from disk by its first download, after that every compilation of the program replaces it in memory. Artifacts
+ * never downloaded (e.g. the hex files sent to the browser) are not kept<br>
+ * - workspaces found at startup (left by a previous run) are treated as not used since the last modification of their directory<br>
+ * - a workspace is removed by renaming it while holding the lock of the manager, then the renamed directory is deleted. A program stored after the
+ * removal starts with an empty workspace. Directories left by a removal that didn't finish are deleted at startup<br>
+ * <br>
+ * The reclamation runs every minute in a background thread. Until {@link #configure(Properties, String)} is called, no workspace is managed and no
+ * artifact is kept in memory.
+ */
+public class WorkspaceManager {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkspaceManager.class);
+    private static final long DEFAULT_TTL_SEC = 2L * 60 * 60;
+    private static final long DEFAULT_DISK_MAX_SIZE = 1024L * 1024 * 1024;
+    private static final long DEFAULT_QUOTA = 50L * 1024 * 1024;
+    private static final long DEFAULT_ARTIFACTS_MAX_SIZE = 16L * 1024 * 1024;
+    private static final long DEFAULT_BUSY_MSEC = 120000;
+    private static final long RECLAIM_PERIOD_SEC = 60;
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final String SHARED_TARGET_DIR = "target";
+    private static final String REMOVED_SUFFIX = ".removed";
+
+    private static volatile WorkspaceManager instance = new WorkspaceManager(null, 0, 0, 0, 0, 0);
+
+    private final File baseDir;
+    private final long ttlMsec;
+    private final long busyMsec;
+    private final long diskMaxSize;
+    private final long quota;
+    private final long artifactsMaxSize;
+
+    // all fields below are guarded by "this"
+    private final Map<String, Workspace> workspaces = new HashMap<>();
+    // in access order: the first entry is the least recently used one
+    private final LinkedHashMap<String, byte[]> artifacts = new LinkedHashMap<>(64, 0.75f, true);
+    private long artifactsSize = 0;
+    private ScheduledExecutorService reclaimer = null;
+
+    private final AtomicLong removedByRelease = new AtomicLong(0);
+    private final AtomicLong removedByTtl = new AtomicLong(0);
+    private final AtomicLong removedBySize = new AtomicLong(0);
+    private final AtomicLong programsRemovedByQuota = new AtomicLong(0);
+
+    /**
+     * create a manager. Workspaces already in the base directory are registered.
+     *
+     * @param baseDir the directory of the workspaces; null, if no workspace is managed
+     * @param ttlMsec workspaces not used for this time are removed
+     * @param busyMsec workspaces used within this time are never removed (should be the compiler timeout)
+     * @param diskMaxSize max number of bytes of all workspaces together
+     * @param quota max number of bytes of one workspace
+     * @param artifactsMaxSize max number of bytes of the artifacts kept in memory; 0 disables the in-memory store
+     */
+    public WorkspaceManager(File baseDir, long ttlMsec, long busyMsec, long diskMaxSize, long quota, long artifactsMaxSize) {
+        Assert.isTrue(ttlMsec >= 0 && busyMsec >= 0 && diskMaxSize >= 0 && quota >= 0 && artifactsMaxSize >= 0, "workspace limits must not be negative");
+        this.baseDir = baseDir;
+        this.ttlMsec = ttlMsec;
+        this.busyMsec = busyMsec;
+        this.diskMaxSize = diskMaxSize;
+        this.quota = quota;
+        this.artifactsMaxSize = artifactsMaxSize;
+        File[] existing = baseDir == null ? null : baseDir.listFiles(File::isDirectory);
+        if ( existing != null ) {
+            for ( File dir : existing ) {
+                if ( VALID_NAME.matcher(dir.getName()).matches() ) {
+                    this.workspaces.put(dir.getName(), new Workspace(dir.lastModified()));
+                } else if ( dir.getName().endsWith(REMOVED_SUFFIX) ) {
+                    FileUtils.deleteQuietly(dir);
+                }
+            }
+            LOG.info(this.workspaces.size() + " workspaces found in " + baseDir);
+        }
+    }
+
+    /**
+     * replace the manager used by all compiler workflows by a manager configured from the server properties and start the reclamation.
+     *
+     * @param properties the server properties
+     * @param baseDir the directory of the workspaces (the temp directory for user projects)
+     */
+    public static void configure(Properties properties, String baseDir) {
+        long ttlMsec = TimeUnit.SECONDS.toMillis(Long.parseLong(properties.getProperty("workspace.ttl", String.valueOf(DEFAULT_TTL_SEC)).trim()));
+        long busyMsec = Long.parseLong(properties.getProperty("compiler.scheduler.timeout", String.valueOf(DEFAULT_BUSY_MSEC)).trim());
+        long diskMaxSize = Long.parseLong(properties.getProperty("workspace.disk.maxsize", String.valueOf(DEFAULT_DISK_MAX_SIZE)).trim());
+        long quota = Long.parseLong(properties.getProperty("workspace.quota", String.valueOf(DEFAULT_QUOTA)).trim());
+        long artifactsMaxSize = Long.parseLong(properties.getProperty("workspace.artifacts.maxsize", String.valueOf(DEFAULT_ARTIFACTS_MAX_SIZE)).trim());
+        WorkspaceManager old = instance;
+        instance = new WorkspaceManager(new File(baseDir), ttlMsec, busyMsec, diskMaxSize, quota, artifactsMaxSize);
+        old.shutdown();
+        instance.start();
+        LOG.info(
+            "workspaces in "
+                + baseDir
+                + ": ttl "
+                + ttlMsec
+                + " msec, max "
+                + diskMaxSize
+                + " bytes, quota "
+                + quota
+                + " bytes, "
+                + artifactsMaxSize
+                + " bytes of artifacts in memory");
+    }
+
+    public static WorkspaceManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * a program of a token is stored. Must be called before the workspace is written. The artifact of the program kept in memory is dropped.
+     *
+     * @param token the token owning the workspace
+     * @param programName the program stored
+     */
+    public synchronized void use(String token, String programName) {
+        if ( isManaged(token) ) {
+            Workspace workspace = this.workspaces.computeIfAbsent(token, t -> new Workspace(0));
+            workspace.lastUsed = System.currentTimeMillis();
+            workspace.programs.put(programName, workspace.lastUsed);
+            removeArtifact(artifactKey(token, programName));
+        }
+    }
+
+    /**
+     * a program was compiled (or taken from the compilation cache). If the program is downloaded by a robot, the artifact is kept in memory. The
+     * size of the workspace is updated and its quota enforced.
+     *
+     * @param token the token owning the workspace
+     * @param programName the program compiled
+     * @param artifact the compiled program, as downloaded by the robot
+     */
+    public void compiled(String token, String programName, byte[] artifact) {
+        if ( !isManaged(token) ) {
+            return;
+        }
+        synchronized ( this ) {
+            Workspace workspace = this.workspaces.computeIfAbsent(token, t -> new Workspace(0));
+            workspace.lastUsed = System.currentTimeMillis();
+            workspace.programs.put(programName, workspace.lastUsed);
+            if ( workspace.downloaded.contains(programName) ) {
+                putArtifact(artifactKey(token, programName), artifact);
+            }
+        }
+        enforceQuota(token, programName);
+    }
+
+    /**
+     * get the artifact of a program for the <i>/download</i> service. If it is not kept in memory, it is read from disk and kept.
+     *
+     * @param token the token owning the workspace
+     * @param programName the program downloaded
+     * @param file the artifact on disk
+     * @return the artifact; null, if it doesn't exist
+     */
+    public byte[] getArtifact(String token, String programName, File file) throws IOException {
+        String key = artifactKey(token, programName);
+        synchronized ( this ) {
+            byte[] artifact = this.artifacts.get(key);
+            if ( artifact != null ) {
+                return artifact;
+            }
+        }
+        if ( !file.isFile() ) {
+            return null;
+        }
+        byte[] artifact = Files.readAllBytes(file.toPath());
+        synchronized ( this ) {
+            Workspace workspace = isManaged(token) ? this.workspaces.get(token) : null;
+            if ( workspace != null ) {
+                workspace.downloaded.add(programName);
+                putArtifact(key, artifact);
+            }
+        }
+        return artifact;
+    }
+
+    /**
+     * the token is not used anymore (the robot disconnected, the token was replaced). The workspace is removed now or, if it is busy, by the next
+     * reclamation.
+     *
+     * @param token the token owning the workspace
+     */
+    public void release(String token) {
+        synchronized ( this ) {
+            Workspace workspace = this.workspaces.get(token);
+            if ( workspace == null ) {
+                return;
+            }
+            workspace.isReleased = true;
+            if ( isBusy(workspace, System.currentTimeMillis()) ) {
+                return;
+            }
+        }
+        remove(token, this.removedByRelease, workspace -> workspace.isReleased);
+    }
+
+    /**
+     * remove released workspaces, workspaces not used for the ttl and, if the disk usage exceeds its maximum, the least recently used ones. Called
+     * every minute by the reclamation thread.
+     */
+    public void reclaim() {
+        long now = System.currentTimeMillis();
+        List<String> released = new ArrayList<>();
+        List<String> expired = new ArrayList<>();
+        List<String> unknownSize = new ArrayList<>();
+        synchronized ( this ) {
+            for ( Map.Entry<String, Workspace> entry : this.workspaces.entrySet() ) {
+                Workspace workspace = entry.getValue();
+                if ( isBusy(workspace, now) ) {
+                    continue;
+                }
+                if ( workspace.isReleased ) {
+                    released.add(entry.getKey());
+                } else if ( now - workspace.lastUsed > this.ttlMsec ) {
+                    expired.add(entry.getKey());
+                } else if ( workspace.size < 0 ) {
+                    unknownSize.add(entry.getKey());
+                }
+            }
+        }
+        released.forEach(token -> remove(token, this.removedByRelease, workspace -> workspace.isReleased));
+        expired.forEach(token -> remove(token, this.removedByTtl, workspace -> now - workspace.lastUsed > this.ttlMsec));
+        unknownSize.forEach(token -> updateSize(token));
+        while ( getDiskUsage() > this.diskMaxSize ) {
+            String leastRecentlyUsed;
+            synchronized ( this ) {
+                leastRecentlyUsed =
+                    this.workspaces
+                        .entrySet()
+                        .stream()
+                        .filter(entry -> !isBusy(entry.getValue(), now))
+                        .min(Comparator.comparingLong(entry -> entry.getValue().lastUsed))
+                        .map(Map.Entry::getKey)
+                        .orElse(null);
+            }
+            if ( leastRecentlyUsed == null ) {
+                LOG.warn("the workspaces exceed " + this.diskMaxSize + " bytes, but all are busy");
+                break;
+            }
+            // if it was used concurrently, it is busy now and the next one is tried
+            remove(leastRecentlyUsed, this.removedBySize, workspace -> true);
+        }
+    }
+
+    /**
+     * start the reclamation thread. Does nothing, if no workspace is managed.
+     */
+    public synchronized void start() {
+        if ( this.baseDir == null || this.reclaimer != null ) {
+            return;
+        }
+        this.reclaimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "workspaceReclaimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reclaimer.scheduleWithFixedDelay(() -> {
+            try {
+                reclaim();
+            } catch ( Exception e ) {
+                LOG.error("reclaiming workspaces failed", e);
+            }
+        }, RECLAIM_PERIOD_SEC, RECLAIM_PERIOD_SEC, TimeUnit.SECONDS);
+    }
+
+    /**
+     * stop the reclamation thread. Called from the shutdown hook. The workspaces are kept and found again after the next start.
+     */
+    public synchronized void shutdown() {
+        if ( this.reclaimer != null ) {
+            this.reclaimer.shutdownNow();
+            this.reclaimer = null;
+        }
+    }
+
+    /**
+     * @return the number of bytes used by the workspaces on disk. Workspaces found at startup are counted after the first reclamation
+     */
+    public synchronized long getDiskUsage() {
+        return this.workspaces.values().stream().mapToLong(workspace -> Math.max(0, workspace.size)).sum();
+    }
+
+    /**
+     * @return the statistics of the workspaces for the <i>/alive</i> service
+     */
+    public JSONObject getStatistics() throws JSONException {
+        JSONObject statistics = new JSONObject();
+        synchronized ( this ) {
+            statistics.put("workspaces", this.workspaces.size()).put("diskBytes", getDiskUsage());
+            statistics.put("artifacts", this.artifacts.size()).put("artifactBytes", this.artifactsSize);
+        }
+        statistics.put("removedByRelease", this.removedByRelease.get()).put("removedByTtl", this.removedByTtl.get());
+        statistics.put("removedBySize", this.removedBySize.get()).put("programsRemovedByQuota", this.programsRemovedByQuota.get());
+        return statistics;
+    }
+
+    private boolean isManaged(String token) {
+        return this.baseDir != null && token != null && VALID_NAME.matcher(token).matches();
+    }
+
+    private boolean isBusy(Workspace workspace, long now) {
+        return now - workspace.lastUsed < this.busyMsec;
+    }
+
+    /**
+     * remove a workspace, if it is not busy and the condition still holds. Both are checked again while holding the lock, the workspace may have been
+     * used since the caller decided to remove it
+     *
+     * @return true, if the workspace was removed; false, if it is unknown or is kept
+     */
+    private boolean remove(String token, AtomicLong counter, Predicate<Workspace> condition) {
+        File dir = new File(this.baseDir, token);
+        File removedDir = dir;
+        synchronized ( this ) {
+            Workspace workspace = this.workspaces.get(token);
+            if ( workspace == null || isBusy(workspace, System.currentTimeMillis()) || !condition.test(workspace) ) {
+                return false;
+            }
+            this.workspaces.remove(token);
+            String prefix = artifactKey(token, "");
+            Iterator<Map.Entry<String, byte[]>> iterator = this.artifacts.entrySet().iterator();
+            while ( iterator.hasNext() ) {
+                Map.Entry<String, byte[]> entry = iterator.next();
+                if ( entry.getKey().startsWith(prefix) ) {
+                    this.artifactsSize -= entry.getValue().length;
+                    iterator.remove();
+                }
+            }
+            // a program stored after this point must not be deleted with the workspace: the (slow) delete works on the renamed directory
+            File renamed = new File(this.baseDir, token + "." + System.nanoTime() + REMOVED_SUFFIX);
+            if ( dir.renameTo(renamed) ) {
+                removedDir = renamed;
+            }
+        }
+        counter.incrementAndGet();
+        try {
+            FileUtils.deleteDirectory(removedDir);
+            LOG.info("workspace " + token + " removed");
+        } catch ( IOException e ) {
+            LOG.error("workspace " + dir + " could not be removed", e);
+        }
+        return true;
+    }
+
+    private void enforceQuota(String token, String programName) {
+        long size = updateSize(token);
+        if ( size <= this.quota ) {
+            return;
+        }
+        List<Map.Entry<String, Long>> programs = new ArrayList<>();
+        synchronized ( this ) {
+            Workspace workspace = this.workspaces.get(token);
+            if ( workspace == null ) {
+                return;
+            }
+            // only programs stored since the start of the server are removed. Leftovers of a previous run are removed with the workspace
+            workspace.programs.forEach((name, lastUsed) -> programs.add(new AbstractMap.SimpleEntry<>(name, lastUsed)));
+        }
+        programs.sort(Map.Entry.comparingByValue());
+        long now = System.currentTimeMillis();
+        for ( Map.Entry<String, Long> program : programs ) {
+            if ( size <= this.quota ) {
+                break;
+            }
+            if ( program.getKey().equals(programName)
+                || now - program.getValue() < this.busyMsec
+                || !VALID_NAME.matcher(program.getKey()).matches()
+                || program.getKey().equals(SHARED_TARGET_DIR) ) {
+                // the directory target of the token holds the artifacts of all leJOS programs, it is never removed as a whole
+                continue;
+            }
+            size -= removeProgram(new File(this.baseDir, token), program.getKey());
+            this.programsRemovedByQuota.incrementAndGet();
+            LOG.info("program " + program.getKey() + " removed from workspace " + token + ", the quota is exceeded");
+            synchronized ( this ) {
+                Workspace workspace = this.workspaces.get(token);
+                if ( workspace != null ) {
+                    workspace.programs.remove(program.getKey());
+                    workspace.downloaded.remove(program.getKey());
+                    workspace.size = size;
+                }
+                removeArtifact(artifactKey(token, program.getKey()));
+            }
+        }
+        if ( size > this.quota ) {
+            LOG.warn("workspace " + token + " exceeds its quota of " + this.quota + " bytes: " + size + " bytes");
+        }
+    }
+
+    /**
+     * @return the number of bytes removed
+     */
+    private static long removeProgram(File workspaceDir, String programName) {
+        File dir = new File(workspaceDir, programName);
+        long removed = sizeOf(dir.toPath());
+        FileUtils.deleteQuietly(dir);
+        File[] sharedArtifacts = new File(workspaceDir, SHARED_TARGET_DIR).listFiles((parent, name) -> name.startsWith(programName + "."));
+        if ( sharedArtifacts != null ) {
+            for ( File artifact : sharedArtifacts ) {
+                long artifactSize = artifact.length();
+                if ( artifact.delete() ) {
+                    removed += artifactSize;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private long updateSize(String token) {
+        long size = sizeOf(new File(this.baseDir, token).toPath());
+        synchronized ( this ) {
+            Workspace workspace = this.workspaces.get(token);
+            if ( workspace != null ) {
+                workspace.size = size;
+            }
+        }
+        return size;
+    }
+
+    private void putArtifact(String key, byte[] artifact) {
+        if ( artifact.length > this.artifactsMaxSize ) {
+            removeArtifact(key);
+            return;
+        }
+        byte[] old = this.artifacts.put(key, artifact);
+        this.artifactsSize += artifact.length - (old == null ? 0 : old.length);
+        Iterator<byte[]> leastRecentlyUsed = this.artifacts.values().iterator();
+        while ( this.artifactsSize > this.artifactsMaxSize && leastRecentlyUsed.hasNext() ) {
+            this.artifactsSize -= leastRecentlyUsed.next().length;
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    private void removeArtifact(String key) {
+        byte[] old = this.artifacts.remove(key);
+        if ( old != null ) {
+            this.artifactsSize -= old.length;
+        }
+    }
+
+    private static String artifactKey(String token, String programName) {
+        return token + "/" + programName;
+    }
+
+    private static long sizeOf(Path dir) {
+        AtomicLong size = new AtomicLong(0);
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    size.addAndGet(attrs.size());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // removed concurrently
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch ( IOException e ) {
+            LOG.warn("the size of " + dir + " could not be determined: " + e.getMessage());
+        }
+        return size.get();
+    }
+
+    private static final class Workspace {
+        private long lastUsed;
+        private long size = -1; // unknown
+        private boolean isReleased = false;
+        private final Map<String, Long> programs = new HashMap<>(); // program name -> last use
+        private final Set<String> downloaded = new HashSet<>();
+
+        private Workspace(long lastUsed) {
+            this.lastUsed = lastUsed;
+        }
+    }
+}
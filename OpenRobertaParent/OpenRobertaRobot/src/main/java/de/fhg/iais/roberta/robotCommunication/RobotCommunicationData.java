@@ -1,10 +1,14 @@
 package de.fhg.iais.roberta.robotCommunication;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 import org.codehaus.jettison.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.fhg.iais.roberta.util.Clock;
+import de.fhg.iais.roberta.util.HashedWheelTimer;
 
 /**
  * This class is responsible for the synchronisation between the one browser client and one robot. The synchronisation is based on a agreed upon token. This
@@ -13,7 +17,12 @@ import de.fhg.iais.roberta.util.Clock;
  * user has issued a command in the browser (in most cases a run) or a timer expires . This unfreezes the thread and the responses tells the robot what to do.
  * E.g. if a run command has been issued, the already generated jar is requested to be downloaded to the robot.<br>
  * <br>
- * TODO: This implementation is resource intensive as it freezes an expensive resource, namely a thread. It should be replaced later by async technology.
+ * Freezing a thread is resource intensive. Thus for both the token approval and the push request an <b>async</b> variant exists, that doesn't freeze the
+ * calling thread. It remembers a callback instead, which is called exactly once when the user (or a timer) decides about the request. Callbacks are always
+ * called <b>outside</b> of the monitor of this object.<br>
+ * <br>
+ * Each pending request registers one timeout in the {@link HashedWheelTimer} of the {@link RobotCommunicator}. The timeout is cancelled when the request
+ * terminates.
  *
  * @author rbudde
  */
@@ -22,6 +31,7 @@ public class RobotCommunicationData {
     private static final int TIMEOUT_UNTIL_TOKEN_EXPIRES_WHEN_USER_DOESNT_APPROVE = 300000;
     private static final int WAIT_FOR_A_ROBOT_PUSH_COMMAND = 1000;
     private static final int TIMEOUT_UNTIL_ASSUME_DISCONNECTED_IF_ROBOT_DOESNT_PUSH = 10000;
+    private static final int TIMEOUT_UNTIL_PUSH_IS_TERMINATED_AND_REPEATED = 10000;
 
     private final String token;
     private final String robot;
@@ -43,6 +53,12 @@ public class RobotCommunicationData {
     private String command;
     private String programName;
 
+    private Consumer<Boolean> tokenApprovalCallback;
+    private Consumer<String> pushCallback;
+
+    private HashedWheelTimer timer;
+    private HashedWheelTimer.Timeout requestTimeout;
+
     public RobotCommunicationData(
         String token,
         String robot,
@@ -119,16 +135,70 @@ public class RobotCommunicationData {
      * method called from a server thread. This method terminates immediately and wakes up the thread, which runs on behalf of a token approval request from the
      * robot.
      */
-    public synchronized void userApprovedTheRobotToken() {
-        if ( this.state == State.WAIT_FOR_TOKENAPPROVAL_FROM_USER ) {
-            LOG.info("user approved the token. The approval request was scheduled " + this.timerStartedByLastRequest.elapsedSecFormatted() + " ago");
-            this.state = State.WAIT_FOR_PUSH_CMD_FROM_ROBOT;
+    public void userApprovedTheRobotToken() {
+        Consumer<Boolean> callback = null;
+        synchronized ( this ) {
+            if ( this.state == State.WAIT_FOR_TOKENAPPROVAL_FROM_USER ) {
+                LOG.info("user approved the token. The approval request was scheduled " + this.timerStartedByLastRequest.elapsedSecFormatted() + " ago");
+                this.state = State.WAIT_FOR_PUSH_CMD_FROM_ROBOT;
+                this.timerStartedByLastRequest = Clock.start();
+                this.timerStartedByTokenApproval = Clock.start();
+                callback = takeTokenApprovalCallback();
+                notifyAll();
+            } else {
+                LOG.info(
+                    "user approval lost. Nobody is waiting. The approval request was scheduled "
+                        + this.timerStartedByLastRequest.elapsedSecFormatted()
+                        + " ago");
+            }
+        }
+        if ( callback != null ) {
+            callback.accept(true);
+        }
+    }
+
+    /**
+     * async variant of {@link #robotTokenAgreementRequest()}. Method called from a thread, which is triggered by a robot request. This method terminates
+     * immediately. The callback is called with true, if the user approved the token, and with false, if the request failed, timed out or was aborted.
+     *
+     * @param onDecision called exactly once, when the request has been decided
+     */
+    public void robotTokenAgreementRequest(Consumer<Boolean> onDecision) {
+        Consumer<Boolean> outdatedCallback;
+        synchronized ( this ) {
+            LOG.info("Robot [" + this.robotIdentificator + "] token " + this.token + " starts waiting (async) for the client to approve the token");
+            this.state = State.WAIT_FOR_TOKENAPPROVAL_FROM_USER;
             this.timerStartedByLastRequest = Clock.start();
-            this.timerStartedByTokenApproval = Clock.start();
-            notifyAll();
-        } else {
-            LOG.info(
-                "user approval lost. Nobody is waiting. The approval request was scheduled " + this.timerStartedByLastRequest.elapsedSecFormatted() + " ago");
+            outdatedCallback = takeTokenApprovalCallback();
+            this.tokenApprovalCallback = onDecision;
+            scheduleRequestTimeout(TIMEOUT_UNTIL_TOKEN_EXPIRES_WHEN_USER_DOESNT_APPROVE, this::terminateTokenAgreementRequest);
+        }
+        if ( outdatedCallback != null ) {
+            outdatedCallback.accept(false);
+        }
+    }
+
+    /**
+     * method called from a timer thread, if the user did not approve the token in time. If an async token approval request is pending, it is terminated. The
+     * robot is considered disconnected.
+     */
+    public void terminateTokenAgreementRequest() {
+        Consumer<Boolean> callback = null;
+        synchronized ( this ) {
+            if ( this.tokenApprovalCallback != null && this.state == State.WAIT_FOR_TOKENAPPROVAL_FROM_USER ) {
+                this.state = State.GARBAGE;
+                LOG.info(
+                    "Robot ["
+                        + this.robotIdentificator
+                        + "] token "
+                        + this.token
+                        + " approval FAILED. The robot is disconnected. Time elapsed: "
+                        + this.timerStartedByLastRequest.elapsedMsecFormatted());
+                callback = takeTokenApprovalCallback();
+            }
+        }
+        if ( callback != null ) {
+            callback.accept(false);
         }
     }
 
@@ -156,6 +226,8 @@ public class RobotCommunicationData {
             }
             this.state = State.ROBOT_WAITING_FOR_PUSH_FROM_SERVER;
             this.timerStartedByLastRequest = Clock.start();
+            scheduleRequestTimeout(TIMEOUT_UNTIL_PUSH_IS_TERMINATED_AND_REPEATED, this::terminatePushAndRequestNextPush);
+            notifyAll(); // a user may wait for the robot to send this push request
             while ( this.state == State.ROBOT_WAITING_FOR_PUSH_FROM_SERVER ) {
                 try {
                     wait();
@@ -166,25 +238,122 @@ public class RobotCommunicationData {
         LOG.debug("ROBOT push request terminated.");
     }
 
+    /**
+     * async variant of {@link #robotHasSentAPushRequest()}. Method called from a thread, which is triggered by a ROBOT push command request. This method
+     * terminates immediately. The callback is called with the command for the robot, when either the server issues a push command or a timer triggers a
+     * timeout.
+     *
+     * @param onPushCommand called exactly once with the command to be pushed to the robot
+     */
+    public void robotHasSentAPushRequest(Consumer<String> onPushCommand) {
+        Consumer<String> callbackToCallNow = null;
+        Consumer<String> outdatedCallback = null;
+        String commandToSendNow = null;
+        synchronized ( this ) {
+            if ( this.state == State.WAIT_FOR_TOKENAPPROVAL_FROM_USER || this.state == State.GARBAGE ) {
+                LOG.error(
+                    "Robot has sent a push request, but the server waits for a token approval by an user or the robot is disconnected. "
+                        + "The request ist ignored. State is "
+                        + this.state
+                        + ". The state setting request was scheduled "
+                        + this.timerStartedByLastRequest.elapsedSecFormatted()
+                        + " ago. ");
+                callbackToCallNow = onPushCommand;
+                commandToSendNow = this.command;
+            } else {
+                if ( this.state != State.WAIT_FOR_PUSH_CMD_FROM_ROBOT && this.state != State.ROBOT_IS_BUSY ) {
+                    LOG.error(
+                        "Robot has sent a push request not awaited for. Programming error: Logic or Time race? The request is ACCEPTED. State is "
+                            + this.state
+                            + ". The state setting request was scheduled "
+                            + this.timerStartedByLastRequest.elapsedSecFormatted()
+                            + " ago. ");
+                }
+                this.state = State.ROBOT_WAITING_FOR_PUSH_FROM_SERVER;
+                this.timerStartedByLastRequest = Clock.start();
+                outdatedCallback = takePushCallback();
+                this.pushCallback = onPushCommand;
+                scheduleRequestTimeout(TIMEOUT_UNTIL_PUSH_IS_TERMINATED_AND_REPEATED, this::terminatePushAndRequestNextPush);
+                notifyAll(); // a user may wait for the robot to send this push request
+            }
+        }
+        if ( outdatedCallback != null ) {
+            outdatedCallback.accept("repeat");
+        }
+        if ( callbackToCallNow != null ) {
+            callbackToCallNow.accept(commandToSendNow);
+        }
+    }
+
     /**
      * this object is outdated. This method is called to abort an eventually pending request from a robot should be aborted. The notifyAll is for that. This
      * object will be removed from the map holding all valid robot-server connection. The state is set to GARBAGE to express that.
      */
-    public synchronized void abortPush() {
-        this.state = State.GARBAGE;
-        notifyAll();
+    public void abortPush() {
+        Consumer<Boolean> tokenCallback;
+        Consumer<String> callback;
+        String commandToSend;
+        synchronized ( this ) {
+            this.state = State.GARBAGE;
+            tokenCallback = takeTokenApprovalCallback();
+            callback = takePushCallback();
+            commandToSend = this.command;
+            notifyAll();
+        }
+        if ( tokenCallback != null ) {
+            tokenCallback.accept(false);
+        }
+        if ( callback != null ) {
+            callback.accept(commandToSend);
+        }
+    }
+
+    /**
+     * method called from a server thread, if the connection of an async request (token approval or push) broke or the container timed it out. The callback
+     * of the request is dropped without being called and its timeout is cancelled. A robot, whose token approval request is abandoned, is disconnected. A
+     * robot, whose push request is abandoned, is expected to send the next push request.
+     *
+     * @param callback the callback, that was passed when the request was made
+     * @return true, if the request was pending and is abandoned now; false, if it was decided already or replaced by a newer request
+     */
+    public boolean abandonRequest(Object callback) {
+        synchronized ( this ) {
+            if ( callback == null ) {
+                return false;
+            } else if ( callback == this.tokenApprovalCallback ) {
+                takeTokenApprovalCallback();
+                this.state = State.GARBAGE;
+            } else if ( callback == this.pushCallback ) {
+                takePushCallback();
+                if ( this.state == State.ROBOT_WAITING_FOR_PUSH_FROM_SERVER ) {
+                    this.state = State.WAIT_FOR_PUSH_CMD_FROM_ROBOT;
+                    this.timerStartedByLastRequest = Clock.start();
+                }
+            } else {
+                return false;
+            }
+        }
+        LOG.info("Robot [" + this.robotIdentificator + "] token " + this.token + " abandoned its pending request. The connection was lost.");
+        return true;
     }
 
     /**
      * method called from a timer thread. This method terminates immediately and wakes up a waiting thread, which runs on behalf of a push command from the
      * robot.
      */
-    public synchronized void terminatePushAndRequestNextPush() {
-        if ( this.state == State.ROBOT_WAITING_FOR_PUSH_FROM_SERVER ) {
-            this.state = State.WAIT_FOR_PUSH_CMD_FROM_ROBOT;
-            this.command = "repeat";
-            this.timerStartedByLastRequest = Clock.start();
-            notifyAll();
+    public void terminatePushAndRequestNextPush() {
+        Consumer<String> callback = null;
+        synchronized ( this ) {
+            if ( this.state == State.ROBOT_WAITING_FOR_PUSH_FROM_SERVER ) {
+                this.state = State.WAIT_FOR_PUSH_CMD_FROM_ROBOT;
+                this.command = "repeat";
+                this.timerStartedByLastRequest = Clock.start();
+                callback = takePushCallback();
+                notifyAll();
+            }
+        }
+        if ( callback != null ) {
+            callback.accept("repeat");
         }
     }
 
@@ -194,20 +363,26 @@ public class RobotCommunicationData {
      *
      * @return true, if the robot was waiting for a "run" command, false otherwise
      */
-    public synchronized boolean runButtonPressed(String programName) {
-        if ( !isRobotWaitingForPushCommand() ) {
-            LOG.error("RUN button pressed, but robot is not waiting for that event. Bad luck!");
-            return false;
-        } else {
+    public boolean runButtonPressed(String programName) {
+        Consumer<String> callback;
+        synchronized ( this ) {
+            if ( !isRobotWaitingForPushCommand() ) {
+                LOG.error("RUN button pressed, but robot is not waiting for that event. Bad luck!");
+                return false;
+            }
             LOG.info(
                 "RUN button pressed and robot is waiting for that event. Wait state entered " + this.timerStartedByLastRequest.elapsedSecFormatted() + " ago");
             this.command = "download";
             this.programName = programName;
             this.timerStartedByLastRequest = Clock.start();
             this.state = State.ROBOT_IS_BUSY;
+            callback = takePushCallback();
             notifyAll();
-            return true;
         }
+        if ( callback != null ) {
+            callback.accept("download");
+        }
+        return true;
     }
 
     /**
@@ -216,31 +391,90 @@ public class RobotCommunicationData {
      *
      * @return the state of the robot
      */
-    public synchronized boolean firmwareUpdate() {
-        if ( !isRobotWaitingForPushCommand() ) {
-            LOG.error("UPDATE button pressed, but the robot is not waiting. Bad luck!");
-            return false;
-        } else {
+    public boolean firmwareUpdate() {
+        Consumer<Boolean> tokenCallback;
+        Consumer<String> callback;
+        synchronized ( this ) {
+            if ( !isRobotWaitingForPushCommand() ) {
+                LOG.error("UPDATE button pressed, but the robot is not waiting. Bad luck!");
+                return false;
+            }
             LOG.debug("UPDATE button pressed. Wait state entered " + this.timerStartedByLastRequest.elapsedSecFormatted() + " ago");
             this.command = "update";
             this.timerStartedByLastRequest = Clock.start();
 
-            // the robot is disconnected after firmware update
-            abortPush();
-            return true;
+            // the robot is disconnected after firmware update. Same as abortPush(), but the callbacks must be called outside of the monitor
+            this.state = State.GARBAGE;
+            tokenCallback = takeTokenApprovalCallback();
+            callback = takePushCallback();
+            notifyAll();
+        }
+        if ( tokenCallback != null ) {
+            tokenCallback.accept(false);
         }
+        if ( callback != null ) {
+            callback.accept("update");
+        }
+        return true;
     }
 
+    /**
+     * must be called with the monitor of this object held. Waits (and thus releases the monitor) for at most 1 sec, if a push command from the robot is
+     * expected in the very near future.
+     */
     private boolean isRobotWaitingForPushCommand() {
         if ( this.state == State.WAIT_FOR_PUSH_CMD_FROM_ROBOT ) {
             try {
-                Thread.sleep(WAIT_FOR_A_ROBOT_PUSH_COMMAND);
+                wait(WAIT_FOR_A_ROBOT_PUSH_COMMAND);
             } catch ( InterruptedException e ) { //NOSONAR : expect, that the robot is waiting for a server push
             }
         }
         return this.state == State.ROBOT_WAITING_FOR_PUSH_FROM_SERVER;
     }
 
+    /**
+     * set the timer used for the timeouts of pending requests. Called once, when this object is registered at the {@link RobotCommunicator}
+     *
+     * @param timer the timer of the robot communicator
+     */
+    synchronized void setTimer(HashedWheelTimer timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * must be called with the monitor of this object held. At most one request is pending, thus a timeout of a previous request is cancelled.
+     */
+    private void scheduleRequestTimeout(long timeoutMsec, Runnable onTimeout) {
+        cancelRequestTimeout();
+        if ( this.timer != null ) {
+            this.requestTimeout = this.timer.newTimeout(onTimeout, timeoutMsec, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * must be called with the monitor of this object held.
+     */
+    private void cancelRequestTimeout() {
+        if ( this.requestTimeout != null ) {
+            this.requestTimeout.cancel();
+            this.requestTimeout = null;
+        }
+    }
+
+    private Consumer<Boolean> takeTokenApprovalCallback() {
+        Consumer<Boolean> callback = this.tokenApprovalCallback;
+        this.tokenApprovalCallback = null;
+        cancelRequestTimeout();
+        return callback;
+    }
+
+    private Consumer<String> takePushCallback() {
+        Consumer<String> callback = this.pushCallback;
+        this.pushCallback = null;
+        cancelRequestTimeout();
+        return callback;
+    }
+
     /**
      * return true, if the robot is probably disconnected. But the robot may reconnect in the future (if USB cable is plugged in, for instance)
      *
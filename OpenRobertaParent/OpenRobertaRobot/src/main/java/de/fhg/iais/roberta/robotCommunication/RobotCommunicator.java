@@ -2,11 +2,14 @@ package de.fhg.iais.roberta.robotCommunication;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.fhg.iais.roberta.robotCommunication.RobotCommunicationData.State;
+import de.fhg.iais.roberta.factory.WorkspaceManager;
+import de.fhg.iais.roberta.util.HashedWheelTimer;
 import de.fhg.iais.roberta.util.Key;
 import de.fhg.iais.roberta.util.dbc.Assert;
 
@@ -14,25 +17,22 @@ import de.fhg.iais.roberta.util.dbc.Assert;
  * class, that synchronizes the communication between the bricks and the web-app. Thread-safe. See class {@link RobotCommunicationData} for further
  * explanations.<br>
  * <br>
- * The class <b>must</b> be used as a singleton. Use <b>GUICE</b> to enforce that.
+ * The class <b>must</b> be used as a singleton. Use <b>GUICE</b> to enforce that.<br>
+ * <br>
+ * The timeouts of all pending robot requests are managed by one {@link HashedWheelTimer}. Call {@link #shutdown()} when the server terminates.
  *
  * @author rbudde
  */
 public class RobotCommunicator {
     private static final Logger LOG = LoggerFactory.getLogger(RobotCommunicator.class);
-    private static final long PUSH_TIMER_INTERVALL = 2000;
-    private static final long PUSH_TIMEOUT_INTERVALL = 10000;
+    private static final long PUSH_TIMER_TICK_MSEC = 100;
+    private static final int PUSH_TIMER_TICKS_PER_WHEEL = 512;
 
     private final Map<String, RobotCommunicationData> allStates = new ConcurrentHashMap<>();
+    private final HashedWheelTimer pushTimer;
 
     public RobotCommunicator() {
-        Runnable pushTimerThread = new Runnable() {
-            @Override
-            public void run() {
-                pushTimerRunner();
-            }
-        };
-        new Thread(null, pushTimerThread, "PushTimer").start();
+        this.pushTimer = new HashedWheelTimer("PushTimer", PUSH_TIMER_TICK_MSEC, TimeUnit.MILLISECONDS, PUSH_TIMER_TICKS_PER_WHEEL);
         LOG.info("timer thread created");
     }
 
@@ -63,8 +63,12 @@ public class RobotCommunicator {
                 LOG.error("Token approval request for robot [" + newIdentificator + "], but an old request is pending. Old request aborted.");
                 storedState.abortPush(); // notifyAll() executed
                 this.allStates.remove(storedToken);
+                if ( !storedToken.equals(token) ) {
+                    WorkspaceManager.getInstance().release(storedToken);
+                }
             }
         }
+        newRobotCommunicationData.setTimer(this.pushTimer);
         this.allStates.put(token, newRobotCommunicationData);
         return true;
     }
@@ -76,6 +80,20 @@ public class RobotCommunicator {
         return registration.robotTokenAgreementRequest(); // this will freeze the request until another issues a notifyAll()
     }
 
+    /**
+     * async variant of {@link #brickWantsTokenToBeApproved(RobotCommunicationData)}. Terminates immediately, no thread is frozen.
+     *
+     * @param registration the data of the robot that wants to register
+     * @param onDecision called exactly once. With true, if the user approved the token; with false otherwise
+     */
+    public void brickWantsTokenToBeApproved(RobotCommunicationData registration, Consumer<Boolean> onDecision) {
+        if ( !addNewRegistration(registration) ) {
+            onDecision.accept(false);
+        } else {
+            registration.robotTokenAgreementRequest(onDecision);
+        }
+    }
+
     /**
      * called by the robot to inform the server about the fact, that the robot is still connected and ready to get a command pushed to it
      *
@@ -97,6 +115,28 @@ public class RobotCommunicator {
         }
     }
 
+    /**
+     * async variant of {@link #brickWaitsForAServerPush(String, String, int)}. Terminates immediately, no thread is frozen.
+     *
+     * @param token identifying the robot
+     * @param batteryvoltage changes over time
+     * @param nepoExitValue the return value of the last user program, that was executed. Is 0 if no exitvalue is provided by the robot system.
+     * @param onPushCommand called exactly once with a legal command for the robot, if a matching state was found
+     * @return true, if a matching state was found and the callback will be called; false otherwise (the callback is never called)
+     */
+    public boolean brickWaitsForAServerPush(String token, String batteryvoltage, int nepoExitValue, Consumer<String> onPushCommand) {
+        RobotCommunicationData state = getState(token);
+        if ( state != null ) {
+            state.setBattery(batteryvoltage);
+            state.setNepoExitValue(nepoExitValue);
+            state.robotHasSentAPushRequest(onPushCommand);
+            return true;
+        } else {
+            LOG.error("a push request from a robot arrived, but no matching state was found in the server - we provoke a server error");
+            return false;
+        }
+    }
+
     // TODO: when can this fail?
     private boolean checkRobotMatchesClient(String robot, RobotCommunicationData state) {
         //TODO: it is a hot fix for the release on 6.7.17, later we need to change the state robot name from ardu to botnroll
@@ -144,10 +184,25 @@ public class RobotCommunicator {
         } else {
             state.abortPush(); // notifyAll() executed
             this.allStates.remove(token);
+            WorkspaceManager.getInstance().release(token);
             LOG.info("Robot [" + state.getRobotIdentificator() + "] token " + token + " disconnected.");
         }
     }
 
+    /**
+     * called, if the connection of an async robot request broke or the container timed it out. The pending request is removed. If it was a token approval
+     * request, the registration of the robot is removed, too.
+     *
+     * @param token identifying the robot
+     * @param callback the callback, that was passed when the request was made
+     */
+    public void robotRequestAbandoned(String token, Object callback) {
+        RobotCommunicationData state = this.allStates.get(token);
+        if ( state != null && state.abandonRequest(callback) && state.getState() == RobotCommunicationData.State.GARBAGE ) {
+            this.allStates.remove(token, state);
+        }
+    }
+
     public boolean theRunButtonWasPressed(String token, String programName) {
         RobotCommunicationData state = getState(token);
         return state.runButtonPressed(programName);
@@ -162,18 +217,18 @@ public class RobotCommunicator {
         return this.allStates.get(token);
     }
 
-    private void pushTimerRunner() {
-        while ( true ) {
-            try {
-                Thread.sleep(PUSH_TIMER_INTERVALL);
-            } catch ( InterruptedException e ) { //NOSONAR : repeat the loop forever
-            }
-            for ( RobotCommunicationData state : this.allStates.values() ) {
-                if ( state.getState() == State.ROBOT_WAITING_FOR_PUSH_FROM_SERVER && state.getElapsedMsecOfStartOfLastRequest() > PUSH_TIMEOUT_INTERVALL ) {
-                    state.terminatePushAndRequestNextPush();
-                }
-            }
-        }
+    /**
+     * @return the number of robot requests with a pending timeout, i.e. requests that wait for a decision of the user or a push command of the server
+     */
+    public int getNumberOfPendingRequests() {
+        return this.pushTimer.getPendingTimeouts();
+    }
+
+    /**
+     * stop the timer thread. Pending requests of robots are not terminated anymore. Called when the server is shut down.
+     */
+    public void shutdown() {
+        this.pushTimer.stop();
     }
 
 }
@@ -1,12 +1,21 @@
 package de.fhg.iais.roberta.syntax;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import de.fhg.iais.roberta.blockly.generated.Block;
 import de.fhg.iais.roberta.components.Category;
+import de.fhg.iais.roberta.transformer.Jaxb2AstTransformer;
 import de.fhg.iais.roberta.util.dbc.Assert;
+import de.fhg.iais.roberta.util.dbc.DbcException;
 
 /**
  * This container holds all possible kind of objects that we can have to represent the AST (abstract syntax tree). The objects are separated in four main
@@ -14,15 +23,23 @@ import de.fhg.iais.roberta.util.dbc.Assert;
  * - either by their (globally) unique name or<br>
  * - a list of (globally) unique names, each of which is used as element name in blockly XML.<br>
  * A concrete root can add dynamically new elements to this container, when the robot is registered during robot startup (this is why this container is
- * <i>not</i> implemented as a enum type. Duriong registraion of new block types the uniqueness of names is guaranteed by this container.
+ * <i>not</i> implemented as a enum type. Duriong registraion of new block types the uniqueness of names is guaranteed by this container.<br>
+ * <br>
+ * When a block type is registered, a direct call of the static <code>jaxbToAst</code> method of its AST class is generated. The blockly names are mapped to
+ * the block types in an immutable dispatch table, that is replaced as a whole when block types are added (copy on write). Thus the transformation of a
+ * block needs one hash lookup and one direct call, no reflection.
  */
 public class BlockTypeContainer {
     private static final String[] NO_BLOCKLY_NAMES = new String[0];
 
     private static final List<String> loadedPropertyFiles = new ArrayList<>();
 
+    private static final MethodType JAXB_TO_AST_TYPE = MethodType.methodType(Phrase.class, Block.class, Jaxb2AstTransformer.class);
+
     private static final Map<String, BlockType> blockTypesByName = new HashMap<>();
     private static final Map<String, BlockType> blockTypesByBlocklyName = new HashMap<>();
+    // the dispatch table: blockly names as registered AND lower case -> block type. Never modified, replaced when block types are added
+    private static volatile Map<String, BlockType> dispatchTable = Collections.emptyMap();
 
     static {
         add("EXPR_LIST", Category.EXPR);
@@ -46,14 +63,21 @@ public class BlockTypeContainer {
         add("TEXT_CHANGE_CASE_FUNCT", Category.FUNCTION);
     }
 
-    public static void add(String name, Category category, Class<?> astClass, String... blocklyNames) {
-        BlockType blockType = new BlockType(name, category, astClass, blocklyNames);
+    public static synchronized void add(String name, Category category, Class<?> astClass, String... blocklyNames) {
+        BlockType blockType = new BlockType(name, category, astClass, makeJaxbToAst(astClass, blocklyNames), blocklyNames);
         BlockType oldValue = blockTypesByName.put(name.toLowerCase(), blockType);
         Assert.isNull(oldValue, "Block name %s is mapped twice. Initialization aborted", name);
+        if ( blocklyNames.length == 0 ) {
+            return;
+        }
+        Map<String, BlockType> newDispatchTable = new HashMap<>(dispatchTable);
         for ( String blocklyName : blocklyNames ) {
             oldValue = blockTypesByBlocklyName.put(blocklyName.toLowerCase(), blockType);
             Assert.isNull(oldValue, "Blockly name %s is mapped twice. Initialization aborted", blocklyName);
+            newDispatchTable.put(blocklyName, blockType);
+            newDispatchTable.put(blocklyName.toLowerCase(), blockType);
         }
+        dispatchTable = Collections.unmodifiableMap(newDispatchTable);
     }
 
     private static void add(String name, Category category) {
@@ -82,7 +106,11 @@ public class BlockTypeContainer {
      * @return the block type value, never null
      */
     public static BlockType getByBlocklyName(String blocklyName) {
-        BlockType blockType = blockTypesByBlocklyName.get(blocklyName.toLowerCase());
+        // the blockly names in the XML are usually written exactly as registered. Lower casing is needed only, if this lookup fails
+        BlockType blockType = dispatchTable.get(blocklyName);
+        if ( blockType == null ) {
+            blockType = dispatchTable.get(blocklyName.trim().toLowerCase());
+        }
         Assert.notNull(blockType, "blockly name is not found: " + blocklyName);
         return blockType;
     }
@@ -103,16 +131,60 @@ public class BlockTypeContainer {
         }
     }
 
+    /**
+     * generate a direct call of the static method <code>jaxbToAst(Block, Jaxb2AstTransformer)</code> of an AST class. A lambda is generated by the
+     * {@link LambdaMetafactory}. If this fails (e.g. if the AST class is not visible from this class loader), a method handle is used.
+     *
+     * @return the direct call; null, if the AST class doesn't transform blocks
+     */
+    private static JaxbToAst makeJaxbToAst(Class<?> astClass, String... blocklyNames) {
+        if ( astClass == null || blocklyNames.length == 0 ) {
+            return null;
+        }
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle jaxbToAst;
+        try {
+            jaxbToAst = lookup.findStatic(astClass, "jaxbToAst", JAXB_TO_AST_TYPE);
+        } catch ( NoSuchMethodException | IllegalAccessException e ) {
+            return null;
+        }
+        try {
+            CallSite callSite =
+                LambdaMetafactory.metafactory(lookup, "jaxbToAst", MethodType.methodType(JaxbToAst.class), JAXB_TO_AST_TYPE, jaxbToAst, JAXB_TO_AST_TYPE);
+            return (JaxbToAst) callSite.getTarget().invokeExact();
+        } catch ( Throwable e ) {
+            return (block, helper) -> {
+                try {
+                    return (Phrase<?>) jaxbToAst.invokeExact(block, helper);
+                } catch ( RuntimeException | Error e1 ) {
+                    throw e1;
+                } catch ( Throwable e1 ) {
+                    throw new DbcException("transforming block " + block.getType() + " failed", e1);
+                }
+            };
+        }
+    }
+
+    /**
+     * the direct call of the static method <code>jaxbToAst</code> of an AST class
+     */
+    @FunctionalInterface
+    public interface JaxbToAst {
+        Phrase<?> jaxbToAst(Block block, Jaxb2AstTransformer<?> helper);
+    }
+
     public static class BlockType {
         private final String name;
         private final Category category;
         private final Class<?> astClass;
+        private final JaxbToAst jaxbToAst;
         private final String[] blocklyNames;
 
-        private BlockType(String name, Category category, Class<?> astClass, String... blocklyNames) {
+        private BlockType(String name, Category category, Class<?> astClass, JaxbToAst jaxbToAst, String... blocklyNames) {
             this.name = name;
             this.category = category;
             this.astClass = astClass;
+            this.jaxbToAst = jaxbToAst;
             this.blocklyNames = blocklyNames;
         }
 
@@ -137,6 +209,13 @@ public class BlockTypeContainer {
             return this.astClass;
         }
 
+        /**
+         * @return the direct call of the static method <code>jaxbToAst</code> of the AST class; null, if the AST class doesn't transform blocks
+         */
+        public JaxbToAst getJaxbToAst() {
+            return this.jaxbToAst;
+        }
+
         /**
          * @return the blocklyNames
          */
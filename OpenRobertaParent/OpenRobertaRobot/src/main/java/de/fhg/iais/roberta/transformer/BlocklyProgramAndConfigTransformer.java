@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.fhg.iais.roberta.components.Configuration;
+import de.fhg.iais.roberta.factory.ConfigurationCache;
 import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.syntax.Phrase;
 import de.fhg.iais.roberta.util.Key;
@@ -58,13 +59,16 @@ public class BlocklyProgramAndConfigTransformer {
     }
 
     /**
-     * Transforms blockly xml program and brick configuration into AST.
+     * Transforms blockly xml program and brick configuration into AST. The configuration is taken from the {@link ConfigurationCache}, it must not be
+     * modified.
      *
+     * @param factory of the robot plugin
+     * @param robotName name of the robot plugin
      * @param programText as XML
      * @param configurationText as XML
      * @return
      */
-    public static BlocklyProgramAndConfigTransformer transform(IRobotFactory factory, String programText, String configurationText) {
+    public static BlocklyProgramAndConfigTransformer transform(IRobotFactory factory, String robotName, String programText, String configurationText) {
         Key errorMessage = null;
         if ( programText == null || programText.trim().equals("") ) {
             errorMessage = Key.COMPILERWORKFLOW_ERROR_PROGRAM_NOT_FOUND;
@@ -81,7 +85,7 @@ public class BlocklyProgramAndConfigTransformer {
         }
         Configuration brickConfiguration = null;
         try {
-            brickConfiguration = factory.getRobotCompilerWorkflow().generateConfiguration(factory, configurationText);
+            brickConfiguration = ConfigurationCache.getInstance().getConfiguration(robotName, factory, configurationText);
         } catch ( Exception e ) {
             LOG.error("Generation of the configuration failed", e);
             errorMessage = Key.COMPILERWORKFLOW_ERROR_CONFIGURATION_TRANSFORM_FAILED;
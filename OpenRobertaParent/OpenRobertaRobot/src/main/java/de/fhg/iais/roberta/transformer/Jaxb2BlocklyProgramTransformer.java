@@ -1,7 +1,5 @@
 package de.fhg.iais.roberta.transformer;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -11,6 +9,7 @@ import de.fhg.iais.roberta.blockly.generated.Instance;
 import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.syntax.BlockTypeContainer;
 import de.fhg.iais.roberta.syntax.BlockTypeContainer.BlockType;
+import de.fhg.iais.roberta.syntax.BlockTypeContainer.JaxbToAst;
 import de.fhg.iais.roberta.syntax.Phrase;
 import de.fhg.iais.roberta.syntax.lang.blocksequence.Location;
 import de.fhg.iais.roberta.util.dbc.Assert;
@@ -31,17 +30,31 @@ public class Jaxb2BlocklyProgramTransformer<V> extends Jaxb2AstTransformer<V> {
      * @param program
      */
     public void transform(BlockSet set) {
+        transformBlockSetAttributes(set);
+        List<Instance> instances = set.getInstance();
+        for ( Instance instance : instances ) {
+            transformInstance(instance);
+        }
+    }
+
+    /**
+     * store the attributes of a {@link BlockSet} (robot type, xml version, ...). Used by readers, that transform the instances one by one.
+     *
+     * @param set whose instances are ignored
+     */
+    public void transformBlockSetAttributes(BlockSet set) {
         this.data.setRobotType(set.getRobottype());
         this.data.setXmlVersion(set.getXmlversion());
         this.data.setDescription(set.getDescription());
         this.data.setTags(set.getTags());
-        List<Instance> instances = set.getInstance();
-        for ( Instance instance : instances ) {
-            instanceToAST(instance);
-        }
     }
 
-    private void instanceToAST(Instance instance) {
+    /**
+     * Converts one {@link Instance} (a top level block sequence with its location) to AST and adds it to the tree.
+     *
+     * @param instance
+     */
+    public void transformInstance(Instance instance) {
         List<Block> blocks = instance.getBlock();
         Location<V> location = Location.make(instance.getX(), instance.getY());
         ArrayList<Phrase<V>> range = new ArrayList<>();
@@ -57,25 +70,21 @@ public class Jaxb2BlocklyProgramTransformer<V> extends Jaxb2AstTransformer<V> {
         return invokeJaxbToAstTransform(block);
     }
 
+    @SuppressWarnings("unchecked")
     private Phrase<V> invokeJaxbToAstTransform(Block block) {
         if ( block == null ) {
             throw new DbcException("Invalid block: " + block);
         }
-        String type = block.getType().trim().toLowerCase();
-        BlockType matchingBlockType = BlockTypeContainer.getByBlocklyName(type);
+        BlockType matchingBlockType = BlockTypeContainer.getByBlocklyName(block.getType());
         Assert.notNull(matchingBlockType, "Invalid Block: " + block.getType());
-        return invokeMethod(block, matchingBlockType.getAstClass().getName());
-    }
-
-    @SuppressWarnings("unchecked")
-    private Phrase<V> invokeMethod(Block block, String className) {
-        Method method;
+        JaxbToAst jaxbToAst = matchingBlockType.getJaxbToAst();
+        Assert.notNull(jaxbToAst, "No jaxbToAst method for block: " + block.getType());
         try {
-            method = Class.forName(className).getMethod("jaxbToAst", Block.class, Jaxb2AstTransformer.class);
-            return (Phrase<V>) method.invoke(null, block, this);
-        } catch ( NoSuchMethodException | SecurityException | ClassNotFoundException | IllegalAccessException | IllegalArgumentException
-            | InvocationTargetException | DbcException e ) {
-            throw new DbcException(e.getCause().getMessage());
+            return (Phrase<V>) jaxbToAst.jaxbToAst(block, this);
+        } catch ( DbcException e ) {
+            throw e;
+        } catch ( RuntimeException e ) {
+            throw new DbcException(e.getMessage(), e);
         }
     }
 }
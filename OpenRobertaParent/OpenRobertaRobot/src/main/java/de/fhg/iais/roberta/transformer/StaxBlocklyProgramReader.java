@@ -0,0 +1,616 @@
+package de.fhg.iais.roberta.transformer;
+
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.fhg.iais.roberta.blockly.generated.Arg;
+import de.fhg.iais.roberta.blockly.generated.Block;
+import de.fhg.iais.roberta.blockly.generated.BlockSet;
+import de.fhg.iais.roberta.blockly.generated.Comment;
+import de.fhg.iais.roberta.blockly.generated.Data;
+import de.fhg.iais.roberta.blockly.generated.Error;
+import de.fhg.iais.roberta.blockly.generated.Field;
+import de.fhg.iais.roberta.blockly.generated.Instance;
+import de.fhg.iais.roberta.blockly.generated.Mutation;
+import de.fhg.iais.roberta.blockly.generated.Repetitions;
+import de.fhg.iais.roberta.blockly.generated.Shadow;
+import de.fhg.iais.roberta.blockly.generated.Statement;
+import de.fhg.iais.roberta.blockly.generated.Value;
+import de.fhg.iais.roberta.blockly.generated.Warning;
+import de.fhg.iais.roberta.factory.IRobotFactory;
+
+/**
+ * a streaming (StAX) front-end for the transformation of a blockly program into the AST. It is an alternative to
+ * {@link de.fhg.iais.roberta.util.jaxb.JaxbHelper#xml2BlockSet(String)}, which unmarshals the <i>complete</i> program with a validating JAXB unmarshaller,
+ * before the transformation starts.<br>
+ * <br>
+ * This reader parses the XML with a StAX cursor. The block tree of <i>one</i> instance is built with plain objects (the generated classes, but without JAXB)
+ * and handed over to {@link Jaxb2BlocklyProgramTransformer#transformInstance(Instance)} at once. The <code>jaxbToAst</code> methods of the blocks consume
+ * these classes, thus the block tree is still built, instance by instance. What is saved is the JAXB unmarshaller and the schema validator.<br>
+ * <br>
+ * The structure enforced by <code>blockly.xsd</code> is checked while parsing: namespace, element names and order, multiplicities, required and unknown
+ * attributes, types of boolean and integer attributes. A violation is reported as {@link XMLStreamException} with the location in the XML. These rules
+ * duplicate <code>blockly.xsd</code>: if the schema changes, this class must be changed, too. The <code>StaxBlocklyProgramReaderTest</code>s of the robot
+ * plugins compare both readers on their test programs.<br>
+ * <br>
+ * The reader is selected by the property <code>blockly.xml.reader</code>, see {@link de.fhg.iais.roberta.util.jaxb.JaxbHelper#configure(java.util.Properties)}
+ */
+public final class StaxBlocklyProgramReader {
+    private static final String NS = "http://de.fhg.iais.roberta.blockly";
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    }
+
+    // the order of the child elements of a block as defined in blockly.xsd
+    private static final String[] BLOCK_CHILDREN = {
+        "mutation",
+        "field",
+        "repetitions",
+        "comment",
+        "error",
+        "warning",
+        "data",
+        "value",
+        "statement"
+    };
+
+    private final XMLStreamReader reader;
+
+    private StaxBlocklyProgramReader(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * return the transformer for a given XML program text. Same semantics as
+     * {@link de.fhg.iais.roberta.util.jaxb.JaxbHelper#generateProgramTransformer(IRobotFactory, String)}
+     *
+     * @param factory of the robot plugin
+     * @param blocklyXml the program XML as String
+     * @return the transformer, whose tree contains the AST
+     * @throws XMLStreamException if the XML is not well-formed or doesn't match <code>blockly.xsd</code>
+     */
+    public static Jaxb2BlocklyProgramTransformer<Void> generateProgramTransformer(IRobotFactory factory, String blocklyXml) throws XMLStreamException {
+        Jaxb2BlocklyProgramTransformer<Void> transformer = new Jaxb2BlocklyProgramTransformer<>(factory);
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(blocklyXml));
+        try {
+            new StaxBlocklyProgramReader(reader).readBlockSet(transformer);
+        } finally {
+            reader.close();
+        }
+        return transformer;
+    }
+
+    private void readBlockSet(Jaxb2BlocklyProgramTransformer<Void> transformer) throws XMLStreamException {
+        this.reader.nextTag();
+        expectStart("block_set");
+        BlockSet blockSet = new BlockSet();
+        for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+            String value = this.reader.getAttributeValue(i);
+            switch ( attributeName(i) ) {
+                case "":
+                    break;
+                case "robottype":
+                    blockSet.setRobottype(value);
+                    break;
+                case "xmlversion":
+                    blockSet.setXmlversion(value);
+                    break;
+                case "description":
+                    blockSet.setDescription(value);
+                    break;
+                case "tags":
+                    blockSet.setTags(value);
+                    break;
+                default:
+                    throw unknownAttribute(i);
+            }
+        }
+        transformer.transformBlockSetAttributes(blockSet);
+        int numberOfInstances = 0;
+        while ( nextChild() ) {
+            expectStart("instance");
+            transformer.transformInstance(readInstance());
+            numberOfInstances++;
+        }
+        if ( numberOfInstances == 0 ) {
+            throw error("element block_set needs at least one instance");
+        }
+        while ( this.reader.hasNext() ) {
+            int event = this.reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.CHARACTERS && !this.reader.isWhiteSpace() ) {
+                throw error("content after the end of block_set");
+            }
+        }
+    }
+
+    private Instance readInstance() throws XMLStreamException {
+        Instance instance = new Instance();
+        for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+            String value = this.reader.getAttributeValue(i);
+            switch ( attributeName(i) ) {
+                case "":
+                    break;
+                case "x":
+                    instance.setX(value);
+                    break;
+                case "y":
+                    instance.setY(value);
+                    break;
+                default:
+                    throw unknownAttribute(i);
+            }
+        }
+        readBlocks(instance.getBlock(), "instance");
+        return instance;
+    }
+
+    private Block readBlock() throws XMLStreamException {
+        Block block = new Block();
+        for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+            String value = this.reader.getAttributeValue(i);
+            switch ( attributeName(i) ) {
+                case "":
+                    break;
+                case "x":
+                    block.setX(value);
+                    break;
+                case "y":
+                    block.setY(value);
+                    break;
+                case "type":
+                    block.setType(value);
+                    break;
+                case "id":
+                    block.setId(value);
+                    break;
+                case "inline":
+                    block.setInline(parseBoolean(value));
+                    break;
+                case "collapsed":
+                    block.setCollapsed(parseBoolean(value));
+                    break;
+                case "disabled":
+                    block.setDisabled(parseBoolean(value));
+                    break;
+                case "intask":
+                    block.setIntask(parseBoolean(value));
+                    break;
+                case "deletable":
+                    block.setDeletable(parseBoolean(value));
+                    break;
+                case "movable":
+                    block.setMovable(parseBoolean(value));
+                    break;
+                case "shadow":
+                    block.setShadow(parseBoolean(value));
+                    break;
+                case "editable":
+                    block.setEditable(parseBoolean(value));
+                    break;
+                default:
+                    throw unknownAttribute(i);
+            }
+        }
+        expectAttribute(block.getType(), "type");
+        expectAttribute(block.getId(), "id");
+        int lastChild = -1;
+        while ( nextChild() ) {
+            int child = childIndex(BLOCK_CHILDREN);
+            // field, value and statement may occur more than once, all others at most once
+            boolean isRepeatable = child == 1 || child == 7 || child == 8;
+            if ( child < lastChild || child == lastChild && !isRepeatable ) {
+                throw error("element " + this.reader.getLocalName() + " not expected here");
+            }
+            lastChild = child;
+            switch ( child ) {
+                case 0:
+                    block.setMutation(readMutation());
+                    break;
+                case 1:
+                    block.getField().add(readField());
+                    break;
+                case 2:
+                    block.setRepetitions(readRepetitions());
+                    break;
+                case 3:
+                    block.setComment(readComment());
+                    break;
+                case 4:
+                    block.setError(readError());
+                    break;
+                case 5:
+                    block.setWarning(readWarning());
+                    break;
+                case 6:
+                    Data data = new Data();
+                    expectNoAttributes();
+                    data.setValue(this.reader.getElementText());
+                    block.setData(data);
+                    break;
+                case 7:
+                    block.getValue().add(readValue());
+                    break;
+                default:
+                    block.getStatement().add(readStatement());
+                    break;
+            }
+        }
+        return block;
+    }
+
+    private Mutation readMutation() throws XMLStreamException {
+        Mutation mutation = new Mutation();
+        for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+            String value = this.reader.getAttributeValue(i);
+            switch ( attributeName(i) ) {
+                case "":
+                    break;
+                case "elseif":
+                    mutation.setElseif(parseInteger(value));
+                    break;
+                case "op":
+                    mutation.setOp(value);
+                    break;
+                case "else":
+                    mutation.setElse(parseInteger(value));
+                    break;
+                case "value":
+                    mutation.setValue(parseInteger(value));
+                    break;
+                case "items":
+                    mutation.setItems(parseInteger(value));
+                    break;
+                case "wait":
+                    mutation.setWait(parseInteger(value));
+                    break;
+                case "at":
+                    mutation.setAt(parseBoolean(value));
+                    break;
+                case "at1":
+                    mutation.setAt1(parseBoolean(value));
+                    break;
+                case "at2":
+                    mutation.setAt2(parseBoolean(value));
+                    break;
+                case "statement":
+                    mutation.setStatement(parseBoolean(value));
+                    break;
+                case "divisor_input":
+                    mutation.setDivisorInput(parseBoolean(value));
+                    break;
+                case "next":
+                    mutation.setNext(parseBoolean(value));
+                    break;
+                case "declare":
+                    mutation.setDeclare(parseBoolean(value));
+                    break;
+                case "input":
+                    mutation.setInput(value);
+                    break;
+                case "datatype":
+                    mutation.setDatatype(value);
+                    break;
+                case "declaration_type":
+                    mutation.setDeclarationType(value);
+                    break;
+                case "list_type":
+                    mutation.setListType(value);
+                    break;
+                case "return_type":
+                    mutation.setReturnType(value);
+                    break;
+                case "operator_range":
+                    mutation.setOperatorRange(value);
+                    break;
+                case "mode":
+                    mutation.setMode(value);
+                    break;
+                case "name":
+                    mutation.setName(value);
+                    break;
+                case "output_type":
+                    mutation.setOutputType(value);
+                    break;
+                case "type":
+                    mutation.setType(value);
+                    break;
+                case "protocol":
+                    mutation.setProtocol(value);
+                    break;
+                default:
+                    throw unknownAttribute(i);
+            }
+        }
+        while ( nextChild() ) {
+            expectStart("arg");
+            Arg arg = new Arg();
+            for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+                String value = this.reader.getAttributeValue(i);
+                switch ( attributeName(i) ) {
+                    case "":
+                        break;
+                    case "name":
+                        arg.setName(value);
+                        break;
+                    case "type":
+                        arg.setType(value);
+                        break;
+                    default:
+                        throw unknownAttribute(i);
+                }
+            }
+            if ( nextChild() ) {
+                throw error("element arg must be empty");
+            }
+            mutation.getArg().add(arg);
+        }
+        return mutation;
+    }
+
+    private Field readField() throws XMLStreamException {
+        Field field = new Field();
+        for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+            switch ( attributeName(i) ) {
+                case "":
+                    break;
+                case "name":
+                    field.setName(this.reader.getAttributeValue(i));
+                    break;
+                default:
+                    throw unknownAttribute(i);
+            }
+        }
+        expectAttribute(field.getName(), "name");
+        field.setValue(this.reader.getElementText());
+        return field;
+    }
+
+    private Repetitions readRepetitions() throws XMLStreamException {
+        expectNoAttributes();
+        Repetitions repetitions = new Repetitions();
+        while ( nextChild() ) {
+            if ( childIndex("value", "statement") == 0 ) {
+                repetitions.getValueAndStatement().add(readValue());
+            } else {
+                repetitions.getValueAndStatement().add(readStatement());
+            }
+        }
+        return repetitions;
+    }
+
+    private Comment readComment() throws XMLStreamException {
+        Comment comment = new Comment();
+        String[] pinnedHW = readPinnedHW();
+        comment.setPinned(parseBoolean(pinnedHW[0]));
+        comment.setH(pinnedHW[1]);
+        comment.setW(pinnedHW[2]);
+        comment.setValue(this.reader.getElementText());
+        return comment;
+    }
+
+    private Error readError() throws XMLStreamException {
+        Error error = new Error();
+        String[] pinnedHW = readPinnedHW();
+        error.setPinned(parseBoolean(pinnedHW[0]));
+        error.setH(pinnedHW[1]);
+        error.setW(pinnedHW[2]);
+        error.setValue(this.reader.getElementText());
+        return error;
+    }
+
+    private Warning readWarning() throws XMLStreamException {
+        Warning warning = new Warning();
+        String[] pinnedHW = readPinnedHW();
+        warning.setPinned(parseBoolean(pinnedHW[0]));
+        warning.setH(pinnedHW[1]);
+        warning.setW(pinnedHW[2]);
+        warning.setValue(this.reader.getElementText());
+        return warning;
+    }
+
+    /**
+     * @return the required attributes "pinned", "h" and "w" of comment, error and warning
+     */
+    private String[] readPinnedHW() throws XMLStreamException {
+        String[] pinnedHW = new String[3];
+        for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+            switch ( attributeName(i) ) {
+                case "":
+                    break;
+                case "pinned":
+                    pinnedHW[0] = this.reader.getAttributeValue(i);
+                    break;
+                case "h":
+                    pinnedHW[1] = this.reader.getAttributeValue(i);
+                    break;
+                case "w":
+                    pinnedHW[2] = this.reader.getAttributeValue(i);
+                    break;
+                default:
+                    throw unknownAttribute(i);
+            }
+        }
+        expectAttribute(pinnedHW[0], "pinned");
+        expectAttribute(pinnedHW[1], "h");
+        expectAttribute(pinnedHW[2], "w");
+        return pinnedHW;
+    }
+
+    private Value readValue() throws XMLStreamException {
+        Value value = new Value();
+        value.setName(readNameAttribute());
+        int lastChild = -1;
+        while ( nextChild() ) {
+            int child = childIndex("shadow", "block");
+            if ( child <= lastChild ) {
+                throw error("element " + this.reader.getLocalName() + " not expected here");
+            }
+            lastChild = child;
+            if ( child == 0 ) {
+                value.setShadow(readShadow());
+            } else {
+                value.setBlock(readBlock());
+            }
+        }
+        return value;
+    }
+
+    private Shadow readShadow() throws XMLStreamException {
+        Shadow shadow = new Shadow();
+        for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+            String value = this.reader.getAttributeValue(i);
+            switch ( attributeName(i) ) {
+                case "":
+                    break;
+                case "type":
+                    shadow.setType(value);
+                    break;
+                case "id":
+                    shadow.setId(value);
+                    break;
+                case "intask":
+                    shadow.setIntask(parseBoolean(value));
+                    break;
+                default:
+                    throw unknownAttribute(i);
+            }
+        }
+        expectAttribute(shadow.getType(), "type");
+        expectAttribute(shadow.getId(), "id");
+        if ( nextChild() ) {
+            expectStart("field");
+            shadow.setField(readField());
+            if ( nextChild() ) {
+                throw error("element shadow contains at most one field");
+            }
+        }
+        return shadow;
+    }
+
+    private Statement readStatement() throws XMLStreamException {
+        Statement statement = new Statement();
+        statement.setName(readNameAttribute());
+        readBlocks(statement.getBlock(), "statement");
+        return statement;
+    }
+
+    /**
+     * read the blocks, that are the children of an instance or a statement. At least one block is required.
+     */
+    private void readBlocks(List<Block> blocks, String parent) throws XMLStreamException {
+        while ( nextChild() ) {
+            expectStart("block");
+            blocks.add(readBlock());
+        }
+        if ( blocks.isEmpty() ) {
+            throw error("element " + parent + " needs at least one block");
+        }
+    }
+
+    private String readNameAttribute() throws XMLStreamException {
+        String name = null;
+        for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+            switch ( attributeName(i) ) {
+                case "":
+                    break;
+                case "name":
+                    name = this.reader.getAttributeValue(i);
+                    break;
+                default:
+                    throw unknownAttribute(i);
+            }
+        }
+        expectAttribute(name, "name");
+        return name;
+    }
+
+    /**
+     * move to the next child element of the current element
+     *
+     * @return true, if positioned on the start of the next child; false, if positioned on the end of the current element
+     */
+    private boolean nextChild() throws XMLStreamException {
+        return this.reader.nextTag() == XMLStreamConstants.START_ELEMENT;
+    }
+
+    private void expectStart(String localName) throws XMLStreamException {
+        if ( !NS.equals(this.reader.getNamespaceURI()) || !localName.equals(this.reader.getLocalName()) ) {
+            throw error("element " + localName + " expected, but found " + this.reader.getName());
+        }
+    }
+
+    /**
+     * @return the index of the current element in the list of allowed element names
+     */
+    private int childIndex(String... localNames) throws XMLStreamException {
+        if ( NS.equals(this.reader.getNamespaceURI()) ) {
+            String localName = this.reader.getLocalName();
+            for ( int i = 0; i < localNames.length; i++ ) {
+                if ( localNames[i].equals(localName) ) {
+                    return i;
+                }
+            }
+        }
+        throw error("element " + this.reader.getName() + " not expected here");
+    }
+
+    /**
+     * @return the name of an attribute without namespace; "" for attributes with a namespace (e.g. xsi:...), which are ignored
+     */
+    private String attributeName(int index) {
+        String namespace = this.reader.getAttributeNamespace(index);
+        return namespace == null || namespace.isEmpty() ? this.reader.getAttributeLocalName(index) : "";
+    }
+
+    private void expectAttribute(String value, String name) throws XMLStreamException {
+        if ( value == null ) {
+            throw error("attribute " + name + " of element " + this.reader.getLocalName() + " is required");
+        }
+    }
+
+    private void expectNoAttributes() throws XMLStreamException {
+        for ( int i = 0; i < this.reader.getAttributeCount(); i++ ) {
+            if ( !attributeName(i).isEmpty() ) {
+                throw unknownAttribute(i);
+            }
+        }
+    }
+
+    private Boolean parseBoolean(String value) throws XMLStreamException {
+        switch ( value.trim() ) {
+            case "true":
+            case "1":
+                return Boolean.TRUE;
+            case "false":
+            case "0":
+                return Boolean.FALSE;
+            default:
+                throw error("invalid boolean: " + value);
+        }
+    }
+
+    private BigInteger parseInteger(String value) throws XMLStreamException {
+        try {
+            return new BigInteger(value.trim());
+        } catch ( NumberFormatException e ) {
+            throw error("invalid integer: " + value);
+        }
+    }
+
+    private XMLStreamException unknownAttribute(int index) {
+        return error("attribute " + this.reader.getAttributeLocalName(index) + " not allowed in element " + this.reader.getLocalName());
+    }
+
+    private XMLStreamException error(String message) {
+        return new XMLStreamException(message, this.reader.getLocation());
+    }
+}
@@ -4,6 +4,11 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.codehaus.jettison.json.JSONObject;
 
+import de.fhg.iais.roberta.factory.CompilationCache;
+import de.fhg.iais.roberta.factory.CompilerScheduler;
+import de.fhg.iais.roberta.factory.ConfigurationCache;
+import de.fhg.iais.roberta.factory.WorkspaceManager;
+
 public class AliveData {
     private static final AtomicLong clientCallsTotal = new AtomicLong(0);
     private static final AtomicLong clientCallsDelta = new AtomicLong(0);
@@ -13,6 +18,7 @@ public class AliveData {
     private static final AtomicLong loginsTotal = new AtomicLong(0);
     private static final AtomicLong loginsDelta = new AtomicLong(0);
     private static final Clock running = Clock.start();
+    private static volatile long startupMsec = -1;
 
     public static JSONObject getAndUpdateAliveState() throws Exception {
         long actualclientCallsTotal = clientCallsTotal.get();
@@ -27,7 +33,11 @@ public class AliveData {
         answer.put("clientCallsTotal", actualclientCallsTotal).put("clientCallsDelta", actualclientCallsDelta);
         answer.put("robotCallsTotal", actualrobotCallsTotal).put("robotCallsDelta", actualrobotCallsDelta);
         answer.put("loginsTotal", actualloginsTotal).put("loginsDelta", actualloginsDelta);
-        answer.put("aliveCalls", actualaliveCallsDelta).put("runningSince", runningSince);
+        answer.put("aliveCalls", actualaliveCallsDelta).put("runningSince", runningSince).put("startupMsec", startupMsec);
+        answer.put("compilationCache", CompilationCache.getInstance().getStatistics());
+        answer.put("compilerScheduler", CompilerScheduler.getInstance().getStatistics());
+        answer.put("configurationCache", ConfigurationCache.getInstance().getStatistics());
+        answer.put("workspaces", WorkspaceManager.getInstance().getStatistics());
         return answer;
     }
 
@@ -41,6 +51,10 @@ public class AliveData {
         robotCallsDelta.incrementAndGet();
     }
 
+    public static void rememberStartup(long msec) {
+        startupMsec = msec;
+    }
+
     public static void rememberLogin() {
         loginsTotal.incrementAndGet();
         loginsDelta.incrementAndGet();
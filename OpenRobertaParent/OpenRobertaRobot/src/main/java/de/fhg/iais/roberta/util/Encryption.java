@@ -1,70 +1,154 @@
 package de.fhg.iais.roberta.util;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.Arrays;
+import java.security.spec.KeySpec;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.fhg.iais.roberta.util.dbc.Assert;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * hashing of passwords. Two formats of hashes are supported:<br>
+ * - <b>pbkdf2:&lt;iterations&gt;:&lt;salt&gt;:&lt;hash&gt;</b> PBKDF2 with HmacSHA256, 16 bytes of salt and 32 bytes of hash. Used for all new
+ * hashes. The number of iterations (the cost) is set by the property <code>password.hash.iterations</code><br>
+ * - <b>&lt;salt&gt;:&lt;hash&gt;</b> the legacy format: one round of SHA-1, 8 bytes of salt. Only checked, never created<br>
+ * <br>
+ * If a hash is outdated (legacy format or less iterations than configured, see {@link #isHashOutdated(String)}), the password should be hashed again
+ * after a successful login. If configured, the hashing is executed by a pool of <code>password.hash.threads</code> threads. This bounds the CPU used
+ * when many users login at the same time (e.g. at the start of a lesson).
+ */
 public class Encryption {
     private static final Logger LOG = LoggerFactory.getLogger(Encryption.class);
-    private static final SecureRandom secureRandom;
+    public static final int DEFAULT_ITERATIONS = 65536;
+    private static final String PBKDF2 = "pbkdf2";
+    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int PBKDF2_SALT_BYTES = 16;
+    private static final int PBKDF2_HASH_BITS = 256;
+    private static final int LEGACY_SALT_BYTES = 8;
 
-    static {
-        SecureRandom secureTemp;
-        try {
-            secureTemp = SecureRandom.getInstance("SHA1PRNG");
-        } catch ( NoSuchAlgorithmException e ) {
-            LOG.error("creating a secure random failed. It will be IMPOSSIBLE to create new users!");
-            secureTemp = null;
+    // one secure random per thread: creating salts doesn't serialize on a lock
+    private static final ThreadLocal<SecureRandom> secureRandom = ThreadLocal.withInitial(SecureRandom::new);
+
+    private static volatile int iterations = DEFAULT_ITERATIONS;
+    private static volatile ExecutorService hashingExecutor = null;
+
+    /**
+     * set the cost of new hashes and the number of threads used for hashing from the server properties. Without configuration, hashes are created
+     * with {@link #DEFAULT_ITERATIONS} in the thread of the caller.
+     *
+     * @param properties the server properties
+     */
+    public static synchronized void configure(Properties properties) {
+        int configuredIterations = Integer.parseInt(properties.getProperty("password.hash.iterations", String.valueOf(DEFAULT_ITERATIONS)).trim());
+        Assert.isTrue(configuredIterations >= 1000, "too few iterations for password hashing: " + configuredIterations);
+        int defaultThreads = Runtime.getRuntime().availableProcessors();
+        int threads = Integer.parseInt(properties.getProperty("password.hash.threads", String.valueOf(defaultThreads)).trim());
+        Assert.isTrue(threads > 0, "the number of threads for password hashing must be positive");
+        iterations = configuredIterations;
+        if ( hashingExecutor != null ) {
+            hashingExecutor.shutdown();
         }
-        secureRandom = secureTemp;
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        hashingExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "passwordHashing-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOG.info("passwords are hashed with " + iterations + " iterations by " + threads + " threads");
     }
 
     /**
      * create a secure hash from a String.
      *
-     * @return a string consisting of 8 bytes (16 chars) of salt, and 8 bytes (16 chars) of the generated hash
+     * @return a string of the form pbkdf2:&lt;iterations&gt;:&lt;salt&gt;:&lt;hash&gt;, salt and hash hex encoded
      * @throws Exception
      */
     public static String createHash(String password) throws Exception {
-        MessageDigest digest = MessageDigest.getInstance("SHA-1");
-        digest.reset();
-        byte[] salt = createNextSalt();
-        digest.update(salt);
-        String saltHex = Hex.encodeHexString(salt);
-        String passwordHex = Hex.encodeHexString(digest.digest(password.getBytes("UTF-8")));
-        return saltHex + ":" + passwordHex;
+        int hashIterations = iterations;
+        byte[] salt = createNextSalt(PBKDF2_SALT_BYTES);
+        byte[] hash = execute(() -> pbkdf2(password, salt, hashIterations));
+        return PBKDF2 + ":" + hashIterations + ":" + Hex.encodeHexString(salt) + ":" + Hex.encodeHexString(hash);
     }
 
     /**
-     * check a password against a secure hash.
+     * check a password against a secure hash. Both the current and the legacy format are accepted.
      *
      * @return true, if the password matches the hash; false, otherwise
      * @throws Exception
      */
     public static boolean isPasswordCorrect(String saltedHashString, String password) throws Exception {
         String[] splitted = saltedHashString.split(":");
-        byte[] salt = Hex.decodeHex(splitted[0].toCharArray());
-        byte[] hash = Hex.decodeHex(splitted[1].toCharArray());
-        MessageDigest digest = MessageDigest.getInstance("SHA-1");
-        digest.reset();
-        digest.update(salt);
-        byte[] passwordHash = digest.digest(password.getBytes("UTF-8"));
-        return Arrays.equals(hash, passwordHash);
+        if ( splitted.length == 4 && PBKDF2.equals(splitted[0]) ) {
+            int hashIterations = Integer.parseInt(splitted[1]);
+            byte[] salt = Hex.decodeHex(splitted[2].toCharArray());
+            byte[] hash = Hex.decodeHex(splitted[3].toCharArray());
+            byte[] passwordHash = execute(() -> pbkdf2(password, salt, hashIterations));
+            return MessageDigest.isEqual(hash, passwordHash);
+        } else if ( splitted.length == 2 ) {
+            byte[] salt = Hex.decodeHex(splitted[0].toCharArray());
+            byte[] hash = Hex.decodeHex(splitted[1].toCharArray());
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.reset();
+            digest.update(salt);
+            byte[] passwordHash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
+            return MessageDigest.isEqual(hash, passwordHash);
+        } else {
+            throw new DbcException("invalid format of a password hash");
+        }
     }
 
     /**
-     * create a secure salt (for encryption of passwords, e.g.) and return it as a 16 byte base64 encoded string
+     * @return true, if the hash should be replaced by a new hash of the password, i.e. if it is in the legacy format or its cost is lower than
+     *         configured
+     */
+    public static boolean isHashOutdated(String saltedHashString) {
+        String[] splitted = saltedHashString.split(":");
+        return splitted.length != 4 || !PBKDF2.equals(splitted[0]) || Integer.parseInt(splitted[1]) < iterations;
+    }
+
+    /**
+     * create a secure salt (for encryption of passwords, e.g.) of 8 bytes
      *
-     * @return
+     * @return the salt
      */
-    public static synchronized byte[] createNextSalt() {
-        byte[] nextSalt = new byte[8];
-        secureRandom.nextBytes(nextSalt);
+    public static byte[] createNextSalt() {
+        return createNextSalt(LEGACY_SALT_BYTES);
+    }
+
+    private static byte[] createNextSalt(int numberOfBytes) {
+        byte[] nextSalt = new byte[numberOfBytes];
+        secureRandom.get().nextBytes(nextSalt);
         return nextSalt;
     }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int hashIterations) throws Exception {
+        KeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, hashIterations, PBKDF2_HASH_BITS);
+        return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM).generateSecret(keySpec).getEncoded();
+    }
+
+    private static byte[] execute(Callable<byte[]> hashing) throws Exception {
+        ExecutorService executor = hashingExecutor;
+        if ( executor == null ) {
+            return hashing.call();
+        }
+        try {
+            return executor.submit(hashing).get();
+        } catch ( ExecutionException e ) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
 }
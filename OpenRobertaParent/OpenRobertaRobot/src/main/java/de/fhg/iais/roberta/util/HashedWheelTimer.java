@@ -0,0 +1,208 @@
+package de.fhg.iais.roberta.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.util.dbc.Assert;
+
+/**
+ * a hashed wheel timer for a huge number of timeouts, that are (in most cases) cancelled before they expire. Registering and cancelling a timeout is O(1),
+ * each tick of the timer processes a single bucket of the wheel only. A timeout fires at most one tick after its deadline (plus the time needed to run the
+ * tasks expiring in the same tick).<br>
+ * <br>
+ * All tasks are executed by the one and only worker thread of the timer. Thus tasks must be short and must not block. Call {@link #stop()} to terminate the
+ * worker thread.
+ */
+public class HashedWheelTimer {
+    private static final Logger LOG = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickNanos;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingTimeouts = new AtomicInteger(0);
+    private final Thread workerThread;
+    private final long startTime;
+    private volatile boolean running = true;
+    private long tick = 0;
+
+    /**
+     * create the timer and start its worker thread.
+     *
+     * @param name of the worker thread
+     * @param tickDuration the duration of a tick, the jitter of a timeout is bounded by this duration
+     * @param unit the time unit of the tick duration
+     * @param ticksPerWheel the number of buckets of the wheel. Rounded up to the next power of two
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        Assert.isTrue(tickDuration > 0 && ticksPerWheel > 0, "tick duration and ticks per wheel must be positive");
+        this.tickNanos = unit.toNanos(tickDuration);
+        int wheelSize = Integer.highestOneBit(ticksPerWheel);
+        wheelSize = wheelSize < ticksPerWheel ? wheelSize << 1 : wheelSize;
+        this.wheel = new List[wheelSize];
+        for ( int i = 0; i < wheelSize; i++ ) {
+            this.wheel[i] = new ArrayList<>();
+        }
+        this.mask = wheelSize - 1;
+        this.startTime = System.nanoTime();
+        this.workerThread = new Thread(null, this::run, name);
+        this.workerThread.setDaemon(true);
+        this.workerThread.start();
+    }
+
+    /**
+     * schedule a task for one-time execution after the delay has elapsed
+     *
+     * @param task to be executed by the worker thread of this timer
+     * @param delay until the task is executed
+     * @param unit of the delay
+     * @return the handle, that is used to cancel the timeout
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        Assert.notNull(task);
+        Assert.isTrue(this.running, "the timer has been stopped");
+        Timeout timeout = new Timeout(task, System.nanoTime() - this.startTime + unit.toNanos(Math.max(delay, 0)));
+        this.pendingTimeouts.incrementAndGet();
+        this.newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return the number of timeouts, that are neither expired nor cancelled
+     */
+    public int getPendingTimeouts() {
+        return this.pendingTimeouts.get();
+    }
+
+    /**
+     * stop the worker thread. Pending timeouts are dropped, their tasks are never executed. Waits until the worker thread has terminated.
+     */
+    public void stop() {
+        this.running = false;
+        this.workerThread.interrupt();
+        if ( Thread.currentThread() != this.workerThread ) {
+            try {
+                this.workerThread.join();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOG.info("timer thread " + this.workerThread.getName() + " stopped. " + this.pendingTimeouts.get() + " timeouts were dropped");
+    }
+
+    private void run() {
+        while ( this.running ) {
+            long deadline = waitForNextTick();
+            if ( !this.running ) {
+                break;
+            }
+            transferNewTimeoutsToBuckets();
+            expireTimeouts(this.wheel[(int) (this.tick & this.mask)], deadline);
+            this.tick++;
+        }
+    }
+
+    private long waitForNextTick() {
+        long deadline = this.tickNanos * (this.tick + 1);
+        while ( this.running ) {
+            long sleepNanos = deadline - (System.nanoTime() - this.startTime);
+            if ( sleepNanos <= 0 ) {
+                break;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch ( InterruptedException e ) { //NOSONAR : stop() interrupts, the loop checks the running flag
+            }
+        }
+        return deadline;
+    }
+
+    private void transferNewTimeoutsToBuckets() {
+        Timeout timeout;
+        while ( (timeout = this.newTimeouts.poll()) != null ) {
+            if ( timeout.state.get() != Timeout.ST_PENDING ) {
+                continue;
+            }
+            long calculated = timeout.deadline / this.tickNanos;
+            timeout.remainingRounds = (calculated - this.tick) / this.wheel.length;
+            // never schedule into the past: such a timeout is expired in the actual tick
+            long ticks = Math.max(calculated, this.tick);
+            this.wheel[(int) (ticks & this.mask)].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(List<Timeout> bucket, long deadline) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while ( iterator.hasNext() ) {
+            Timeout timeout = iterator.next();
+            if ( timeout.state.get() != Timeout.ST_PENDING ) {
+                iterator.remove();
+            } else if ( timeout.remainingRounds <= 0 && timeout.deadline <= deadline ) {
+                iterator.remove();
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * the handle for a task scheduled by {@link HashedWheelTimer#newTimeout(Runnable, long, TimeUnit)}
+     */
+    public final class Timeout {
+        private static final int ST_PENDING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_PENDING);
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * cancel the timeout. The task is not executed, if it has not been started before.
+         *
+         * @return true, if the timeout was cancelled; false, if it had already expired or was cancelled before
+         */
+        public boolean cancel() {
+            if ( this.state.compareAndSet(ST_PENDING, ST_CANCELLED) ) {
+                HashedWheelTimer.this.pendingTimeouts.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isExpired() {
+            return this.state.get() == ST_EXPIRED;
+        }
+
+        public boolean isCancelled() {
+            return this.state.get() == ST_CANCELLED;
+        }
+
+        private void expire() {
+            if ( this.state.compareAndSet(ST_PENDING, ST_EXPIRED) ) {
+                HashedWheelTimer.this.pendingTimeouts.decrementAndGet();
+                try {
+                    this.task.run();
+                } catch ( Exception e ) {
+                    LOG.error("a timeout task terminated with an exception", e);
+                }
+            }
+        }
+    }
+}
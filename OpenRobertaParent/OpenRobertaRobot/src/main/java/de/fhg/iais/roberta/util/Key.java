@@ -94,6 +94,8 @@ public enum Key {
     COMPILERWORKFLOW_ERROR_CONFIGURATION_TRANSFORM_FAILED,
     COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED,
     COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED,
+    COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_OVERLOAD,
+    COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_TIMEOUT,
     COMPILERWORKFLOW_ERROR_PROGRAM_GENERATION_FAILED,
     COMPILERWORKFLOW_PROGRAM_GENERATION_SUCCESS,
     ACCESS_RIGHT_CHANGED,
@@ -0,0 +1,134 @@
+package de.fhg.iais.roberta.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * serves the files, that robots download unchanged (runtime, menu and libraries of the EV3, e.g.). Every file is mapped into memory once and
+ * served from the mapping, no stream is opened per request. A file is mapped again, if its modification time or length changes. Replace a file
+ * by moving a new one into its place, don't overwrite it: a mapped file, that is truncated, cannot be read anymore. On Windows even moving fails,
+ * because a mapped file cannot be replaced or deleted. The mapping is released when the garbage collector frees its buffer, not when a new version is
+ * mapped. On Windows stop the server to replace these files.<br>
+ * <br>
+ * Responses carry an ETag (a hash of the content). A request with a matching <code>If-None-Match</code> header is answered with <i>304 Not
+ * Modified</i> and no content.
+ */
+public class StaticFileCache {
+    private static final Logger LOG = LoggerFactory.getLogger(StaticFileCache.class);
+
+    private static final Map<String, CachedFile> files = new ConcurrentHashMap<>();
+
+    private StaticFileCache() {
+        // no objects
+    }
+
+    /**
+     * create the response for a file download
+     *
+     * @param request the request, its preconditions (<code>If-None-Match</code>) are evaluated
+     * @param file the file to serve
+     * @param fileName the name of the file announced to the client
+     * @return the response: the file, <i>304 Not Modified</i> or <i>404 Not Found</i>; never null
+     */
+    public static Response serve(Request request, File file, String fileName) {
+        CachedFile cachedFile = get(file);
+        if ( cachedFile == null ) {
+            LOG.error("file " + file + " to serve not found");
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        EntityTag etag = new EntityTag(cachedFile.etag);
+        ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if ( notModified != null ) {
+            return notModified.tag(etag).build();
+        }
+        StreamingOutput content = output -> write(cachedFile.content.duplicate(), output);
+        ResponseBuilder response = Response.ok(content, MediaType.APPLICATION_OCTET_STREAM).tag(etag);
+        response.header("Content-Length", cachedFile.content.capacity());
+        response.header("Content-Disposition", "attachment; filename=" + fileName);
+        response.header("Filename", fileName);
+        return response.build();
+    }
+
+    /**
+     * @return the mapped content of a file; null, if the file doesn't exist or cannot be read
+     */
+    static CachedFile get(File file) {
+        String key = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        CachedFile cachedFile = files.get(key);
+        if ( cachedFile != null && cachedFile.lastModified == lastModified && cachedFile.content.capacity() == length ) {
+            return cachedFile;
+        }
+        if ( !file.isFile() ) {
+            files.remove(key);
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+            cachedFile = new CachedFile(lastModified, content, sha256(content.duplicate()));
+            files.put(key, cachedFile);
+            LOG.info("file " + file + " mapped, " + content.capacity() + " bytes, ETag " + cachedFile.etag);
+            return cachedFile;
+        } catch ( IOException e ) {
+            LOG.error("file " + file + " could not be mapped", e);
+            return null;
+        }
+    }
+
+    private static void write(ByteBuffer content, OutputStream output) throws IOException {
+        WritableByteChannel channel = output instanceof WritableByteChannel ? (WritableByteChannel) output : Channels.newChannel(output);
+        while ( content.hasRemaining() ) {
+            channel.write(content);
+        }
+    }
+
+    private static String sha256(ByteBuffer content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content);
+            StringBuilder sb = new StringBuilder();
+            for ( byte b : digest.digest() ) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.substring(0, 32);
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new DbcException("SHA-256 is not available", e);
+        }
+    }
+
+    static final class CachedFile {
+        final long lastModified;
+        final ByteBuffer content; // read-only, use duplicate() to read it
+        final String etag;
+
+        private CachedFile(long lastModified, ByteBuffer content, String etag) {
+            this.lastModified = lastModified;
+            this.content = content;
+            this.etag = etag;
+        }
+    }
+}
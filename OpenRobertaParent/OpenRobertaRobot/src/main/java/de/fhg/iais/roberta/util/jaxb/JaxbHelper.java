@@ -4,9 +4,14 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.transform.stream.StreamSource;
@@ -21,19 +26,33 @@ import org.xml.sax.InputSource;
 import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.transformer.Jaxb2BlocklyProgramTransformer;
+import de.fhg.iais.roberta.transformer.StaxBlocklyProgramReader;
+import de.fhg.iais.roberta.util.dbc.DbcException;
 
+/**
+ * helper for the conversion between blockly XML and the jaxb classes.<br>
+ * <br>
+ * JAXB contexts are expensive. They are created once per class and cached. Marshallers and unmarshallers are cheaper, but not thread-safe. They are
+ * created once per thread and reused (with the schema already attached). For XML generated by the server itself (e.g. the default configurations of the
+ * robot plugins) schema validation can be skipped.
+ */
 public class JaxbHelper {
     private static final Logger LOG = LoggerFactory.getLogger(JaxbHelper.class);
 
     private static final Schema blockSetSchema;
-    private static final JAXBContext jaxbContext;
+    private static final Map<Class<?>, JAXBContext> jaxbContexts = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<Class<?>, Unmarshaller>> validatingUnmarshallers = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<Class<?>, Unmarshaller>> unmarshallers = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Marshaller> validatingMarshaller = new ThreadLocal<>();
+    private static final ThreadLocal<Marshaller> marshaller = new ThreadLocal<>();
+    private static volatile boolean useStaxReader = false;
     static {
         SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
         InputStream xsdStream = JaxbHelper.class.getClassLoader().getResourceAsStream("blockly.xsd");
         StreamSource xsdSource = new StreamSource(xsdStream);
         try {
             blockSetSchema = sf.newSchema(xsdSource);
-            jaxbContext = JAXBContext.newInstance(BlockSet.class);
+            jaxbContexts.put(BlockSet.class, JAXBContext.newInstance(BlockSet.class));
         } catch ( Exception e ) {
             LOG.error("1. from blockly.xsd no schema could be generated or 2. JAXBContext could not be created", e);
             throw new RuntimeException("from blockly.xsd no schema could be generated");
@@ -45,47 +64,134 @@ public class JaxbHelper {
     }
 
     /**
-     * return the BlockSet generated by a jaxb unmarshaller for a given blockly XML string.
+     * select the reader used by {@link #generateProgramTransformer(IRobotFactory, String)}. The property <code>blockly.xml.reader</code> is either
+     * <code>jaxb</code> (the default, a validating JAXB unmarshaller) or <code>stax</code> (the streaming {@link StaxBlocklyProgramReader}).
+     *
+     * @param properties the server properties
+     */
+    public static void configure(Properties properties) {
+        String reader = properties.getProperty("blockly.xml.reader", "jaxb").trim();
+        switch ( reader ) {
+            case "jaxb":
+                useStaxReader = false;
+                break;
+            case "stax":
+                useStaxReader = true;
+                break;
+            default:
+                throw new DbcException("invalid value for property blockly.xml.reader: " + reader);
+        }
+        LOG.info("blockly programs are read by the " + reader + " reader");
+    }
+
+    /**
+     * @param clazz the root element class
+     * @return the (cached) jaxb context for this class
+     */
+    public static JAXBContext getJaxbContext(Class<?> clazz) {
+        return jaxbContexts.computeIfAbsent(clazz, c -> {
+            try {
+                return JAXBContext.newInstance(c);
+            } catch ( JAXBException e ) {
+                throw new DbcException("JAXBContext could not be created for " + c.getName(), e);
+            }
+        });
+    }
+
+    /**
+     * return the BlockSet generated by a jaxb unmarshaller for a given blockly XML string. The XML is validated against <code>blockly.xsd</code>
      *
      * @param blocklyXml the blockly XML as String
      * @return the BlockSet instance corresponding to the XML
      */
     public static BlockSet xml2BlockSet(String blocklyXml) throws Exception {
-        Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-        jaxbUnmarshaller.setSchema(blockSetSchema);
+        return xml2BlockSet(blocklyXml, true);
+    }
+
+    /**
+     * return the BlockSet generated by a jaxb unmarshaller for a given blockly XML string.
+     *
+     * @param blocklyXml the blockly XML as String
+     * @param validate false, if the XML is trusted (generated by the server, e.g. a default configuration) and need not be validated against the schema
+     * @return the BlockSet instance corresponding to the XML
+     */
+    public static BlockSet xml2BlockSet(String blocklyXml, boolean validate) throws Exception {
+        return xml2Element(blocklyXml, BlockSet.class, validate);
+    }
+
+    /**
+     * return the BlockSet of a robot configuration. The default configuration of the robot plugin is trusted and not validated, all other
+     * configurations are.
+     *
+     * @param factory of the robot plugin; may be null
+     * @param configurationXml the configuration XML as String
+     * @return the BlockSet instance corresponding to the XML
+     */
+    public static BlockSet configuration2BlockSet(IRobotFactory factory, String configurationXml) throws Exception {
+        boolean isDefault = factory != null && configurationXml != null && configurationXml.equals(factory.getConfigurationDefault());
+        return xml2BlockSet(configurationXml, !isDefault);
+    }
 
-        InputStream stream = new ByteArrayInputStream(blocklyXml.getBytes(StandardCharsets.UTF_8));
-        InputSource src = new InputSource(stream);
-        return (BlockSet) jaxbUnmarshaller.unmarshal(src);
+    /**
+     * return the element of type T generated by an jaxb unmarshaller for a given blockly XML string. The XML is validated against
+     * <code>blockly.xsd</code>
+     *
+     * @param xml the XML as String
+     * @param clazz the element class, an object of which should be returned
+     * @return the element instance corresponding to the XML
+     */
+    public static <T> T xml2Element(String xml, Class<T> clazz) throws Exception {
+        return xml2Element(xml, clazz, true);
     }
 
     /**
-     * return the element of type T generated by an jaxb unmarshaller for a given blockly XML string.<br>
-     * <b>This call is expensive. Use it not too often. It is ok to use it for the import/export of XML, for example.</b>
+     * return the element of type T generated by an jaxb unmarshaller for a given blockly XML string. The unmarshaller is reused by the calling thread.
      *
      * @param xml the XML as String
      * @param clazz the element class, an object of which should be returned
+     * @param validate false, if the XML is trusted and need not be validated against the schema
      * @return the element instance corresponding to the XML
      */
     @SuppressWarnings("unchecked")
-    public static <T> T xml2Element(String xml, Class<T> clazz) throws Exception {
-        JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
-        Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-        jaxbUnmarshaller.setSchema(blockSetSchema);
+    public static <T> T xml2Element(String xml, Class<T> clazz, boolean validate) throws Exception {
+        Map<Class<?>, Unmarshaller> threadUnmarshallers = validate ? validatingUnmarshallers.get() : unmarshallers.get();
+        Unmarshaller jaxbUnmarshaller = threadUnmarshallers.get(clazz);
+        if ( jaxbUnmarshaller == null ) {
+            jaxbUnmarshaller = getJaxbContext(clazz).createUnmarshaller();
+            jaxbUnmarshaller.setSchema(validate ? blockSetSchema : null);
+            threadUnmarshallers.put(clazz, jaxbUnmarshaller);
+        }
         return (T) jaxbUnmarshaller.unmarshal(new InputSource(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
     }
 
     /**
-     * return the XML generated by a jaxb marshaller for a given BlockSet.
+     * return the XML generated by a jaxb marshaller for a given BlockSet. The BlockSet is validated against <code>blockly.xsd</code>
      *
      * @param blockSet the BlockSet from which XML has to be generated for
      * @return the XML as a String
      * @throws Exception
      */
     public static String blockSet2xml(BlockSet blockSet) throws Exception {
-        Marshaller jaxbmarshaller = jaxbContext.createMarshaller();
-        jaxbmarshaller.setProperty("com.sun.xml.bind.xmlDeclaration", Boolean.FALSE);
-        jaxbmarshaller.setSchema(blockSetSchema);
+        return blockSet2xml(blockSet, true);
+    }
+
+    /**
+     * return the XML generated by a jaxb marshaller for a given BlockSet. The XML has no declaration. The marshaller is reused by the calling thread.
+     *
+     * @param blockSet the BlockSet from which XML has to be generated for
+     * @param validate false, if the BlockSet is trusted (e.g. generated from an AST) and need not be validated against the schema
+     * @return the XML as a String
+     * @throws JAXBException
+     */
+    public static String blockSet2xml(BlockSet blockSet, boolean validate) throws JAXBException {
+        ThreadLocal<Marshaller> threadMarshaller = validate ? validatingMarshaller : marshaller;
+        Marshaller jaxbmarshaller = threadMarshaller.get();
+        if ( jaxbmarshaller == null ) {
+            jaxbmarshaller = getJaxbContext(BlockSet.class).createMarshaller();
+            jaxbmarshaller.setProperty("com.sun.xml.bind.xmlDeclaration", Boolean.FALSE);
+            jaxbmarshaller.setSchema(validate ? blockSetSchema : null);
+            threadMarshaller.set(jaxbmarshaller);
+        }
         StringWriter writer = new StringWriter();
         jaxbmarshaller.marshal(blockSet, writer);
         return writer.toString();
@@ -103,13 +209,16 @@ public class JaxbHelper {
     }
 
     /**
-     * return the jaxb transformer for a given XML program text.
+     * return the jaxb transformer for a given XML program text. The XML is read by the reader selected in {@link #configure(Properties)}
      *
      * @param blocklyXml the program XML as String
      * @return jaxb the transformer
      * @throws Exception
      */
     public static Jaxb2BlocklyProgramTransformer<Void> generateProgramTransformer(IRobotFactory factory, String blocklyXml) throws Exception {
+        if ( useStaxReader ) {
+            return StaxBlocklyProgramReader.generateProgramTransformer(factory, blocklyXml);
+        }
         BlockSet project = JaxbHelper.xml2BlockSet(blocklyXml);
         Jaxb2BlocklyProgramTransformer<Void> transformer = new Jaxb2BlocklyProgramTransformer<>(factory);
         transformer.transform(project);
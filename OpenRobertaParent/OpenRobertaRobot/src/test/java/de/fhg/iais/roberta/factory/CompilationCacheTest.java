@@ -0,0 +1,91 @@
+package de.fhg.iais.roberta.factory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompilationCacheTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testKeyDependsOnToolchainSourceAndFlags() {
+        String key = CompilationCache.makeKey("calliope2017", "int main() {}", EnumSet.of(TimeUnit.SECONDS));
+        assertEquals(key, CompilationCache.makeKey("calliope2017", "int main() {}", EnumSet.of(TimeUnit.SECONDS)));
+        assertNotEquals(key, CompilationCache.makeKey("calliope2016", "int main() {}", EnumSet.of(TimeUnit.SECONDS)));
+        assertNotEquals(key, CompilationCache.makeKey("calliope2017", "int main() { }", EnumSet.of(TimeUnit.SECONDS)));
+        assertNotEquals(key, CompilationCache.makeKey("calliope2017", "int main() {}", EnumSet.noneOf(TimeUnit.class)));
+        assertNotEquals(key, CompilationCache.makeKey("calliope2017", "int main() {}", null));
+    }
+
+    @Test
+    public void testChangedToolchainMissesTheCache() throws Exception {
+        File resources = this.tempDir.newFolder("arduino-resources");
+        File core = new File(resources, "hardware/avr/core.a");
+        FileUtils.writeByteArrayToFile(core, new byte[10]);
+        File dir = this.tempDir.newFolder("compilerCache");
+        CompilationCache cache = new CompilationCache(100, 100, dir, "2.8.0");
+        String fingerprint = cache.getToolchainFingerprint(resources.getPath());
+        assertEquals(fingerprint, cache.getToolchainFingerprint(resources.getPath()));
+        String key = CompilationCache.makeKey("mbot:" + fingerprint, "void loop() {}", null);
+        cache.put(key, new byte[4]);
+
+        FileUtils.writeByteArrayToFile(core, new byte[11]); // the crosscompiler is updated in place
+        String updated = "2.8.0:" + CompilationCache.fingerprintOf(resources);
+        assertNotEquals(fingerprint, updated);
+        assertNull(new CompilationCache(100, 100, dir, "2.8.0").get(CompilationCache.makeKey("mbot:" + updated, "void loop() {}", null)));
+
+        CompilationCache upgraded = new CompilationCache(100, 100, dir, "2.9.0");
+        String afterUpgrade = upgraded.getToolchainFingerprint(resources.getPath());
+        assertNotEquals(updated, afterUpgrade);
+        assertNull(upgraded.get(CompilationCache.makeKey("mbot:" + afterUpgrade, "void loop() {}", null)));
+        assertEquals(4, upgraded.get(key).length); // the old artifact is still there, but not found by the new keys
+        assertEquals("-", CompilationCache.fingerprintOf(new File(resources, "missing")));
+    }
+
+    @Test
+    public void testMemoryIsBoundedBySizeAndEvictsLeastRecentlyUsed() {
+        CompilationCache cache = new CompilationCache(10, 0, null);
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.get("a");
+        cache.put("c", new byte[4]);
+        assertNull(cache.get("b"));
+        assertEquals(4, cache.get("a").length);
+        assertEquals(4, cache.get("c").length);
+        cache.put("huge", new byte[11]);
+        assertNull(cache.get("huge"));
+        assertEquals(3, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testDiskCacheSurvivesRestart() throws Exception {
+        File dir = this.tempDir.newFolder("compilerCache");
+        CompilationCache cache = new CompilationCache(0, 100, dir);
+        byte[] artifact = "some hex".getBytes("UTF-8");
+        cache.put("a", artifact);
+        assertArrayEquals(artifact, cache.get("a"));
+
+        File stale = new File(dir, "artifact4711.tmp");
+        FileUtils.writeByteArrayToFile(stale, new byte[50]); // the server was killed while writing
+        CompilationCache restarted = new CompilationCache(200, 100, dir);
+        assertFalse(stale.exists());
+        assertArrayEquals(artifact, restarted.get("a"));
+        restarted.put("b", new byte[95]);
+        assertNull(restarted.get("x"));
+        assertEquals(1, dir.listFiles().length);
+        assertArrayEquals(artifact, restarted.get("a")); // still in memory
+    }
+}
@@ -0,0 +1,215 @@
+package de.fhg.iais.roberta.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.util.Clock;
+
+public class CompilerSchedulerTest {
+    private CompilerScheduler scheduler;
+
+    @After
+    public void teardown() {
+        this.scheduler.shutdown();
+    }
+
+    @Test
+    public void testOverloadIsRejected() throws Exception {
+        this.scheduler = makeScheduler("1", "1", "5000", "5000");
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        startCompilation("token1", running, finish, null);
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        startCompilation("token2", null, null, null); // fills the queue
+        waitForQueueDepth(1);
+        try {
+            this.scheduler.execute("test", "token3", () -> "never run");
+            fail("the queue is full, the compilation must be rejected");
+        } catch ( CompilerScheduler.OverloadException e ) {
+            // expected
+        }
+        finish.countDown();
+    }
+
+    @Test
+    public void testWaitingTooLongIsRejected() throws Exception {
+        this.scheduler = makeScheduler("1", "10", "200", "5000");
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        startCompilation("token1", running, finish, null);
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        Clock clock = Clock.start();
+        try {
+            this.scheduler.execute("test", "token2", () -> "never run");
+            fail("the compilation waited too long, it must be rejected");
+        } catch ( CompilerScheduler.OverloadException e ) {
+            assertTrue(clock.elapsedMsec() >= 190);
+        }
+        finish.countDown();
+        assertEquals(0, this.scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void testQueueIsFairByToken() throws Exception {
+        this.scheduler = makeScheduler("1", "10", "5000", "5000");
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        startCompilation("busy", running, finish, null);
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        // the greedy user enqueues three compilations before the modest user enqueues one
+        List<Thread> threads = new ArrayList<>();
+        threads.add(startCompilation("greedy", null, null, order));
+        waitForQueueDepth(1);
+        threads.add(startCompilation("greedy", null, null, order));
+        waitForQueueDepth(2);
+        threads.add(startCompilation("greedy", null, null, order));
+        waitForQueueDepth(3);
+        threads.add(startCompilation("modest", null, null, order));
+        waitForQueueDepth(4);
+        finish.countDown();
+        for ( Thread thread : threads ) {
+            thread.join(2000);
+        }
+        assertEquals(4, order.size());
+        assertTrue("modest must not wait for all greedy compilations", order.indexOf("modest") <= 1);
+    }
+
+    @Test
+    public void testPermitIsNotLostIfAGrantedCompilationIsInterrupted() throws Exception {
+        this.scheduler = makeScheduler("1", "10", "5000", "5000");
+        assertEquals("run", this.scheduler.execute("test", "token", () -> "run"));
+        Field lanes = CompilerScheduler.class.getDeclaredField("lanes");
+        lanes.setAccessible(true);
+        Object lane = ((Map<?, ?>) lanes.get(this.scheduler)).get("test");
+        Method acquire = lane.getClass().getDeclaredMethod("acquire", String.class);
+        Method release = lane.getClass().getDeclaredMethod("release");
+        acquire.setAccessible(true);
+        release.setAccessible(true);
+
+        acquire.invoke(lane, "busy");
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        Thread waiting = startCompilation("waiting", null, null, order);
+        waitForQueueDepth(1);
+        synchronized ( lane ) {
+            // the waiting compilation is interrupted and granted, before it gets the monitor back
+            waiting.interrupt();
+            for ( int i = 0; i < 200 && waiting.getState() != Thread.State.BLOCKED; i++ ) {
+                Thread.sleep(10);
+            }
+            assertEquals(Thread.State.BLOCKED, waiting.getState());
+            release.invoke(lane);
+        }
+        waiting.join(2000);
+        assertTrue("the interrupted compilation is not run", order.isEmpty());
+        assertEquals(0, this.scheduler.getStatistics().getJSONObject("test").getInt("running"));
+        assertEquals("run", this.scheduler.execute("test", "token", () -> "run"));
+    }
+
+    @Test
+    public void testRunawayProcessIsKilled() throws Exception {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        this.scheduler = makeScheduler("1", "10", "5000", "300");
+        Clock clock = Clock.start();
+        try {
+            this.scheduler.runProcess(new ProcessBuilder("sleep", "10"), new ByteArrayOutputStream());
+            fail("the process must be killed");
+        } catch ( CompilerScheduler.TimeoutException e ) {
+            assertTrue(clock.elapsedMsec() < 5000);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(0, this.scheduler.runProcess(new ProcessBuilder("echo", "hex"), output));
+        assertEquals("hex", output.toString("UTF-8").trim());
+    }
+
+    @Test
+    public void testProcessesStartedByARunawayProcessAreKilled() throws Exception {
+        Assume.assumeTrue(SystemUtils.IS_OS_LINUX);
+        this.scheduler = makeScheduler("1", "10", "5000", "300");
+        File pidFile = File.createTempFile("compiler", ".pid");
+        pidFile.deleteOnExit();
+        // like a build script: the compiler forked by the script inherits the output
+        ProcessBuilder script = new ProcessBuilder("sh", "-c", "sleep 30 & echo $! > " + pidFile.getAbsolutePath() + "; wait").redirectErrorStream(true);
+        Clock clock = Clock.start();
+        try {
+            this.scheduler.runProcess(script, new ByteArrayOutputStream());
+            fail("the process must be killed");
+        } catch ( CompilerScheduler.TimeoutException e ) {
+            assertTrue("the caller must not wait for the forked process", clock.elapsedMsec() < 5000);
+        }
+        File forked = new File("/proc/" + FileUtils.readFileToString(pidFile, StandardCharsets.UTF_8).trim());
+        for ( int i = 0; i < 50 && isRunning(forked); i++ ) {
+            Thread.sleep(100);
+        }
+        assertFalse("the forked process must be killed", isRunning(forked));
+        assertEquals(1, this.scheduler.getStatistics().getLong("killed"));
+    }
+
+    /**
+     * @return true, if the process exists and is no zombie
+     */
+    private static boolean isRunning(File proc) throws Exception {
+        File status = new File(proc, "status");
+        return status.exists() && !FileUtils.readFileToString(status, StandardCharsets.UTF_8).contains("zombie");
+    }
+
+    private static CompilerScheduler makeScheduler(String parallelism, String queueMaxsize, String queueMaxwait, String timeout) {
+        Properties properties = new Properties();
+        properties.put("compiler.scheduler.parallelism", parallelism);
+        properties.put("compiler.scheduler.queue.maxsize", queueMaxsize);
+        properties.put("compiler.scheduler.queue.maxwait", queueMaxwait);
+        properties.put("compiler.scheduler.timeout", timeout);
+        return new CompilerScheduler(properties);
+    }
+
+    private Thread startCompilation(String token, CountDownLatch running, CountDownLatch finish, List<String> order) {
+        Thread thread = new Thread(() -> {
+            try {
+                this.scheduler.execute("test", token, () -> {
+                    if ( order != null ) {
+                        order.add(token);
+                    }
+                    if ( running != null ) {
+                        running.countDown();
+                    }
+                    if ( finish != null ) {
+                        finish.await(5, TimeUnit.SECONDS);
+                    }
+                    return token;
+                });
+            } catch ( Exception e ) {
+                // rejected compilations are checked by the test itself
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void waitForQueueDepth(int queueDepth) throws InterruptedException {
+        for ( int i = 0; i < 200 && this.scheduler.getQueueDepth() < queueDepth; i++ ) {
+            Thread.sleep(10);
+        }
+        assertEquals(queueDepth, this.scheduler.getQueueDepth());
+    }
+}
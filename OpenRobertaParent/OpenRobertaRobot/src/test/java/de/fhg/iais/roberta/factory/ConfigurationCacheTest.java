@@ -0,0 +1,72 @@
+package de.fhg.iais.roberta.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import de.fhg.iais.roberta.components.Configuration;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+import de.fhg.iais.roberta.util.test.GenericHelper;
+
+public class ConfigurationCacheTest {
+    private final IRobotFactory factory = new GenericHelper().getRobotFactory();
+
+    @Test
+    public void testKeyDependsOnRobotAndText() {
+        String key = ConfigurationCache.makeKey("ev3lejos", configuration(5));
+        assertEquals(key, ConfigurationCache.makeKey("ev3lejos", configuration(5)));
+        assertNotEquals(key, ConfigurationCache.makeKey("ev3dev", configuration(5)));
+        assertNotEquals(key, ConfigurationCache.makeKey("ev3lejos", configuration(6)));
+    }
+
+    @Test
+    public void testParsedConfigurationIsSharedPerRobot() throws Exception {
+        ConfigurationCache cache = new ConfigurationCache(10);
+        Configuration lejos = cache.getConfiguration("ev3lejos", this.factory, configuration(5));
+        assertEquals("ev3lejos", lejos.getRobotName());
+        assertEquals(5.0, lejos.getWheelDiameterCM(), 0.01);
+        assertSame(lejos, cache.getConfiguration("ev3lejos", this.factory, configuration(5)));
+
+        Configuration dev = cache.getConfiguration("ev3dev", this.factory, configuration(5));
+        assertNotSame(lejos, dev);
+        assertEquals("ev3dev", dev.getRobotName());
+        assertEquals("ev3lejos", lejos.getRobotName());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testCacheIsBoundedAndEvictsLeastRecentlyUsed() throws Exception {
+        ConfigurationCache cache = new ConfigurationCache(2);
+        Configuration a = cache.getConfiguration("nxt", this.factory, configuration(1));
+        cache.getConfiguration("nxt", this.factory, configuration(2));
+        cache.getConfiguration("nxt", this.factory, configuration(1));
+        cache.getConfiguration("nxt", this.factory, configuration(3));
+        assertSame(a, cache.getConfiguration("nxt", this.factory, configuration(1)));
+        assertEquals(2, cache.getHits());
+        cache.getConfiguration("nxt", this.factory, configuration(2));
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testDisabledCacheParsesEachTime() throws Exception {
+        ConfigurationCache cache = new ConfigurationCache(0);
+        Configuration first = cache.getConfiguration("nxt", this.factory, configuration(1));
+        assertNotSame(first, cache.getConfiguration("nxt", this.factory, configuration(1)));
+    }
+
+    @Test(expected = DbcException.class)
+    public void testRobotNameOfASharedConfigurationCannotBeChanged() throws Exception {
+        Configuration configuration = new ConfigurationCache(10).getConfiguration("ev3lejos", this.factory, configuration(5));
+        configuration.setRobotName("ev3dev");
+    }
+
+    private static String configuration(int x) {
+        return "<block_set xmlns='http://de.fhg.iais.roberta.blockly' robottype='ev3' xmlversion='2.0'><instance x='"
+            + x
+            + "' y='1'><block type='robBrick_EV3-Brick' id='1'/></instance></block_set>";
+    }
+}
@@ -0,0 +1,152 @@
+package de.fhg.iais.roberta.factory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkspaceManagerTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testReleasedWorkspaceIsRemovedUnlessBusy() throws Exception {
+        File baseDir = this.tempDir.newFolder("userProjects");
+        WorkspaceManager idle = new WorkspaceManager(baseDir, 100000, 0, 1000000, 1000000, 1000);
+        File program = store(idle, "T0KEN1", "prog", 10);
+        idle.release("T0KEN1");
+        assertFalse(program.getParentFile().exists());
+        assertArrayEquals("the renamed workspace is deleted, too", new String[0], baseDir.list());
+
+        WorkspaceManager busy = new WorkspaceManager(baseDir, 100000, 100000, 1000000, 1000000, 1000);
+        program = store(busy, "T0KEN2", "prog", 10);
+        busy.release("T0KEN2");
+        busy.reclaim();
+        assertTrue("a compilation may be running", program.exists());
+        busy.release("unknown");
+        busy.release("");
+        assertTrue(baseDir.isDirectory());
+    }
+
+    @Test
+    public void testWorkspacesAreRemovedAfterTtlAndLeastRecentlyUsedFirst() throws Exception {
+        File baseDir = this.tempDir.newFolder("userProjects");
+        File leftover = new File(baseDir, "OLDTOKEN/prog/src/prog.nxc");
+        FileUtils.writeByteArrayToFile(leftover, new byte[10]);
+        assertTrue(leftover.getParentFile().getParentFile().getParentFile().setLastModified(System.currentTimeMillis() - 200000));
+
+        WorkspaceManager manager = new WorkspaceManager(baseDir, 100000, 0, 25, 1000000, 1000);
+        File first = store(manager, "FIRST", "prog", 10);
+        Thread.sleep(5);
+        File second = store(manager, "SECOND", "prog", 10);
+        Thread.sleep(5);
+        File third = store(manager, "THIRD", "prog", 10);
+        manager.reclaim();
+        assertFalse("found at startup, not used for the ttl", leftover.exists());
+        assertFalse("least recently used", first.exists());
+        assertTrue(second.exists());
+        assertTrue(third.exists());
+        assertEquals(20, manager.getDiskUsage());
+        JSONObject statistics = manager.getStatistics();
+        assertEquals(2, statistics.getInt("workspaces"));
+        assertEquals(1, statistics.getInt("removedByTtl"));
+        assertEquals(1, statistics.getInt("removedBySize"));
+    }
+
+    @Test
+    public void testQuotaRemovesOtherProgramsOfTheToken() throws Exception {
+        File baseDir = this.tempDir.newFolder("userProjects");
+        WorkspaceManager manager = new WorkspaceManager(baseDir, 100000, 0, 1000000, 25, 1000);
+        File old = store(manager, "TOKEN", "old", 10);
+        Thread.sleep(5);
+        File recent = store(manager, "TOKEN", "recent", 10);
+        Thread.sleep(5);
+        File current = store(manager, "TOKEN", "current", 10);
+        assertFalse(old.exists());
+        assertTrue(recent.exists());
+        assertTrue(current.exists());
+        assertEquals(20, manager.getDiskUsage());
+    }
+
+    @Test
+    public void testQuotaRemovesTheArtifactsInTheSharedTargetDirectory() throws Exception {
+        File baseDir = this.tempDir.newFolder("userProjects");
+        WorkspaceManager manager = new WorkspaceManager(baseDir, 100000, 0, 1000000, 25, 1000);
+        File oldJar = storeLejos(manager, "TOKEN", "old", 10);
+        Thread.sleep(5);
+        File recentJar = storeLejos(manager, "TOKEN", "recent", 10);
+        Thread.sleep(5);
+        File currentJar = storeLejos(manager, "TOKEN", "current", 10);
+        assertFalse(oldJar.exists());
+        assertFalse(new File(baseDir, "TOKEN/old").exists());
+        assertTrue(recentJar.exists());
+        assertTrue(currentJar.exists());
+        assertEquals(20, manager.getDiskUsage());
+    }
+
+    @Test
+    public void testWorkspacesOfAnUnfinishedRemovalAreDeletedAtStartup() throws Exception {
+        File baseDir = this.tempDir.newFolder("userProjects");
+        File unfinished = new File(baseDir, "TOKEN.12345.removed/prog/src/prog.nxc");
+        FileUtils.writeByteArrayToFile(unfinished, new byte[10]);
+        WorkspaceManager manager = new WorkspaceManager(baseDir, 100000, 0, 1000000, 1000000, 1000);
+        assertArrayEquals(new String[0], baseDir.list());
+        assertEquals(0, manager.getStatistics().getInt("workspaces"));
+    }
+
+    @Test
+    public void testDownloadedArtifactsAreKeptInMemory() throws Exception {
+        File baseDir = this.tempDir.newFolder("userProjects");
+        WorkspaceManager manager = new WorkspaceManager(baseDir, 100000, 0, 1000000, 1000000, 15);
+        File artifact = store(manager, "TOKEN", "prog", 10);
+        assertArrayEquals(new byte[10], manager.getArtifact("TOKEN", "prog", artifact));
+        assertTrue(artifact.delete());
+        assertArrayEquals("served from memory", new byte[10], manager.getArtifact("TOKEN", "prog", artifact));
+
+        manager.use("TOKEN", "prog");
+        manager.compiled("TOKEN", "prog", new byte[] {
+            1
+        });
+        assertArrayEquals("replaced by the compilation", new byte[] {
+            1
+        }, manager.getArtifact("TOKEN", "prog", artifact));
+        manager.use("TOKEN", "prog");
+        manager.compiled("TOKEN", "prog", new byte[16]);
+        assertNull("too large, read from disk", manager.getArtifact("TOKEN", "prog", artifact));
+
+        File other = store(manager, "TOKEN", "other", 10);
+        manager.getArtifact("TOKEN", "other", other);
+        manager.release("TOKEN");
+        assertEquals(0, manager.getStatistics().getInt("artifacts"));
+    }
+
+    /**
+     * the layout of leJOS: the source in the directory of the program, the jar in the directory target of the token
+     */
+    private File storeLejos(WorkspaceManager manager, String token, String programName, int size) throws Exception {
+        manager.use(token, programName);
+        File source = new File(this.tempDir.getRoot(), "userProjects/" + token + "/" + programName + "/src/" + programName + ".java");
+        FileUtils.writeByteArrayToFile(source, new byte[0]);
+        File jar = new File(this.tempDir.getRoot(), "userProjects/" + token + "/target/" + programName + ".jar");
+        FileUtils.writeByteArrayToFile(jar, new byte[size]);
+        manager.compiled(token, programName, new byte[size]);
+        return jar;
+    }
+
+    private File store(WorkspaceManager manager, String token, String programName, int size) throws Exception {
+        manager.use(token, programName);
+        File artifact = new File(this.tempDir.getRoot(), "userProjects/" + token + "/" + programName + "/target/" + programName);
+        FileUtils.writeByteArrayToFile(artifact, new byte[size]);
+        manager.compiled(token, programName, new byte[size]);
+        return artifact;
+    }
+}
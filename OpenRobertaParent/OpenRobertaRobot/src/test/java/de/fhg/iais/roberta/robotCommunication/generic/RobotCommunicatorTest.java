@@ -1,10 +1,13 @@
 package de.fhg.iais.roberta.robotCommunication.generic;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicationData;
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
+import de.fhg.iais.roberta.util.Key;
 import de.fhg.iais.roberta.util.dbc.DbcException;
 
 public class RobotCommunicatorTest {
@@ -37,4 +40,32 @@ public class RobotCommunicatorTest {
         robotCommunicator.addNewRegistration(goodRegistration1);
         Assert.assertFalse(robotCommunicator.addNewRegistration(goodRegistration2));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAsyncTokenApprovalAndRun() throws Exception {
+        RobotCommunicator robotCommunicator = new RobotCommunicator();
+        RobotCommunicationData registration = new RobotCommunicationData("ABCDEFGH", "ev3", "00:11:22:33:44:66", null, null, null, null, "lejos", null);
+        AtomicReference<Boolean> approved = new AtomicReference<>();
+        robotCommunicator.brickWantsTokenToBeApproved(registration, approved::set);
+        Assert.assertNull(approved.get());
+        Assert.assertEquals(Key.TOKEN_SET_SUCCESS, robotCommunicator.aTokenAgreementWasSent("ABCDEFGH", "ev3"));
+        Assert.assertEquals(Boolean.TRUE, approved.get());
+
+        AtomicReference<String> command = new AtomicReference<>();
+        Assert.assertTrue(robotCommunicator.brickWaitsForAServerPush("ABCDEFGH", "8.1", 0, command::set));
+        Assert.assertNull(command.get());
+        Assert.assertTrue(robotCommunicator.theRunButtonWasPressed("ABCDEFGH", "prog"));
+        Assert.assertEquals("download", command.get());
+    }
+
+    @Test
+    public void testAsyncPushIsTerminatedByDisconnect() throws Exception {
+        RobotCommunicator robotCommunicator = new RobotCommunicator();
+        RobotCommunicationData registration = new RobotCommunicationData("HGFEDCBA", "ev3", "00:11:22:33:44:77", null, null, null, null, "lejos", null);
+        AtomicReference<Boolean> approved = new AtomicReference<>();
+        robotCommunicator.brickWantsTokenToBeApproved(registration, approved::set);
+        robotCommunicator.disconnect("HGFEDCBA");
+        Assert.assertEquals(Boolean.FALSE, approved.get());
+        Assert.assertFalse(robotCommunicator.brickWaitsForAServerPush("HGFEDCBA", "8.1", 0, c -> Assert.fail("no state, no callback")));
+    }
+}
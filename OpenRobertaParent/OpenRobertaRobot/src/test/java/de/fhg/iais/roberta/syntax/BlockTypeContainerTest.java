@@ -0,0 +1,33 @@
+package de.fhg.iais.roberta.syntax;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.syntax.BlockTypeContainer.BlockType;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+import de.fhg.iais.roberta.util.test.GenericHelper;
+import de.fhg.iais.roberta.util.test.Helper;
+
+public class BlockTypeContainerTest {
+    Helper h = new GenericHelper();
+
+    @Test
+    public void testBlocklyNameIsFoundIgnoringCase() {
+        BlockType blockType = BlockTypeContainer.getByBlocklyName("robControls_start");
+        Assert.assertEquals("MAIN_TASK", blockType.getName());
+        Assert.assertSame(blockType, BlockTypeContainer.getByBlocklyName("robcontrols_start"));
+        Assert.assertSame(blockType, BlockTypeContainer.getByBlocklyName(" ROBCONTROLS_START "));
+        Assert.assertSame(blockType, BlockTypeContainer.getByBlocklyName("robControls_start_ardu"));
+    }
+
+    @Test
+    public void testDispatchIsPrecompiled() {
+        Assert.assertNotNull(BlockTypeContainer.getByBlocklyName("math_number").getJaxbToAst());
+        Assert.assertNull(BlockTypeContainer.getByName("LOCATION").getJaxbToAst());
+    }
+
+    @Test(expected = DbcException.class)
+    public void testUnknownBlocklyNameIsRejected() {
+        BlockTypeContainer.getByBlocklyName("no_such_block");
+    }
+}
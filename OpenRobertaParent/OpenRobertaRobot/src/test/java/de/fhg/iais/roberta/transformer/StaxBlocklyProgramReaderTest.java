@@ -0,0 +1,65 @@
+package de.fhg.iais.roberta.transformer;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.util.test.GenericHelper;
+import de.fhg.iais.roberta.util.test.Helper;
+
+public class StaxBlocklyProgramReaderTest {
+    private static final String PROGRAM_START = "<block_set xmlns='http://de.fhg.iais.roberta.blockly' robottype='ev3' xmlversion='2.0'><instance x='1' y='2'>";
+    private static final String PROGRAM_END = "</instance></block_set>";
+
+    private static final int COMPARED_PROGRAMS = 164;
+
+    Helper h = new GenericHelper();
+
+    /**
+     * all programs of the test resources are read by both readers. Both must either reject a program or generate the same AST. The robot plugins
+     * compare their own test programs, see e.g. the <code>StaxBlocklyProgramReaderTest</code> of RobotEV3
+     */
+    @Test
+    public void testStaxAndJaxbReadersAreEquivalent() throws Exception {
+        Path resources = Paths.get(StaxBlocklyProgramReaderTest.class.getResource("/ast").toURI()).getParent();
+        Assert.assertEquals(COMPARED_PROGRAMS, this.h.assertStaxAndJaxbReadersAreEquivalent(resources));
+    }
+
+    @Test
+    public void testValidProgramIsRead() throws Exception {
+        Jaxb2BlocklyProgramTransformer<Void> transformer =
+            StaxBlocklyProgramReader.generateProgramTransformer(
+                this.h.getRobotFactory(),
+                PROGRAM_START + "<block type='math_number' id='1'><field name='NUM'>42</field></block>" + PROGRAM_END);
+        Assert.assertEquals("ev3", transformer.getData().getRobotType());
+        Assert.assertEquals("[[Location [x=1, y=2], NumConst [42]]]", transformer.getTree().toString());
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void testMissingRequiredAttributeIsRejected() throws Exception {
+        StaxBlocklyProgramReader.generateProgramTransformer(
+            this.h.getRobotFactory(),
+            PROGRAM_START + "<block type='math_number'><field name='NUM'>42</field></block>" + PROGRAM_END);
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void testWrongOrderOfChildrenIsRejected() throws Exception {
+        StaxBlocklyProgramReader.generateProgramTransformer(
+            this.h.getRobotFactory(),
+            PROGRAM_START + "<block type='math_number' id='1'><field name='NUM'>42</field><mutation/></block>" + PROGRAM_END);
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void testExternalEntitiesAreRejected() throws Exception {
+        StaxBlocklyProgramReader.generateProgramTransformer(
+            this.h.getRobotFactory(),
+            "<!DOCTYPE block_set [<!ENTITY e SYSTEM 'file:///etc/passwd'>]>"
+                + PROGRAM_START
+                + "<block type='math_number' id='1'><field name='NUM'>&e;</field></block>"
+                + PROGRAM_END);
+    }
+}
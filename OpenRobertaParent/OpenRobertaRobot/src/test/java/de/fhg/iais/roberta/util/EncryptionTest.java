@@ -1,8 +1,11 @@
 package de.fhg.iais.roberta.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Properties;
+
 import org.junit.Test;
 
 public class EncryptionTest {
@@ -28,4 +31,42 @@ public class EncryptionTest {
         assertTrue(Encryption.isPasswordCorrect(h1, "Pid+Craesy+Minscha+Mucki+Garzi"));
         assertTrue(Encryption.isPasswordCorrect(h2, "Pid+Craesy+Minscha+Mucki+Garzi"));
     }
+
+    @Test
+    public void testTheFormat() throws Exception {
+        String h1 = Encryption.createHash("123456");
+        String[] parts = h1.split(":");
+        assertEquals(4, parts.length);
+        assertEquals("pbkdf2", parts[0]);
+        assertEquals(String.valueOf(Encryption.DEFAULT_ITERATIONS), parts[1]);
+        assertFalse(Encryption.isPasswordCorrect(h1, "1234567"));
+        assertFalse(Encryption.isHashOutdated(h1));
+    }
+
+    @Test
+    public void testTheLegacyHash() throws Exception {
+        // the hash of a base user in the format used before PBKDF2: one round of SHA-1
+        String legacy = "f17a0084220e822e:313c4eda282166163f78cd0b13da3b66f5ed6a0e";
+        assertTrue(Encryption.isHashOutdated(legacy));
+        assertFalse(Encryption.isPasswordCorrect(legacy, "wrong"));
+    }
+
+    @Test
+    public void testTheHashingExecutor() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("password.hash.iterations", "2000");
+        properties.setProperty("password.hash.threads", "2");
+        String costly = Encryption.createHash("Pid");
+        Encryption.configure(properties);
+        try {
+            String h1 = Encryption.createHash("Pid");
+            assertTrue(h1.startsWith("pbkdf2:2000:"));
+            assertTrue(Encryption.isPasswordCorrect(h1, "Pid"));
+            assertTrue(Encryption.isPasswordCorrect(costly, "Pid"));
+            assertFalse(Encryption.isHashOutdated(costly));
+        } finally {
+            properties.setProperty("password.hash.iterations", String.valueOf(Encryption.DEFAULT_ITERATIONS));
+            Encryption.configure(properties);
+        }
+    }
 }
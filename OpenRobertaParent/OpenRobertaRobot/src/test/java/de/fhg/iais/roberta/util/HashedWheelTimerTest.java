@@ -0,0 +1,66 @@
+package de.fhg.iais.roberta.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashedWheelTimerTest {
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setup() {
+        // a tiny wheel: timeouts need more than one round
+        this.timer = new HashedWheelTimer("TestTimer", 10, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @After
+    public void teardown() {
+        this.timer.stop();
+    }
+
+    @Test
+    public void testTimeoutFiresNotBeforeItsDeadline() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Clock clock = Clock.start();
+        HashedWheelTimer.Timeout timeout = this.timer.newTimeout(latch::countDown, 200, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(clock.elapsedMsec() >= 190);
+        assertTrue(timeout.isExpired());
+        assertEquals(0, this.timer.getPendingTimeouts());
+    }
+
+    @Test
+    public void testCancelledTimeoutDoesntFire() throws InterruptedException {
+        final AtomicInteger fired = new AtomicInteger(0);
+        HashedWheelTimer.Timeout timeout = this.timer.newTimeout(fired::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        assertEquals(1, this.timer.getPendingTimeouts());
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertEquals(0, this.timer.getPendingTimeouts());
+        Thread.sleep(200);
+        assertEquals(0, fired.get());
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    public void testManyTimeouts() throws InterruptedException {
+        final int numberOfTimeouts = 10000;
+        final CountDownLatch latch = new CountDownLatch(numberOfTimeouts / 2);
+        for ( int i = 0; i < numberOfTimeouts; i++ ) {
+            HashedWheelTimer.Timeout timeout = this.timer.newTimeout(latch::countDown, i % 300, TimeUnit.MILLISECONDS);
+            if ( i % 2 == 1 ) {
+                timeout.cancel();
+            }
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, this.timer.getPendingTimeouts());
+    }
+}
@@ -0,0 +1,112 @@
+package de.fhg.iais.roberta.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StaticFileCacheTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testFileIsMappedOnceAndAgainAfterAChange() throws Exception {
+        File file = this.tempDir.newFile("EV3Runtime.jar");
+        FileUtils.writeStringToFile(file, "runtime v1", StandardCharsets.UTF_8.displayName());
+        StaticFileCache.CachedFile cachedFile = StaticFileCache.get(file);
+        assertEquals("runtime v1", content(cachedFile));
+        assertSame(cachedFile, StaticFileCache.get(file));
+
+        FileUtils.writeStringToFile(file, "runtime v2", StandardCharsets.UTF_8.displayName());
+        assertTrue(file.setLastModified(cachedFile.lastModified + 10000));
+        StaticFileCache.CachedFile changedFile = StaticFileCache.get(file);
+        assertEquals("runtime v2", content(changedFile));
+        assertNotEquals(cachedFile.etag, changedFile.etag);
+    }
+
+    @Test
+    public void testEtagDependsOnTheContentOnly() throws Exception {
+        File file = this.tempDir.newFile("json.jar");
+        File copy = this.tempDir.newFile("copy.jar");
+        FileUtils.writeStringToFile(file, "{}", StandardCharsets.UTF_8.displayName());
+        FileUtils.writeStringToFile(copy, "{}", StandardCharsets.UTF_8.displayName());
+        assertEquals(StaticFileCache.get(file).etag, StaticFileCache.get(copy).etag);
+        assertEquals(32, StaticFileCache.get(file).etag.length());
+
+        assertTrue(file.delete());
+        assertNull(StaticFileCache.get(file));
+        assertNull(StaticFileCache.get(this.tempDir.getRoot()));
+    }
+
+    @Test
+    public void testFileIsServedWithItsEtagUnlessTheClientHasIt() throws Exception {
+        File file = this.tempDir.newFile("EV3Menu.jar");
+        FileUtils.writeStringToFile(file, "menu", StandardCharsets.UTF_8.displayName());
+        Request request = request(null);
+        Response response = StaticFileCache.serve(request, file, "EV3Menu.jar");
+        assertEquals(200, response.getStatus());
+        EntityTag etag = (EntityTag) response.getMetadata().getFirst("ETag");
+        assertEquals(StaticFileCache.get(file).etag, etag.getValue());
+        assertEquals(4, response.getMetadata().getFirst("Content-Length"));
+        assertEquals("attachment; filename=EV3Menu.jar", response.getMetadata().getFirst("Content-Disposition"));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(body);
+        assertEquals("menu", new String(body.toByteArray(), StandardCharsets.UTF_8));
+        verify(request).evaluatePreconditions(etag);
+
+        Response notModified = StaticFileCache.serve(request(etag.getValue()), file, "EV3Menu.jar");
+        assertEquals(304, notModified.getStatus());
+        assertNull(notModified.getEntity());
+        assertEquals(etag, notModified.getMetadata().getFirst("ETag"));
+    }
+
+    @Test
+    public void testMissingFileIsNotFound() throws Exception {
+        Request request = request(null);
+        Response response = StaticFileCache.serve(request, new File(this.tempDir.getRoot(), "missing.jar"), "missing.jar");
+        assertEquals(404, response.getStatus());
+        assertNull(response.getEntity());
+        verify(request, never()).evaluatePreconditions(any(EntityTag.class));
+    }
+
+    /**
+     * @param ifNoneMatch the ETag sent by the client; null, if none is sent
+     * @return a request, that evaluates <code>If-None-Match</code> as the container does
+     */
+    private static Request request(String ifNoneMatch) {
+        Request request = mock(Request.class);
+        when(request.evaluatePreconditions(any(EntityTag.class))).thenAnswer(invocation -> {
+            EntityTag etag = (EntityTag) invocation.getArguments()[0];
+            return etag.getValue().equals(ifNoneMatch) ? Response.notModified() : null;
+        });
+        return request;
+    }
+
+    private static String content(StaticFileCache.CachedFile cachedFile) {
+        ByteBuffer content = cachedFile.content.duplicate();
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
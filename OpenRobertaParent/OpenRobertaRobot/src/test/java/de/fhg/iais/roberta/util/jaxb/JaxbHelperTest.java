@@ -0,0 +1,135 @@
+package de.fhg.iais.roberta.util.jaxb;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import de.fhg.iais.roberta.blockly.generated.BlockSet;
+import de.fhg.iais.roberta.util.Clock;
+
+public class JaxbHelperTest {
+    private static final String INVALID_PROGRAM =
+        "<block_set xmlns='http://de.fhg.iais.roberta.blockly' robottype='ev3' xmlversion='2.0'><instance x='1' y='2'>"
+            + "<block type='math_number'><field name='NUM'>42</field></block></instance></block_set>";
+
+    @Test
+    public void testJaxbContextIsCached() {
+        Assert.assertSame(JaxbHelper.getJaxbContext(BlockSet.class), JaxbHelper.getJaxbContext(BlockSet.class));
+    }
+
+    @Test
+    public void testValidationCanBeSkippedForTrustedXml() throws Exception {
+        try {
+            JaxbHelper.xml2BlockSet(INVALID_PROGRAM);
+            Assert.fail("the block has no id, validation should fail");
+        } catch ( Exception e ) {
+            // expected
+        }
+        BlockSet blockSet = JaxbHelper.xml2BlockSet(INVALID_PROGRAM, false);
+        Assert.assertEquals("math_number", blockSet.getInstance().get(0).getBlock().get(0).getType());
+    }
+
+    @Test
+    public void testUnmarshallerIsReusableAfterAnError() throws Exception {
+        String xml = program();
+        String expected = JaxbHelper.blockSet2xml(JaxbHelper.xml2BlockSet(xml));
+        try {
+            JaxbHelper.xml2BlockSet("<block_set");
+            Assert.fail();
+        } catch ( Exception e ) {
+            // expected
+        }
+        Assert.assertEquals(expected, JaxbHelper.blockSet2xml(JaxbHelper.xml2BlockSet(xml)));
+        Assert.assertEquals(expected, JaxbHelper.blockSet2xml(JaxbHelper.xml2BlockSet(xml, false), false));
+    }
+
+    @Test
+    public void testConcurrentUseIsSafe() throws Exception {
+        String xml = program();
+        String expected = JaxbHelper.blockSet2xml(JaxbHelper.xml2BlockSet(xml));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for ( int i = 0; i < 64; i++ ) {
+                results.add(executor.submit(() -> JaxbHelper.blockSet2xml(JaxbHelper.xml2BlockSet(xml))));
+            }
+            for ( Future<String> result : results ) {
+                Assert.assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * compares the round trip XML -> BlockSet -> XML as it was done before (new context, unmarshaller and marshaller for each call) with the pooled
+     * unmarshaller and marshaller with and without validation
+     */
+    @Ignore("benchmark, run manually")
+    @Test
+    public void benchmark() throws Exception {
+        String xml = program();
+        Schema schema =
+            SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(
+                new StreamSource(JaxbHelper.class.getClassLoader().getResourceAsStream("blockly.xsd")));
+        Callable<String> before = () -> {
+            JAXBContext jaxbContext = JAXBContext.newInstance(BlockSet.class);
+            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            unmarshaller.setSchema(schema);
+            BlockSet blockSet = (BlockSet) unmarshaller.unmarshal(new InputSource(IOUtils.toInputStream(xml, StandardCharsets.UTF_8)));
+            Marshaller marshaller = jaxbContext.createMarshaller();
+            marshaller.setProperty("com.sun.xml.bind.xmlDeclaration", Boolean.FALSE);
+            marshaller.setSchema(schema);
+            StringWriter writer = new StringWriter();
+            marshaller.marshal(blockSet, writer);
+            return writer.toString();
+        };
+        Callable<String> pooled = () -> JaxbHelper.blockSet2xml(JaxbHelper.xml2BlockSet(xml));
+        Callable<String> trusted = () -> JaxbHelper.blockSet2xml(JaxbHelper.xml2BlockSet(xml, false), false);
+        int rounds = 500;
+        for ( int i = 0; i < 100; i++ ) {
+            // warm up the jit
+            before.call();
+            pooled.call();
+            trusted.call();
+        }
+        System.out.println(
+            "microsec per round trip. Before: "
+                + measure(before, rounds)
+                + ", pooled: "
+                + measure(pooled, rounds)
+                + ", pooled without validation: "
+                + measure(trusted, rounds));
+    }
+
+    private static long measure(Callable<String> roundTrip, int rounds) throws Exception {
+        Clock clock = Clock.start();
+        for ( int i = 0; i < rounds; i++ ) {
+            roundTrip.call();
+        }
+        return clock.elapsedMsec() * 1000 / rounds;
+    }
+
+    private static String program() throws Exception {
+        return IOUtils.toString(JaxbHelperTest.class.getResourceAsStream("/ast/control/repeat_stmt.xml"), StandardCharsets.UTF_8);
+    }
+}
@@ -1,13 +1,19 @@
 package de.fhg.iais.roberta.util.test;
 
 import java.util.ArrayList;
+import java.util.TreeMap;
 
+import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.components.Configuration;
+import de.fhg.iais.roberta.factory.AbstractCompilerWorkflow;
 import de.fhg.iais.roberta.factory.AbstractRobotFactory;
+import de.fhg.iais.roberta.factory.CompilationResult;
 import de.fhg.iais.roberta.factory.ICompilerWorkflow;
+import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.inter.mode.action.IActorPort;
 import de.fhg.iais.roberta.inter.mode.action.IBlinkMode;
 import de.fhg.iais.roberta.inter.mode.action.IBrickLedColor;
+import de.fhg.iais.roberta.inter.mode.action.ILanguage;
 import de.fhg.iais.roberta.inter.mode.action.ILightSensorActionMode;
 import de.fhg.iais.roberta.inter.mode.action.IShowPicture;
 import de.fhg.iais.roberta.inter.mode.general.IWorkingState;
@@ -18,6 +24,8 @@ import de.fhg.iais.roberta.inter.mode.sensor.ILightSensorMode;
 import de.fhg.iais.roberta.syntax.Phrase;
 import de.fhg.iais.roberta.syntax.check.program.RobotBrickCheckVisitor;
 import de.fhg.iais.roberta.syntax.check.program.RobotSimulationCheckVisitor;
+import de.fhg.iais.roberta.transformer.BlocklyProgramAndConfigTransformer;
+import de.fhg.iais.roberta.util.jaxb.JaxbHelper;
 
 public class GenericHelper extends Helper {
     public GenericHelper() {
@@ -76,8 +84,7 @@ public class GenericHelper extends Helper {
 
         @Override
         public ICompilerWorkflow getRobotCompilerWorkflow() {
-            // TODO Auto-generated method stub
-            return null;
+            return new TestCompilerWorkflow();
         }
 
         @Override
@@ -213,4 +220,27 @@ public class GenericHelper extends Helper {
         }
 
     }
+    /**
+     * generates no code. The configuration XML is parsed, but every configuration is an empty one, whose wheel diameter is the x coordinate of the first
+     * instance
+     */
+    private static class TestCompilerWorkflow extends AbstractCompilerWorkflow {
+        @Override
+        public String generateSourceCode(String token, String programName, BlocklyProgramAndConfigTransformer transformer, ILanguage language) {
+            return null;
+        }
+
+        @Override
+        public CompilationResult compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
+            return null;
+        }
+
+        @Override
+        public Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception {
+            BlockSet blockSet = JaxbHelper.configuration2BlockSet(factory, blocklyXml);
+            double wheelDiameter = Double.parseDouble(blockSet.getInstance().get(0).getX());
+            return new Configuration(new TreeMap<>(), new TreeMap<>(), wheelDiameter, 0) {
+            };
+        }
+    }
 }
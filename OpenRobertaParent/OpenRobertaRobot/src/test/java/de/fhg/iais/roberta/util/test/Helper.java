@@ -1,8 +1,14 @@
 package de.fhg.iais.roberta.util.test;
 
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -24,6 +30,7 @@ import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.syntax.Phrase;
 import de.fhg.iais.roberta.syntax.lang.blocksequence.Location;
 import de.fhg.iais.roberta.transformer.Jaxb2BlocklyProgramTransformer;
+import de.fhg.iais.roberta.transformer.StaxBlocklyProgramReader;
 import de.fhg.iais.roberta.util.RobertaProperties;
 import de.fhg.iais.roberta.util.Util1;
 import de.fhg.iais.roberta.util.jaxb.JaxbHelper;
@@ -201,6 +208,52 @@ public abstract class Helper {
         Assert.assertTrue(diff.toString(), diff.identical());
     }
 
+    /**
+     * read all programs found in a directory tree with the JAXB and the StAX reader (see {@link StaxBlocklyProgramReader}) using the factory of this helper.
+     * Asserts, that both readers reject the same programs and generate the same AST from the other programs.
+     *
+     * @param resources the root of the directory tree, e.g. the directory of the test resources
+     * @return the number of programs accepted by both readers, whose ASTs were compared. Programs rejected by both readers are not counted
+     * @throws Exception
+     */
+    public int assertStaxAndJaxbReadersAreEquivalent(Path resources) throws Exception {
+        List<Path> programs;
+        try (Stream<Path> files = Files.walk(resources)) {
+            programs = files.filter(p -> p.toString().endsWith(".xml")).sorted().collect(Collectors.toList());
+        }
+        int numberOfComparedPrograms = 0;
+        for ( Path program : programs ) {
+            String xml = new String(Files.readAllBytes(program), StandardCharsets.UTF_8);
+            if ( !xml.contains("<block_set") ) {
+                continue;
+            }
+            Jaxb2BlocklyProgramTransformer<Void> jaxb;
+            Jaxb2BlocklyProgramTransformer<Void> stax;
+            try {
+                jaxb = new Jaxb2BlocklyProgramTransformer<>(this.robotFactory);
+                jaxb.transform(JaxbHelper.xml2BlockSet(xml));
+            } catch ( Exception e ) {
+                jaxb = null;
+            }
+            try {
+                stax = StaxBlocklyProgramReader.generateProgramTransformer(this.robotFactory, xml);
+            } catch ( Exception e ) {
+                stax = null;
+            }
+            Assert.assertEquals("only one reader rejects " + program, jaxb == null, stax == null);
+            if ( jaxb != null ) {
+                Assert.assertEquals(program.toString(), jaxb.getTree().toString(), stax.getTree().toString());
+                Assert.assertEquals(program.toString(), jaxb.getData().getRobotType(), stax.getData().getRobotType());
+                Assert.assertEquals(program.toString(), jaxb.getData().getXmlVersion(), stax.getData().getXmlVersion());
+                Assert.assertEquals(program.toString(), jaxb.getData().getDescription(), stax.getData().getDescription());
+                Assert.assertEquals(program.toString(), jaxb.getData().getTags(), stax.getData().getTags());
+                Assert.assertEquals(program.toString(), jaxbToXml(astToJaxb(jaxb)), jaxbToXml(astToJaxb(stax)));
+                numberOfComparedPrograms++;
+            }
+        }
+        return numberOfComparedPrograms;
+    }
+
     public String jaxbToXml(BlockSet blockSet) throws JAXBException {
         JAXBContext jaxbContext = JAXBContext.newInstance(BlockSet.class);
         Marshaller m = jaxbContext.createMarshaller();
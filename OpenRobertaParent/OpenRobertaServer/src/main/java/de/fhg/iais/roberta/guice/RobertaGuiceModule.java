@@ -12,6 +12,8 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 
 import de.fhg.iais.roberta.factory.IRobotFactory;
+import de.fhg.iais.roberta.javaServer.restServices.all.AdminBackup;
+import de.fhg.iais.roberta.javaServer.restServices.all.Alive;
 import de.fhg.iais.roberta.javaServer.restServices.all.ClientAdmin;
 import de.fhg.iais.roberta.javaServer.restServices.all.ClientConfiguration;
 import de.fhg.iais.roberta.javaServer.restServices.all.ClientPing;
@@ -23,6 +25,7 @@ import de.fhg.iais.roberta.javaServer.restServices.robot.RobotCommand;
 import de.fhg.iais.roberta.javaServer.restServices.robot.RobotDownloadProgram;
 import de.fhg.iais.roberta.javaServer.restServices.robot.RobotSensorLogging;
 import de.fhg.iais.roberta.main.MailManagement;
+import de.fhg.iais.roberta.persistence.util.DatabaseBackup;
 import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
 
@@ -41,6 +44,8 @@ public class RobertaGuiceModule extends AbstractModule {
     @Override
     protected void configure() {
         // configure at least one JAX-RS resource or the server won't start.
+        bind(Alive.class);
+        bind(AdminBackup.class);
         bind(ClientAdmin.class);
         bind(ClientConfiguration.class);
         bind(ClientToolbox.class);
@@ -53,6 +58,7 @@ public class RobertaGuiceModule extends AbstractModule {
         bind(ClientPing.class);
 
         bind(SessionFactoryWrapper.class).in(Singleton.class);
+        bind(DatabaseBackup.class).in(Singleton.class);
         bind(RobotCommunicator.class).toInstance(this.robotCommunicator);
         bind(MailManagement.class).in(Singleton.class);
 
@@ -11,6 +11,7 @@ import com.sun.jersey.guice.JerseyServletModule;
 import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
 
 import de.fhg.iais.roberta.factory.IRobotFactory;
+import de.fhg.iais.roberta.javaServer.restServices.robot.AsyncRobotCommandServlet;
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
 
 public class RobertaGuiceServletConfig extends GuiceServletContextListener {
@@ -53,6 +54,10 @@ public class RobertaGuiceServletConfig extends GuiceServletContextListener {
                         + "de.fhg.iais.roberta.javaServer.restServices.robot.ev3,"
                         + "de.fhg.iais.roberta.javaServer.provider";
                 initParams.put("com.sun.jersey.config.property.packages", packages);
+                if ( Boolean.parseBoolean(RobertaGuiceServletConfig.this.openRobertaProperties.getProperty("robot.pushcmd.async")) ) {
+                    // robots waiting for a command must not freeze a thread. Jersey 1 can't suspend requests, thus a servlet is used
+                    serve("/pushcmd", "/pushcmd/*").with(AsyncRobotCommandServlet.class);
+                }
                 serve("/*").with(GuiceContainer.class, initParams);
             }
         };
@@ -0,0 +1,84 @@
+package de.fhg.iais.roberta.javaServer.restServices.all;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import de.fhg.iais.roberta.persistence.util.DatabaseBackup;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * admin service to backup the embedded database online. The request <code>{"token":"..."}</code> must contain the value of the property
+ * <code>database.backup.token</code>. If the property is empty, the service is disabled.<br>
+ * <br>
+ * <i>/admin/backup</i> submits a backup to the backup scheduler and returns immediately, <i>/admin/backup/status</i> is polled for the result. Both
+ * answer <code>{"rc":"ok","backup":{...}}</code> with the statistics of {@link DatabaseBackup#getStatistics()} (<code>running</code>,
+ * <code>lastBackup</code>, <code>lastError</code>, ...) or <code>{"rc":"error","message":"..."}</code>.
+ */
+@Path("/admin/backup")
+public class AdminBackup {
+    private static final Logger LOG = LoggerFactory.getLogger(AdminBackup.class);
+
+    private final DatabaseBackup databaseBackup;
+    private final String backupToken;
+
+    @Inject
+    public AdminBackup(DatabaseBackup databaseBackup, @Named("database.backup.token") String backupToken) {
+        this.databaseBackup = databaseBackup;
+        this.backupToken = backupToken == null ? "" : backupToken.trim();
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response backup(JSONObject request) throws Exception {
+        if ( !isValidToken(request) ) {
+            LOG.error("backup of the database requested with an invalid token");
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        JSONObject response = new JSONObject();
+        try {
+            this.databaseBackup.requestBackup();
+            response.put("rc", "ok").put("backup", this.databaseBackup.getStatistics());
+        } catch ( DbcException e ) {
+            response.put("rc", "error").put("message", e.getMessage());
+        }
+        return Response.ok(response).build();
+    }
+
+    @POST
+    @Path("/status")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response status(JSONObject request) throws Exception {
+        if ( !isValidToken(request) ) {
+            LOG.error("status of the database backup requested with an invalid token");
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        JSONObject response = new JSONObject();
+        response.put("rc", "ok").put("backup", this.databaseBackup.getStatistics());
+        return Response.ok(response).build();
+    }
+
+    private boolean isValidToken(JSONObject request) {
+        if ( this.backupToken.isEmpty() ) {
+            return false;
+        }
+        String token = request.optString("token", "");
+        // constant time comparison, the token is a secret
+        return MessageDigest.isEqual(this.backupToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+}
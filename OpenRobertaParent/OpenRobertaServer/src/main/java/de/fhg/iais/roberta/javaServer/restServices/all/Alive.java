@@ -12,6 +12,12 @@ import org.codehaus.jettison.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.inject.Inject;
+
+import de.fhg.iais.roberta.main.MailManagement;
+import de.fhg.iais.roberta.persistence.util.ConnectionHoldTimes;
+import de.fhg.iais.roberta.persistence.util.DatabaseBackup;
+import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
 import de.fhg.iais.roberta.util.AliveData;
 
 @Path("/alive")
@@ -20,10 +26,27 @@ public class Alive {
     private static final int EVERY_REQUEST = 10; // after arrival of EVERY_PING many /alive requests, a log entry is written
     private static final AtomicInteger aliveRequestCounterForLogging = new AtomicInteger(0);
 
+    private final SessionFactoryWrapper sessionFactoryWrapper;
+    private final DatabaseBackup databaseBackup;
+    private final MailManagement mailManagement;
+
+    @Inject
+    public Alive(SessionFactoryWrapper sessionFactoryWrapper, DatabaseBackup databaseBackup, MailManagement mailManagement) {
+        this.sessionFactoryWrapper = sessionFactoryWrapper;
+        this.databaseBackup = databaseBackup;
+        this.mailManagement = mailManagement;
+    }
+
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Response tellTheState() throws Exception {
         JSONObject answer = AliveData.getAndUpdateAliveState();
+        answer.put("referenceDataCache", this.sessionFactoryWrapper.getReferenceDataCache().getStatistics());
+        answer.put("connectionHoldTimes", ConnectionHoldTimes.getStatistics());
+        answer.put("connectionPool", this.sessionFactoryWrapper.getConnectionPoolStatistics());
+        answer.put("programViewCounter", this.sessionFactoryWrapper.getProgramViewCounter().getStatistics());
+        answer.put("databaseBackup", this.databaseBackup.getStatistics());
+        answer.put("mailOutbox", this.mailManagement.getOutbox().getStatistics());
         int counter = aliveRequestCounterForLogging.incrementAndGet();
         boolean logAlive = counter % EVERY_REQUEST == 0;
         if ( logAlive ) {
@@ -19,6 +19,7 @@ import com.google.inject.Inject;
 
 import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.javaServer.provider.OraData;
+import de.fhg.iais.roberta.persistence.util.ConnectionHoldTimes;
 import de.fhg.iais.roberta.persistence.util.DbSession;
 import de.fhg.iais.roberta.persistence.util.HttpSessionState;
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
@@ -61,9 +62,10 @@ public class ClientAdmin {
         MDC.put("robotName", String.valueOf(httpSessionState.getRobotName()));
         new ClientLogger().log(LOG, fullRequest);
         JSONObject response = new JSONObject();
+        String cmd = "?";
         try {
             JSONObject request = fullRequest.getJSONObject("data");
-            String cmd = request.getString("cmd");
+            cmd = request.getString("cmd");
             LOG.info("command is: " + cmd);
             response.put("cmd", cmd);
             if ( cmd.equals("init") ) {
@@ -188,6 +190,7 @@ public class ClientAdmin {
             } else {
                 LOG.error("Invalid command: " + cmd);
                 Util.addErrorInfo(response, Key.COMMAND_INVALID);
+                cmd = ConnectionHoldTimes.INVALID_COMMAND;
             }
             dbSession.commit();
         } catch ( Exception e ) {
@@ -198,6 +201,7 @@ public class ClientAdmin {
         } finally {
             if ( dbSession != null ) {
                 dbSession.close();
+                ConnectionHoldTimes.remember("admin/" + cmd, dbSession);
             }
         }
         Util.addFrontendInfo(response, httpSessionState, this.brickCommunicator);
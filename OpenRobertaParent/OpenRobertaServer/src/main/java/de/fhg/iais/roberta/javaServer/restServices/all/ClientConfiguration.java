@@ -19,6 +19,7 @@ import de.fhg.iais.roberta.javaServer.provider.OraData;
 import de.fhg.iais.roberta.persistence.ConfigurationProcessor;
 import de.fhg.iais.roberta.persistence.UserProcessor;
 import de.fhg.iais.roberta.persistence.bo.User;
+import de.fhg.iais.roberta.persistence.util.ConnectionHoldTimes;
 import de.fhg.iais.roberta.persistence.util.DbSession;
 import de.fhg.iais.roberta.persistence.util.HttpSessionState;
 import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
@@ -59,9 +60,10 @@ public class ClientConfiguration {
                 : httpSessionState.getRobotName();
         UserProcessor up = new UserProcessor(dbSession, httpSessionState);
         JSONObject response = new JSONObject();
+        String cmd = "?";
         try {
             JSONObject request = fullRequest.getJSONObject("data");
-            String cmd = request.getString("cmd");
+            cmd = request.getString("cmd");
             ClientConfiguration.LOG.info("command is: " + cmd);
             response.put("cmd", cmd);
             ConfigurationProcessor cp = new ConfigurationProcessor(dbSession, httpSessionState);
@@ -103,6 +105,7 @@ public class ClientConfiguration {
             } else {
                 ClientConfiguration.LOG.error("Invalid command: " + cmd);
                 Util.addErrorInfo(response, Key.COMMAND_INVALID);
+                cmd = ConnectionHoldTimes.INVALID_COMMAND;
             }
             dbSession.commit();
         } catch ( Exception e ) {
@@ -113,6 +116,7 @@ public class ClientConfiguration {
         } finally {
             if ( dbSession != null ) {
                 dbSession.close();
+                ConnectionHoldTimes.remember("conf/" + cmd, dbSession);
             }
         }
         Util.addFrontendInfo(response, httpSessionState, this.brickCommunicator);
@@ -1,6 +1,5 @@
 package de.fhg.iais.roberta.javaServer.restServices.all;
 
-import java.io.StringWriter;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 
@@ -10,9 +9,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
 import javax.xml.bind.UnmarshalException;
 
 import org.codehaus.jettison.json.JSONArray;
@@ -27,6 +24,7 @@ import com.google.inject.Inject;
 import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.blockly.generated.Export;
 import de.fhg.iais.roberta.blockly.generated.Instance;
+import de.fhg.iais.roberta.factory.CompilationResult;
 import de.fhg.iais.roberta.factory.ICompilerWorkflow;
 import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.inter.mode.action.ILanguage;
@@ -42,6 +40,7 @@ import de.fhg.iais.roberta.persistence.UserProcessor;
 import de.fhg.iais.roberta.persistence.bo.Program;
 import de.fhg.iais.roberta.persistence.bo.User;
 import de.fhg.iais.roberta.persistence.dao.ConfigurationDao;
+import de.fhg.iais.roberta.persistence.util.ConnectionHoldTimes;
 import de.fhg.iais.roberta.persistence.util.DbSession;
 import de.fhg.iais.roberta.persistence.util.HttpSessionState;
 import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
@@ -94,9 +93,10 @@ public class ClientProgram {
                 : httpSessionState.getRobotName();
         JSONObject response = new JSONObject();
         DbSession dbSession = this.sessionFactoryWrapper.getSession();
+        String cmd = "?";
         try {
             JSONObject request = fullRequest.getJSONObject("data");
-            String cmd = request.getString("cmd");
+            cmd = request.getString("cmd");
             ClientProgram.LOG.info("command is: " + cmd + ", userId is " + userId);
             response.put("cmd", cmd);
             ProgramProcessor pp = new ProgramProcessor(dbSession, httpSessionState);
@@ -143,10 +143,12 @@ public class ClientProgram {
                 } else if ( configurationText == null ) {
                     configurationText = robotFactory.getConfigurationDefault();
                 }
+                // the database is not needed for code generation and compilation. Don't hold a connection while the compiler is running
+                dbSession.commitAndReleaseConnection();
 
                 AbstractProcessor forMessages = new DummyProcessor();
-                BlocklyProgramAndConfigTransformer transformer = BlocklyProgramAndConfigTransformer.transform(robotFactory, programText, configurationText);
-                transformer.getBrickConfiguration().setRobotName(httpSessionState.getRobotName());
+                BlocklyProgramAndConfigTransformer transformer =
+                    BlocklyProgramAndConfigTransformer.transform(robotFactory, httpSessionState.getRobotName(), programText, configurationText);
                 if ( transformer.getErrorMessage() != null ) {
                     forMessages.setError(transformer.getErrorMessage());
                 } else {
@@ -343,8 +345,14 @@ public class ClientProgram {
                 }
 
             } else if ( cmd.equals("loadGallery") ) {
-                final JSONArray programInfo = pp.getProgramGallery(userId);
+                // paging, sorting and filtering by robot are optional. Without parameters the whole gallery is returned
+                final String robotFilter = request.optString("robot", null);
+                final String sortBy = request.optString("sortBy", "date");
+                final int offset = request.optInt("offset", 0);
+                final int limit = request.optInt("limit", 0);
+                final JSONArray programInfo = pp.getProgramGallery(userId, robotFilter, sortBy, offset, limit);
                 response.put("programNames", programInfo);
+                response.put("total", limit == 0 && offset == 0 ? programInfo.length() : pp.getProgramGalleryCount(robotFilter));
                 Util.addResultInfo(response, pp);
 
             } else if ( cmd.equals("loadProgramEntity") ) {
@@ -395,18 +403,20 @@ public class ClientProgram {
                 } else if ( configurationText == null ) {
                     configurationText = robotFactory.getConfigurationDefault();
                 }
+                // the database is not needed for code generation and compilation. Don't hold a connection while the compiler is running
+                dbSession.commitAndReleaseConnection();
 
                 BlocklyProgramAndConfigTransformer programAndConfigTransformer =
-                    BlocklyProgramAndConfigTransformer.transform(robotFactory, programText, configurationText);
-                programAndConfigTransformer.getBrickConfiguration().setRobotName(httpSessionState.getRobotName());
+                    BlocklyProgramAndConfigTransformer.transform(robotFactory, httpSessionState.getRobotName(), programText, configurationText);
                 Key messageKey = programAndConfigTransformer.getErrorMessage();
                 if ( messageKey == null ) {
                     RobotBrickCheckVisitor programChecker = robotFactory.getRobotProgramCheckVisitor(programAndConfigTransformer.getBrickConfiguration());
                     messageKey = programConfigurationCompatibilityCheck(response, programAndConfigTransformer, programChecker);
                     if ( messageKey == null ) {
                         ClientProgram.LOG.info("compiler workflow started for program {}", programName);
-                        messageKey =
+                        CompilationResult compilationResult =
                             robotFactory.getRobotCompilerWorkflow().generateSourceAndCompile(token, programName, programAndConfigTransformer, language);
+                        messageKey = compilationResult.getKey();
                         if ( messageKey == Key.COMPILERWORKFLOW_SUCCESS && token != null && !token.equals(ClientAdmin.NO_CONNECT) ) {
                             wasRobotWaiting = this.brickCommunicator.theRunButtonWasPressed(token, programName);
                         } else {
@@ -421,13 +431,14 @@ public class ClientProgram {
 
             } else if ( cmd.equals("runN") ) {
                 boolean wasRobotWaiting = false;
+                dbSession.commitAndReleaseConnection();
 
                 String token = httpSessionState.getToken();
                 String programName = request.getString("name");
                 String programText = request.optString("programText");
                 ILanguage language = Language.findByAbbr(request.optString("language"));
                 LOG.info("compilation of native source started for program {}", programName);
-                Key messageKey = robotFactory.getRobotCompilerWorkflow().compileSourceCode(token, programName, programText, language, null);
+                Key messageKey = robotFactory.getRobotCompilerWorkflow().compileSourceCode(token, programName, programText, language, null).getKey();
                 if ( messageKey == Key.COMPILERWORKFLOW_SUCCESS && token != null && !token.equals(ClientAdmin.NO_CONNECT) ) {
                     wasRobotWaiting = this.brickCommunicator.theRunButtonWasPressed(token, programName);
                 } else {
@@ -450,18 +461,21 @@ public class ClientProgram {
                 } else if ( configurationText == null ) {
                     configurationText = robotFactory.getConfigurationDefault();
                 }
+                // the database is not needed for code generation and compilation. Don't hold a connection while the compiler is running
+                dbSession.commitAndReleaseConnection();
 
                 BlocklyProgramAndConfigTransformer programAndConfigTransformer =
-                    BlocklyProgramAndConfigTransformer.transform(robotFactory, programText, configurationText);
-                programAndConfigTransformer.getBrickConfiguration().setRobotName(httpSessionState.getRobotName());
+                    BlocklyProgramAndConfigTransformer.transform(robotFactory, httpSessionState.getRobotName(), programText, configurationText);
                 messageKey = programAndConfigTransformer.getErrorMessage();
                 if ( messageKey == null ) {
                     ClientProgram.LOG.info("compiler workflow started for program {}", programName);
 
                     ICompilerWorkflow robotCompilerWorkflow = robotFactory.getRobotCompilerWorkflow();
-                    messageKey = robotCompilerWorkflow.generateSourceAndCompile(token, programName, programAndConfigTransformer, language);
-                    if ( messageKey == Key.COMPILERWORKFLOW_SUCCESS ) {
-                        response.put("compiledCode", robotCompilerWorkflow.getCompiledCode());
+                    CompilationResult compilationResult =
+                        robotCompilerWorkflow.generateSourceAndCompile(token, programName, programAndConfigTransformer, language);
+                    messageKey = compilationResult.getKey();
+                    if ( compilationResult.isSuccess() ) {
+                        response.put("compiledCode", compilationResult.getCompiledCode());
                         response.put("rc", "ok");
                     } else {
                         if ( messageKey != null ) {
@@ -487,9 +501,11 @@ public class ClientProgram {
                 } else if ( configurationText == null ) {
                     configurationText = robotFactory.getConfigurationDefault();
                 }
+                // the database is not needed for code generation and compilation. Don't hold a connection while the compiler is running
+                dbSession.commitAndReleaseConnection();
 
-                BlocklyProgramAndConfigTransformer transformer = BlocklyProgramAndConfigTransformer.transform(robotFactory, programText, configurationText);
-                transformer.getBrickConfiguration().setRobotName(httpSessionState.getRobotName());
+                BlocklyProgramAndConfigTransformer transformer =
+                    BlocklyProgramAndConfigTransformer.transform(robotFactory, httpSessionState.getRobotName(), programText, configurationText);
                 Key messageKey = transformer.getErrorMessage();
                 if ( messageKey == null ) {
                     RobotSimulationCheckVisitor programChecker = robotFactory.getSimProgramCheckVisitor(transformer.getBrickConfiguration());
@@ -510,8 +526,10 @@ public class ClientProgram {
             } else {
                 ClientProgram.LOG.error("Invalid command: " + cmd);
                 Util.addErrorInfo(response, Key.COMMAND_INVALID);
+                cmd = ConnectionHoldTimes.INVALID_COMMAND;
             }
-            dbSession.commit();
+            // don't start a new transaction: the session is closed below. After a release without further database access nothing is left to commit
+            dbSession.commitAndReleaseConnection();
         } catch ( final Exception e ) {
             dbSession.rollback();
             String errorTicketId = Util1.getErrorTicketId();
@@ -520,6 +538,7 @@ public class ClientProgram {
         } finally {
             if ( dbSession != null ) {
                 dbSession.close();
+                ConnectionHoldTimes.remember("program/" + cmd, dbSession);
             }
         }
         Util.addFrontendInfo(response, httpSessionState, this.brickCommunicator);
@@ -549,12 +568,7 @@ public class ClientProgram {
     }
 
     private static String jaxbToXml(BlockSet blockSet) throws JAXBException {
-        JAXBContext jaxbContext = JAXBContext.newInstance(BlockSet.class);
-        Marshaller m = jaxbContext.createMarshaller();
-        m.setProperty(Marshaller.JAXB_FRAGMENT, true);
-        StringWriter writer = new StringWriter();
-        m.marshal(blockSet, writer);
-        return writer.toString();
+        return JaxbHelper.blockSet2xml(blockSet, false);
     }
 
     private static BlockSet astToJaxb(ArrayList<ArrayList<Phrase<Void>>> astProgram, Jaxb2AstTransformerData<Void> data) {
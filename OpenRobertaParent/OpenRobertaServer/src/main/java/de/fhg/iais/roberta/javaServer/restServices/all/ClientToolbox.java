@@ -19,6 +19,7 @@ import de.fhg.iais.roberta.persistence.ToolboxProcessor;
 import de.fhg.iais.roberta.persistence.UserProcessor;
 import de.fhg.iais.roberta.persistence.bo.Toolbox;
 import de.fhg.iais.roberta.persistence.bo.User;
+import de.fhg.iais.roberta.persistence.util.ConnectionHoldTimes;
 import de.fhg.iais.roberta.persistence.util.DbSession;
 import de.fhg.iais.roberta.persistence.util.HttpSessionState;
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
@@ -49,9 +50,10 @@ public class ClientToolbox {
         MDC.put("robotName", String.valueOf(httpSessionState.getRobotName()));
         new ClientLogger().log(LOG, fullRequest);
         JSONObject response = new JSONObject();
+        String cmd = "?";
         try {
             JSONObject request = fullRequest.getJSONObject("data");
-            String cmd = request.getString("cmd");
+            cmd = request.getString("cmd");
             LOG.info("command is: " + cmd);
             response.put("cmd", cmd);
             ToolboxProcessor tp = new ToolboxProcessor(dbSession, httpSessionState);
@@ -74,6 +76,7 @@ public class ClientToolbox {
             } else {
                 LOG.error("Invalid command: " + cmd);
                 Util.addErrorInfo(response, Key.COMMAND_INVALID);
+                cmd = ConnectionHoldTimes.INVALID_COMMAND;
             }
             dbSession.commit();
         } catch ( Exception e ) {
@@ -84,6 +87,7 @@ public class ClientToolbox {
         } finally {
             if ( dbSession != null ) {
                 dbSession.close();
+                ConnectionHoldTimes.remember("toolbox/" + cmd, dbSession);
             }
         }
         Util.addFrontendInfo(response, httpSessionState, this.brickCommunicator);
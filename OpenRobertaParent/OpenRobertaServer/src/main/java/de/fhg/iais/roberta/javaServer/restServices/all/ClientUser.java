@@ -28,6 +28,7 @@ import de.fhg.iais.roberta.persistence.UserProcessor;
 import de.fhg.iais.roberta.persistence.bo.LostPassword;
 import de.fhg.iais.roberta.persistence.bo.PendingEmailConfirmations;
 import de.fhg.iais.roberta.persistence.bo.User;
+import de.fhg.iais.roberta.persistence.util.ConnectionHoldTimes;
 import de.fhg.iais.roberta.persistence.util.DbSession;
 import de.fhg.iais.roberta.persistence.util.HttpSessionState;
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
@@ -68,9 +69,10 @@ public class ClientUser {
         new ClientLogger().log(ClientUser.LOG, fullRequest);
         final int userId = httpSessionState.getUserId();
         JSONObject response = new JSONObject();
+        String cmd = "?";
         try {
             JSONObject request = fullRequest.getJSONObject("data");
-            String cmd = request.getString("cmd");
+            cmd = request.getString("cmd");
             ClientUser.LOG.info("command is: " + cmd);
             response.put("cmd", cmd);
             UserProcessor up = new UserProcessor(dbSession, httpSessionState);
@@ -256,6 +258,7 @@ public class ClientUser {
             } else {
                 ClientUser.LOG.error("Invalid command: " + cmd);
                 Util.addErrorInfo(response, Key.COMMAND_INVALID);
+                cmd = ConnectionHoldTimes.INVALID_COMMAND;
             }
             dbSession.commit();
         } catch ( Exception e ) {
@@ -266,6 +269,7 @@ public class ClientUser {
         } finally {
             if ( dbSession != null ) {
                 dbSession.close();
+                ConnectionHoldTimes.remember("user/" + cmd, dbSession);
             }
         }
         Util.addFrontendInfo(response, httpSessionState, this.brickCommunicator);
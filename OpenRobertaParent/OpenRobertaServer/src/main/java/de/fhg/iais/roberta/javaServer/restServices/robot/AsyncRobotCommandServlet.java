@@ -0,0 +1,146 @@
+package de.fhg.iais.roberta.javaServer.restServices.robot;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * the async variant of the <b>/pushcmd</b> REST service {@link RobotCommand}. Jersey 1 cannot suspend requests, thus this servlet uses servlet 3.0 async
+ * support directly: the request is suspended and resumed when the user approves a token, presses the run button or a timer expires. No thread is frozen
+ * while a robot waits.<br>
+ * <br>
+ * Activated by the property <code>robot.pushcmd.async</code>, see {@link de.fhg.iais.roberta.guice.RobertaGuiceServletConfig}
+ */
+@Singleton
+public class AsyncRobotCommandServlet extends HttpServlet {
+    private static final long serialVersionUID = 6457385046587354918L;
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncRobotCommandServlet.class);
+
+    // the timers of the RobotCommunicator resume every suspended request. The container timeout is a backstop only, it is longer than the longest timer
+    // (the 5 minutes a user has to approve a token)
+    static final long ASYNC_TIMEOUT_MSEC = 6L * 60L * 1000L;
+
+    private final RobotCommand robotCommand;
+
+    @Inject
+    public AsyncRobotCommandServlet(RobotCommand robotCommand) {
+        this.robotCommand = robotCommand;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        JSONObject requestEntity;
+        try {
+            requestEntity = new JSONObject(IOUtils.toString(request.getReader()));
+        } catch ( JSONException e ) {
+            LOG.error("Robot request aborted. Robot didn't send valid JSON");
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        final AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(ASYNC_TIMEOUT_MSEC);
+        final SuspendedRobotRequest suspendedRequest = new SuspendedRobotRequest(asyncContext);
+        asyncContext.addListener(suspendedRequest);
+        try {
+            suspendedRequest.abandonAction = this.robotCommand.handleAsync(requestEntity, suspendedRequest::resume);
+        } catch ( JSONException e ) {
+            LOG.error("Robot request aborted. Robot uses a wrong JSON: " + requestEntity);
+            suspendedRequest.resume(Response.serverError().build());
+        }
+    }
+
+    /**
+     * a suspended request of a robot. It is resumed exactly once: either by the {@link RobotCommand} or, if the connection broke or the container timed the
+     * request out, by this listener. In the latter case the pending request is removed from the {@link de.fhg.iais.roberta.robotCommunication.RobotCommunicator}
+     */
+    private static final class SuspendedRobotRequest implements AsyncListener {
+        private final AsyncContext asyncContext;
+        private final AtomicBoolean isResumed = new AtomicBoolean(false);
+        private volatile Runnable abandonAction = () -> {
+        };
+
+        private SuspendedRobotRequest(AsyncContext asyncContext) {
+            this.asyncContext = asyncContext;
+        }
+
+        /**
+         * called by the {@link RobotCommand}, often from the timer thread of the RobotCommunicator or from the request thread of a user. The response is
+         * written by a thread of the container, the calling thread never blocks on I/O
+         */
+        void resume(Response robotResponse) {
+            if ( this.isResumed.compareAndSet(false, true) ) {
+                try {
+                    this.asyncContext.start(() -> send(robotResponse));
+                } catch ( IllegalStateException e ) {
+                    LOG.info("response to a robot could not be sent. The request is completed already: " + e.getMessage());
+                }
+            }
+        }
+
+        private void send(Response robotResponse) {
+            try {
+                HttpServletResponse response = (HttpServletResponse) this.asyncContext.getResponse();
+                response.setStatus(robotResponse.getStatus());
+                Object entity = robotResponse.getEntity();
+                if ( entity != null ) {
+                    response.setContentType(MediaType.APPLICATION_JSON);
+                    response.setCharacterEncoding("UTF-8");
+                    response.getWriter().write(entity.toString());
+                }
+                this.asyncContext.complete();
+            } catch ( IOException | IllegalStateException e ) {
+                LOG.info("response to a robot could not be sent. The robot has probably closed the connection: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            LOG.error("Robot request timed out by the container. The pending request is removed");
+            this.abandonAction.run();
+            if ( this.isResumed.compareAndSet(false, true) ) {
+                send(Response.serverError().build());
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            LOG.info("Robot request failed. The robot has probably closed the connection. The pending request is removed");
+            this.abandonAction.run();
+            if ( this.isResumed.compareAndSet(false, true) ) {
+                try {
+                    this.asyncContext.complete();
+                } catch ( IllegalStateException e ) {
+                    // the container completed the request already
+                }
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            // nothing to do
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+            // nothing to do
+        }
+    }
+}
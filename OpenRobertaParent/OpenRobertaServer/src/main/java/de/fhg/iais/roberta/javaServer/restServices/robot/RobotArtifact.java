@@ -0,0 +1,60 @@
+package de.fhg.iais.roberta.javaServer.restServices.robot;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * the artifacts downloaded by the robots, see {@link RobotDownloadProgram}. Maps the firmware name, that a robot sends when it registers, to the
+ * file in the workspace of its token. To support a new robot system, add a constant here.
+ */
+public enum RobotArtifact {
+    LEJOS(false, "target", ".jar", "ev3lejosv1", "lejos"), //
+    PYTHON(true, "src", ".py", "Nao", "ev3dev"), //
+    NXT(true, "target", ".rxe", "NXT"), //
+    ARDUINO(true, "target", ".ino.hex", "Arduino");
+
+    private static final Map<String, RobotArtifact> BY_FIRMWARE_NAME = new HashMap<>();
+
+    static {
+        for ( RobotArtifact artifact : values() ) {
+            for ( String firmwareName : artifact.firmwareNames ) {
+                BY_FIRMWARE_NAME.put(firmwareName, artifact);
+            }
+        }
+    }
+
+    private final boolean isInProgramDir;
+    private final String dir;
+    private final String extension;
+    private final String[] firmwareNames;
+
+    private RobotArtifact(boolean isInProgramDir, String dir, String extension, String... firmwareNames) {
+        this.isInProgramDir = isInProgramDir;
+        this.dir = dir;
+        this.extension = extension;
+        this.firmwareNames = firmwareNames;
+    }
+
+    /**
+     * @param firmwareName the firmware name sent by the robot
+     * @return the artifact of the robot; null, if the firmware is not supported
+     */
+    public static RobotArtifact forFirmware(String firmwareName) {
+        return BY_FIRMWARE_NAME.get(firmwareName);
+    }
+
+    public String getFileName(String programName) {
+        return programName + this.extension;
+    }
+
+    /**
+     * @param pathToCrosscompilerBaseDir the directory of the workspaces
+     * @return the file of the artifact in the workspace of the token or in the directory of the program (all but leJOS)
+     */
+    public File getFile(String pathToCrosscompilerBaseDir, String token, String programName) {
+        String workspace = pathToCrosscompilerBaseDir + token + "/";
+        String parentDir = this.isInProgramDir ? workspace + programName + "/" : workspace;
+        return new File(parentDir + this.dir, getFileName(programName));
+    }
+}
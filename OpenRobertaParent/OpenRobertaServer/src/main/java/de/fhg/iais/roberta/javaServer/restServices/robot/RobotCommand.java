@@ -1,6 +1,7 @@
 package de.fhg.iais.roberta.javaServer.restServices.robot;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
@@ -33,6 +34,9 @@ public class RobotCommand {
     private static final String CMD_REPEAT = "repeat";
     private static final String CMD_ABORT = "abort";
 
+    private static final Runnable NOTHING_PENDING = () -> {
+    };
+
     private final RobotCommunicator brickCommunicator;
 
     @Inject
@@ -44,6 +48,25 @@ public class RobotCommand {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response handle(JSONObject requestEntity) throws JSONException, InterruptedException {
+        final Response[] responseHolder = new Response[1];
+        handle(requestEntity, false, response -> responseHolder[0] = response);
+        return responseHolder[0];
+    }
+
+    /**
+     * async variant of {@link #handle(JSONObject)}, called from {@link AsyncRobotCommandServlet}. No thread is frozen while the robot waits for the token
+     * approval or for a command pushed by the server.
+     *
+     * @param requestEntity the JSON sent by the robot
+     * @param onResponse called at most once with the response for the robot. May be called from another thread.
+     * @return the action to run, if the connection to the robot broke or timed out before the response was sent. It removes the pending request, the
+     *         callback is not called anymore. Never null
+     */
+    public Runnable handleAsync(JSONObject requestEntity, Consumer<Response> onResponse) throws JSONException {
+        return handle(requestEntity, true, onResponse);
+    }
+
+    private Runnable handle(JSONObject requestEntity, boolean async, Consumer<Response> onResponse) throws JSONException {
         AliveData.rememberRobotCall();
         String cmd = requestEntity.getString(CMD);
         String token = null;
@@ -53,7 +76,8 @@ public class RobotCommand {
             firmwarename = requestEntity.getString("firmwarename");
         } catch ( Exception e ) {
             LOG.error("Robot request aborted. Robot uses a wrong JSON: " + requestEntity);
-            return Response.serverError().build();
+            onResponse.accept(Response.serverError().build());
+            return NOTHING_PENDING;
         }
         // TODO: move robot to the requested properties for the next version
         String robot = requestEntity.optString("robot", "ev3");
@@ -66,16 +90,20 @@ public class RobotCommand {
         firmwareversion = firmwareversion == null ? requestEntity.optString("lejosversion", "") : firmwareversion;
         int nepoExitValue = requestEntity.optInt("nepoexitvalue", 0);
         // TODO: validate version here!
-        JSONObject response;
         switch ( cmd ) {
             case CMD_REGISTER:
                 LOG.info("Robot [" + macaddr + "] token " + token + " received for registration");
                 // LOG.info("Robot [" + macaddr + "] token " + token + " received for registration, user-agent: " + this.servletRequest.getHeader("User-Agent"));
                 RobotCommunicationData state =
                     new RobotCommunicationData(token, robot, macaddr, brickname, batteryvoltage, menuversion, runtimeVersion, firmwarename, firmwareversion);
-                boolean result = this.brickCommunicator.brickWantsTokenToBeApproved(state);
-                response = new JSONObject().put("response", result ? "ok" : "error").put("cmd", result ? CMD_REPEAT : CMD_ABORT);
-                return Response.ok(response).build();
+                if ( async ) {
+                    Consumer<Boolean> onDecision = result -> onResponse.accept(registrationResponse(result));
+                    this.brickCommunicator.brickWantsTokenToBeApproved(state, onDecision);
+                    return abandon(token, onDecision);
+                } else {
+                    onResponse.accept(registrationResponse(this.brickCommunicator.brickWantsTokenToBeApproved(state)));
+                }
+                return NOTHING_PENDING;
             case CMD_PUSH:
                 int counter = pushRequestCounterForLogging.incrementAndGet();
                 boolean logPush = counter % EVERY_REQUEST == 0;
@@ -83,21 +111,54 @@ public class RobotCommand {
                     pushRequestCounterForLogging.set(0);
                     LOG.info("/pushcmd - push request for token " + token + " [count:" + counter + "]");
                 }
-                String command = this.brickCommunicator.brickWaitsForAServerPush(token, batteryvoltage, nepoExitValue);
-
-                if ( command == null || this.brickCommunicator.getState(token) == null ) {
-                    LOG.error("No valid command issued by the server as response to a push command request for token " + token);
-                    return Response.serverError().build();
-                } else {
-                    if ( !command.equals(CMD_REPEAT) || logPush ) {
-                        LOG.info("the command " + command + " is pushed to the robot [count:" + counter + "]");
+                final String pushToken = token;
+                if ( async ) {
+                    Consumer<String> onPushCommand = command -> onResponse.accept(pushResponse(pushToken, command, counter, logPush));
+                    if ( this.brickCommunicator.brickWaitsForAServerPush(token, batteryvoltage, nepoExitValue, onPushCommand) ) {
+                        return abandon(token, onPushCommand);
                     }
-                    response = new JSONObject().put(CMD, command);
-                    return Response.ok(response).build();
+                    onResponse.accept(pushResponse(token, null, counter, logPush));
+                } else {
+                    String command = this.brickCommunicator.brickWaitsForAServerPush(token, batteryvoltage, nepoExitValue);
+                    onResponse.accept(pushResponse(token, command, counter, logPush));
                 }
+                return NOTHING_PENDING;
             default:
                 LOG.error("Robot request aborted. Robot uses a wrong JSON: " + requestEntity);
+                onResponse.accept(Response.serverError().build());
+                return NOTHING_PENDING;
+        }
+    }
+
+    private Runnable abandon(String token, Object callback) {
+        return () -> this.brickCommunicator.robotRequestAbandoned(token, callback);
+    }
+
+    private Response registrationResponse(boolean result) {
+        try {
+            JSONObject response = new JSONObject().put("response", result ? "ok" : "error").put("cmd", result ? CMD_REPEAT : CMD_ABORT);
+            return Response.ok(response).build();
+        } catch ( JSONException e ) {
+            LOG.error("Robot registration response could not be created", e);
+            return Response.serverError().build();
+        }
+    }
+
+    private Response pushResponse(String token, String command, int counter, boolean logPush) {
+        if ( command == null || this.brickCommunicator.getState(token) == null ) {
+            LOG.error("No valid command issued by the server as response to a push command request for token " + token);
+            return Response.serverError().build();
+        } else {
+            if ( !command.equals(CMD_REPEAT) || logPush ) {
+                LOG.info("the command " + command + " is pushed to the robot [count:" + counter + "]");
+            }
+            try {
+                JSONObject response = new JSONObject().put(CMD, command);
+                return Response.ok(response).build();
+            } catch ( JSONException e ) {
+                LOG.error("Robot push response could not be created", e);
                 return Response.serverError().build();
+            }
         }
     }
 }
@@ -1,7 +1,6 @@
 package de.fhg.iais.roberta.javaServer.restServices.robot;
 
 import java.io.File;
-import java.io.FileInputStream;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
@@ -18,6 +17,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.inject.Inject;
 
+import de.fhg.iais.roberta.factory.WorkspaceManager;
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicationData;
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
 import de.fhg.iais.roberta.util.AliveData;
@@ -51,47 +51,22 @@ public class RobotDownloadProgram {
             RobotCommunicationData state = brickCommunicator.getState(token);
             String programName = state.getProgramName();
 
-            String fileName = null;
-            String filePath = null;
-
-            // FIXME as the number of supported robot system grows, we should think about a better solution here :-D
-            switch ( state.getFirmwareName() ) {
-                case "ev3lejosv1":
-                case "lejos":
-                    fileName = programName + ".jar";
-                    filePath = pathToCrosscompilerBaseDir + token + "/target";
-                    break;
-                case "Nao":
-                case "ev3dev":
-                    fileName = programName + ".py";
-                    filePath = pathToCrosscompilerBaseDir + token + "/" + programName + "/src";
-                    break;
-                case "NXT":
-                    fileName = programName + ".rxe";
-                    filePath = pathToCrosscompilerBaseDir + token + "/" + programName + "/target";
-                    break;
-                case "Arduino":
-                    fileName = programName + ".ino.hex";
-                    filePath = pathToCrosscompilerBaseDir + token + "/" + programName + "/target";
-                    break;
-                default:
-                    LOG.error("unsupported firmware name " + state.getFirmwareName());
-                    return Response.serverError().build();
+            RobotArtifact robotArtifact = RobotArtifact.forFirmware(state.getFirmwareName());
+            if ( robotArtifact == null ) {
+                LOG.error("unsupported firmware name " + state.getFirmwareName());
+                return Response.serverError().build();
             }
-
-            File resultDir = new File(filePath);
-            if ( resultDir.isDirectory() ) {
-                File resultFile = new File(resultDir, fileName);
-                if ( resultFile.isFile() ) {
-                    ResponseBuilder response = Response.ok(new FileInputStream(resultFile), MediaType.APPLICATION_OCTET_STREAM);
-                    response.header("Content-Disposition", "attachment; filename=" + fileName);
-                    response.header("Filename", fileName);
-                    return response.build();
-                } else {
-                    LOG.error("upload error: file '" + resultFile.getName() + "' to upload to robot not found.");
-                }
+            String fileName = robotArtifact.getFileName(programName);
+            File resultFile = robotArtifact.getFile(this.pathToCrosscompilerBaseDir, token, programName);
+            // kept in memory by the workspace manager after the first download
+            byte[] artifact = WorkspaceManager.getInstance().getArtifact(token, programName, resultFile);
+            if ( artifact != null ) {
+                ResponseBuilder response = Response.ok(artifact, MediaType.APPLICATION_OCTET_STREAM);
+                response.header("Content-Disposition", "attachment; filename=" + fileName);
+                response.header("Filename", fileName);
+                return response.build();
             } else {
-                LOG.error("upload error: directory '" + resultDir.getName() + "' containing file to upload to robot not found.");
+                LOG.error("upload error: file '" + resultFile.getPath() + "' to upload to robot not found.");
             }
             return Response.serverError().build();
         } catch ( Exception e ) {
@@ -4,7 +4,6 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.StringWriter;
 import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -15,9 +14,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
 
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
@@ -26,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.blockly.generated.Instance;
+import de.fhg.iais.roberta.persistence.util.DatabaseMode;
 import de.fhg.iais.roberta.persistence.util.DbExecutor;
 import de.fhg.iais.roberta.persistence.util.DbSetup;
 import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
@@ -119,14 +117,23 @@ public class Administration {
         }
     }
 
+    /**
+     * create an empty database. Needs the second parameter from the main args, which has to be the database URI. An optional third parameter is the
+     * database mode (see {@link DatabaseMode}), default is embedded
+     */
     private void createEmptyDatabase() {
         expectArgs(2);
-        SessionFactoryWrapper sessionFactoryWrapper = new SessionFactoryWrapper("hibernate-cfg.xml", this.args[1]);
+        DatabaseMode databaseMode = this.args.length > 2 ? DatabaseMode.fromProperty(this.args[2]) : DatabaseMode.EMBEDDED;
+        SessionFactoryWrapper sessionFactoryWrapper = new SessionFactoryWrapper("hibernate-cfg.xml", this.args[1], databaseMode.getHibernateProperties());
         Session nativeSession = sessionFactoryWrapper.getNativeSession();
         DbSetup dbSetup = new DbSetup(nativeSession);
         nativeSession.beginTransaction();
-        dbSetup.createEmptyDatabase();
-        nativeSession.createSQLQuery("shutdown").executeUpdate();
+        dbSetup.createEmptyDatabase(databaseMode);
+        if ( databaseMode == DatabaseMode.POSTGRES ) {
+            nativeSession.getTransaction().commit();
+        } else {
+            nativeSession.createSQLQuery("shutdown").executeUpdate();
+        }
         nativeSession.close();
     }
 
@@ -157,7 +164,7 @@ public class Administration {
         DbExecutor dbExecutor = DbExecutor.make(nativeSession);
         nativeSession.beginTransaction();
 
-        long users = ((BigInteger) dbExecutor.oneValueSelect("select count(*) from USER")).longValue();
+        long users = ((BigInteger) dbExecutor.oneValueSelect("select count(*) from \"USER\"")).longValue();
         long programs = ((BigInteger) dbExecutor.oneValueSelect("select count(*) from PROGRAM;")).longValue();
 
         LocalDateTime now = LocalDateTime.now();
@@ -182,7 +189,7 @@ public class Administration {
         DbExecutor dbExecutor = DbExecutor.make(nativeSession);
         nativeSession.beginTransaction();
 
-        long users = ((BigInteger) dbExecutor.oneValueSelect("select count(*) from USER")).longValue();
+        long users = ((BigInteger) dbExecutor.oneValueSelect("select count(*) from \"USER\"")).longValue();
         long programs = ((BigInteger) dbExecutor.oneValueSelect("select count(*) from PROGRAM;")).longValue();
 
         dbExecutor.ddl(checkpoint);
@@ -203,7 +210,7 @@ public class Administration {
         DbExecutor dbExecutor = DbExecutor.make(nativeSession);
         nativeSession.beginTransaction();
 
-        long users = ((BigInteger) dbExecutor.oneValueSelect("select count(*) from USER")).longValue();
+        long users = ((BigInteger) dbExecutor.oneValueSelect("select count(*) from \"USER\"")).longValue();
         long programs = ((BigInteger) dbExecutor.oneValueSelect("select count(*) from PROGRAM;")).longValue();
 
         try {
@@ -333,11 +340,6 @@ public class Administration {
     }
 
     private String jaxbToXml(BlockSet blockSet) throws JAXBException {
-        JAXBContext jaxbContext = JAXBContext.newInstance(BlockSet.class);
-        Marshaller m = jaxbContext.createMarshaller();
-        m.setProperty(Marshaller.JAXB_FRAGMENT, true);
-        StringWriter writer = new StringWriter();
-        m.marshal(blockSet, writer);
-        return writer.toString();
+        return JaxbHelper.blockSet2xml(blockSet, false);
     }
 }
\ No newline at end of file
@@ -6,7 +6,6 @@ import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
@@ -14,9 +13,15 @@ import javax.mail.internet.MimeMessage;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
+/**
+ * creates the mails for resetting a password and for activating an account. The mails are sent asynchronously by the {@link MailOutbox}
+ */
 public class MailManagement {
+    private static final String SMTP_TIMEOUT_MSEC = "10000";
+
     private Properties props = new Properties();
     private Session session;
+    private MailOutbox outbox;
 
     @Inject
     public MailManagement(
@@ -43,6 +48,9 @@ public class MailManagement {
         this.props.put("mail.smtp.host", host);
         this.props.put("mail.smtp.ssl.trust", host);
         this.props.put("mail.smtp.port", port);
+        // the outbox thread must not hang, if the SMTP server doesn't answer
+        this.props.put("mail.smtp.connectiontimeout", SMTP_TIMEOUT_MSEC);
+        this.props.put("mail.smtp.timeout", SMTP_TIMEOUT_MSEC);
         this.props.put("reset.url", resetUrl);
         this.props.put("reset.text.de", resetTextDe);
         this.props.put("reset.text.en", resetTextEn);
@@ -63,8 +71,22 @@ public class MailManagement {
                 return new PasswordAuthentication(username, password);
             }
         });
+        this.outbox = MailOutbox.createConfigured(this.session);
+    }
+
+    /**
+     * @return the outbox, that sends the mails
+     */
+    public MailOutbox getOutbox() {
+        return this.outbox;
     }
 
+    /**
+     * create a mail and put it into the outbox. The mail is sent asynchronously, thus a failure of the SMTP server is not reported to the caller
+     *
+     * @throws AddressException if the address of the receiver is invalid
+     * @throws MessagingException if the mail could not be created or stored in the outbox
+     */
     public void send(String to, String subject, String[] body, String lang, boolean isYoungerThen14) throws AddressException, MessagingException {
         // TODO support for more languages
         String language = lang.toLowerCase().equals("de") ? "DE" : "en";
@@ -95,13 +117,13 @@ public class MailManagement {
             mailText = mailText.replace("$2", url);
             mailText = mailText.replace("$3", body[1]);
         }
-        Message message = new MimeMessage(this.session);
+        MimeMessage message = new MimeMessage(this.session);
         message.setFrom(new InternetAddress(this.props.getProperty("username")));
         message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
         message.setSubject(mailSubject);
         message.setText(mailText);
 
-        Transport.send(message);
+        this.outbox.enqueue(message);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,298 @@
+package de.fhg.iais.roberta.main;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.util.dbc.Assert;
+
+/**
+ * asynchronous outbox for mails. A request enqueues a mail and returns immediately, a background thread sends the mails. This avoids that a request
+ * thread (and its database session) waits for the SMTP server.<br>
+ * <br>
+ * - every mail is written to the directory <code>mail.outbox.dir</code> when it is enqueued and removed after it has been sent. Mails not sent
+ * when the server stops are sent after the next start<br>
+ * - all mails that are due are sent in one batch using one SMTP connection. The connection is reused for the next batch and closed if idle<br>
+ * - if sending fails, the mail is retried after <code>mail.outbox.retry.sec</code>, the delay doubles with every attempt. After
+ * <code>mail.outbox.attempts</code> attempts the mail is moved to the sub directory <i>failed</i> of the outbox directory
+ */
+public class MailOutbox {
+    private static final Logger LOG = LoggerFactory.getLogger(MailOutbox.class);
+    public static final int DEFAULT_RETRY_SEC = 30;
+    public static final int DEFAULT_ATTEMPTS = 8;
+    private static final long IDLE_MSEC = TimeUnit.MINUTES.toMillis(1);
+    private static final String SUFFIX = ".eml";
+
+    private static volatile File configuredOutboxDir = new File("mailOutbox");
+    private static volatile long configuredRetryMsec = TimeUnit.SECONDS.toMillis(DEFAULT_RETRY_SEC);
+    private static volatile int configuredAttempts = DEFAULT_ATTEMPTS;
+
+    private final Session session;
+    private final File outboxDir;
+    private final File failedDir;
+    private final long retryMsec;
+    private final int attempts;
+    private final DelayQueue<PendingMail> queue = new DelayQueue<>();
+    private final AtomicLong fileCounter = new AtomicLong(0);
+    private final AtomicLong sent = new AtomicLong(0);
+    private final AtomicLong retries = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private Transport transport = null; // only used by the sender thread
+    private Thread sender = null;
+
+    /**
+     * create an outbox. Sending has to be started by {@link #start()}
+     *
+     * @param session the mail session, whose properties determine the SMTP server
+     * @param outboxDir directory for the mails not yet sent, created if missing
+     * @param retryMsec the delay before the first retry, doubled for every further retry
+     * @param attempts the number of attempts to send a mail, > 0
+     */
+    public MailOutbox(Session session, File outboxDir, long retryMsec, int attempts) {
+        Assert.isTrue(attempts > 0, "at least one attempt to send a mail is needed");
+        this.session = session;
+        this.outboxDir = outboxDir;
+        this.failedDir = new File(outboxDir, "failed");
+        this.retryMsec = retryMsec;
+        this.attempts = attempts;
+        if ( !this.failedDir.isDirectory() && !this.failedDir.mkdirs() ) {
+            LOG.error("the mail outbox directory could not be created: " + this.failedDir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * set the outbox directory, the retry delay and the number of attempts from the server properties. Must be called before the mail management is
+     * created.
+     *
+     * @param properties the server properties
+     */
+    public static void configure(Properties properties) {
+        String databaseParentDir = properties.getProperty("database.parentdir", ".");
+        configuredOutboxDir = new File(properties.getProperty("mail.outbox.dir", databaseParentDir + "/mailOutbox").trim());
+        int retrySec = Integer.parseInt(properties.getProperty("mail.outbox.retry.sec", String.valueOf(DEFAULT_RETRY_SEC)).trim());
+        configuredRetryMsec = TimeUnit.SECONDS.toMillis(retrySec);
+        configuredAttempts = Integer.parseInt(properties.getProperty("mail.outbox.attempts", String.valueOf(DEFAULT_ATTEMPTS)).trim());
+        LOG.info("mails are sent from the outbox " + configuredOutboxDir.getAbsolutePath() + ", " + configuredAttempts + " attempts per mail");
+    }
+
+    /**
+     * @return a new outbox with the values set by {@link #configure(Properties)}
+     */
+    public static MailOutbox createConfigured(Session session) {
+        return new MailOutbox(session, configuredOutboxDir, configuredRetryMsec, configuredAttempts);
+    }
+
+    /**
+     * store a mail in the outbox. It is sent by the background thread. Thread-safe.
+     *
+     * @param message the mail to send
+     * @throws MessagingException if the mail could not be written to the outbox directory
+     */
+    public void enqueue(MimeMessage message) throws MessagingException {
+        message.saveChanges();
+        File mailFile = new File(this.outboxDir, System.currentTimeMillis() + "-" + this.fileCounter.incrementAndGet() + SUFFIX);
+        File tmpFile = new File(this.outboxDir, mailFile.getName() + ".tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                message.writeTo(out);
+            }
+            Files.move(tmpFile.toPath(), mailFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch ( IOException e ) {
+            throw new MessagingException("the mail could not be written to the outbox", e);
+        }
+        this.queue.add(new PendingMail(mailFile, message, 0, System.currentTimeMillis()));
+    }
+
+    /**
+     * start the background thread. Mails left in the outbox directory by a previous run are sent first. Called once when the server is started.
+     */
+    public synchronized void start() {
+        Assert.isTrue(this.sender == null, "the mail outbox is already started");
+        File[] leftOver = this.outboxDir.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if ( leftOver != null ) {
+            for ( File mailFile : leftOver ) {
+                if ( this.queue.stream().noneMatch(pendingMail -> pendingMail.file.equals(mailFile)) ) {
+                    this.queue.add(new PendingMail(mailFile, null, 0, System.currentTimeMillis()));
+                }
+            }
+            LOG.info(leftOver.length + " mails found in the outbox");
+        }
+        this.sender = new Thread(this::sendLoop, "mailOutbox");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * stop the background thread. Mails not sent remain in the outbox directory. Called from the shutdown hook.
+     */
+    public synchronized void stop() {
+        if ( this.sender != null ) {
+            this.sender.interrupt();
+            try {
+                this.sender.join(TimeUnit.SECONDS.toMillis(10));
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            this.sender = null;
+        }
+    }
+
+    /**
+     * @return the statistics of the outbox for the <i>/alive</i> service
+     */
+    public JSONObject getStatistics() throws JSONException {
+        JSONObject statistics = new JSONObject();
+        statistics.put("queued", this.queue.size()).put("sent", this.sent.get()).put("retries", this.retries.get()).put("failed", this.failed.get());
+        return statistics;
+    }
+
+    private void sendLoop() {
+        try {
+            while ( !Thread.currentThread().isInterrupted() ) {
+                PendingMail first = this.queue.poll(IDLE_MSEC, TimeUnit.MILLISECONDS);
+                if ( first == null ) {
+                    closeTransport();
+                    continue;
+                }
+                List<PendingMail> batch = new ArrayList<>();
+                batch.add(first);
+                this.queue.drainTo(batch);
+                sendBatch(batch);
+            }
+        } catch ( InterruptedException e ) {
+            // the outbox is stopped
+        } finally {
+            closeTransport();
+        }
+    }
+
+    private void sendBatch(List<PendingMail> batch) {
+        MessagingException connectFailure = null;
+        for ( PendingMail pendingMail : batch ) {
+            if ( connectFailure != null ) {
+                // the SMTP server is not reachable: don't try again for every mail of the batch
+                retryOrFail(pendingMail, connectFailure);
+                continue;
+            }
+            try {
+                connectFailure = connectTransport();
+                if ( connectFailure != null ) {
+                    retryOrFail(pendingMail, connectFailure);
+                    continue;
+                }
+                MimeMessage message = pendingMail.message != null ? pendingMail.message : readMail(pendingMail.file);
+                this.transport.sendMessage(message, message.getAllRecipients());
+                this.sent.incrementAndGet();
+                if ( !pendingMail.file.delete() ) {
+                    LOG.error("the mail " + pendingMail.file.getName() + " was sent, but could not be removed from the outbox");
+                }
+            } catch ( Exception e ) {
+                // the connection may be broken: reconnect for the next mail
+                closeTransport();
+                retryOrFail(pendingMail, e);
+            }
+        }
+        LOG.debug(batch.size() + " mails processed");
+    }
+
+    private void retryOrFail(PendingMail pendingMail, Exception e) {
+        int attempt = pendingMail.attempt + 1;
+        if ( attempt < this.attempts ) {
+            long delay = this.retryMsec << Math.min(attempt - 1, 20);
+            LOG.warn("sending the mail " + pendingMail.file.getName() + " failed (attempt " + attempt + "), retry in " + delay + " msec: " + e.getMessage());
+            this.retries.incrementAndGet();
+            this.queue.add(new PendingMail(pendingMail.file, pendingMail.message, attempt, System.currentTimeMillis() + delay));
+        } else {
+            LOG.error("sending the mail " + pendingMail.file.getName() + " failed " + attempt + " times. It is moved to " + this.failedDir, e);
+            this.failed.incrementAndGet();
+            try {
+                Files.move(pendingMail.file.toPath(), new File(this.failedDir, pendingMail.file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch ( IOException ioe ) {
+                LOG.error("the mail " + pendingMail.file.getName() + " could not be moved", ioe);
+            }
+        }
+    }
+
+    /**
+     * @return null, if the transport is connected, the exception otherwise
+     */
+    private MessagingException connectTransport() {
+        if ( this.transport != null && this.transport.isConnected() ) {
+            return null;
+        }
+        try {
+            this.transport = this.session.getTransport("smtp");
+            this.transport.connect();
+            return null;
+        } catch ( MessagingException e ) {
+            closeTransport();
+            return e;
+        }
+    }
+
+    private MimeMessage readMail(File mailFile) throws IOException, MessagingException {
+        try (InputStream in = new FileInputStream(mailFile)) {
+            return new MimeMessage(this.session, in);
+        }
+    }
+
+    private void closeTransport() {
+        if ( this.transport != null ) {
+            try {
+                this.transport.close();
+            } catch ( MessagingException e ) {
+                // the connection is dropped anyway
+            }
+            this.transport = null;
+        }
+    }
+
+    /**
+     * a mail in the queue. The message is null for mails read from the outbox directory at startup, it is read when the mail is sent
+     */
+    private static class PendingMail implements Delayed {
+        private final File file;
+        private final MimeMessage message;
+        private final int attempt;
+        private final long dueMsec;
+
+        private PendingMail(File file, MimeMessage message, int attempt, long dueMsec) {
+            this.file = file;
+            this.message = message;
+            this.attempt = attempt;
+            this.dueMsec = dueMsec;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(this.dueMsec - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(this.dueMsec, ((PendingMail) other).dueMsec);
+        }
+    }
+}
@@ -29,20 +29,35 @@ import com.google.inject.Injector;
 import com.google.inject.servlet.GuiceFilter;
 import com.sun.jersey.spi.container.servlet.ServletContainer;
 
+import de.fhg.iais.roberta.factory.CompilationCache;
+import de.fhg.iais.roberta.factory.ConfigurationCache;
+import de.fhg.iais.roberta.factory.CompilerScheduler;
+import de.fhg.iais.roberta.factory.ICompilerWorkflow;
 import de.fhg.iais.roberta.factory.IRobotFactory;
+import de.fhg.iais.roberta.factory.WorkspaceManager;
 import de.fhg.iais.roberta.guice.RobertaGuiceServletConfig;
 import de.fhg.iais.roberta.javaServer.websocket.Ev3SensorLoggingWS;
 import de.fhg.iais.roberta.persistence.bo.Robot;
+import de.fhg.iais.roberta.persistence.dao.ConfigurationDao;
 import de.fhg.iais.roberta.persistence.dao.ProgramDao;
 import de.fhg.iais.roberta.persistence.dao.RobotDao;
+import de.fhg.iais.roberta.persistence.dao.UserDao;
+import de.fhg.iais.roberta.persistence.util.DatabaseBackup;
+import de.fhg.iais.roberta.persistence.util.DatabaseMode;
 import de.fhg.iais.roberta.persistence.util.DbSession;
+import de.fhg.iais.roberta.persistence.util.ProgramViewCounter;
+import de.fhg.iais.roberta.persistence.util.ReferenceDataCache;
 import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
 import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
+import de.fhg.iais.roberta.util.AliveData;
+import de.fhg.iais.roberta.util.Clock;
+import de.fhg.iais.roberta.util.Encryption;
 import de.fhg.iais.roberta.util.Key;
 import de.fhg.iais.roberta.util.Pair;
 import de.fhg.iais.roberta.util.RobertaProperties;
 import de.fhg.iais.roberta.util.Util1;
 import de.fhg.iais.roberta.util.dbc.DbcException;
+import de.fhg.iais.roberta.util.jaxb.JaxbHelper;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
@@ -94,6 +109,16 @@ public class ServerStarter {
         Properties robertaProperties = Util1.loadAndMergeProperties(propertyPath, defines);
         setupPropertyForDatabaseConnection(robertaProperties);
         RobertaProperties.setRobertaProperties(robertaProperties);
+        CompilationCache.configure(robertaProperties, RobertaProperties.getTempDirFor("compilerCache"));
+        CompilerScheduler.configure(robertaProperties);
+        JaxbHelper.configure(robertaProperties);
+        Encryption.configure(robertaProperties);
+        ConfigurationCache.configure(robertaProperties);
+        ReferenceDataCache.configure(robertaProperties);
+        ProgramViewCounter.configure(robertaProperties);
+        DatabaseBackup.configure(robertaProperties);
+        MailOutbox.configure(robertaProperties);
+        WorkspaceManager.configure(robertaProperties, RobertaProperties.getTempDirForUserProjects());
     }
 
     /**
@@ -102,6 +127,7 @@ public class ServerStarter {
      * @return the server
      */
     public Server start() throws IOException {
+        Clock startup = Clock.start();
         // String versionFrom = this.properties.getProperty("validversionrange.From", "?");
         // String versionTo = this.properties.getProperty("validversionrange.To", "?");
         // Assert.isTrue(new VersionChecker(versionFrom, versionTo).validateServerSide(), "invalid versions found - this should NEVER occur");
@@ -128,7 +154,7 @@ public class ServerStarter {
         versionedHttpHandler.setSessionHandler(new SessionHandler(new HashSessionManager()));
 
         versionedHttpHandler.addEventListener(robertaGuiceServletConfig);
-        versionedHttpHandler.addFilter(GuiceFilter.class, "/*", null);
+        versionedHttpHandler.addFilter(GuiceFilter.class, "/*", null).setAsyncSupported(true);
         versionedHttpHandler.addServlet(DefaultServlet.class, "/*");
 
         // REST API without prefix (deprecated) and static resources
@@ -145,7 +171,7 @@ public class ServerStarter {
         rootHandler.addFilter(GuiceFilter.class, "/toolbox/*", null);
         rootHandler.addFilter(GuiceFilter.class, "/user/*", null);
         rootHandler.addFilter(GuiceFilter.class, "/hello/*", null);
-        rootHandler.addFilter(GuiceFilter.class, "/pushcmd/*", null);
+        rootHandler.addFilter(GuiceFilter.class, "/pushcmd/*", null).setAsyncSupported(true);
         rootHandler.addFilter(GuiceFilter.class, "/download/*", null);
         rootHandler.addFilter(GuiceFilter.class, "/update/*", null);
         ServletHolder staticResourceServlet = rootHandler.addServlet(DefaultServlet.class, "/*");
@@ -180,15 +206,22 @@ public class ServerStarter {
         Ev3SensorLoggingWS.setGuiceInjector(this.injector);
 
         checkRobotPluginsDB();
-        Runtime.getRuntime().addShutdownHook(new ShutdownHook("embedded".equals(RobertaProperties.getStringProperty("database.mode")), this.injector));
+        this.injector.getInstance(SessionFactoryWrapper.class).getProgramViewCounter().start();
+        this.injector.getInstance(DatabaseBackup.class).start();
+        this.injector.getInstance(MailManagement.class).getOutbox().start();
+        warmUpCompilerWorkflows(robotPluginMap);
+        boolean embeddedDb = DatabaseMode.fromProperty(RobertaProperties.getStringProperty("database.mode")).isEmbedded();
+        Runtime.getRuntime().addShutdownHook(new ShutdownHook(embeddedDb, this.injector, robotPluginMap));
         LOG.info("Shutdown hook added. If the server is gracefully stopped in the future, a shutdown message is logged");
-        logTheNumberOfStoredPrograms();
+        logDatabaseStatistics();
+        AliveData.rememberStartup(startup.elapsedMsec());
+        LOG.info("server startup took " + startup.elapsedMsecFormatted());
 
         return server;
     }
 
     /**
-     * setup the hibernate.connection.url<br>
+     * setup the hibernate.connection.url and the hibernate properties for the database mode (see {@link DatabaseMode})<br>
      * <b>Note:</b> the "hibernate.connection.url" property is added to the properties!
      *
      * @param properties for configuring OpenRoberta, merged from property file and runtime arguments.
@@ -197,16 +230,10 @@ public class ServerStarter {
         String serverVersionForDbDirectory = properties.getProperty("openRobertaServer.version").replace("-SNAPSHOT", "");
         String databaseParentDir = properties.getProperty("database.parentdir");
         String databaseUri = properties.getProperty("database.uri");
-        String databaseMode = properties.getProperty("database.mode");
-        String dbUrl;
-        if ( "embedded".equals(databaseMode) ) {
-            dbUrl = "jdbc:hsqldb:file:" + databaseParentDir + "/db-" + serverVersionForDbDirectory + "/openroberta-db;ifexists=true";
-        } else if ( "server".equals(databaseMode) ) {
-            dbUrl = "jdbc:hsqldb:hsql://" + databaseUri + "/openroberta-db";
-        } else {
-            throw new DbcException("invalid database mode (use either embedded or server): " + databaseMode);
-        }
+        DatabaseMode databaseMode = DatabaseMode.fromProperty(properties.getProperty("database.mode"));
+        String dbUrl = databaseMode.makeUrl(databaseParentDir, serverVersionForDbDirectory, databaseUri);
         properties.put("hibernate.connection.url", dbUrl);
+        SessionFactoryWrapper.configure(properties);
     }
 
     /**
@@ -267,6 +294,20 @@ public class ServerStarter {
         return robotPlugins;
     }
 
+    /**
+     * let the compiler workflows of the robot plugins prepare their program independent artifacts in the background
+     *
+     * @param robotPlugins the mapping from robot names to the factory
+     */
+    private void warmUpCompilerWorkflows(Map<String, IRobotFactory> robotPlugins) {
+        for ( IRobotFactory factory : robotPlugins.values() ) {
+            ICompilerWorkflow compilerWorkflow = factory.getRobotCompilerWorkflow();
+            if ( compilerWorkflow != null ) {
+                compilerWorkflow.warmUp();
+            }
+        }
+    }
+
     /**
      * returns the guice injector configured in this class. This not dangerous, but you should ask yourself, why you need that ...</b>
      *
@@ -276,13 +317,24 @@ public class ServerStarter {
         return this.injector;
     }
 
-    private void logTheNumberOfStoredPrograms() {
+    /**
+     * log the number of programs, users and configurations (per robot) stored in the database. Only aggregate queries are used, no objects are loaded.
+     * This check, that the database is accessible, is cheap even for large databases. If the database is not accessible, the process is terminated.
+     */
+    private void logDatabaseStatistics() {
         try {
+            Clock clock = Clock.start();
             DbSession session = this.injector.getInstance(SessionFactoryWrapper.class).getSession();
-            ProgramDao projectDao = new ProgramDao(session);
-            int numOfProgs = projectDao.loadAll().size();
-            ServerStarter.LOG.info("Number of programs stored in the database: " + numOfProgs);
+            ProgramDao programDao = new ProgramDao(session);
+            long numOfProgs = programDao.count();
+            Map<String, Long> programsPerRobot = programDao.countPerRobot();
+            long numOfUsers = new UserDao(session).count();
+            Map<String, Long> configurationsPerRobot = new ConfigurationDao(session).countPerRobot();
             session.close();
+            ServerStarter.LOG.info("Number of programs stored in the database: " + numOfProgs + ", per robot: " + programsPerRobot);
+            ServerStarter.LOG.info("Number of users stored in the database: " + numOfUsers);
+            ServerStarter.LOG.info("Number of configurations stored in the database per robot: " + configurationsPerRobot);
+            ServerStarter.LOG.info("database statistics retrieved in " + clock.elapsedMsecFormatted());
         } catch ( Exception e ) {
             ServerStarter.LOG.error("Server was started, but could not connect to the database", e);
             System.exit(20);
@@ -1,26 +1,52 @@
 package de.fhg.iais.roberta.main;
 
+import java.util.Map;
+
 import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.inject.Injector;
 
+import de.fhg.iais.roberta.factory.ICompilerWorkflow;
+import de.fhg.iais.roberta.factory.IRobotFactory;
+import de.fhg.iais.roberta.factory.WorkspaceManager;
+import de.fhg.iais.roberta.persistence.util.DatabaseBackup;
 import de.fhg.iais.roberta.persistence.util.DbExecutor;
 import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
+import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
 
 public class ShutdownHook extends Thread {
     private static final Logger LOG = LoggerFactory.getLogger(ShutdownHook.class);
     private boolean embeddedDb;
     private Injector injector;
+    private Map<String, IRobotFactory> robotPlugins;
 
-    public ShutdownHook(boolean embeddedDb, Injector injector) {
+    public ShutdownHook(boolean embeddedDb, Injector injector, Map<String, IRobotFactory> robotPlugins) {
         this.embeddedDb = embeddedDb;
         this.injector = injector;
+        this.robotPlugins = robotPlugins;
     }
 
     @Override
     public void run() {
+        this.injector.getInstance(RobotCommunicator.class).shutdown();
+        LOG.info("Shutdown. The timer for robot requests is stopped");
+        this.injector.getInstance(SessionFactoryWrapper.class).getProgramViewCounter().stop();
+        LOG.info("Shutdown. The views of programs counted are written to the database");
+        this.injector.getInstance(DatabaseBackup.class).stop();
+        LOG.info("Shutdown. The nightly backup of the database is stopped");
+        this.injector.getInstance(MailManagement.class).getOutbox().stop();
+        LOG.info("Shutdown. The mail outbox is stopped, mails not sent are sent after the next start");
+        WorkspaceManager.getInstance().shutdown();
+        LOG.info("Shutdown. The reclamation of workspaces is stopped");
+        for ( IRobotFactory factory : this.robotPlugins.values() ) {
+            ICompilerWorkflow compilerWorkflow = factory.getRobotCompilerWorkflow();
+            if ( compilerWorkflow != null ) {
+                compilerWorkflow.shutdown();
+            }
+        }
+        LOG.info("Shutdown. The compiler workflows of the robot plugins are shut down");
         if ( embeddedDb ) {
             SessionFactoryWrapper sessionFactoryWrapper = this.injector.getInstance(SessionFactoryWrapper.class);
             Session nativeSession = sessionFactoryWrapper.getNativeSession();
@@ -1,33 +1,47 @@
 package de.fhg.iais.roberta.persistence;
 
+import java.io.StringReader;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import de.fhg.iais.roberta.persistence.bo.AccessRight;
 import de.fhg.iais.roberta.persistence.bo.Configuration;
 import de.fhg.iais.roberta.persistence.bo.ConfigurationData;
-import de.fhg.iais.roberta.persistence.bo.Like;
 import de.fhg.iais.roberta.persistence.bo.Program;
+import de.fhg.iais.roberta.persistence.bo.ProgramListing;
 import de.fhg.iais.roberta.persistence.bo.Relation;
 import de.fhg.iais.roberta.persistence.bo.Robot;
 import de.fhg.iais.roberta.persistence.bo.User;
 import de.fhg.iais.roberta.persistence.dao.AccessRightDao;
 import de.fhg.iais.roberta.persistence.dao.ConfigurationDao;
-import de.fhg.iais.roberta.persistence.dao.LikeDao;
 import de.fhg.iais.roberta.persistence.dao.ProgramDao;
 import de.fhg.iais.roberta.persistence.dao.RobotDao;
 import de.fhg.iais.roberta.persistence.dao.UserDao;
 import de.fhg.iais.roberta.persistence.util.DbSession;
 import de.fhg.iais.roberta.persistence.util.HttpSessionState;
+import de.fhg.iais.roberta.persistence.util.ProgramViewCounter;
+import de.fhg.iais.roberta.persistence.util.ReferenceDataCache;
 import de.fhg.iais.roberta.util.Key;
 import de.fhg.iais.roberta.util.Pair;
 import de.fhg.iais.roberta.util.Util1;
 
 public class ProgramProcessor extends AbstractProcessor {
+    private static final Logger LOG = LoggerFactory.getLogger(ProgramProcessor.class);
+
     public ProgramProcessor(DbSession dbSession, HttpSessionState httpSessionState) {
         super(dbSession, httpSessionState);
     }
@@ -110,7 +124,8 @@ public class ProgramProcessor extends AbstractProcessor {
     }
 
     /**
-     * Get information about all the programs owned by a user and with whom they are shared
+     * Get information about all the programs owned by a user and with whom they are shared. A constant number of queries is used, program texts are not
+     * loaded.
      *
      * @param ownerId the owner of the program
      */
@@ -123,22 +138,22 @@ public class ProgramProcessor extends AbstractProcessor {
         Robot robot = robotDao.loadRobot(robotName);
 
         // First we obtain all programs owned by the user
-        List<Program> programs = programDao.loadAll(owner, robot);
+        List<ProgramListing> programs = programDao.loadListing(owner, robot);
+        Map<Integer, List<Pair<String, Relation>>> sharedWithByProgram = accessRightDao.loadSharedWithByOwner(owner, robot);
 
         JSONArray programInfos = new JSONArray();
-        for ( Program program : programs ) {
+        for ( ProgramListing program : programs ) {
             JSONArray programInfo = new JSONArray();
             programInfo.put(program.getName());
-            programInfo.put(program.getOwner().getAccount());
-            // programInfo.put(program.getNumberOfBlocks());
-            List<AccessRight> accessRights = accessRightDao.loadAccessRightsByProgram(program);
+            programInfo.put(program.getOwnerAccount());
+            List<Pair<String, Relation>> accessRights = sharedWithByProgram.get(program.getId());
             JSONObject sharedWith = new JSONObject();
             try {
-                if ( !accessRights.isEmpty() ) {
+                if ( accessRights != null ) {
                     JSONArray sharedWithArray = new JSONArray();
-                    for ( AccessRight accessRight : accessRights ) {
+                    for ( Pair<String, Relation> accessRight : accessRights ) {
                         JSONObject sharedWithUser = new JSONObject();
-                        sharedWithUser.put(accessRight.getUser().getAccount(), accessRight.getRelation().toString());
+                        sharedWithUser.put(accessRight.getFirst(), accessRight.getSecond().toString());
                         sharedWithArray.put(sharedWithUser);
                     }
                     sharedWith.put("sharedWith", sharedWithArray);
@@ -146,32 +161,26 @@ public class ProgramProcessor extends AbstractProcessor {
             } catch ( JSONException e ) {
             }
             programInfo.put(sharedWith);
-            programInfo.put(program.getAuthor().getAccount());
+            programInfo.put(program.getAuthorAccount());
             programInfo.put(program.getCreated().getTime());
             programInfo.put(program.getLastChanged().getTime());
             programInfos.put(programInfo);
         }
         // Now we find all the programs which are not owned by the user but have been shared to him
-        List<AccessRight> accessRights2 = accessRightDao.loadAccessRightsForUser(owner, robot);
-        for ( AccessRight accessRight : accessRights2 ) {
-            // Don't return programs with wrong robot type
-            Program program = programDao.get(accessRight.getProgram().getId());
-            if ( program != null ) {
-                JSONArray programInfo2 = new JSONArray();
-                programInfo2.put(accessRight.getProgram().getName());
-                programInfo2.put(accessRight.getProgram().getOwner().getAccount());
-                //            programInfo2.put(userProgram.getProgram().getNumberOfBlocks());
-                JSONObject sharedFrom = new JSONObject();
-                try {
-                    sharedFrom.put("sharedFrom", accessRight.getRelation().toString());
-                } catch ( JSONException e ) {
-                }
-                programInfo2.put(sharedFrom);
-                programInfo2.put(program.getAuthor().getAccount());
-                programInfo2.put(accessRight.getProgram().getCreated().getTime());
-                programInfo2.put(accessRight.getProgram().getLastChanged().getTime());
-                programInfos.put(programInfo2);
+        for ( ProgramListing program : accessRightDao.loadListingSharedWithUser(owner, robot) ) {
+            JSONArray programInfo2 = new JSONArray();
+            programInfo2.put(program.getName());
+            programInfo2.put(program.getOwnerAccount());
+            JSONObject sharedFrom = new JSONObject();
+            try {
+                sharedFrom.put("sharedFrom", program.getRelation().toString());
+            } catch ( JSONException e ) {
             }
+            programInfo2.put(sharedFrom);
+            programInfo2.put(program.getAuthorAccount());
+            programInfo2.put(program.getCreated().getTime());
+            programInfo2.put(program.getLastChanged().getTime());
+            programInfos.put(programInfo2);
         }
 
         setSuccess(Key.PROGRAM_GET_ALL_SUCCESS, "" + programInfos.length());
@@ -330,52 +339,126 @@ public class ProgramProcessor extends AbstractProcessor {
     }
 
     /**
-     * Get information about all the programs owned by the gallery
+     * Get information about the programs owned by the gallery. All data is retrieved with one query, the program text is neither selected nor sent to the
+     * client. Description and tags are extracted from the program text and cached by program id and time of the last change, see
+     * {@link ReferenceDataCache}. Only the texts of programs not cached are loaded with a second query.
      *
-     * @param galleryId the gallery user
+     * @param userId the user requesting the gallery, used to mark the programs liked by him/her
+     * @param robotName if not null, only programs of this robot are returned
+     * @param sortBy one of <code>date</code>, <code>views</code> or <code>likes</code>
+     * @param offset the number of programs to skip
+     * @param limit the max number of programs to return; 0 returns all programs
+     * @return list of [robot name, program name, description, author account, created, number of views, number of likes, tags, liked]
      */
-
-    public JSONArray getProgramGallery(int userId) {
-
+    public JSONArray getProgramGallery(int userId, String robotName, String sortBy, int offset, int limit) {
         UserDao userDao = new UserDao(this.dbSession);
-        AccessRightDao accessRightDao = new AccessRightDao(this.dbSession);
         ProgramDao programDao = new ProgramDao(this.dbSession);
-        LikeDao likeDao = new LikeDao(this.dbSession);
-
         User gallery = userDao.loadUser("Gallery");
-        JSONArray programs = new JSONArray();
+        Robot robot = robotName == null ? null : new RobotDao(this.dbSession).loadRobot(robotName);
 
-        // Find all the programs which are owned by the gallery
-        List<Program> programsList = programDao.loadAll(gallery);
-        for ( Program program : programsList ) {
-            // check if this program only is shared with one user (the original owner) with special exclusive right X_WRITE.
-            List<AccessRight> accessRights = accessRightDao.loadAccessRightsByProgram(program);
-            List<Like> likes = likeDao.loadLikesByProgram(program);
-            Like like = null;
-            if ( userId > 0 ) {
-                like = likeDao.loadLike(userDao.load(userId), program);
-            }
-            if ( !accessRights.isEmpty() && accessRights.size() == 1 && accessRights.get(0).getRelation() == Relation.X_WRITE ) {
+        JSONArray programs = new JSONArray();
+        if ( robotName == null || robot != null ) {
+            List<Object[]> rows = programDao.loadGallery(gallery, userId, robot, sortBy, offset, limit);
+            Map<Integer, String[]> descriptionsAndTags = getGalleryDescriptionsAndTags(programDao, rows);
+            for ( Object[] row : rows ) {
+                // a program deleted after the gallery was loaded has no description
+                String[] descriptionAndTags = descriptionsAndTags.getOrDefault(((Number) row[2]).intValue(), getDescriptionAndTags(null));
                 JSONArray tempProgram = new JSONArray();
-                tempProgram.put(program.getRobot().getName());
-                tempProgram.put(program.getName());
-                tempProgram.put(program.getProgramText()); // only needed if we want to show the description of the program
-                tempProgram.put(accessRights.get(0).getUser().getAccount());
-                tempProgram.put(program.getCreated().getTime());
-                tempProgram.put(program.getNumberOfViews());
-                tempProgram.put(likes.size());
-                tempProgram.put(program.getTags());
-                tempProgram.put(like == null ? false : true);
+                tempProgram.put(row[0]);
+                tempProgram.put(row[1]);
+                tempProgram.put(descriptionAndTags[0]);
+                tempProgram.put(row[3]);
+                tempProgram.put(((Timestamp) row[4]).getTime());
+                tempProgram.put(((Number) row[5]).intValue());
+                tempProgram.put(((Number) row[6]).intValue());
+                tempProgram.put(descriptionAndTags[1] != null ? descriptionAndTags[1] : row[7]);
+                tempProgram.put(((Number) row[8]).intValue() > 0);
                 programs.put(tempProgram);
-            } else {
-                // this should not happen!
-                System.out.println("User gallery owns programs that are not shared exactly with the origin user with right X_WRITE: " + program.getId());
             }
         }
         setSuccess(Key.PROGRAM_GET_ALL_SUCCESS, "" + programs.length());
         return programs;
     }
 
+    /**
+     * @param rows of the gallery, see {@link ProgramDao#loadGallery(User, int, Robot, String, int, int)}
+     * @return map from program id to [description, tags]
+     */
+    private Map<Integer, String[]> getGalleryDescriptionsAndTags(ProgramDao programDao, List<Object[]> rows) {
+        ReferenceDataCache cache = this.dbSession.getReferenceDataCache();
+        Map<Integer, String[]> descriptionsAndTags = new HashMap<>();
+        List<Integer> notCached = new ArrayList<>();
+        for ( Object[] row : rows ) {
+            int programId = ((Number) row[2]).intValue();
+            String[] descriptionAndTags = cache.getGalleryDescription(programId, (Timestamp) row[9]);
+            if ( descriptionAndTags == null ) {
+                notCached.add(programId);
+            } else {
+                descriptionsAndTags.put(programId, descriptionAndTags);
+            }
+        }
+        for ( Object[] programText : programDao.loadProgramTexts(notCached) ) {
+            int programId = ((Number) programText[0]).intValue();
+            String[] descriptionAndTags = getDescriptionAndTags((String) programText[2]);
+            cache.putGalleryDescription(programId, (Timestamp) programText[1], descriptionAndTags);
+            descriptionsAndTags.put(programId, descriptionAndTags);
+        }
+        return descriptionsAndTags;
+    }
+
+    /**
+     * count the programs owned by the gallery, needed if the gallery is retrieved page by page
+     *
+     * @param robotName if not null, only programs of this robot are counted
+     * @return the number of programs in the gallery
+     */
+    public int getProgramGalleryCount(String robotName) {
+        User gallery = new UserDao(this.dbSession).loadUser("Gallery");
+        Robot robot = robotName == null ? null : new RobotDao(this.dbSession).loadRobot(robotName);
+        if ( robotName != null && robot == null ) {
+            return 0;
+        }
+        return new ProgramDao(this.dbSession).countGallery(gallery, robot);
+    }
+
+    /**
+     * the description and the tags of a program are attributes of the root element of the program XML. Only the root element is read.
+     *
+     * @return [description, tags]; the description is never null, the tags are null if missing
+     */
+    static String[] getDescriptionAndTags(String programText) {
+        String[] descriptionAndTags = new String[] {
+            "",
+            null
+        };
+        if ( programText == null ) {
+            return descriptionAndTags;
+        }
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(new StringReader(programText));
+            if ( reader.nextTag() == XMLStreamConstants.START_ELEMENT ) {
+                String description = reader.getAttributeValue(null, "description");
+                descriptionAndTags[0] = description == null ? "" : description;
+                descriptionAndTags[1] = reader.getAttributeValue(null, "tags");
+            }
+        } catch ( XMLStreamException e ) {
+            ProgramProcessor.LOG.error("program text of a gallery program is not well formed", e);
+        } finally {
+            if ( reader != null ) {
+                try {
+                    reader.close();
+                } catch ( XMLStreamException e ) {
+                    // nothing to do
+                }
+            }
+        }
+        return descriptionAndTags;
+    }
+
     public JSONArray getProgramEntity(String programName, int ownerId, String robotName, int authorId) {
 
         if ( this.httpSessionState.isUserLoggedIn() ) {
@@ -406,7 +489,12 @@ public class ProgramProcessor extends AbstractProcessor {
         return null;
     }
 
+    /**
+     * count a view of a program. The program entity is not changed, the view is written to the database later, see {@link ProgramViewCounter}
+     *
+     * @param program the program viewed, never null
+     */
     public void addOneView(Program program) {
-        program.incrViewed();
+        this.dbSession.getProgramViewCounter().countView(program.getId());
     }
 }
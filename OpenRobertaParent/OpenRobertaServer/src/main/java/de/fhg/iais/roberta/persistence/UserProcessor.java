@@ -39,6 +39,10 @@ public class UserProcessor extends AbstractProcessor {
             UserDao userDao = new UserDao(this.dbSession);
             User user = userDao.loadUser(account);
             if ( user != null && user.isPasswordCorrect(password) && !account_check ) {
+                if ( user.isPasswordHashOutdated() ) {
+                    // the password is known only now: replace the old hash. The user is saved when the session is committed
+                    user.setPassword(password);
+                }
                 setSuccess(Key.USER_GET_ONE_SUCCESS);
                 return user;
             } else {
@@ -0,0 +1,80 @@
+package de.fhg.iais.roberta.persistence.bo;
+
+import java.util.Date;
+
+/**
+ * the columns of a program needed to list the programs of a user. Created by HQL constructor projections, thus neither the program text nor the owner,
+ * author and robot entities are loaded. Timestamps are typed as {@link Date}, because hibernate selects the constructor by the types of the mapped
+ * properties. Objects of this class are not persisted.
+ */
+public class ProgramListing implements WithSurrogateId {
+    private final int id;
+    private final String name;
+    private final String ownerAccount;
+    private final String authorAccount;
+    private final Date created;
+    private final Date lastChanged;
+    private final Relation relation;
+
+    /**
+     * create the listing of a program owned by the user requesting the list
+     */
+    public ProgramListing(int id, String name, String ownerAccount, String authorAccount, Date created, Date lastChanged) {
+        this(id, name, ownerAccount, authorAccount, created, lastChanged, null);
+    }
+
+    /**
+     * create the listing of a program shared with the user requesting the list
+     *
+     * @param relation the access right of the user requesting the list
+     */
+    public ProgramListing(
+        int id,
+        String name,
+        String ownerAccount,
+        String authorAccount,
+        Date created,
+        Date lastChanged,
+        Relation relation) //
+    {
+        this.id = id;
+        this.name = name;
+        this.ownerAccount = ownerAccount;
+        this.authorAccount = authorAccount;
+        this.created = created;
+        this.lastChanged = lastChanged;
+        this.relation = relation;
+    }
+
+    @Override
+    public int getId() {
+        return this.id;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getOwnerAccount() {
+        return this.ownerAccount;
+    }
+
+    public String getAuthorAccount() {
+        return this.authorAccount;
+    }
+
+    public Date getCreated() {
+        return this.created;
+    }
+
+    public Date getLastChanged() {
+        return this.lastChanged;
+    }
+
+    /**
+     * @return the access right, if the program is shared with the user requesting the list; null, if the program is owned by this user
+     */
+    public Relation getRelation() {
+        return this.relation;
+    }
+}
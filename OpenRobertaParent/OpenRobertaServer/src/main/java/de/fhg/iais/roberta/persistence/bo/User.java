@@ -15,7 +15,7 @@ import de.fhg.iais.roberta.util.Encryption;
 import de.fhg.iais.roberta.util.Util1;
 
 @Entity
-@Table(name = "USER")
+@Table(name = "`USER`") // USER is a reserved word in SQL, e.g. in PostgreSQL
 public class User implements WithSurrogateId {
     @Id
     @Column(name = "ID")
@@ -76,6 +76,13 @@ public class User implements WithSurrogateId {
         this.password = Encryption.createHash(password);
     }
 
+    /**
+     * @return true, if the password should be hashed again, because the hash is in an old format or its cost is too low
+     */
+    public boolean isPasswordHashOutdated() {
+        return Encryption.isHashOutdated(this.password);
+    }
+
     /**
      * @return the userName
      */
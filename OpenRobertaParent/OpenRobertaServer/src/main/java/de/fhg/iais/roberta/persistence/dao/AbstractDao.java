@@ -1,5 +1,11 @@
 package de.fhg.iais.roberta.persistence.dao;
 
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hibernate.Query;
+
 import de.fhg.iais.roberta.persistence.bo.WithSurrogateId;
 import de.fhg.iais.roberta.persistence.util.DbSession;
 
@@ -45,4 +51,30 @@ public abstract class AbstractDao<T> {
         T entity = (T) this.session.getSession().get(this.type, id);
         return entity;
     }
+
+    /**
+     * count the objects persisted in the database. Only the number is retrieved, no object is loaded.
+     *
+     * @return the number of objects
+     */
+    public long count() {
+        return (Long) this.session.createQuery("select count(*) from " + this.type.getSimpleName()).uniqueResult();
+    }
+
+    /**
+     * execute a HQL query, that returns pairs of (name, count), and collect the result in a sorted map
+     *
+     * @param hql query selecting a name and a count
+     * @return the map from name to count, may be empty, never null
+     */
+    protected Map<String, Long> countGrouped(String hql) {
+        Query query = this.session.createQuery(hql);
+        @SuppressWarnings("unchecked")
+        List<Object[]> il = query.list();
+        Map<String, Long> counts = new TreeMap<>();
+        for ( Object[] nameAndCount : il ) {
+            counts.put((String) nameAndCount[0], (Long) nameAndCount[1]);
+        }
+        return counts;
+    }
 }
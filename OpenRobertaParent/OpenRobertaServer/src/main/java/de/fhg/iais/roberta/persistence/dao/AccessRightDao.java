@@ -1,16 +1,21 @@
 package de.fhg.iais.roberta.persistence.dao;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Query;
 
 import de.fhg.iais.roberta.persistence.bo.AccessRight;
 import de.fhg.iais.roberta.persistence.bo.Program;
+import de.fhg.iais.roberta.persistence.bo.ProgramListing;
 import de.fhg.iais.roberta.persistence.bo.Relation;
 import de.fhg.iais.roberta.persistence.bo.Robot;
 import de.fhg.iais.roberta.persistence.bo.User;
 import de.fhg.iais.roberta.persistence.util.DbSession;
+import de.fhg.iais.roberta.util.Pair;
 import de.fhg.iais.roberta.util.dbc.Assert;
 
 /**
@@ -110,6 +115,51 @@ public class AccessRightDao extends AbstractDao<AccessRight> {
 
     }
 
+    /**
+     * list all programs of a given robot type, that are shared with a given user. Only the columns needed for listing are loaded, the program text is not.
+     *
+     * @param user the user, with whom the programs are shared
+     * @param robot the robot type
+     * @return the list of all programs shared with the user, may be an empty list, but never null
+     */
+    public List<ProgramListing> loadListingSharedWithUser(User user, Robot robot) {
+        Assert.notNull(user);
+        Assert.notNull(robot);
+        Query hql =
+            this.session.createQuery(
+                "select new de.fhg.iais.roberta.persistence.bo.ProgramListing(p.id, p.name, o.account, a.account, p.created, p.lastChanged, r.relation) "
+                    + "from AccessRight r join r.program p join p.owner o join p.author a where r.user=:user and p.robot=:robot");
+        hql.setEntity("user", user);
+        hql.setEntity("robot", robot);
+        @SuppressWarnings("unchecked")
+        List<ProgramListing> il = hql.list();
+        return Collections.unmodifiableList(il);
+    }
+
+    /**
+     * get with whom the programs of a given user and robot type are shared. One query for all programs.
+     *
+     * @param owner the owner of the programs
+     * @param robot the robot type
+     * @return map from the id of a program to the accounts of the users and their access right; programs, that are not shared, are missing
+     */
+    public Map<Integer, List<Pair<String, Relation>>> loadSharedWithByOwner(User owner, Robot robot) {
+        Assert.notNull(owner);
+        Assert.notNull(robot);
+        Query hql =
+            this.session.createQuery(
+                "select p.id, u.account, r.relation from AccessRight r join r.program p join r.user u where p.owner=:owner and p.robot=:robot order by r.id");
+        hql.setEntity("owner", owner);
+        hql.setEntity("robot", robot);
+        @SuppressWarnings("unchecked")
+        List<Object[]> il = hql.list();
+        Map<Integer, List<Pair<String, Relation>>> sharedWith = new HashMap<>();
+        for ( Object[] row : il ) {
+            sharedWith.computeIfAbsent((Integer) row[0], id -> new ArrayList<>()).add(Pair.of((String) row[1], (Relation) row[2]));
+        }
+        return sharedWith;
+    }
+
     /**
      * delete a given access right
      *
@@ -2,12 +2,12 @@ package de.fhg.iais.roberta.persistence.dao;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Query;
 
 import de.fhg.iais.roberta.persistence.bo.Configuration;
 import de.fhg.iais.roberta.persistence.bo.ConfigurationData;
-import de.fhg.iais.roberta.persistence.bo.Program;
 import de.fhg.iais.roberta.persistence.bo.Robot;
 import de.fhg.iais.roberta.persistence.bo.User;
 import de.fhg.iais.roberta.persistence.util.DbSession;
@@ -19,14 +19,23 @@ import de.fhg.iais.roberta.util.dbc.Assert;
  *
  * @author rbudde
  */
-public class ConfigurationDao extends AbstractDao<Program> {
+public class ConfigurationDao extends AbstractDao<Configuration> {
     /**
      * create a new DAO for configurations. This creation is cheap.
      *
      * @param session the session used to access the database.
      */
     public ConfigurationDao(DbSession session) {
-        super(Program.class, session);
+        super(Configuration.class, session);
+    }
+
+    /**
+     * count the named configurations persisted in the database for each robot. Only the numbers are retrieved, no configuration is loaded.
+     *
+     * @return the map from robot name to the number of configurations, never null
+     */
+    public Map<String, Long> countPerRobot() {
+        return countGrouped("select c.robot.name, count(*) from Configuration c group by c.robot.name");
     }
 
     /**
@@ -98,19 +107,28 @@ public class ConfigurationDao extends AbstractDao<Program> {
     }
 
     /**
-     * load a configuration from the database, identified by its content hash
+     * load a configuration from the database, identified by its content hash. As configuration data never change, they are cached
      *
      * @param configHash never null
-     * @return the program, null if the program is not found
+     * @return the configuration data, null if not found
      */
     public ConfigurationData load(String configHash) {
         Assert.notNull(configHash);
+        ConfigurationData cached = this.session.getReferenceDataCache().getConfigurationData(configHash);
+        if ( cached != null ) {
+            return cached;
+        }
         Query hql = this.session.createQuery("from ConfigurationData where configurationHash=:configurationHash");
         hql.setString("configurationHash", configHash);
         @SuppressWarnings("unchecked")
         List<ConfigurationData> il = hql.list();
         Assert.isTrue(il.size() <= 1);
-        return il.size() == 0 ? null : il.get(0);
+        if ( il.size() == 0 ) {
+            return null;
+        } else {
+            this.session.getReferenceDataCache().putConfigurationData(il.get(0));
+            return il.get(0);
+        }
     }
 
     public int deleteByName(String name, User owner, Robot robot) {
@@ -1,15 +1,19 @@
 package de.fhg.iais.roberta.persistence.dao;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Query;
+import org.hibernate.SQLQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.fhg.iais.roberta.persistence.bo.AccessRight;
 import de.fhg.iais.roberta.persistence.bo.Program;
+import de.fhg.iais.roberta.persistence.bo.ProgramListing;
 import de.fhg.iais.roberta.persistence.bo.Relation;
 import de.fhg.iais.roberta.persistence.bo.Robot;
 import de.fhg.iais.roberta.persistence.bo.User;
@@ -17,6 +21,7 @@ import de.fhg.iais.roberta.persistence.util.DbSession;
 import de.fhg.iais.roberta.util.Key;
 import de.fhg.iais.roberta.util.Pair;
 import de.fhg.iais.roberta.util.dbc.Assert;
+import de.fhg.iais.roberta.util.dbc.DbcException;
 
 /**
  * DAO class to load and store programs objects. A DAO object is always bound to a session. This session defines the transactional context, in which the
@@ -27,6 +32,12 @@ import de.fhg.iais.roberta.util.dbc.Assert;
 public class ProgramDao extends AbstractDao<Program> {
     private static final Logger LOG = LoggerFactory.getLogger(ProgramDao.class);
 
+    // programs owned by the gallery, that are shared exactly once: with their author and with the exclusive right X_WRITE
+    private static final String GALLERY_FROM_WHERE =
+        "from PROGRAM p join ROBOT r on r.ID = p.ROBOT_ID "
+            + "join USER_PROGRAM a on a.PROGRAM_ID = p.ID and a.RELATION = 'X_WRITE' join \"USER\" u on u.ID = a.USER_ID "
+            + "where p.OWNER_ID = :galleryId and (select count(*) from USER_PROGRAM a2 where a2.PROGRAM_ID = p.ID) = 1";
+
     /**
      * create a new DAO for programs. This creation is cheap.
      *
@@ -211,6 +222,25 @@ public class ProgramDao extends AbstractDao<Program> {
         return Collections.unmodifiableList(il);
     }
 
+    /**
+     * list all programs owned by a given user and given robot type. Only the columns needed for listing are loaded, the program text is not.
+     *
+     * @return the list of all programs, may be an empty list, but never null
+     */
+    public List<ProgramListing> loadListing(User owner, Robot robot) {
+        Assert.notNull(owner);
+        Assert.notNull(robot);
+        Query hql =
+            this.session.createQuery(
+                "select new de.fhg.iais.roberta.persistence.bo.ProgramListing(p.id, p.name, o.account, a.account, p.created, p.lastChanged) "
+                    + "from Program p join p.owner o join p.author a where p.owner=:owner and p.robot=:robot");
+        hql.setEntity("owner", owner);
+        hql.setEntity("robot", robot);
+        @SuppressWarnings("unchecked")
+        List<ProgramListing> il = hql.list();
+        return Collections.unmodifiableList(il);
+    }
+
     /**
      * load all programs persisted in the database which are owned by a user given
      *
@@ -225,7 +255,108 @@ public class ProgramDao extends AbstractDao<Program> {
     }
 
     /**
-     * load all programs persisted in the database
+     * load a page of the gallery with one SQL query. The programs in the gallery are owned by the gallery user and shared exclusively (relation
+     * <code>X_WRITE</code>) with their author. Instead of the programs a projection of the columns needed to display the gallery is returned, the
+     * number of likes and the like of the user are aggregated by the database.
+     *
+     * @param gallery the gallery user, never null
+     * @param userId the id of the user requesting the gallery; if the user is not logged in, no program is liked
+     * @param robot if not null, only programs of this robot are returned
+     * @param sortBy one of <code>date</code>, <code>views</code> or <code>likes</code>. The gallery is sorted descending, newest or most popular
+     *        programs first
+     * @param offset the number of programs to skip
+     * @param limit the max number of programs to return; 0 returns all programs
+     * @return list of [robot name, program name, program id, author account, created timestamp, number of views, number of likes, tags, number of likes
+     *         of the user (0 or 1), last changed timestamp], may be an empty list, but never null. The program text is not selected, see
+     *         {@link #loadProgramTexts(Collection)}
+     */
+    public List<Object[]> loadGallery(User gallery, int userId, Robot robot, String sortBy, int offset, int limit) {
+        Assert.notNull(gallery);
+        Assert.isTrue(offset >= 0 && limit >= 0, "invalid page of the gallery");
+        String orderBy;
+        switch ( sortBy ) {
+            case "date":
+                orderBy = "p.CREATED desc";
+                break;
+            case "views":
+                orderBy = "VIEWS desc, p.CREATED desc";
+                break;
+            case "likes":
+                orderBy = "LIKES desc, p.CREATED desc";
+                break;
+            default:
+                throw new DbcException("invalid sort order of the gallery: " + sortBy);
+        }
+        SQLQuery sql =
+            this.session.createSqlQuery(
+                "select r.NAME as ROBOT, p.NAME as PROGRAM, p.ID, u.ACCOUNT, p.CREATED, coalesce(p.VIEWED, 0) as VIEWS, "
+                    + "(select count(*) from USER_PROGRAM_LIKE l where l.PROGRAM_ID = p.ID) as LIKES, p.TAGS, "
+                    + "(select count(*) from USER_PROGRAM_LIKE l where l.PROGRAM_ID = p.ID and l.USER_ID = :userId) as LIKED, p.LAST_CHANGED "
+                    + GALLERY_FROM_WHERE
+                    + (robot == null ? "" : " and p.ROBOT_ID = :robotId")
+                    + " order by "
+                    + orderBy
+                    + ", p.ID desc");
+        sql.setInteger("galleryId", gallery.getId());
+        sql.setInteger("userId", userId);
+        if ( robot != null ) {
+            sql.setInteger("robotId", robot.getId());
+        }
+        sql.setFirstResult(offset);
+        if ( limit > 0 ) {
+            sql.setMaxResults(limit);
+        }
+        @SuppressWarnings("unchecked")
+        List<Object[]> il = sql.list();
+        return Collections.unmodifiableList(il);
+    }
+
+    /**
+     * load the texts of some programs, e.g. of the programs of the gallery, whose description and tags are not cached
+     *
+     * @param programIds the ids of the programs, never null
+     * @return list of [program id, last changed timestamp, program text], may be an empty list, but never null
+     */
+    public List<Object[]> loadProgramTexts(Collection<Integer> programIds) {
+        Assert.notNull(programIds);
+        if ( programIds.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        SQLQuery sql = this.session.createSqlQuery("select ID, LAST_CHANGED, PROGRAM_TEXT from PROGRAM where ID in (:programIds)");
+        sql.setParameterList("programIds", programIds);
+        @SuppressWarnings("unchecked")
+        List<Object[]> il = sql.list();
+        return Collections.unmodifiableList(il);
+    }
+
+    /**
+     * count the programs of the gallery. Used for paging, the same programs as in {@link #loadGallery(User, int, Robot, String, int, int)} are counted.
+     *
+     * @param gallery the gallery user, never null
+     * @param robot if not null, only programs of this robot are counted
+     * @return the number of programs in the gallery
+     */
+    public int countGallery(User gallery, Robot robot) {
+        Assert.notNull(gallery);
+        SQLQuery sql = this.session.createSqlQuery("select count(*) " + GALLERY_FROM_WHERE + (robot == null ? "" : " and p.ROBOT_ID = :robotId"));
+        sql.setInteger("galleryId", gallery.getId());
+        if ( robot != null ) {
+            sql.setInteger("robotId", robot.getId());
+        }
+        return ((Number) sql.uniqueResult()).intValue();
+    }
+
+    /**
+     * count the programs persisted in the database for each robot. Only the numbers are retrieved, no program is loaded.
+     *
+     * @return the map from robot name to the number of programs, never null
+     */
+    public Map<String, Long> countPerRobot() {
+        return countGrouped("select p.robot.name, count(*) from Program p group by p.robot.name");
+    }
+
+    /**
+     * load all programs persisted in the database. <b>All</b> programs are loaded, use {@link #count()} if only the number is needed.
      *
      * @return the list of all programs, may be an empty list, but never null
      */
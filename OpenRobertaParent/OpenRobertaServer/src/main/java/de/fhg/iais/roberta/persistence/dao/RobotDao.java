@@ -21,8 +21,18 @@ public class RobotDao extends AbstractDao<Robot> {
         super(Robot.class, session);
     }
 
+    /**
+     * load a robot from the database, identified by its name. Robots are cached, the robot returned may be detached and <b>must not be modified</b>
+     *
+     * @param name the name of the robot, never null
+     * @return the robot, null if the robot is not found
+     */
     public Robot loadRobot(String name) {
         Assert.notNull(name);
+        Robot cached = this.session.getReferenceDataCache().getRobot(name);
+        if ( cached != null ) {
+            return cached;
+        }
         Query hql = this.session.createQuery("from Robot where name=:name");
         hql.setString("name", name);
 
@@ -32,6 +42,7 @@ public class RobotDao extends AbstractDao<Robot> {
         if ( il.size() == 0 ) {
             return null;
         } else {
+            this.session.getReferenceDataCache().putRobot(il.get(0));
             return il.get(0);
         }
     }
@@ -51,6 +62,7 @@ public class RobotDao extends AbstractDao<Robot> {
 
     public int deleteRobot(Robot robotToBeDeleted) {
         Assert.notNull(robotToBeDeleted);
+        this.session.getReferenceDataCache().removeRobot(robotToBeDeleted.getName());
         this.session.delete(robotToBeDeleted);
         return 1;
     }
@@ -38,6 +38,7 @@ public class ToolboxDao extends AbstractDao<Toolbox> {
     public boolean persistToolboxText(String name, User owner, Robot robot, String toolboxText, boolean mayExist) {
         Assert.notNull(name);
         Assert.notNull(owner);
+        this.session.getReferenceDataCache().removeDefaultToolbox(name, robot);
         Toolbox toolbox = load(name, owner, robot);
         if ( toolbox == null ) {
             toolbox = new Toolbox(name, owner);
@@ -57,7 +58,8 @@ public class ToolboxDao extends AbstractDao<Toolbox> {
      *
      * @param toolboxName the name of the toolbox, never null
      * @param user the user if he is logged in, if not null
-     * @return the toolbox, null if the toolbox is not found
+     * @return the toolbox, null if the toolbox is not found. If the user is null, the default toolbox is cached; it may be detached and <b>must not be
+     *         modified</b>
      */
     public Toolbox load(String name, User user, Robot robot) {
         Assert.notNull(name);
@@ -70,6 +72,10 @@ public class ToolboxDao extends AbstractDao<Toolbox> {
             hql.setEntity("owner", user);
             hql.setEntity("robot", robot);
         } else {
+            Toolbox cached = this.session.getReferenceDataCache().getDefaultToolbox(name, robot);
+            if ( cached != null ) {
+                return cached;
+            }
             hql = this.session.createQuery("from Toolbox where name=:name and owner is null and robot=:robot");
             hql.setString("name", name);
             hql.setEntity("robot", robot);
@@ -77,10 +83,18 @@ public class ToolboxDao extends AbstractDao<Toolbox> {
         @SuppressWarnings("unchecked")
         List<Toolbox> il = hql.list();
         Assert.isTrue(il.size() <= 1);
-        return il.size() == 0 ? null : il.get(0);
+        if ( il.size() == 0 ) {
+            return null;
+        } else {
+            if ( user == null ) {
+                this.session.getReferenceDataCache().putDefaultToolbox(name, robot, il.get(0));
+            }
+            return il.get(0);
+        }
     }
 
     public int deleteByName(String name, User owner, Robot robot) {
+        this.session.getReferenceDataCache().removeDefaultToolbox(name, robot);
         Toolbox toBeDeleted = load(name, owner, robot);
         if ( toBeDeleted == null ) {
             return 0;
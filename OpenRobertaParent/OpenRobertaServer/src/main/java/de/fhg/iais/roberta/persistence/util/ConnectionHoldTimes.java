@@ -0,0 +1,55 @@
+package de.fhg.iais.roberta.persistence.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * statistics about the time JDBC connections are held by the requests of the REST services. For each command the number of requests, the total and the
+ * max time (in msec) are collected. Reported by the <i>/alive</i> service.<br>
+ * <br>
+ * The command is sent by the client. The services record all invalid commands as {@link #INVALID_COMMAND}, thus the statistics are bounded by the
+ * number of known commands.
+ */
+public class ConnectionHoldTimes {
+    public static final String INVALID_COMMAND = "invalid";
+
+    private static final Map<String, long[]> holdTimes = new TreeMap<>(); // command -> [requests, total msec, max msec]
+
+    private ConnectionHoldTimes() {
+        // no objects
+    }
+
+    /**
+     * remember the time a connection was held while executing a command
+     *
+     * @param command the command, e.g. <i>runP</i>; should be prefixed by the service if the command is not unique, never null. Must not be a command
+     *        unknown to the service, see {@link #INVALID_COMMAND}
+     * @param dbSession the session used, see {@link DbSession#getConnectionHoldMsec()}
+     */
+    public static void remember(String command, DbSession dbSession) {
+        long msec = dbSession.getConnectionHoldMsec();
+        synchronized ( holdTimes ) {
+            long[] holdTime = holdTimes.computeIfAbsent(command, c -> new long[3]);
+            holdTime[0]++;
+            holdTime[1] += msec;
+            holdTime[2] = Math.max(holdTime[2], msec);
+        }
+    }
+
+    /**
+     * @return the statistics for all commands executed since the server was started
+     */
+    public static JSONObject getStatistics() throws JSONException {
+        JSONObject statistics = new JSONObject();
+        synchronized ( holdTimes ) {
+            for ( Map.Entry<String, long[]> entry : holdTimes.entrySet() ) {
+                long[] holdTime = entry.getValue();
+                statistics.put(entry.getKey(), new JSONObject().put("requests", holdTime[0]).put("totalMsec", holdTime[1]).put("maxMsec", holdTime[2]));
+            }
+        }
+        return statistics;
+    }
+}
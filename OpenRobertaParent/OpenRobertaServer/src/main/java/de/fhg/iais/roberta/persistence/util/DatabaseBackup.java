@@ -0,0 +1,287 @@
+package de.fhg.iais.roberta.persistence.util;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+
+import de.fhg.iais.roberta.util.Clock;
+import de.fhg.iais.roberta.util.dbc.Assert;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * online backup of the <b>embedded</b> database. The HSQLDB command <code>BACKUP DATABASE ... NOT BLOCKING</code> writes a compressed copy of the
+ * database files, while requests continue to read and write the database. Backups are created<br>
+ * - every night at the hour given by the property <code>database.backup.hour</code> (-1 disables the nightly backup) and<br>
+ * - on request by the admin service <i>/admin/backup</i>.<br>
+ * <br>
+ * Both are executed by the thread of the backup scheduler, the admin service doesn't wait for the backup. Its result is available from
+ * {@link #getStatistics()}. The next nightly backup is scheduled after each backup for the local hour, thus a change of the daylight saving time doesn't
+ * shift the backups.<br>
+ * <br>
+ * The backups are stored in the directory <code>database.backup.dir</code>, only the <code>database.backup.keep</code> newest backups are kept. Only one
+ * backup is executed at a time.
+ */
+public class DatabaseBackup {
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseBackup.class);
+    private static final String PREFIX = "dbBackup-";
+    private static final String SUFFIX = ".tar.gz";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss-SSS");
+
+    private static volatile boolean configuredEmbedded = true;
+    private static volatile File configuredBackupDir = new File("backup");
+    private static volatile int configuredKeep = 7;
+    private static volatile int configuredHour = -1;
+
+    private final SessionFactoryWrapper sessionFactoryWrapper;
+    private final boolean embedded;
+    private final File backupDir;
+    private final int keep;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong backups = new AtomicLong(0);
+    private final AtomicLong failedBackups = new AtomicLong(0);
+    private volatile JSONObject lastBackup = null;
+    private volatile String lastError = null;
+    private volatile ZonedDateTime nextNightlyBackup = null;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * create the backup service with the values set by {@link #configure(Properties)}
+     */
+    @Inject
+    public DatabaseBackup(SessionFactoryWrapper sessionFactoryWrapper) {
+        this(sessionFactoryWrapper, configuredEmbedded, configuredBackupDir, configuredKeep);
+    }
+
+    /**
+     * create the backup service
+     *
+     * @param sessionFactoryWrapper of the database to backup
+     * @param embedded true, if the database is an embedded HSQLDB. Otherwise backups are rejected
+     * @param backupDir the directory for the backups, created if missing
+     * @param keep number of backups kept, > 0
+     */
+    public DatabaseBackup(SessionFactoryWrapper sessionFactoryWrapper, boolean embedded, File backupDir, int keep) {
+        Assert.isTrue(keep > 0, "at least one backup must be kept");
+        this.sessionFactoryWrapper = sessionFactoryWrapper;
+        this.embedded = embedded;
+        this.backupDir = backupDir;
+        this.keep = keep;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "databaseBackup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * set the database mode, the backup directory, the number of backups kept and the hour of the nightly backup from the server properties. Must be
+     * called before the service is created.
+     *
+     * @param properties the server properties
+     */
+    public static void configure(Properties properties) {
+        configuredEmbedded = DatabaseMode.fromProperty(properties.getProperty("database.mode")).isEmbedded();
+        String databaseParentDir = properties.getProperty("database.parentdir", ".");
+        configuredBackupDir = new File(properties.getProperty("database.backup.dir", databaseParentDir + "/backup").trim());
+        configuredKeep = Integer.parseInt(properties.getProperty("database.backup.keep", "7").trim());
+        configuredHour = Integer.parseInt(properties.getProperty("database.backup.hour", "-1").trim());
+        Assert.isTrue(configuredHour >= -1 && configuredHour <= 23, "the hour of the nightly backup is invalid: " + configuredHour);
+    }
+
+    /**
+     * start the nightly backup, if it is configured. Called once when the server is started.
+     */
+    public synchronized void start() {
+        if ( !this.embedded || configuredHour < 0 ) {
+            LOG.info("no nightly backup of the database");
+            return;
+        }
+        Assert.isTrue(this.nextNightlyBackup == null, "the nightly backup is already started");
+        scheduleNightlyBackup(ZonedDateTime.now());
+        LOG.info("nightly backup of the database at " + configuredHour + ":00 into " + this.backupDir.getAbsolutePath() + ", next at " + this.nextNightlyBackup);
+    }
+
+    /**
+     * stop the backups. A running backup is awaited for at most a minute. Called from the shutdown hook before the database is shut down.
+     */
+    public void stop() {
+        this.scheduler.shutdown();
+        try {
+            this.scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param after the time the next backup must follow
+     * @param hour the local hour of the nightly backup
+     * @return the first time strictly after <code>after</code> with the given local hour. A day with a change of the daylight saving time is 23 or 25
+     *         hours long
+     */
+    public static ZonedDateTime nextBackupTime(ZonedDateTime after, int hour) {
+        ZonedDateTime next = after.toLocalDate().atTime(hour, 0).atZone(after.getZone());
+        return next.isAfter(after) ? next : after.toLocalDate().plusDays(1).atTime(hour, 0).atZone(after.getZone());
+    }
+
+    /**
+     * submit a backup of the database to the backup scheduler and return immediately. The result is reported by {@link #getStatistics()}
+     *
+     * @throws DbcException if the database is not embedded, if another backup is running or if the backups are stopped
+     */
+    public void requestBackup() {
+        checkEmbedded();
+        acquire();
+        try {
+            this.scheduler.execute(() -> {
+                try {
+                    runBackup();
+                } catch ( Exception e ) {
+                    // logged and reported by the statistics
+                } finally {
+                    this.running.set(false);
+                }
+            });
+        } catch ( RejectedExecutionException e ) {
+            this.running.set(false);
+            throw new DbcException("the backups of the database are stopped");
+        }
+    }
+
+    /**
+     * backup the database now in the calling thread, then remove the oldest backups
+     *
+     * @return the file name, size in bytes and duration in msec of the backup
+     * @throws DbcException if the database is not embedded, if another backup is running or if the backup fails
+     */
+    public JSONObject backup() {
+        checkEmbedded();
+        acquire();
+        try {
+            return runBackup();
+        } finally {
+            this.running.set(false);
+        }
+    }
+
+    private JSONObject runBackup() {
+        try {
+            if ( !this.backupDir.isDirectory() && !this.backupDir.mkdirs() ) {
+                throw new DbcException("the backup directory could not be created: " + this.backupDir.getAbsolutePath());
+            }
+            File backupFile = new File(this.backupDir, PREFIX + LocalDateTime.now().format(TIMESTAMP) + SUFFIX);
+            Clock clock = Clock.start();
+            Session nativeSession = this.sessionFactoryWrapper.getNativeSession();
+            try {
+                nativeSession.beginTransaction();
+                DbExecutor.make(nativeSession).ddl("BACKUP DATABASE TO '" + backupFile.getAbsolutePath().replace('\\', '/') + "' NOT BLOCKING");
+                nativeSession.getTransaction().commit();
+            } finally {
+                nativeSession.close();
+            }
+            JSONObject result = new JSONObject();
+            result.put("file", backupFile.getName()).put("bytes", backupFile.length()).put("msec", clock.elapsedMsec());
+            this.lastBackup = result;
+            this.lastError = null;
+            this.backups.incrementAndGet();
+            LOG.info("database backup " + backupFile.getName() + " with " + backupFile.length() + " bytes created in " + clock.elapsedMsecFormatted());
+            removeOldBackups();
+            return result;
+        } catch ( Exception e ) {
+            this.failedBackups.incrementAndGet();
+            this.lastError = String.valueOf(e.getMessage());
+            LOG.error("database backup failed", e);
+            throw e instanceof DbcException ? (DbcException) e : new DbcException("database backup failed", e);
+        }
+    }
+
+    /**
+     * @return the statistics of the backups for the <i>/alive</i> service
+     */
+    public JSONObject getStatistics() throws JSONException {
+        JSONObject statistics = new JSONObject();
+        statistics.put("backups", this.backups.get()).put("failedBackups", this.failedBackups.get()).put("running", this.running.get());
+        if ( this.lastBackup != null ) {
+            statistics.put("lastBackup", this.lastBackup);
+        }
+        if ( this.lastError != null ) {
+            statistics.put("lastError", this.lastError);
+        }
+        if ( this.nextNightlyBackup != null ) {
+            statistics.put("nextNightlyBackup", this.nextNightlyBackup.toString());
+        }
+        return statistics;
+    }
+
+    private void checkEmbedded() {
+        if ( !this.embedded ) {
+            throw new DbcException("online backup is supported for the embedded database only");
+        }
+    }
+
+    private void acquire() {
+        if ( !this.running.compareAndSet(false, true) ) {
+            throw new DbcException("a backup of the database is already running");
+        }
+    }
+
+    /**
+     * schedule the next nightly backup. Scheduled again after each run, a fixed rate of 24 hours would drift by an hour with the daylight saving time
+     *
+     * @param after the next backup must follow this time. The planned time of the backup just executed, if the scheduler ran it a bit early
+     */
+    private void scheduleNightlyBackup(ZonedDateTime after) {
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime next = nextBackupTime(after.isAfter(now) ? after : now, configuredHour);
+        this.nextNightlyBackup = next;
+        try {
+            this.scheduler.schedule(() -> {
+                try {
+                    backup();
+                } catch ( Exception e ) {
+                    // logged by backup(). The next night is tried again
+                } finally {
+                    scheduleNightlyBackup(next);
+                }
+            }, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+        } catch ( RejectedExecutionException e ) {
+            // the backups are stopped
+            this.nextNightlyBackup = null;
+        }
+    }
+
+    private void removeOldBackups() {
+        String[] backupNames = this.backupDir.list((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if ( backupNames == null || backupNames.length <= this.keep ) {
+            return;
+        }
+        // the names contain the timestamp, thus the oldest backups come first
+        Arrays.sort(backupNames);
+        for ( int i = 0; i < backupNames.length - this.keep; i++ ) {
+            File oldBackup = new File(this.backupDir, backupNames[i]);
+            if ( oldBackup.delete() ) {
+                LOG.info("old database backup " + backupNames[i] + " removed");
+            } else {
+                LOG.error("old database backup " + backupNames[i] + " could not be removed");
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.fhg.iais.roberta.persistence.util;
+
+import java.util.Properties;
+
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * the database systems the server can run with (property <code>database.mode</code>). The mode determines the JDBC url, the JDBC driver, the hibernate
+ * dialect and the SQL script to create an empty database.<br>
+ * <br>
+ * - <b>embedded</b>: HSQLDB, the database files are in the directory <code>db-&lt;serverVersion&gt;</code> below <code>database.parentdir</code><br>
+ * - <b>server</b>: HSQLDB, running as a server at <code>database.uri</code><br>
+ * - <b>postgres</b>: PostgreSQL (version 10 or newer), running at <code>database.uri</code> (host or host:port). The JDBC driver is not part of the
+ * default build, use the maven profile <i>postgres</i>
+ */
+public enum DatabaseMode {
+    EMBEDDED("embedded", "org.hsqldb.jdbcDriver", "org.hibernate.dialect.HSQLDialect", "/create-tables.sql"),
+    SERVER("server", "org.hsqldb.jdbcDriver", "org.hibernate.dialect.HSQLDialect", "/create-tables.sql"),
+    POSTGRES("postgres", "org.postgresql.Driver", "org.hibernate.dialect.PostgreSQL82Dialect", "/create-tables-postgres.sql");
+
+    private final String mode;
+    private final String driverClass;
+    private final String dialect;
+    private final String createTablesSql;
+
+    private DatabaseMode(String mode, String driverClass, String dialect, String createTablesSql) {
+        this.mode = mode;
+        this.driverClass = driverClass;
+        this.dialect = dialect;
+        this.createTablesSql = createTablesSql;
+    }
+
+    /**
+     * get the mode from the value of the property <code>database.mode</code>
+     *
+     * @param mode the value of the property, never null
+     * @return the mode
+     * @throws DbcException if the mode is invalid
+     */
+    public static DatabaseMode fromProperty(String mode) {
+        for ( DatabaseMode databaseMode : DatabaseMode.values() ) {
+            if ( databaseMode.mode.equals(mode) ) {
+                return databaseMode;
+            }
+        }
+        throw new DbcException("invalid database mode (use either embedded, server or postgres): " + mode);
+    }
+
+    /**
+     * @param databaseParentDir the directory containing the database directories of the embedded database
+     * @param serverVersionForDbDirectory the server version used for the name of the directory of the embedded database
+     * @param databaseUri host (and port) of the database server
+     * @return the JDBC url of the database
+     */
+    public String makeUrl(String databaseParentDir, String serverVersionForDbDirectory, String databaseUri) {
+        switch ( this ) {
+            case EMBEDDED:
+                return "jdbc:hsqldb:file:" + databaseParentDir + "/db-" + serverVersionForDbDirectory + "/openroberta-db;ifexists=true";
+            case SERVER:
+                return "jdbc:hsqldb:hsql://" + databaseUri + "/openroberta-db";
+            case POSTGRES:
+                return "jdbc:postgresql://" + databaseUri + "/openroberta";
+            default:
+                throw new DbcException("invalid database mode: " + this);
+        }
+    }
+
+    /**
+     * @return the hibernate properties for this mode. They overwrite the defaults from the hibernate configuration file
+     */
+    public Properties getHibernateProperties() {
+        Properties hibernateProperties = new Properties();
+        hibernateProperties.setProperty("hibernate.connection.driver_class", this.driverClass);
+        hibernateProperties.setProperty("hibernate.dialect", this.dialect);
+        return hibernateProperties;
+    }
+
+    /**
+     * @return the classpath resource with the SQL statements to create an empty database
+     */
+    public String getCreateTablesSql() {
+        return this.createTablesSql;
+    }
+
+    /**
+     * @return true, if the database runs in the process of the server and has to be shut down together with the server
+     */
+    public boolean isEmbedded() {
+        return this == EMBEDDED;
+    }
+}
@@ -14,6 +14,9 @@ import de.fhg.iais.roberta.util.dbc.Assert;
 /**
  * class for wrapping a hibernate session. This class eases the use of sessions. It creates transactions, after commits a new transaction is created
  * automatically. Closing a session forces a commit.<br>
+ * A transaction holds a JDBC connection from the pool. Before long running work, that doesn't access the database (e.g. compilation of programs), call
+ * {@link #commitAndReleaseConnection()}. The next access to the database starts a new transaction. The time connections are held is accumulated and
+ * available by {@link #getConnectionHoldMsec()}.<br>
  * <b>If neither close nor commit are called for this wrapper objects, changes of the database w.r.t. to the wrappped session are <i>not persisted</i>!</b>
  *
  * @author rbudde
@@ -21,16 +24,24 @@ import de.fhg.iais.roberta.util.dbc.Assert;
 public class DbSession {
     private static final Logger LOG = LoggerFactory.getLogger(DbSession.class);
     private Session session;
+    private final ReferenceDataCache referenceDataCache;
+    private final ProgramViewCounter programViewCounter;
+    private long transactionStart = -1; // -1: no transaction active, thus no connection held
+    private long connectionHoldMsec = 0;
 
     /**
      * wrap a hibernate session. Package visible: may only be called from {@link SessionFactoryWrapper}
      *
      * @param session the hibernate session to be wrapped
+     * @param referenceDataCache the cache of reference data of the session factory
+     * @param programViewCounter the counter for the views of programs of the session factory
      */
-    DbSession(Session session) {
+    DbSession(Session session, ReferenceDataCache referenceDataCache, ProgramViewCounter programViewCounter) {
         LOG.debug("open session + start transaction");
         this.session = session;
-        this.session.beginTransaction();
+        this.referenceDataCache = referenceDataCache;
+        this.programViewCounter = programViewCounter;
+        beginTransaction();
     }
 
     /**
@@ -42,6 +53,7 @@ public class DbSession {
         if ( transaction.isActive() ) {
             transaction.rollback();
         }
+        endOfTransaction();
     }
 
     /**
@@ -49,11 +61,21 @@ public class DbSession {
      */
     public void commit() {
         LOG.debug("commit + start transaction");
+        commitAndReleaseConnection();
+        beginTransaction();
+    }
+
+    /**
+     * commit the current transaction, but don't start a new one. The JDBC connection is returned to the pool. The next access to the database starts a
+     * new transaction.<br>
+     * <b>Objects loaded before are still attached to the session, but changes to them are not persisted before the next access to the database!</b>
+     */
+    public void commitAndReleaseConnection() {
         Transaction transaction = this.session.getTransaction();
         if ( transaction.isActive() ) {
             transaction.commit();
         }
-        this.session.beginTransaction();
+        endOfTransaction();
     }
 
     /**
@@ -65,16 +87,38 @@ public class DbSession {
         if ( transaction.isActive() ) {
             transaction.commit();
         }
+        endOfTransaction();
         this.session.close();
         this.session = null;
     }
 
+    /**
+     * @return the sum of the durations of all transactions of this session in msec, i.e. the time a JDBC connection was held. Includes the actual
+     *         transaction, if one is active
+     */
+    public long getConnectionHoldMsec() {
+        return this.transactionStart < 0 ? this.connectionHoldMsec : this.connectionHoldMsec + System.currentTimeMillis() - this.transactionStart;
+    }
+
     /**
      * @return the hibernate session wrapped by this object. Be careful!
      */
     public Session getSession() {
-        Assert.notNull(this.session);
-        return this.session;
+        return activeSession();
+    }
+
+    /**
+     * @return the cache of reference data shared by all sessions of the session factory. See {@link ReferenceDataCache} for the rules of its usage
+     */
+    public ReferenceDataCache getReferenceDataCache() {
+        return this.referenceDataCache;
+    }
+
+    /**
+     * @return the write-behind counter for the views of programs shared by all sessions of the session factory
+     */
+    public ProgramViewCounter getProgramViewCounter() {
+        return this.programViewCounter;
     }
 
     /**
@@ -84,7 +128,7 @@ public class DbSession {
      * @return the Query object
      */
     public Query createQuery(String query) {
-        return this.session.createQuery(query);
+        return activeSession().createQuery(query);
     }
 
     /**
@@ -94,7 +138,7 @@ public class DbSession {
      * @return the Query object
      */
     public SQLQuery createSqlQuery(String query) {
-        return this.session.createSQLQuery(query);
+        return activeSession().createSQLQuery(query);
     }
 
     /**
@@ -104,7 +148,7 @@ public class DbSession {
      * @return the key of the persisted object
      */
     public Serializable save(Object toBePersisted) {
-        return this.session.save(toBePersisted);
+        return activeSession().save(toBePersisted);
     }
 
     /**
@@ -113,7 +157,28 @@ public class DbSession {
      * @param toBeDeleted the entity to be deleted
      */
     public void delete(Object toBeDeleted) {
-        this.session.delete(toBeDeleted);
+        activeSession().delete(toBeDeleted);
         this.session.flush();
     }
+
+    private Session activeSession() {
+        Assert.notNull(this.session);
+        if ( this.transactionStart < 0 ) {
+            LOG.debug("start transaction after the connection was released");
+            beginTransaction();
+        }
+        return this.session;
+    }
+
+    private void beginTransaction() {
+        this.session.beginTransaction();
+        this.transactionStart = System.currentTimeMillis();
+    }
+
+    private void endOfTransaction() {
+        if ( this.transactionStart >= 0 ) {
+            this.connectionHoldMsec += System.currentTimeMillis() - this.transactionStart;
+            this.transactionStart = -1;
+        }
+    }
 }
@@ -13,10 +13,8 @@ import de.fhg.iais.roberta.util.dbc.Assert;
 public class DbSetup {
 
     private static final Logger LOG = LoggerFactory.getLogger(DbSetup.class);
-    //../OpenRobertaServer/src/main/resources
-    private static final String DB_CREATE_TABLES_SQL = "/create-tables.sql";
     private static final String SQL_RETURNING_POSITIVENUMBER_IF_SQLFILE_ALREADY_LOADED =
-        "select count(*) from INFORMATION_SCHEMA.TABLES where TABLE_NAME = 'PROGRAM'";
+        "select count(*) from INFORMATION_SCHEMA.TABLES where upper(TABLE_NAME) = 'PROGRAM'";
     private static final String SQL_RETURNING_POSITIVENUMBER_IF_SETUP_WAS_SUCCESSFUL = "select count(*) from ROBOT";
 
     private final DbExecutor dbExecutor;
@@ -26,8 +24,17 @@ public class DbSetup {
     }
 
     public void createEmptyDatabase() {
+        createEmptyDatabase(DatabaseMode.EMBEDDED);
+    }
+
+    /**
+     * create the tables of an empty database and insert the initial data. Nothing is done, if the tables exist already
+     *
+     * @param databaseMode determines the SQL dialect of the statements
+     */
+    public void createEmptyDatabase(DatabaseMode databaseMode) {
         createEmptyDatabase(
-            DbSetup.DB_CREATE_TABLES_SQL,
+            databaseMode.getCreateTablesSql(),
             DbSetup.SQL_RETURNING_POSITIVENUMBER_IF_SQLFILE_ALREADY_LOADED,
             DbSetup.SQL_RETURNING_POSITIVENUMBER_IF_SETUP_WAS_SUCCESSFUL);
     }
@@ -44,7 +51,7 @@ public class DbSetup {
         // this shows all tables from us:
         // List<String> openRobertaTables = this.dbExecutor.select("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_SCHEMA = 'PUBLIC'");
         int counter = 0;
-        List<String> toDelete = Arrays.asList("PROGRAM", "USER", "LOST_PASSWORD");
+        List<String> toDelete = Arrays.asList("PROGRAM", "\"USER\"", "LOST_PASSWORD");
         for ( String openRobertaTable : toDelete ) {
             counter += this.dbExecutor.update("delete from " + openRobertaTable);
         }
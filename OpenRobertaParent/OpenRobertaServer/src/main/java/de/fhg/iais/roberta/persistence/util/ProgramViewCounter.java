@@ -0,0 +1,187 @@
+package de.fhg.iais.roberta.persistence.util;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.util.dbc.Assert;
+
+/**
+ * write-behind counter for the views of programs (of the gallery). Counting a view doesn't touch the database and doesn't dirty the program entity. The
+ * views are accumulated in memory and periodically written in one batch of <code>update PROGRAM set VIEWED = VIEWED + ?</code> statements, using a
+ * transaction of its own. This avoids a row lock on popular programs inside of the user's transaction.<br>
+ * <br>
+ * The period (property <code>database.viewcounter.flush.sec</code>) is the loss window: if the server crashes, the views counted since the last flush are
+ * lost. A graceful shutdown flushes by {@link #stop()}. If a flush fails, the views are kept and written with the next flush.<br>
+ * <br>
+ * One counter belongs to one {@link SessionFactoryWrapper}, i.e. to one database. One entry is kept per program with views not yet written. The entry is
+ * removed when its views are flushed.
+ */
+public class ProgramViewCounter {
+    private static final Logger LOG = LoggerFactory.getLogger(ProgramViewCounter.class);
+    public static final int DEFAULT_FLUSH_SEC = 10;
+    private static final String INCREMENT_VIEWS = "update PROGRAM set VIEWED = coalesce(VIEWED, 0) + ? where ID = ?";
+
+    private static volatile int configuredFlushSec = DEFAULT_FLUSH_SEC;
+
+    private final SessionFactoryWrapper sessionFactoryWrapper;
+    private final int flushSec;
+    private final Map<Integer, Long> pendingViews = new ConcurrentHashMap<>();
+    private final LongAdder counted = new LongAdder();
+    private final AtomicLong flushes = new AtomicLong(0);
+    private final AtomicLong failedFlushes = new AtomicLong(0);
+    private ScheduledExecutorService flusher = null;
+
+    /**
+     * create a counter. The periodic flush has to be started by {@link #start()}
+     *
+     * @param sessionFactoryWrapper of the database the views are written to
+     * @param flushSec period of the flushes in seconds, > 0
+     */
+    public ProgramViewCounter(SessionFactoryWrapper sessionFactoryWrapper, int flushSec) {
+        Assert.isTrue(flushSec > 0, "the flush period of the view counter must be positive");
+        this.sessionFactoryWrapper = sessionFactoryWrapper;
+        this.flushSec = flushSec;
+    }
+
+    /**
+     * set the flush period of the counters created afterwards from the server properties. Must be called before the session factory is created.
+     *
+     * @param properties the server properties
+     */
+    public static void configure(Properties properties) {
+        configuredFlushSec = Integer.parseInt(properties.getProperty("database.viewcounter.flush.sec", String.valueOf(DEFAULT_FLUSH_SEC)).trim());
+        LOG.info("program views are written to the database every " + configuredFlushSec + " sec");
+    }
+
+    /**
+     * @return a new counter with the flush period set by {@link #configure(Properties)}
+     */
+    public static ProgramViewCounter createConfigured(SessionFactoryWrapper sessionFactoryWrapper) {
+        return new ProgramViewCounter(sessionFactoryWrapper, configuredFlushSec);
+    }
+
+    /**
+     * count one view of a program. Thread-safe and cheap, the database is not accessed.
+     *
+     * @param programId the id of the program viewed
+     */
+    public void countView(int programId) {
+        // merge is atomic per key: an increment is never lost to the removal of a flushed entry
+        this.pendingViews.merge(programId, 1L, Long::sum);
+        this.counted.increment();
+    }
+
+    /**
+     * @return the number of views counted, but not yet written to the database
+     */
+    public long getPendingViews(int programId) {
+        return this.pendingViews.getOrDefault(programId, 0L);
+    }
+
+    /**
+     * start the periodic flush. Called once when the server is started.
+     */
+    public synchronized void start() {
+        Assert.isTrue(this.flusher == null, "the view counter is already started");
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "programViewCounter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, this.flushSec, this.flushSec, TimeUnit.SECONDS);
+    }
+
+    /**
+     * stop the periodic flush and write the views counted since the last flush. Called from the shutdown hook before the database is shut down.
+     */
+    public void stop() {
+        synchronized ( this ) {
+            if ( this.flusher != null ) {
+                this.flusher.shutdown();
+                this.flusher = null;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * write the views counted since the last flush to the database. Only one flush is executed at a time. Views counted while flushing are written with
+     * the next flush.
+     *
+     * @return the number of programs updated
+     */
+    public synchronized int flush() {
+        List<Integer> programIds = new ArrayList<>();
+        List<Long> increments = new ArrayList<>();
+        for ( Map.Entry<Integer, Long> entry : this.pendingViews.entrySet() ) {
+            programIds.add(entry.getKey());
+            increments.add(entry.getValue());
+        }
+        if ( programIds.isEmpty() ) {
+            return 0;
+        }
+        Session session = this.sessionFactoryWrapper.getNativeSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            session.doWork(connection -> {
+                try (PreparedStatement incrementViews = connection.prepareStatement(INCREMENT_VIEWS)) {
+                    for ( int i = 0; i < programIds.size(); i++ ) {
+                        incrementViews.setLong(1, increments.get(i));
+                        incrementViews.setInt(2, programIds.get(i));
+                        incrementViews.addBatch();
+                    }
+                    incrementViews.executeBatch();
+                }
+            });
+            transaction.commit();
+        } catch ( Exception e ) {
+            if ( transaction != null && transaction.isActive() ) {
+                transaction.rollback();
+            }
+            this.failedFlushes.incrementAndGet();
+            LOG.error("writing the views of " + programIds.size() + " programs failed. Trying again with the next flush", e);
+            return 0;
+        } finally {
+            session.close();
+        }
+        for ( int i = 0; i < programIds.size(); i++ ) {
+            // views counted while flushing are kept for the next flush, otherwise the entry is removed
+            long increment = increments.get(i);
+            this.pendingViews.computeIfPresent(programIds.get(i), (programId, pending) -> pending == increment ? null : pending - increment);
+        }
+        this.flushes.incrementAndGet();
+        LOG.debug("views of " + programIds.size() + " programs written");
+        return programIds.size();
+    }
+
+    /**
+     * @return the statistics of this counter for the <i>/alive</i> service
+     */
+    public JSONObject getStatistics() throws JSONException {
+        long pending = 0;
+        for ( long programViews : this.pendingViews.values() ) {
+            pending += programViews;
+        }
+        JSONObject statistics = new JSONObject();
+        statistics.put("programs", this.pendingViews.size()).put("counted", this.counted.sum()).put("pending", pending);
+        statistics.put("flushes", this.flushes.get()).put("failedFlushes", this.failedFlushes.get());
+        return statistics;
+    }
+}
@@ -0,0 +1,188 @@
+package de.fhg.iais.roberta.persistence.util;
+
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.persistence.bo.ConfigurationData;
+import de.fhg.iais.roberta.persistence.bo.Robot;
+import de.fhg.iais.roberta.persistence.bo.Toolbox;
+import de.fhg.iais.roberta.util.dbc.Assert;
+
+/**
+ * an in-process cache for reference data, that never or hardly ever changes: robots (looked up by name on almost every request), configuration data
+ * (content-addressed by their hash, thus immutable), the default toolboxes (not owned by a user) and the description and tags of the programs of the
+ * gallery (keyed by program id and time of the last change, thus immutable, too). One cache belongs to one {@link SessionFactoryWrapper}, i.e. to one
+ * database.<br>
+ * <br>
+ * The objects cached are <b>detached</b> from the session, that loaded them. They may be used as parameters of queries and as references of other
+ * objects, but they <b>must not be modified</b>. DAOs, that modify cached data, have to remove it from the cache.<br>
+ * <br>
+ * The number of objects kept per kind is bounded (property <code>database.cache.maxsize</code>), the least recently used are evicted first. A size of 0
+ * disables the cache.
+ */
+public class ReferenceDataCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ReferenceDataCache.class);
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static volatile int configuredMaxSize = DEFAULT_MAX_SIZE;
+
+    private final Region<Robot> robots;
+    private final Region<ConfigurationData> configurationData;
+    private final Region<Toolbox> toolboxes;
+    private final Region<String[]> galleryDescriptions;
+
+    /**
+     * create a cache
+     *
+     * @param maxSize max number of objects kept per kind; 0 disables the cache
+     */
+    public ReferenceDataCache(int maxSize) {
+        Assert.isTrue(maxSize >= 0, "size of the reference data cache must not be negative");
+        this.robots = new Region<>(maxSize);
+        this.configurationData = new Region<>(maxSize);
+        this.toolboxes = new Region<>(maxSize);
+        this.galleryDescriptions = new Region<>(maxSize);
+    }
+
+    /**
+     * set the size of the caches created afterwards from the server properties. Must be called before the session factory is created.
+     *
+     * @param properties the server properties
+     */
+    public static void configure(Properties properties) {
+        configuredMaxSize = Integer.parseInt(properties.getProperty("database.cache.maxsize", String.valueOf(DEFAULT_MAX_SIZE)).trim());
+        LOG.info("reference data cache: " + configuredMaxSize + " objects per kind");
+    }
+
+    /**
+     * @return a new cache with the size set by {@link #configure(Properties)}
+     */
+    public static ReferenceDataCache createConfigured() {
+        return new ReferenceDataCache(configuredMaxSize);
+    }
+
+    public Robot getRobot(String name) {
+        return this.robots.get(name);
+    }
+
+    public void putRobot(Robot robot) {
+        this.robots.put(robot.getName(), robot);
+    }
+
+    public void removeRobot(String name) {
+        this.robots.remove(name);
+    }
+
+    public ConfigurationData getConfigurationData(String configurationHash) {
+        return this.configurationData.get(configurationHash);
+    }
+
+    public void putConfigurationData(ConfigurationData configurationData) {
+        this.configurationData.put(configurationData.getConfigurationHash(), configurationData);
+    }
+
+    /**
+     * @return the default toolbox (i.e. not owned by a user); null, if not cached
+     */
+    public Toolbox getDefaultToolbox(String name, Robot robot) {
+        return this.toolboxes.get(toolboxKey(name, robot));
+    }
+
+    public void putDefaultToolbox(String name, Robot robot, Toolbox toolbox) {
+        this.toolboxes.put(toolboxKey(name, robot), toolbox);
+    }
+
+    public void removeDefaultToolbox(String name, Robot robot) {
+        this.toolboxes.remove(toolboxKey(name, robot));
+    }
+
+    /**
+     * @return [description, tags] of a program of the gallery, as extracted from the program text; null, if not cached
+     */
+    public String[] getGalleryDescription(int programId, Timestamp lastChanged) {
+        return this.galleryDescriptions.get(galleryDescriptionKey(programId, lastChanged));
+    }
+
+    public void putGalleryDescription(int programId, Timestamp lastChanged, String[] descriptionAndTags) {
+        this.galleryDescriptions.put(galleryDescriptionKey(programId, lastChanged), descriptionAndTags);
+    }
+
+    /**
+     * @return the statistics of this cache for the <i>/alive</i> service
+     */
+    public JSONObject getStatistics() throws JSONException {
+        JSONObject statistics = new JSONObject();
+        statistics.put("robots", this.robots.getStatistics());
+        statistics.put("configurationData", this.configurationData.getStatistics());
+        statistics.put("toolboxes", this.toolboxes.getStatistics());
+        statistics.put("galleryDescriptions", this.galleryDescriptions.getStatistics());
+        return statistics;
+    }
+
+    private static String toolboxKey(String name, Robot robot) {
+        return robot.getId() + ":" + name;
+    }
+
+    private static String galleryDescriptionKey(int programId, Timestamp lastChanged) {
+        return programId + ":" + (lastChanged == null ? 0 : lastChanged.getTime());
+    }
+
+    /**
+     * a bounded LRU map with statistics
+     */
+    private static class Region<V> {
+        private final int maxSize;
+        // access order: the first entry is the least recently used one
+        private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final AtomicLong hits = new AtomicLong(0);
+        private final AtomicLong misses = new AtomicLong(0);
+        private final AtomicLong evictions = new AtomicLong(0);
+
+        private Region(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private synchronized V get(String key) {
+            V value = this.entries.get(key);
+            if ( value == null ) {
+                this.misses.incrementAndGet();
+            } else {
+                this.hits.incrementAndGet();
+            }
+            return value;
+        }
+
+        private synchronized void put(String key, V value) {
+            if ( this.maxSize == 0 ) {
+                return;
+            }
+            this.entries.put(key, value);
+            Iterator<Map.Entry<String, V>> lru = this.entries.entrySet().iterator();
+            while ( this.entries.size() > this.maxSize && lru.hasNext() ) {
+                lru.next();
+                lru.remove();
+                this.evictions.incrementAndGet();
+            }
+        }
+
+        private synchronized void remove(String key) {
+            this.entries.remove(key);
+        }
+
+        private synchronized JSONObject getStatistics() throws JSONException {
+            JSONObject statistics = new JSONObject();
+            statistics.put("hits", this.hits.get()).put("misses", this.misses.get()).put("evictions", this.evictions.get());
+            statistics.put("entries", this.entries.size());
+            return statistics;
+        }
+    }
+}
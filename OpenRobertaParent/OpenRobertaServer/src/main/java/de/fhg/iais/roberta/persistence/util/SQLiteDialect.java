@@ -1,240 +0,0 @@
-package de.fhg.iais.roberta.persistence.util;
-
-import java.sql.Types;
-
-import org.hibernate.dialect.Dialect;
-import org.hibernate.dialect.function.AbstractAnsiTrimEmulationFunction;
-import org.hibernate.dialect.function.NoArgSQLFunction;
-import org.hibernate.dialect.function.SQLFunction;
-import org.hibernate.dialect.function.SQLFunctionTemplate;
-import org.hibernate.dialect.function.StandardSQLFunction;
-import org.hibernate.dialect.function.VarArgsSQLFunction;
-import org.hibernate.type.StandardBasicTypes;
-
-/**
- * SQLite is used at many places, but there is no dialect available in hibernate
- * 
- * @author rbudde
- */
-public class SQLiteDialect extends Dialect {
-    public SQLiteDialect() {
-        registerColumnType(Types.BIT, "boolean");
-        registerColumnType(Types.TINYINT, "tinyint");
-        registerColumnType(Types.SMALLINT, "smallint");
-        registerColumnType(Types.INTEGER, "integer");
-        registerColumnType(Types.BIGINT, "bigint");
-        registerColumnType(Types.FLOAT, "float");
-        registerColumnType(Types.REAL, "real");
-        registerColumnType(Types.DOUBLE, "double");
-        registerColumnType(Types.NUMERIC, "numeric($p, $s)");
-        registerColumnType(Types.DECIMAL, "decimal");
-        registerColumnType(Types.CHAR, "char");
-        registerColumnType(Types.VARCHAR, "varchar($l)");
-        registerColumnType(Types.LONGVARCHAR, "longvarchar");
-        registerColumnType(Types.DATE, "date");
-        registerColumnType(Types.TIME, "time");
-        registerColumnType(Types.TIMESTAMP, "datetime");
-        registerColumnType(Types.BINARY, "blob");
-        registerColumnType(Types.VARBINARY, "blob");
-        registerColumnType(Types.LONGVARBINARY, "blob");
-        registerColumnType(Types.BLOB, "blob");
-        registerColumnType(Types.CLOB, "clob");
-        registerColumnType(Types.BOOLEAN, "boolean");
-
-        //registerFunction( "abs", new StandardSQLFunction("abs") );
-        registerFunction("concat", new VarArgsSQLFunction(StandardBasicTypes.STRING, "", "||", ""));
-        //registerFunction( "length", new StandardSQLFunction("length", StandardBasicTypes.LONG) );
-        //registerFunction( "lower", new StandardSQLFunction("lower") );
-        registerFunction("mod", new SQLFunctionTemplate(StandardBasicTypes.INTEGER, "?1 % ?2"));
-        registerFunction("quote", new StandardSQLFunction("quote", StandardBasicTypes.STRING));
-        registerFunction("random", new NoArgSQLFunction("random", StandardBasicTypes.INTEGER));
-        registerFunction("round", new StandardSQLFunction("round"));
-        registerFunction("substr", new StandardSQLFunction("substr", StandardBasicTypes.STRING));
-        registerFunction("substring", new SQLFunctionTemplate(StandardBasicTypes.STRING, "substr(?1, ?2, ?3)"));
-        registerFunction("trim", new AbstractAnsiTrimEmulationFunction() {
-            @Override
-            protected SQLFunction resolveBothSpaceTrimFunction() {
-                return new SQLFunctionTemplate(StandardBasicTypes.STRING, "trim(?1)");
-            }
-
-            @Override
-            protected SQLFunction resolveBothSpaceTrimFromFunction() {
-                return new SQLFunctionTemplate(StandardBasicTypes.STRING, "trim(?2)");
-            }
-
-            @Override
-            protected SQLFunction resolveLeadingSpaceTrimFunction() {
-                return new SQLFunctionTemplate(StandardBasicTypes.STRING, "ltrim(?1)");
-            }
-
-            @Override
-            protected SQLFunction resolveTrailingSpaceTrimFunction() {
-                return new SQLFunctionTemplate(StandardBasicTypes.STRING, "rtrim(?1)");
-            }
-
-            @Override
-            protected SQLFunction resolveBothTrimFunction() {
-                return new SQLFunctionTemplate(StandardBasicTypes.STRING, "trim(?1, ?2)");
-            }
-
-            @Override
-            protected SQLFunction resolveLeadingTrimFunction() {
-                return new SQLFunctionTemplate(StandardBasicTypes.STRING, "ltrim(?1, ?2)");
-            }
-
-            @Override
-            protected SQLFunction resolveTrailingTrimFunction() {
-                return new SQLFunctionTemplate(StandardBasicTypes.STRING, "rtrim(?1, ?2)");
-            }
-        });
-        //registerFunction( "upper", new StandardSQLFunction("upper") );
-    }
-
-    @Override
-    public boolean supportsIdentityColumns() {
-        return true;
-    }
-
-    /*
-     * public boolean supportsInsertSelectIdentity() { return true; // As specify in NHibernate dialect }
-     */
-
-    @Override
-    public boolean hasDataTypeInIdentityColumn() {
-        return false; // As specify in NHibernate dialect
-    }
-
-    /*
-     * public String appendIdentitySelectToInsert(String insertString) { return new StringBuffer(insertString.length()+30). // As specify in NHibernate dialect
-     * append(insertString). append("; ").append(getIdentitySelectString()). toString(); }
-     */
-
-    @Override
-    public String getIdentityColumnString() {
-        // return "integer primary key autoincrement";
-        return "integer";
-    }
-
-    @Override
-    public String getIdentitySelectString() {
-        return "select last_insert_rowid()";
-    }
-
-    @Override
-    public boolean supportsLimit() {
-        return true;
-    }
-
-    @Override
-    public boolean bindLimitParametersInReverseOrder() {
-        return true;
-    }
-
-    @Override
-    protected String getLimitString(String query, boolean hasOffset) {
-        return new StringBuffer(query.length() + 20).append(query).append(hasOffset ? " limit ? offset ?" : " limit ?").toString();
-    }
-
-    @Override
-    public boolean supportsTemporaryTables() {
-        return true;
-    }
-
-    @Override
-    public String getCreateTemporaryTableString() {
-        return "create temporary table if not exists";
-    }
-
-    @Override
-    public boolean dropTemporaryTableAfterUse() {
-        return true; // TODO Validate
-    }
-
-    @Override
-    public boolean supportsCurrentTimestampSelection() {
-        return true;
-    }
-
-    @Override
-    public boolean isCurrentTimestampSelectStringCallable() {
-        return false;
-    }
-
-    @Override
-    public String getCurrentTimestampSelectString() {
-        return "select current_timestamp";
-    }
-
-    @Override
-    public boolean supportsUnionAll() {
-        return true;
-    }
-
-    @Override
-    public boolean hasAlterTable() {
-        return false; // As specify in NHibernate dialect
-    }
-
-    @Override
-    public boolean dropConstraints() {
-        return false;
-    }
-
-    /*
-     * public String getAddColumnString() { return "add column"; }
-     */
-
-    @Override
-    public String getForUpdateString() {
-        return "";
-    }
-
-    @Override
-    public boolean supportsOuterJoinForUpdate() {
-        return false;
-    }
-
-    @Override
-    public String getDropForeignKeyString() {
-        throw new UnsupportedOperationException("No drop foreign key syntax supported by SQLiteDialect");
-    }
-
-    @Override
-    public String getAddForeignKeyConstraintString(
-        String constraintName,
-        String[] foreignKey,
-        String referencedTable,
-        String[] primaryKey,
-        boolean referencesPrimaryKey) {
-        throw new UnsupportedOperationException("No add foreign key syntax supported by SQLiteDialect");
-    }
-
-    @Override
-    public String getAddPrimaryKeyConstraintString(String constraintName) {
-        throw new UnsupportedOperationException("No add primary key syntax supported by SQLiteDialect");
-    }
-
-    @Override
-    public boolean supportsIfExistsBeforeTableName() {
-        return true;
-    }
-
-    @Override
-    public boolean supportsCascadeDelete() {
-        return true;
-    }
-
-    /*
-     * not case insensitive for unicode characters by default (ICU extension needed) public boolean supportsCaseInsensitiveLike() { return true; }
-     */
-
-    @Override
-    public boolean supportsTupleDistinctCounts() {
-        return false;
-    }
-
-    @Override
-    public String getSelectGUIDString() {
-        return "select hex(randomblob(16))";
-    }
-}
\ No newline at end of file
@@ -1,14 +1,24 @@
 package de.fhg.iais.roberta.persistence.util;
 
+import java.sql.SQLException;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.service.ServiceRegistryBuilder;
+import org.hibernate.service.jdbc.connections.spi.ConnectionProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.mchange.v2.c3p0.PooledDataSource;
 
 import de.fhg.iais.roberta.util.dbc.Assert;
 
@@ -18,23 +28,42 @@ import de.fhg.iais.roberta.util.dbc.Assert;
  * - Retrieving sessions from the factory is thread-safe and cheap.<br>
  * - The generated sessions are not thread-safe.<br>
  * <br>
- * The class <b>should</b> be used as a singleton. We use <b>GUICE</b> to enforce that.
+ * The class <b>should</b> be used as a singleton. We use <b>GUICE</b> to enforce that.<br>
+ * <br>
+ * The hibernate configuration file contains defaults. The database mode (see {@link DatabaseMode}) and all server properties, whose names start with
+ * <code>hibernate.</code> (e.g. the settings of the connection pool <code>hibernate.c3p0.*</code>), overwrite these defaults.
  *
  * @author rbudde
  */
 public final class SessionFactoryWrapper {
     private static final Logger LOG = LoggerFactory.getLogger(SessionFactoryWrapper.class);
+    private static volatile Properties configuredHibernateProperties = new Properties();
+
     private SessionFactory sessionFactory;
+    private final ReferenceDataCache referenceDataCache = ReferenceDataCache.createConfigured();
+    private final ProgramViewCounter programViewCounter = ProgramViewCounter.createConfigured(this);
 
     /**
-     * configure the session factory
+     * configure the session factory. The hibernate properties set by {@link #configure(Properties)} are used
      */
     @Inject
     public SessionFactoryWrapper(@Named("hibernate.config.xml") String cfgXml, @Named("hibernate.connection.url") String databaseUrl) {
+        this(cfgXml, databaseUrl, configuredHibernateProperties);
+    }
+
+    /**
+     * configure the session factory
+     *
+     * @param cfgXml the hibernate configuration file
+     * @param databaseUrl the JDBC url of the database
+     * @param hibernateProperties overwrite the properties of the hibernate configuration file, never null
+     */
+    public SessionFactoryWrapper(String cfgXml, String databaseUrl, Properties hibernateProperties) {
         for ( int retrycount = 0; retrycount < 3; retrycount++ ) {
             try {
                 Configuration configuration = new Configuration();
                 configuration.configure(cfgXml);
+                configuration.addProperties(hibernateProperties);
                 configuration.setProperty("hibernate.connection.url", databaseUrl);
                 ServiceRegistryBuilder serviceRegistryBuilder = new ServiceRegistryBuilder().applySettings(configuration.getProperties());
                 this.sessionFactory = configuration.buildSessionFactory(serviceRegistryBuilder.buildServiceRegistry());
@@ -53,6 +82,25 @@ public final class SessionFactoryWrapper {
         throw new ExceptionInInitializerError();
     }
 
+    /**
+     * set the hibernate properties for the session factories created afterwards by GUICE from the server properties: the properties of the database mode
+     * (property <code>database.mode</code>) and all properties whose names start with <code>hibernate.</code>. Must be called before the session factory
+     * is created.
+     *
+     * @param properties the server properties
+     */
+    public static void configure(Properties properties) {
+        DatabaseMode databaseMode = DatabaseMode.fromProperty(properties.getProperty("database.mode"));
+        Properties hibernateProperties = databaseMode.getHibernateProperties();
+        for ( String name : properties.stringPropertyNames() ) {
+            if ( name.startsWith("hibernate.") && !name.equals("hibernate.connection.url") ) {
+                hibernateProperties.setProperty(name, properties.getProperty(name).trim());
+            }
+        }
+        configuredHibernateProperties = hibernateProperties;
+        LOG.info("database mode " + databaseMode + " with dialect " + hibernateProperties.getProperty("hibernate.dialect"));
+    }
+
     /**
      * get a new session-wrapper from the session factory. The session-wrapper and the session contained are <b>not</b> thread-safe.
      *
@@ -62,7 +110,47 @@ public final class SessionFactoryWrapper {
         Assert.notNull(this.sessionFactory, "previous attempt to initialize the session factory failed");
         Session session = this.sessionFactory.openSession();
         Assert.notNull(session, "creation of session failed");
-        return new DbSession(session);
+        return new DbSession(session, this.referenceDataCache, this.programViewCounter);
+    }
+
+    /**
+     * @return the cache of reference data shared by all sessions of this factory
+     */
+    public ReferenceDataCache getReferenceDataCache() {
+        return this.referenceDataCache;
+    }
+
+    /**
+     * @return the write-behind counter for the views of programs stored in the database of this factory
+     */
+    public ProgramViewCounter getProgramViewCounter() {
+        return this.programViewCounter;
+    }
+
+    /**
+     * @return the state of the connection pool for the <i>/alive</i> service. If connections are not pooled, only <code>pooled: false</code> is returned
+     */
+    public JSONObject getConnectionPoolStatistics() throws JSONException {
+        JSONObject statistics = new JSONObject();
+        ConnectionProvider connectionProvider = ((SessionFactoryImplementor) this.sessionFactory).getServiceRegistry().getService(ConnectionProvider.class);
+        DataSource dataSource = connectionProvider.isUnwrappableAs(DataSource.class) ? connectionProvider.unwrap(DataSource.class) : null;
+        if ( !(dataSource instanceof PooledDataSource) ) {
+            return statistics.put("pooled", false);
+        }
+        PooledDataSource pool = (PooledDataSource) dataSource;
+        statistics.put("pooled", true);
+        try {
+            statistics.put("connections", pool.getNumConnectionsDefaultUser());
+            statistics.put("busy", pool.getNumBusyConnectionsDefaultUser());
+            statistics.put("idle", pool.getNumIdleConnectionsDefaultUser());
+            statistics.put("threadsAwaiting", pool.getNumThreadsAwaitingCheckoutDefaultUser());
+            statistics.put("failedCheckouts", pool.getNumFailedCheckoutsDefaultUser());
+            statistics.put("cachedStatements", pool.getStatementCacheNumStatementsDefaultUser());
+        } catch ( SQLException e ) {
+            LOG.error("the state of the connection pool could not be retrieved", e);
+            statistics.put("error", e.getMessage());
+        }
+        return statistics;
     }
 
     /**
@@ -15,6 +15,9 @@ import de.fhg.iais.roberta.util.Util1;
  * - executing SQL scripts and<br>
  * - loading, transforming and updating rows in the database<br>
  * the method {@link Upgrader#to(String)} either contains small updates or should delegate to a method for updates with many actions
+ * <br>
+ * The upgrade works with the directories of the <i>embedded</i> HSQLDB only (see {@link DatabaseMode}). A PostgreSQL database is created with the schema
+ * of the actual version from <code>create-tables-postgres.sql</code>, SQL scripts for future upgrades must be provided for both dialects.
  *
  * @author rbudde
  */
@@ -128,7 +131,7 @@ public class Upgrader {
             dbSetup.createEmptyDatabase(
                 "/update-2-2-7.sql",
                 "select count(*) from INFORMATION_SCHEMA.TABLES where TABLE_NAME = 'PENDING_EMAIL_CONFIRMATIONS'",
-                "select count(*) from USER where ACCOUNT = 'Gallery'");
+                "select count(*) from \"USER\" where ACCOUNT = 'Gallery'");
             nativeSession.createSQLQuery("shutdown").executeUpdate();
             nativeSession.close();
         } else if ( serverVersion.equals("2.2.6") ) {
@@ -35,7 +35,7 @@ public class Upgrader_2_3_0 {
      */
     public void run() {
         this.nativeSession = sessionFactoryWrapper.getNativeSession();
-        this.dbSession = new DbSession(nativeSession);
+        this.dbSession = new DbSession(nativeSession, sessionFactoryWrapper.getReferenceDataCache(), sessionFactoryWrapper.getProgramViewCounter());
         // step 1
         new DbSetup(nativeSession).createEmptyDatabase(
             "/update-2-3-0--step-1.sql",
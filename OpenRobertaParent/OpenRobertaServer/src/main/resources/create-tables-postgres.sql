@@ -0,0 +1,175 @@
+-- the schema of create-tables.sql for PostgreSQL (version 10 or newer). USER is a reserved word and has to be quoted.
+-- Keep both files in sync!
+
+create table "USER" (
+  ID INTEGER not null generated by default as identity (start with 1),
+  ACCOUNT varchar(255) not null,
+  PASSWORD  varchar(255) not null,
+  EMAIL varchar(255),
+  ROLE varchar(32) not null,
+  CREATED timestamp not null,
+  LAST_LOGIN timestamp not null,
+  TAGS text, -- e.g. HERDER-GYMNASIUM KÖLN Q1 ED_SHEERAN
+  USER_NAME varchar(255),
+  YOUNGER_THAN_14 boolean default false not null,
+  ACTIVATED boolean default false not null,
+  primary key (ID)
+);
+
+create unique index accountIdx on "USER"(ACCOUNT);
+
+create table LOST_PASSWORD (
+    ID INTEGER not null generated by default as identity (start with 1),
+    USER_ID INTEGER not null,
+    URL_POSTFIX varchar(255),
+    CREATED timestamp not null,
+    
+    primary key (ID),
+    foreign key (USER_ID) references "USER"(ID) ON DELETE CASCADE
+);
+
+create table PENDING_EMAIL_CONFIRMATIONS (
+    ID INTEGER not null generated by default as identity (start with 1),
+    USER_ID INTEGER not null,
+    URL_POSTFIX varchar(255),
+    CREATED timestamp not null,
+    
+    primary key (ID),
+    foreign key (USER_ID) references "USER"(ID) ON DELETE CASCADE
+);
+
+create table ROBOT (
+  ID INTEGER not null generated by default as identity (start with 42),
+  NAME varchar(255) not null,
+  CREATED timestamp not null,
+  TAGS text, 
+  ICON_NUMBER integer not null,
+  
+  primary key (ID)
+);
+
+create unique index typeIdx on ROBOT(NAME);
+
+create table PROGRAM (
+  ID INTEGER not null generated by default as identity (start with 42),
+  NAME varchar(255) not null,
+  PROGRAM_TEXT text,
+  CONFIG_NAME varchar(255),
+  CONFIG_HASH varchar(255),
+  OWNER_ID INTEGER not null,
+  AUTHOR_ID INTEGER not null,
+  ROBOT_ID INTEGER not null,
+  CREATED timestamp not null,
+  LAST_CHANGED timestamp not null,
+  LAST_CHECKED timestamp,
+  LAST_ERRORFREE timestamp,
+  VIEWED INTEGER,
+  TAGS text, -- e.g. CAR AUTONOMOUS COOL 3WHEELS
+  ICON_NUMBER integer not null,
+  
+  primary key (ID),
+  foreign key (OWNER_ID) references "USER"(ID) ON DELETE CASCADE,
+  foreign key (ROBOT_ID) references ROBOT(ID),
+  foreign key (AUTHOR_ID) references "USER"(ID) ON DELETE CASCADE
+);
+
+create unique index progNameOwnerRobotIdx on PROGRAM(NAME, OWNER_ID, ROBOT_ID, AUTHOR_ID);
+
+create table USER_PROGRAM (
+  ID INTEGER not null generated by default as identity (start with 42),
+  USER_ID INTEGER not null,
+  PROGRAM_ID INTEGER not null,
+  RELATION varchar(32) not null, -- 1 READ access, 2 WRITE access, 4 DELETE right, (really? not yet used) 8 PROMOTE_READ right, 16 PROMOTE_WRITE right
+ 
+  foreign key (USER_ID) references "USER"(ID) ON DELETE CASCADE,
+  foreign key (PROGRAM_ID) references PROGRAM(ID) ON DELETE CASCADE
+);
+
+create table USER_PROGRAM_LIKE (
+  ID INTEGER not null generated by default as identity (start with 42),
+  USER_ID INTEGER not null,
+  PROGRAM_ID INTEGER not null,
+  CREATED timestamp not null,
+  MARK text,
+  COMMENT text,
+ 
+  foreign key (USER_ID) references "USER"(ID) ON DELETE CASCADE,
+  foreign key (PROGRAM_ID) references PROGRAM(ID) ON DELETE CASCADE
+);
+
+create unique index userProgramLikeIdx on USER_PROGRAM_LIKE(USER_ID, PROGRAM_ID);
+
+create table TOOLBOX (
+  ID INTEGER not null generated by default as identity (start with 42),
+  NAME varchar(255) not null,
+  OWNER_ID INTEGER,
+  ROBOT_ID INTEGER not null,
+  TOOLBOX_TEXT text,
+  CREATED timestamp not null,
+  LAST_CHANGED timestamp not null,
+  LAST_CHECKED timestamp,
+  LAST_ERRORFREE timestamp,
+  TAGS text, -- e.g. CAR AUTONOMOUS COOL 3WHEELS
+  ICON_NUMBER integer not null,
+  
+  primary key (ID),
+  foreign key (OWNER_ID) references "USER"(ID) ON DELETE CASCADE,
+  foreign key (ROBOT_ID) references ROBOT(ID)
+);
+
+create unique index toolNameOwnerIdx on TOOLBOX(NAME, OWNER_ID, ROBOT_ID);
+
+create table CONFIGURATION (
+  ID INTEGER not null generated by default as identity (start with 42),
+  NAME varchar(255) not null,
+  OWNER_ID INTEGER,
+  ROBOT_ID INTEGER not null,
+  CONFIGURATION_HASH varchar(255),
+  CREATED timestamp not null,
+  LAST_CHANGED timestamp not null,
+  LAST_CHECKED timestamp,
+  LAST_ERRORFREE timestamp,
+  TAGS text, -- e.g. CAR AUTONOMOUS COOL 3WHEELS
+  ICON_NUMBER integer not null,
+  
+  primary key (ID),
+  foreign key (OWNER_ID) references "USER"(ID) ON DELETE CASCADE,
+  foreign key (ROBOT_ID) references ROBOT(ID)
+);
+
+create table CONFIGURATION_DATA (
+  CONFIGURATION_HASH varchar(255) not null,
+  CONFIGURATION_TEXT text not null,
+  
+  primary key (CONFIGURATION_HASH)
+);
+
+insert into ROBOT
+( NAME, CREATED, TAGS, ICON_NUMBER )
+values('ev3',
+now(),
+ '', 0
+ );
+
+insert into "USER"
+(ACCOUNT, PASSWORD, EMAIL, ROLE, CREATED, LAST_LOGIN, TAGS, USER_NAME)
+values ('Roberta','f17a0084220e822e:313c4eda282166163f78cd0b13da3b66f5ed6a0e','','TEACHER',now() ,now() ,'','Roberta Roboter'
+);
+
+insert into "USER"
+(ACCOUNT, PASSWORD, EMAIL, ROLE, CREATED, LAST_LOGIN, TAGS, USER_NAME)
+values ('Gallery','f17a0084220e822e:313c4eda282166163f78cd0b13da3b66f5ed6a0e','','TEACHER',now() ,now() ,'','The Gallery'
+);
+
+insert into "USER"
+(ACCOUNT, PASSWORD, EMAIL, ROLE, CREATED, LAST_LOGIN, TAGS, USER_NAME)
+values ('testUser','f17a0084220e822e:313c4eda282166163f78cd0b13da3b66f5ed6a0e','','TEACHER',now() ,now() ,'','Test User'
+);
+
+insert into PROGRAM
+( NAME, OWNER_ID, ROBOT_ID, AUTHOR_ID, PROGRAM_TEXT, CREATED, LAST_CHANGED, LAST_CHECKED, LAST_ERRORFREE, VIEWED, TAGS, ICON_NUMBER )
+values('TestProg',3,42,3,'<block_set xmlns="http://de.fhg.iais.roberta.blockly"><instance x="370" y="50"><block type="robControls_start" id="149" intask="true" deletable="false"><mutation declare="false"></mutation></block><block type="robActions_motorDiff_on" id="168" inline="false" intask="true"><field name="DIRECTION">FOREWARD</field><value name="POWER"><block type="math_number" id="169" intask="true"><field name="NUM">30</field></block></value></block><block type="robControls_wait_for" id="189" inline="false" intask="true"><value name="WAIT0"><block type="logic_compare" id="190" inline="true" intask="true"><mutation operator_range="COLOUR"></mutation><field name="OP">EQ</field><value name="A"><block type="sim_getSample" id="191" intask="true" deletable="false" movable="false"><mutation input="COLOUR_COLOUR"></mutation><field name="SENSORTYPE">COLOUR_COLOUR</field><field name="SENSORPORT">3</field></block></value><value name="B"><block type="robColour_picker" id="197" intask="true"><field name="COLOUR">#000000</field></block></value></block></value></block></instance></block_set>',
+now(), now(), now(), now(),
+0,'', 0
+ );
+commit;
@@ -0,0 +1,111 @@
+package de.fhg.iais.roberta.javaServer.basics;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.fhg.iais.roberta.persistence.util.DatabaseBackup;
+import de.fhg.iais.roberta.persistence.util.DbExecutor;
+import de.fhg.iais.roberta.persistence.util.DbSetup;
+import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * online backups need a file database, an in-memory database cannot be backed up
+ */
+public class PersistDatabaseBackupTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private SessionFactoryWrapper sessionFactoryWrapper;
+    private File backupDir;
+
+    @Before
+    public void setup() throws Exception {
+        String dbUrl = "jdbc:hsqldb:file:" + this.tempFolder.getRoot().getAbsolutePath() + "/db/openroberta-db";
+        this.sessionFactoryWrapper = new SessionFactoryWrapper("hibernate-test-cfg.xml", dbUrl);
+        new DbSetup(this.sessionFactoryWrapper.getNativeSession()).createEmptyDatabase();
+        this.backupDir = new File(this.tempFolder.getRoot(), "backup");
+    }
+
+    @After
+    public void tearDown() {
+        Session nativeSession = this.sessionFactoryWrapper.getNativeSession();
+        nativeSession.beginTransaction();
+        DbExecutor.make(nativeSession).ddl("SHUTDOWN;");
+    }
+
+    @Test
+    public void testBackupsAreCreatedAndRotated() throws Exception {
+        DatabaseBackup databaseBackup = new DatabaseBackup(this.sessionFactoryWrapper, true, this.backupDir, 2);
+        JSONObject first = databaseBackup.backup();
+        Assert.assertTrue(first.getLong("bytes") > 0);
+        Assert.assertTrue(new File(this.backupDir, first.getString("file")).isFile());
+        databaseBackup.backup();
+        JSONObject third = databaseBackup.backup();
+
+        String[] backups = this.backupDir.list();
+        Assert.assertEquals(2, backups.length);
+        Assert.assertFalse(new File(this.backupDir, first.getString("file")).exists());
+        Assert.assertTrue(new File(this.backupDir, third.getString("file")).isFile());
+        JSONObject statistics = databaseBackup.getStatistics();
+        Assert.assertEquals(3, statistics.getLong("backups"));
+        Assert.assertEquals(0, statistics.getLong("failedBackups"));
+        Assert.assertEquals(third.getString("file"), statistics.getJSONObject("lastBackup").getString("file"));
+    }
+
+    @Test
+    public void testRequestedBackupIsExecutedByTheScheduler() throws Exception {
+        DatabaseBackup databaseBackup = new DatabaseBackup(this.sessionFactoryWrapper, true, this.backupDir, 2);
+        databaseBackup.requestBackup();
+        for ( int i = 0; i < 300 && databaseBackup.getStatistics().getBoolean("running"); i++ ) {
+            Thread.sleep(100);
+        }
+        JSONObject statistics = databaseBackup.getStatistics();
+        Assert.assertEquals(1, statistics.getLong("backups"));
+        Assert.assertTrue(new File(this.backupDir, statistics.getJSONObject("lastBackup").getString("file")).isFile());
+        databaseBackup.stop();
+        try {
+            databaseBackup.requestBackup();
+            Assert.fail("backup accepted after the scheduler was stopped");
+        } catch ( DbcException e ) {
+            Assert.assertFalse(databaseBackup.getStatistics().getBoolean("running"));
+        }
+    }
+
+    @Test
+    public void testNightlyBackupKeepsItsLocalHourOverTheDaylightSavingTime() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        ZonedDateTime beforeSpring = ZonedDateTime.of(2026, 3, 28, 3, 0, 0, 0, berlin);
+        ZonedDateTime spring = DatabaseBackup.nextBackupTime(beforeSpring, 3);
+        Assert.assertEquals(3, spring.getHour());
+        Assert.assertEquals(Duration.ofHours(23), Duration.between(beforeSpring, spring));
+        ZonedDateTime autumn = DatabaseBackup.nextBackupTime(ZonedDateTime.of(2026, 10, 24, 3, 0, 0, 0, berlin), 3);
+        Assert.assertEquals(3, autumn.getHour());
+        Assert.assertEquals(25, autumn.getDayOfMonth());
+        Assert.assertEquals(ZonedDateTime.of(2026, 3, 28, 3, 0, 0, 0, berlin), DatabaseBackup.nextBackupTime(beforeSpring.minusSeconds(1), 3));
+    }
+
+    @Test
+    public void testBackupIsRejectedIfTheDatabaseIsNotEmbedded() throws Exception {
+        DatabaseBackup databaseBackup = new DatabaseBackup(this.sessionFactoryWrapper, false, this.backupDir, 2);
+        try {
+            databaseBackup.backup();
+            Assert.fail("backup of a database server accepted");
+        } catch ( DbcException e ) {
+            // expected
+        }
+        Assert.assertFalse(this.backupDir.exists());
+        Assert.assertEquals(0, databaseBackup.getStatistics().getLong("backups"));
+    }
+}
@@ -0,0 +1,168 @@
+package de.fhg.iais.roberta.javaServer.basics;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.persistence.bo.AccessRight;
+import de.fhg.iais.roberta.persistence.bo.Like;
+import de.fhg.iais.roberta.persistence.bo.Program;
+import de.fhg.iais.roberta.persistence.bo.Relation;
+import de.fhg.iais.roberta.persistence.bo.Robot;
+import de.fhg.iais.roberta.persistence.bo.Role;
+import de.fhg.iais.roberta.persistence.bo.User;
+import de.fhg.iais.roberta.persistence.dao.ProgramDao;
+import de.fhg.iais.roberta.persistence.dao.RobotDao;
+import de.fhg.iais.roberta.persistence.util.DbSession;
+import de.fhg.iais.roberta.persistence.util.DbSetup;
+import de.fhg.iais.roberta.persistence.util.ReferenceDataCache;
+import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+public class PersistGalleryTest {
+    private SessionFactoryWrapper sessionFactoryWrapper;
+    private DbSetup memoryDbSetup;
+    private DbSession hSession;
+
+    private User gallery;
+    private User alice;
+    private User bob;
+    private Robot ev3;
+    private Robot nxt;
+
+    @Before
+    public void setup() throws Exception {
+        this.sessionFactoryWrapper = new SessionFactoryWrapper("hibernate-test-cfg.xml", "jdbc:hsqldb:mem:galleryInMemoryDb");
+        Session nativeSession = this.sessionFactoryWrapper.getNativeSession();
+        this.memoryDbSetup = new DbSetup(nativeSession);
+        this.memoryDbSetup.createEmptyDatabase();
+        this.hSession = this.sessionFactoryWrapper.getSession();
+        RobotDao robotDao = new RobotDao(this.hSession);
+        this.ev3 = robotDao.loadRobot("ev3");
+        this.nxt = robotDao.loadRobot("nxt");
+        if ( this.nxt == null ) {
+            this.nxt = new Robot("nxt");
+            this.hSession.save(this.nxt);
+        }
+        this.gallery = createUser("theGallery");
+        this.alice = createUser("alice");
+        this.bob = createUser("bob");
+
+        Program a = shareWithGallery("a", this.alice, this.ev3, "<block_set xmlns='http://de.fhg.iais.roberta.blockly' description='first' tags='car'/>");
+        Program b = shareWithGallery("b", this.bob, this.ev3, "<block_set xmlns='http://de.fhg.iais.roberta.blockly'/>");
+        Program c = shareWithGallery("c", this.alice, this.nxt, "<block_set xmlns='http://de.fhg.iais.roberta.blockly'/>");
+        b.incrViewed();
+        b.incrViewed();
+        c.incrViewed();
+        this.hSession.save(new Like(this.bob, a));
+        this.hSession.save(new Like(this.alice, a));
+        this.hSession.save(new Like(this.alice, c));
+
+        // not in the gallery: shared with a second user
+        Program d = shareWithGallery("d", this.bob, this.ev3, "<block_set xmlns='http://de.fhg.iais.roberta.blockly'/>");
+        this.hSession.save(new AccessRight(this.alice, d, Relation.READ));
+        // not in the gallery: owned by a user
+        this.hSession.save(new Program("e", this.alice, this.ev3, this.alice));
+        this.hSession.commit();
+    }
+
+    @After
+    public void tearDown() {
+        this.hSession.close();
+        this.memoryDbSetup.deleteAllFromUserAndProgramTmpPasswords();
+    }
+
+    @Test
+    public void testGalleryIsProjectedAndAggregated() throws Exception {
+        ProgramDao programDao = new ProgramDao(this.hSession);
+        List<Object[]> rows = programDao.loadGallery(this.gallery, this.bob.getId(), null, "likes", 0, 0);
+        Assert.assertEquals(3, rows.size());
+        Assert.assertEquals(3, programDao.countGallery(this.gallery, null));
+        Object[] a = rows.get(0);
+        Assert.assertEquals("ev3", a[0]);
+        Assert.assertEquals("a", a[1]);
+        Assert.assertEquals("alice", a[3]);
+        Assert.assertEquals(2, ((Number) a[6]).intValue());
+        Assert.assertEquals(1, ((Number) a[8]).intValue());
+        Object[] c = rows.get(1);
+        Assert.assertEquals("c", c[1]);
+        Assert.assertEquals(1, ((Number) c[6]).intValue());
+        Assert.assertEquals(0, ((Number) c[8]).intValue());
+        Assert.assertEquals("b", rows.get(2)[1]);
+    }
+
+    @Test
+    public void testGalleryIsSortedFilteredAndPaged() throws Exception {
+        ProgramDao programDao = new ProgramDao(this.hSession);
+        List<Object[]> byViews = programDao.loadGallery(this.gallery, 0, null, "views", 0, 0);
+        Assert.assertEquals("b", byViews.get(0)[1]);
+        Assert.assertEquals(2, ((Number) byViews.get(0)[5]).intValue());
+        Assert.assertEquals("c", byViews.get(1)[1]);
+
+        List<Object[]> newestFirst = programDao.loadGallery(this.gallery, 0, null, "date", 0, 0);
+        Assert.assertEquals("c", newestFirst.get(0)[1]);
+        List<Object[]> page = programDao.loadGallery(this.gallery, 0, null, "date", 1, 1);
+        Assert.assertEquals(1, page.size());
+        Assert.assertEquals(newestFirst.get(1)[1], page.get(0)[1]);
+
+        List<Object[]> nxtOnly = programDao.loadGallery(this.gallery, 0, this.nxt, "date", 0, 0);
+        Assert.assertEquals(1, nxtOnly.size());
+        Assert.assertEquals("c", nxtOnly.get(0)[1]);
+        Assert.assertEquals(2, programDao.countGallery(this.gallery, this.ev3));
+    }
+
+    @Test
+    public void testProgramTextIsLoadedOnlyOnRequest() throws Exception {
+        ProgramDao programDao = new ProgramDao(this.hSession);
+        Object[] a = programDao.loadGallery(this.gallery, 0, this.ev3, "likes", 0, 1).get(0);
+        Assert.assertEquals("a", a[1]);
+        int programId = ((Number) a[2]).intValue();
+        Timestamp lastChanged = (Timestamp) a[9];
+        Assert.assertNotNull(lastChanged);
+
+        List<Object[]> texts = programDao.loadProgramTexts(Arrays.asList(programId));
+        Assert.assertEquals(1, texts.size());
+        Assert.assertEquals(programId, ((Number) texts.get(0)[0]).intValue());
+        Assert.assertEquals(lastChanged, texts.get(0)[1]);
+        Assert.assertTrue(((String) texts.get(0)[2]).contains("description='first'"));
+        Assert.assertTrue(programDao.loadProgramTexts(Collections.<Integer> emptyList()).isEmpty());
+
+        ReferenceDataCache cache = new ReferenceDataCache(10);
+        String[] descriptionAndTags = new String[] {
+            "first",
+            "car"
+        };
+        cache.putGalleryDescription(programId, lastChanged, descriptionAndTags);
+        Assert.assertSame(descriptionAndTags, cache.getGalleryDescription(programId, lastChanged));
+        Assert.assertNull("the program was changed", cache.getGalleryDescription(programId, new Timestamp(lastChanged.getTime() + 1)));
+    }
+
+    @Test(expected = DbcException.class)
+    public void testInvalidSortOrderIsRejected() {
+        new ProgramDao(this.hSession).loadGallery(this.gallery, 0, null, "name; drop table PROGRAM", 0, 0);
+    }
+
+    private User createUser(String account) throws Exception {
+        User user = new User(account);
+        user.setEmail("");
+        user.setPassword("pass-" + account);
+        user.setRole(Role.STUDENT);
+        this.hSession.save(user);
+        return user;
+    }
+
+    private Program shareWithGallery(String name, User author, Robot robot, String programText) {
+        Program program = new Program(name, this.gallery, robot, author);
+        program.setProgramText(programText);
+        this.hSession.save(program);
+        this.hSession.save(new AccessRight(author, program, Relation.X_WRITE));
+        return program;
+    }
+}
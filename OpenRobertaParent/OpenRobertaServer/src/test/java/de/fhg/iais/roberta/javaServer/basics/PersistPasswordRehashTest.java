@@ -0,0 +1,83 @@
+package de.fhg.iais.roberta.javaServer.basics;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.persistence.UserProcessor;
+import de.fhg.iais.roberta.persistence.bo.Role;
+import de.fhg.iais.roberta.persistence.bo.User;
+import de.fhg.iais.roberta.persistence.util.DbSession;
+import de.fhg.iais.roberta.persistence.util.DbSetup;
+import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
+
+public class PersistPasswordRehashTest {
+    private SessionFactoryWrapper sessionFactoryWrapper;
+    private DbSetup memoryDbSetup;
+
+    @Before
+    public void setup() throws Exception {
+        this.sessionFactoryWrapper = new SessionFactoryWrapper("hibernate-test-cfg.xml", "jdbc:hsqldb:mem:passwordRehashInMemoryDb");
+        this.memoryDbSetup = new DbSetup(this.sessionFactoryWrapper.getNativeSession());
+        this.memoryDbSetup.createEmptyDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        this.memoryDbSetup.deleteAllFromUserAndProgramTmpPasswords();
+    }
+
+    @Test
+    public void testOutdatedPasswordHashIsReplacedAtLogin() throws Exception {
+        DbSession hSession = this.sessionFactoryWrapper.getSession();
+        User user = new User("legacyUser");
+        user.setPassword("pass");
+        user.setRole(Role.STUDENT);
+        hSession.save(user);
+        hSession.close();
+        setPasswordHash("legacyUser", legacyHash("0123456789abcdef", "pass"));
+
+        hSession = this.sessionFactoryWrapper.getSession();
+        Assert.assertNull(new UserProcessor(hSession, null).getUser("legacyUser", "wrong"));
+        hSession.close();
+        Assert.assertEquals(legacyHash("0123456789abcdef", "pass"), getPasswordHash("legacyUser"));
+
+        hSession = this.sessionFactoryWrapper.getSession();
+        Assert.assertNotNull(new UserProcessor(hSession, null).getUser("legacyUser", "pass"));
+        hSession.close();
+        String newHash = getPasswordHash("legacyUser");
+        Assert.assertTrue(newHash.startsWith("pbkdf2:"));
+
+        hSession = this.sessionFactoryWrapper.getSession();
+        Assert.assertNotNull(new UserProcessor(hSession, null).getUser("legacyUser", "pass"));
+        hSession.close();
+        Assert.assertEquals("a current hash is not replaced", newHash, getPasswordHash("legacyUser"));
+    }
+
+    /**
+     * @return the hash of a password in the legacy format: one round of SHA-1 with 8 bytes of salt
+     */
+    private static String legacyHash(String saltHex, String password) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update(Hex.decodeHex(saltHex.toCharArray()));
+        return saltHex + ":" + Hex.encodeHexString(digest.digest(password.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void setPasswordHash(String account, String hash) {
+        Session nativeSession = this.sessionFactoryWrapper.getNativeSession();
+        nativeSession.beginTransaction();
+        nativeSession.createSQLQuery("update \"USER\" set PASSWORD = '" + hash + "' where ACCOUNT = '" + account + "'").executeUpdate();
+        nativeSession.getTransaction().commit();
+        nativeSession.close();
+    }
+
+    private String getPasswordHash(String account) {
+        return this.memoryDbSetup.getOne("select PASSWORD from \"USER\" where ACCOUNT = '" + account + "'");
+    }
+}
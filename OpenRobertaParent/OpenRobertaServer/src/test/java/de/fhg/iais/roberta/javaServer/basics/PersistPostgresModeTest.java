@@ -0,0 +1,96 @@
+package de.fhg.iais.roberta.javaServer.basics;
+
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.persistence.bo.AccessRight;
+import de.fhg.iais.roberta.persistence.bo.Program;
+import de.fhg.iais.roberta.persistence.bo.Relation;
+import de.fhg.iais.roberta.persistence.bo.Robot;
+import de.fhg.iais.roberta.persistence.bo.Role;
+import de.fhg.iais.roberta.persistence.bo.User;
+import de.fhg.iais.roberta.persistence.dao.ProgramDao;
+import de.fhg.iais.roberta.persistence.dao.RobotDao;
+import de.fhg.iais.roberta.persistence.dao.UserDao;
+import de.fhg.iais.roberta.persistence.util.DatabaseMode;
+import de.fhg.iais.roberta.persistence.util.DbSession;
+import de.fhg.iais.roberta.persistence.util.DbSetup;
+import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * the schema and the queries for PostgreSQL, checked against HSQLDB in its PostgreSQL compatibility mode
+ */
+public class PersistPostgresModeTest {
+    private SessionFactoryWrapper sessionFactoryWrapper;
+    private DbSetup memoryDbSetup;
+
+    @Before
+    public void setup() throws Exception {
+        Properties hibernateProperties = DatabaseMode.POSTGRES.getHibernateProperties();
+        hibernateProperties.setProperty("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+        this.sessionFactoryWrapper =
+            new SessionFactoryWrapper("hibernate-test-cfg.xml", "jdbc:hsqldb:mem:postgresModeInMemoryDb;sql.syntax_pgs=true", hibernateProperties);
+        this.memoryDbSetup = new DbSetup(this.sessionFactoryWrapper.getNativeSession());
+        this.memoryDbSetup.createEmptyDatabase(DatabaseMode.POSTGRES);
+    }
+
+    @After
+    public void tearDown() {
+        this.memoryDbSetup.deleteAllFromUserAndProgramTmpPasswords();
+    }
+
+    @Test
+    public void testModes() {
+        Assert.assertSame(DatabaseMode.POSTGRES, DatabaseMode.fromProperty("postgres"));
+        Assert.assertEquals("jdbc:postgresql://db:5432/openroberta", DatabaseMode.POSTGRES.makeUrl(".", "2.5.4", "db:5432"));
+        Assert.assertEquals("jdbc:hsqldb:file:./db-2.5.4/openroberta-db;ifexists=true", DatabaseMode.EMBEDDED.makeUrl(".", "2.5.4", "db"));
+        Assert.assertTrue(DatabaseMode.EMBEDDED.isEmbedded());
+        Assert.assertFalse(DatabaseMode.SERVER.isEmbedded());
+        try {
+            DatabaseMode.fromProperty("sqlite");
+            Assert.fail("invalid mode accepted");
+        } catch ( DbcException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEntitiesAndQueries() throws Exception {
+        DbSession session = this.sessionFactoryWrapper.getSession();
+        Robot robot = new RobotDao(session).loadRobot("ev3");
+        Assert.assertEquals(42, robot.getId());
+        User gallery = createUser(session, "pgGallery");
+        User author = createUser(session, "pgAuthor");
+        Program program = new Program("pgProgram", gallery, robot, author);
+        program.setProgramText("<program/>");
+        session.save(program);
+        session.save(new AccessRight(author, program, Relation.X_WRITE));
+        session.close();
+
+        session = this.sessionFactoryWrapper.getSession();
+        ProgramDao programDao = new ProgramDao(session);
+        Assert.assertEquals("<program/>", programDao.load("pgProgram", gallery, robot, author).getProgramText());
+        Assert.assertEquals(1, programDao.loadListing(gallery, robot).size());
+        Assert.assertEquals(1, programDao.countGallery(gallery, robot));
+        Assert.assertEquals(1, programDao.loadGallery(gallery, author.getId(), robot, "views", 0, 10).size());
+        Assert.assertTrue(programDao.countPerRobot().get("ev3") >= 1);
+        Assert.assertEquals(author.getId(), new UserDao(session).loadUser("pgAuthor").getId());
+        session.close();
+
+        this.sessionFactoryWrapper.getProgramViewCounter().countView(program.getId());
+        Assert.assertEquals(1, this.sessionFactoryWrapper.getProgramViewCounter().flush());
+    }
+
+    private static User createUser(DbSession session, String account) throws Exception {
+        User user = new User(account);
+        user.setPassword("pass");
+        user.setRole(Role.STUDENT);
+        session.save(user);
+        return user;
+    }
+}
@@ -0,0 +1,103 @@
+package de.fhg.iais.roberta.javaServer.basics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.persistence.bo.Program;
+import de.fhg.iais.roberta.persistence.bo.Robot;
+import de.fhg.iais.roberta.persistence.bo.Role;
+import de.fhg.iais.roberta.persistence.bo.User;
+import de.fhg.iais.roberta.persistence.dao.RobotDao;
+import de.fhg.iais.roberta.persistence.util.DbSession;
+import de.fhg.iais.roberta.persistence.util.DbSetup;
+import de.fhg.iais.roberta.persistence.util.ProgramViewCounter;
+import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
+
+public class PersistProgramViewCounterTest {
+    private SessionFactoryWrapper sessionFactoryWrapper;
+    private DbSetup memoryDbSetup;
+    private ProgramViewCounter viewCounter;
+
+    @Before
+    public void setup() throws Exception {
+        this.sessionFactoryWrapper = new SessionFactoryWrapper("hibernate-test-cfg.xml", "jdbc:hsqldb:mem:viewCounterInMemoryDb");
+        this.memoryDbSetup = new DbSetup(this.sessionFactoryWrapper.getNativeSession());
+        this.memoryDbSetup.createEmptyDatabase();
+        this.viewCounter = this.sessionFactoryWrapper.getProgramViewCounter();
+    }
+
+    @After
+    public void tearDown() {
+        this.memoryDbSetup.deleteAllFromUserAndProgramTmpPasswords();
+    }
+
+    @Test
+    public void testViewsAreWrittenByTheFlush() throws Exception {
+        int first = createProgram("first");
+        int second = createProgram("second");
+        this.viewCounter.countView(first);
+        this.viewCounter.countView(first);
+        this.viewCounter.countView(second);
+        Assert.assertEquals(0, views(first));
+        Assert.assertEquals(2, this.viewCounter.getPendingViews(first));
+
+        Assert.assertEquals(2, this.viewCounter.flush());
+        Assert.assertEquals(2, views(first));
+        Assert.assertEquals(1, views(second));
+        Assert.assertEquals(0, this.viewCounter.getPendingViews(first));
+        Assert.assertEquals("flushed entries are removed", 0, this.viewCounter.getStatistics().getInt("programs"));
+        Assert.assertEquals(0, this.viewCounter.flush());
+
+        this.viewCounter.countView(second);
+        this.viewCounter.stop();
+        Assert.assertEquals(2, views(second));
+        Assert.assertEquals(4, this.viewCounter.getStatistics().getLong("counted"));
+        Assert.assertEquals(0, this.viewCounter.getStatistics().getLong("pending"));
+    }
+
+    @Test
+    public void testConcurrentViewsAreNotLost() throws Exception {
+        int programId = createProgram("popular");
+        List<Thread> viewers = new ArrayList<>();
+        for ( int i = 0; i < 4; i++ ) {
+            viewers.add(new Thread(() -> {
+                for ( int view = 0; view < 500; view++ ) {
+                    this.viewCounter.countView(programId);
+                }
+            }));
+        }
+        viewers.forEach(Thread::start);
+        for ( int i = 0; i < 10; i++ ) {
+            this.viewCounter.flush();
+        }
+        for ( Thread viewer : viewers ) {
+            viewer.join();
+        }
+        this.viewCounter.flush();
+        Assert.assertEquals(2000, views(programId));
+        Assert.assertEquals(0, this.viewCounter.getPendingViews(programId));
+    }
+
+    private int createProgram(String name) throws Exception {
+        DbSession session = this.sessionFactoryWrapper.getSession();
+        Robot robot = new RobotDao(session).loadRobot("ev3");
+        User owner = new User("viewer-" + name);
+        owner.setPassword("pass");
+        owner.setRole(Role.STUDENT);
+        session.save(owner);
+        Program program = new Program(name, owner, robot, owner);
+        session.save(program);
+        session.close();
+        return program.getId();
+    }
+
+    private long views(int programId) {
+        Number views = this.memoryDbSetup.getOne("select coalesce(VIEWED, 0) from PROGRAM where ID = " + programId);
+        return views.longValue();
+    }
+}
@@ -0,0 +1,80 @@
+package de.fhg.iais.roberta.javaServer.basics;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.persistence.bo.ConfigurationData;
+import de.fhg.iais.roberta.persistence.bo.Program;
+import de.fhg.iais.roberta.persistence.bo.Robot;
+import de.fhg.iais.roberta.persistence.bo.Role;
+import de.fhg.iais.roberta.persistence.bo.User;
+import de.fhg.iais.roberta.persistence.dao.ConfigurationDao;
+import de.fhg.iais.roberta.persistence.dao.ProgramDao;
+import de.fhg.iais.roberta.persistence.dao.RobotDao;
+import de.fhg.iais.roberta.persistence.util.DbSession;
+import de.fhg.iais.roberta.persistence.util.DbSetup;
+import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
+
+public class PersistReferenceDataCacheTest {
+    private SessionFactoryWrapper sessionFactoryWrapper;
+    private DbSetup memoryDbSetup;
+
+    @Before
+    public void setup() throws Exception {
+        this.sessionFactoryWrapper = new SessionFactoryWrapper("hibernate-test-cfg.xml", "jdbc:hsqldb:mem:referenceDataInMemoryDb");
+        this.memoryDbSetup = new DbSetup(this.sessionFactoryWrapper.getNativeSession());
+        this.memoryDbSetup.createEmptyDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        this.memoryDbSetup.deleteAllFromUserAndProgramTmpPasswords();
+    }
+
+    @Test
+    public void testRobotsAreSharedBetweenSessions() throws Exception {
+        DbSession first = this.sessionFactoryWrapper.getSession();
+        Robot robot = new RobotDao(first).loadRobot("ev3");
+        first.close();
+        DbSession unknown = this.sessionFactoryWrapper.getSession();
+        Assert.assertNull(new RobotDao(unknown).loadRobot("unknownRobot"));
+        unknown.close();
+
+        DbSession second = this.sessionFactoryWrapper.getSession();
+        Assert.assertSame(robot, new RobotDao(second).loadRobot("ev3"));
+        // a cached robot, that is detached, can be referenced by new objects
+        User owner = new User("cacheUser");
+        owner.setPassword("pass");
+        owner.setRole(Role.STUDENT);
+        second.save(owner);
+        second.save(new Program("cached", owner, robot, owner));
+        second.close();
+
+        DbSession third = this.sessionFactoryWrapper.getSession();
+        Assert.assertEquals("ev3", new ProgramDao(third).load("cached", owner, robot, owner).getRobot().getName());
+        third.close();
+
+        JSONObject robots = this.sessionFactoryWrapper.getReferenceDataCache().getStatistics().getJSONObject("robots");
+        Assert.assertEquals(1, robots.getLong("hits"));
+        Assert.assertEquals(2, robots.getLong("misses"));
+        Assert.assertEquals(1, robots.getLong("entries"));
+    }
+
+    @Test
+    public void testConfigurationDataAreCachedByHash() throws Exception {
+        DbSession session = this.sessionFactoryWrapper.getSession();
+        String hash = new ConfigurationDao(session).persistConfigurationHash("<config/>");
+        session.close();
+
+        DbSession first = this.sessionFactoryWrapper.getSession();
+        ConfigurationData configurationData = new ConfigurationDao(first).load(hash);
+        first.close();
+        Assert.assertEquals("<config/>", configurationData.getConfigurationText());
+        DbSession second = this.sessionFactoryWrapper.getSession();
+        Assert.assertSame(configurationData, new ConfigurationDao(second).load(hash));
+        second.close();
+    }
+}
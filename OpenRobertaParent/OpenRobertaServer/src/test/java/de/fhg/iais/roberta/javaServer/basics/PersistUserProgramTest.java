@@ -1,6 +1,7 @@
 package de.fhg.iais.roberta.javaServer.basics;
 
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Session;
 import org.junit.After;
@@ -10,17 +11,20 @@ import org.junit.Test;
 
 import de.fhg.iais.roberta.persistence.bo.AccessRight;
 import de.fhg.iais.roberta.persistence.bo.Program;
+import de.fhg.iais.roberta.persistence.bo.ProgramListing;
 import de.fhg.iais.roberta.persistence.bo.Relation;
 import de.fhg.iais.roberta.persistence.bo.Robot;
 import de.fhg.iais.roberta.persistence.bo.Role;
 import de.fhg.iais.roberta.persistence.bo.User;
 import de.fhg.iais.roberta.persistence.dao.AccessRightDao;
+import de.fhg.iais.roberta.persistence.dao.ConfigurationDao;
 import de.fhg.iais.roberta.persistence.dao.ProgramDao;
 import de.fhg.iais.roberta.persistence.dao.RobotDao;
 import de.fhg.iais.roberta.persistence.dao.UserDao;
 import de.fhg.iais.roberta.persistence.util.DbSession;
 import de.fhg.iais.roberta.persistence.util.DbSetup;
 import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
+import de.fhg.iais.roberta.util.Pair;
 
 public class PersistUserProgramTest {
     private SessionFactoryWrapper sessionFactoryWrapper;
@@ -77,6 +81,11 @@ public class PersistUserProgramTest {
         }
         List<Program> programList = programDao.loadAll();
         Assert.assertTrue(programList.size() == 101);
+        Assert.assertEquals(101, programDao.count());
+        Assert.assertEquals(Long.valueOf(101), programDao.countPerRobot().get("ev3"));
+        Assert.assertEquals(TOTAL_USERS + 3, userDao.count());
+        Assert.assertTrue(new ConfigurationDao(hSession).countPerRobot().isEmpty());
+        Assert.assertEquals(0, new ConfigurationDao(hSession).count());
 
         //User 0 invites all inpair  users to write to its program
         User owner = userDao.loadUser("account-0");
@@ -102,6 +111,43 @@ public class PersistUserProgramTest {
             List<AccessRight> userProgramList2 = userProgramDao.loadAccessRightsForUser(user, robot);
             Assert.assertTrue(userProgramList2.size() == 1);
         }
+
+        //The listing of programs and their sharing is loaded without loading programs
+        List<ProgramListing> listing = programDao.loadListing(owner, robot);
+        Assert.assertEquals(1, listing.size());
+        Assert.assertEquals("program-0", listing.get(0).getName());
+        Assert.assertEquals("account-0", listing.get(0).getAuthorAccount());
+        Map<Integer, List<Pair<String, Relation>>> sharedWith = userProgramDao.loadSharedWithByOwner(owner, robot);
+        Assert.assertEquals(1, sharedWith.size());
+        Assert.assertEquals(50, sharedWith.get(program.getId()).size());
+        List<ProgramListing> sharedListing = userProgramDao.loadListingSharedWithUser(userDao.loadUser("account-1"), robot);
+        Assert.assertEquals(1, sharedListing.size());
+        Assert.assertEquals("account-0", sharedListing.get(0).getOwnerAccount());
+        Assert.assertEquals(Relation.WRITE, sharedListing.get(0).getRelation());
+        Assert.assertTrue(userProgramDao.loadListingSharedWithUser(userDao.loadUser("account-2"), robot).isEmpty());
+    }
+
+    @Test
+    public void testDatabaseIsAccessibleAfterTheConnectionIsReleased() throws Exception {
+        DbSession hSession = this.sessionFactoryWrapper.getSession();
+        Robot robot = new RobotDao(hSession).loadRobot("ev3");
+        User owner = new User("releasingUser");
+        owner.setPassword("pass");
+        owner.setRole(Role.STUDENT);
+        hSession.save(owner);
+        hSession.commitAndReleaseConnection();
+        long holdMsec = hSession.getConnectionHoldMsec();
+        Thread.sleep(20);
+        Assert.assertEquals("no connection may be held after the release", holdMsec, hSession.getConnectionHoldMsec());
+
+        ProgramDao programDao = new ProgramDao(hSession);
+        Assert.assertNotNull(new UserDao(hSession).loadUser("releasingUser"));
+        Assert.assertNotNull(programDao.persistOwnProgram("released", "<program/>", null, null, owner, robot, owner, null).getSecond());
+        hSession.close();
+
+        hSession = this.sessionFactoryWrapper.getSession();
+        Assert.assertEquals("<program/>", new ProgramDao(hSession).load("released", owner, robot, owner).getProgramText());
+        hSession.close();
     }
 
     @After
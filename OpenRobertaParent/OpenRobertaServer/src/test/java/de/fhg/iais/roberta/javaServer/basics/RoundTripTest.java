@@ -204,12 +204,12 @@ public class RoundTripTest {
     }
 
     private void setUpDatabase() throws Exception {
-        Assert.assertEquals(1, getOneBigInteger("select count(*) from USER"));
+        Assert.assertEquals(1, getOneBigInteger("select count(*) from \"USER\""));
         response = restUser.command(
             s1,
             sessionFactoryWrapper.getSession(),
             JSONUtilForServer.mkD("{'cmd':'createUser';'accountName':'orA';'userName':'orA';'password':'Pid';'userEmail':'cavy@home';'role':'STUDENT'}"));
-        Assert.assertEquals(2, getOneBigInteger("select count(*) from USER"));
+        Assert.assertEquals(2, getOneBigInteger("select count(*) from \"USER\""));
         Assert.assertTrue(!s1.isUserLoggedIn());
         response = //
             restUser.command( //
@@ -21,6 +21,7 @@ import de.fhg.iais.roberta.javaServer.restServices.all.ClientConfiguration;
 import de.fhg.iais.roberta.javaServer.restServices.all.ClientProgram;
 import de.fhg.iais.roberta.javaServer.restServices.all.ClientUser;
 import de.fhg.iais.roberta.main.ServerStarter;
+import de.fhg.iais.roberta.persistence.util.ConnectionHoldTimes;
 import de.fhg.iais.roberta.persistence.util.DbSetup;
 import de.fhg.iais.roberta.persistence.util.HttpSessionState;
 import de.fhg.iais.roberta.persistence.util.SessionFactoryWrapper;
@@ -117,6 +118,7 @@ public class RestInterfaceTest {
         pidDeletesProgramsMinschaCannotAccess();
         pidSharesProgram1MinschaCanDeleteTheShare();
         pidAndMinschaAccessConcurrently();
+        invalidCommandsAreRecordedInOneBucket();
 
         saveProgramsAndConfigurations();
 
@@ -125,6 +127,16 @@ public class RestInterfaceTest {
         // TODO: refactor downloadJar(this.downloadJar, this.restProgram, this.s1, "garzi", "p1");
     }
 
+    /**
+     * an unknown command is rejected and its hold time is recorded under "user/invalid", not under the command sent by the client
+     */
+    private void invalidCommandsAreRecordedInOneBucket() throws Exception {
+        restUser(this.sPid, "{'cmd':'noSuchCommand'}", "error", Key.COMMAND_INVALID);
+        JSONObject holdTimes = ConnectionHoldTimes.getStatistics();
+        Assert.assertTrue(holdTimes.has("user/" + ConnectionHoldTimes.INVALID_COMMAND));
+        Assert.assertFalse(holdTimes.has("user/noSuchCommand"));
+    }
+
     /**
      * create two user:<br>
      * <b>PRE:</b> no user exists<br>
@@ -138,25 +150,25 @@ public class RestInterfaceTest {
     private void createTwoUsers() throws Exception {
         {
             Assert.assertTrue(!this.sPid.isUserLoggedIn() && !this.sMinscha.isUserLoggedIn());
-            Assert.assertEquals(0, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from USER"));
+            Assert.assertEquals(0, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from \"USER\""));
             restUser(
                 this.sPid,
                 "{'cmd':'createUser';'accountName':'pid';'userName':'cavy';'password':'dip';'userEmail':'cavy1@home';'role':'STUDENT', 'isYoungerThen14': 'true', 'language': 'de'}",
                 "error",
                 Key.USER_ACTIVATION_SENT_MAIL_FAIL);
-            Assert.assertEquals(1, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from USER"));
+            Assert.assertEquals(1, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from \"USER\""));
             restUser(
                 this.sPid,
                 "{'cmd':'createUser';'accountName':'pid';'userName':'administrator';'password':'dip';'userEmail':'cavy1@home';'role':'STUDENT', 'isYoungerThen14': 'false', 'language': 'de'}",
                 "error",
                 Key.USER_CREATE_ERROR_NOT_SAVED_TO_DB);
-            Assert.assertEquals(1, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from USER"));
+            Assert.assertEquals(1, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from \"USER\""));
             restUser(
                 this.sPid,
                 "{'cmd':'createUser';'accountName':'minscha';'userName':'cavy';'password':'12';'userEmail':'';'role':'STUDENT', 'isYoungerThen14': 'true', 'language': 'de'}",
                 "ok",
                 Key.USER_CREATE_SUCCESS);
-            Assert.assertEquals(2, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from USER"));
+            Assert.assertEquals(2, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from \"USER\""));
             Assert.assertTrue(!this.sPid.isUserLoggedIn() && !this.sMinscha.isUserLoggedIn());
         }
     }
@@ -170,7 +182,7 @@ public class RestInterfaceTest {
      */
     private void activateUser() throws Exception {
         Assert.assertTrue(!this.sPid.isUserLoggedIn() && !this.sMinscha.isUserLoggedIn());
-        Assert.assertEquals(2, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from USER"));
+        Assert.assertEquals(2, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from \"USER\""));
         Assert.assertEquals(1, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from PENDING_EMAIL_CONFIRMATIONS"));
 
         String url = this.memoryDbSetup.getOne("select URL_POSTFIX from PENDING_EMAIL_CONFIRMATIONS").toString();
@@ -193,7 +205,7 @@ public class RestInterfaceTest {
     private void updateUser() throws Exception {
 
         Assert.assertTrue(!this.sPid.isUserLoggedIn() && !this.sMinscha.isUserLoggedIn());
-        Assert.assertEquals(2, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from USER"));
+        Assert.assertEquals(2, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from \"USER\""));
         restUser(
             this.sMinscha,
             "{'cmd':'updateUser';'accountName':'minscha';'userName':'cavy1231';'userEmail':'cavy@home';'role':'STUDENT', 'isYoungerThen14': false, 'language': 'de'}",
@@ -234,7 +246,7 @@ public class RestInterfaceTest {
     private void changeUserPassword() throws Exception {
 
         Assert.assertTrue(!this.sPid.isUserLoggedIn() && !this.sMinscha.isUserLoggedIn());
-        Assert.assertEquals(2, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from USER"));
+        Assert.assertEquals(2, this.memoryDbSetup.getOneBigIntegerAsLong("select count(*) from \"USER\""));
         restUser(
             this.sMinscha,
             "{'cmd':'changePassword';'accountName':'minscha';'oldPassword':'12';'newPassword':'12345'}",
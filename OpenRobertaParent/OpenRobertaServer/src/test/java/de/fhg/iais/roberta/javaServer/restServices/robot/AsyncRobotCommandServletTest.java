@@ -0,0 +1,125 @@
+package de.fhg.iais.roberta.javaServer.restServices.robot;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import de.fhg.iais.roberta.robotCommunication.RobotCommunicator;
+import de.fhg.iais.roberta.util.Key;
+
+public class AsyncRobotCommandServletTest {
+    private static final String REGISTER = "{'cmd':'register','token':'ABCDEFGH','firmwarename':'lejos','macaddr':'00:11:22:33:44:77','robot':'ev3'}";
+    private static final String PUSH = "{'cmd':'push','token':'ABCDEFGH','firmwarename':'lejos'}";
+
+    private RobotCommunicator robotCommunicator;
+    private AsyncRobotCommandServlet servlet;
+
+    @Before
+    public void setup() {
+        this.robotCommunicator = new RobotCommunicator();
+        this.servlet = new AsyncRobotCommandServlet(new RobotCommand(this.robotCommunicator));
+    }
+
+    @After
+    public void teardown() {
+        this.robotCommunicator.shutdown();
+    }
+
+    @Test
+    public void testRequestsAreParkedAndResumed() throws Exception {
+        RobotRequest register = post(REGISTER);
+        register.assertParked();
+        Assert.assertEquals(1, this.robotCommunicator.getNumberOfPendingRequests());
+        Assert.assertEquals(Key.TOKEN_SET_SUCCESS, this.robotCommunicator.aTokenAgreementWasSent("ABCDEFGH", "ev3"));
+        Assert.assertEquals("repeat", register.assertResumed(200).getString("cmd"));
+        verify(register.asyncContext).start(any(Runnable.class)); // the thread approving the token doesn't write the response
+
+        RobotRequest push = post(PUSH);
+        push.assertParked();
+        Assert.assertTrue(this.robotCommunicator.theRunButtonWasPressed("ABCDEFGH", "prog"));
+        Assert.assertEquals("download", push.assertResumed(200).getString("cmd"));
+        Assert.assertEquals(0, this.robotCommunicator.getNumberOfPendingRequests());
+    }
+
+    @Test
+    public void testTimedOutRequestsAreRemoved() throws Exception {
+        RobotRequest register = post(REGISTER);
+        register.listener.onTimeout(new AsyncEvent(register.asyncContext));
+        register.assertResumed(500);
+        verify(register.asyncContext, never()).start(any(Runnable.class)); // written by the container thread running the listener
+        Assert.assertNull("the registration is removed", this.robotCommunicator.getState("ABCDEFGH"));
+        Assert.assertEquals(0, this.robotCommunicator.getNumberOfPendingRequests());
+        Assert.assertEquals(Key.TOKEN_SET_ERROR_NO_ROBOT_WAITING, this.robotCommunicator.aTokenAgreementWasSent("ABCDEFGH", "ev3"));
+
+        register = post(REGISTER);
+        Assert.assertEquals(Key.TOKEN_SET_SUCCESS, this.robotCommunicator.aTokenAgreementWasSent("ABCDEFGH", "ev3"));
+        register.assertResumed(200);
+        RobotRequest push = post(PUSH);
+        push.listener.onError(new AsyncEvent(push.asyncContext));
+        Assert.assertNotNull("the robot may send the next push request", this.robotCommunicator.getState("ABCDEFGH"));
+        Assert.assertEquals(0, this.robotCommunicator.getNumberOfPendingRequests());
+        push.listener.onTimeout(new AsyncEvent(push.asyncContext));
+        verify(push.asyncContext, times(1)).complete();
+        Assert.assertEquals("nothing is written to a broken connection", "", push.content.toString());
+    }
+
+    private RobotRequest post(String json) throws Exception {
+        RobotRequest robotRequest = new RobotRequest();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(json)));
+        when(request.startAsync()).thenReturn(robotRequest.asyncContext);
+        when(robotRequest.asyncContext.getResponse()).thenReturn(robotRequest.response);
+        when(robotRequest.response.getWriter()).thenReturn(new PrintWriter(robotRequest.content, true));
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(robotRequest.asyncContext).start(any(Runnable.class));
+        this.servlet.doPost(request, robotRequest.response);
+        verify(robotRequest.asyncContext).setTimeout(AsyncRobotCommandServlet.ASYNC_TIMEOUT_MSEC);
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(robotRequest.asyncContext).addListener(listener.capture());
+        robotRequest.listener = listener.getValue();
+        return robotRequest;
+    }
+
+    private static class RobotRequest {
+        final AsyncContext asyncContext = mock(AsyncContext.class);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        final StringWriter content = new StringWriter();
+        AsyncListener listener;
+
+        void assertParked() {
+            verify(this.asyncContext, never()).complete();
+            verify(this.response, never()).setStatus(anyInt());
+        }
+
+        JSONObject assertResumed(int status) throws Exception {
+            verify(this.response).setStatus(status);
+            verify(this.asyncContext, times(1)).complete();
+            return status == 200 ? new JSONObject(this.content.toString()) : null;
+        }
+    }
+}
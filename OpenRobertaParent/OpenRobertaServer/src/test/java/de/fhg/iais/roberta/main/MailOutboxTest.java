@@ -0,0 +1,149 @@
+package de.fhg.iais.roberta.main;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.fhg.iais.roberta.testutil.FakeSmtpServer;
+
+public class MailOutboxTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private MailOutbox outbox = null;
+    private FakeSmtpServer smtpServer = null;
+
+    @After
+    public void tearDown() throws Exception {
+        if ( this.outbox != null ) {
+            this.outbox.stop();
+        }
+        if ( this.smtpServer != null ) {
+            this.smtpServer.close();
+        }
+    }
+
+    @Test
+    public void testMailsAreSentInOneBatch() throws Exception {
+        this.smtpServer = new FakeSmtpServer(0);
+        Session session = makeSession(this.smtpServer.getPort());
+        this.outbox = new MailOutbox(session, this.tempFolder.getRoot(), 10, 3);
+        for ( int i = 0; i < 3; i++ ) {
+            this.outbox.enqueue(makeMail(session, "mail-" + i));
+        }
+        Assert.assertEquals(3, mailFiles().length);
+        this.outbox.start();
+
+        awaitTrue(() -> this.smtpServer.getMails().size() == 3);
+        Assert.assertTrue(this.smtpServer.getMails().get(0).contains("mail-0"));
+        Assert.assertEquals("one connection for the batch", 1, this.smtpServer.getConnections());
+        awaitTrue(() -> mailFiles().length == 0);
+        Assert.assertEquals(3, this.outbox.getStatistics().getLong("sent"));
+    }
+
+    @Test
+    public void testMailsAreRetriedUntilTheServerIsReachable() throws Exception {
+        int port = freePort();
+        Session session = makeSession(port);
+        this.outbox = new MailOutbox(session, this.tempFolder.getRoot(), 200, 10);
+        this.outbox.start();
+        this.outbox.enqueue(makeMail(session, "delayed"));
+
+        awaitTrue(() -> retries() >= 1);
+        Assert.assertEquals(1, mailFiles().length);
+        this.smtpServer = new FakeSmtpServer(port);
+        awaitTrue(() -> this.smtpServer.getMails().size() == 1);
+        Assert.assertTrue(this.smtpServer.getMails().get(0).contains("delayed"));
+        awaitTrue(() -> mailFiles().length == 0);
+    }
+
+    @Test
+    public void testMailsAreKeptAcrossRestarts() throws Exception {
+        this.smtpServer = new FakeSmtpServer(0);
+        Session session = makeSession(this.smtpServer.getPort());
+        // enqueued, but never started: the server stopped before the mail was sent
+        new MailOutbox(session, this.tempFolder.getRoot(), 10, 3).enqueue(makeMail(session, "persisted"));
+        Assert.assertEquals(1, mailFiles().length);
+
+        this.outbox = new MailOutbox(session, this.tempFolder.getRoot(), 10, 3);
+        this.outbox.start();
+        awaitTrue(() -> this.smtpServer.getMails().size() == 1);
+        Assert.assertTrue(this.smtpServer.getMails().get(0).contains("persisted"));
+        awaitTrue(() -> mailFiles().length == 0);
+    }
+
+    @Test
+    public void testMailsAreMovedAsideAfterTheLastAttempt() throws Exception {
+        Session session = makeSession(freePort());
+        this.outbox = new MailOutbox(session, this.tempFolder.getRoot(), 10, 2);
+        this.outbox.start();
+        this.outbox.enqueue(makeMail(session, "undeliverable"));
+
+        awaitTrue(() -> failed() == 1);
+        Assert.assertEquals(0, mailFiles().length);
+        Assert.assertEquals(1, new File(this.tempFolder.getRoot(), "failed").list().length);
+    }
+
+    private File[] mailFiles() {
+        return this.tempFolder.getRoot().listFiles((dir, name) -> name.endsWith(".eml"));
+    }
+
+    private long retries() {
+        try {
+            return this.outbox.getStatistics().getLong("retries");
+        } catch ( Exception e ) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long failed() {
+        try {
+            return this.outbox.getStatistics().getLong("failed");
+        } catch ( Exception e ) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Session makeSession(int port) {
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", "localhost");
+        properties.put("mail.smtp.port", String.valueOf(port));
+        properties.put("mail.smtp.connectiontimeout", "2000");
+        properties.put("mail.smtp.timeout", "2000");
+        return Session.getInstance(properties);
+    }
+
+    private static MimeMessage makeMail(Session session, String text) throws Exception {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("roberta@localhost"));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse("pid@localhost"));
+        message.setSubject("test");
+        message.setText(text);
+        return message;
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        for ( int i = 0; i < 200 && !condition.getAsBoolean(); i++ ) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue("condition not met within 10 sec", condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,100 @@
+package de.fhg.iais.roberta.testutil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a minimal SMTP server for tests. It accepts every mail and remembers its data. No authentication, no TLS.
+ */
+public class FakeSmtpServer implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final List<String> mails = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger(0);
+
+    /**
+     * start the server
+     *
+     * @param port the port to listen to, 0 for any free port
+     */
+    public FakeSmtpServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        Thread acceptor = new Thread(this::accept, "fakeSmtpServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the data (headers and body) of the mails received
+     */
+    public List<String> getMails() {
+        return this.mails;
+    }
+
+    public int getConnections() {
+        return this.connections.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+    }
+
+    private void accept() {
+        try {
+            while ( !this.serverSocket.isClosed() ) {
+                Socket socket = this.serverSocket.accept();
+                this.connections.incrementAndGet();
+                Thread handler = new Thread(() -> handle(socket), "fakeSmtpConnection");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch ( IOException e ) {
+            // the server is closed
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = s.getOutputStream();
+            reply(out, "220 localhost fake SMTP");
+            String line;
+            while ( (line = in.readLine()) != null ) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                if ( command.equals("DATA") ) {
+                    reply(out, "354 end data with <CR><LF>.<CR><LF>");
+                    StringBuilder data = new StringBuilder();
+                    while ( (line = in.readLine()) != null && !line.equals(".") ) {
+                        data.append(line.startsWith("..") ? line.substring(1) : line).append('\n');
+                    }
+                    this.mails.add(data.toString());
+                    reply(out, "250 ok");
+                } else if ( command.equals("QUIT") ) {
+                    reply(out, "221 bye");
+                    return;
+                } else {
+                    reply(out, "250 ok");
+                }
+            }
+        } catch ( IOException e ) {
+            // the client dropped the connection
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
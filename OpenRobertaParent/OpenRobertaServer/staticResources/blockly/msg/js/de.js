@@ -800,6 +800,8 @@ Blockly.Msg.ORA_COMMAND_INVALID = "Dein Konfigurationsname ist vom System reserv
 Blockly.Msg.ORA_COMPILERWORKFLOW_ERROR_CONFIGURATION_NOT_FOUND = "Der Server konnte die Roboterkonfiguration nicht finden.";
 Blockly.Msg.ORA_COMPILERWORKFLOW_ERROR_CONFIGURATION_TRANSFORM_FAILED = "Die Roboterkonfiguration konnte nicht in die entsprechende Programmiersprache übertragen werden.";
 Blockly.Msg.ORA_COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED = "Das Programm konnte nicht in Maschinensprache übersetzt werden.";
+Blockly.Msg.ORA_COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_OVERLOAD = "Der Server übersetzt gerade sehr viele Programme. Bitte versuche es in einer Minute noch einmal.";
+Blockly.Msg.ORA_COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_TIMEOUT = "Das Programm konnte nicht rechtzeitig in Maschinensprache übersetzt werden.";
 Blockly.Msg.ORA_COMPILERWORKFLOW_ERROR_PROGRAM_GENERATION_FAILED = "Das Programm konnte nicht generiert werden.";
 Blockly.Msg.ORA_COMPILERWORKFLOW_ERROR_PROGRAM_NOT_FOUND = "Das Programm konnte in der Datenbank nicht gefunden werden.";
 Blockly.Msg.ORA_COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED = "Ein Fehler ist beim internen Speichern des Programmes aufgetreten.";
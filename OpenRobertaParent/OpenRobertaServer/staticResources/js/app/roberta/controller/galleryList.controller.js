@@ -186,9 +186,8 @@ define([ 'require', 'exports', 'log', 'util', 'comm', 'message', 'guiState.contr
     exports.formatProgramName = formatProgramName;
 
     var formatProgramDescription = function(value, row, index) {
-        var xmlDoc = Blockly.Xml.textToDom(value, Blockly.getMainWorkspace());
-        var description = xmlDoc.getAttribute("description");
-        if (!description) {           
+        var description = value;
+        if (!description) {
             description = "&nbsp;";
         }
         return '<div class="galleryDescription">' + description + '</div>';
@@ -196,8 +195,7 @@ define([ 'require', 'exports', 'log', 'util', 'comm', 'message', 'guiState.contr
     exports.formatProgramDescription = formatProgramDescription;
 
     var formatTags = function(value, row, index) {
-        var xmlDoc = Blockly.Xml.textToDom(row[2], Blockly.getMainWorkspace());
-        var tags = xmlDoc.getAttribute("tags");
+        var tags = value;
         if (!tags) {
             tags = "&nbsp;";
         }
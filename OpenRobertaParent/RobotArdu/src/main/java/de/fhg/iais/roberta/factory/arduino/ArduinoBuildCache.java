@@ -0,0 +1,219 @@
+package de.fhg.iais.roberta.factory.arduino;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.factory.CompilerScheduler;
+import de.fhg.iais.roberta.util.Clock;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * shared cache of the Arduino core and the libraries compiled by <code>arduino-builder</code>. Without it every compile in a fresh build path
+ * compiles the core and all libraries used from scratch.<br>
+ * <br>
+ * - the cache is built by compiling a sketch, that includes the libraries of the generated programs. There is one cache per fqbn and set of
+ * libraries (more precise: per builder command and warm-up sketch) in the temp dir <i>arduinoBuildCache</i><br>
+ * - before a program is compiled, the objects of the cache are copied into its build path. <code>arduino-builder</code> (1.3.19 has no build
+ * cache option) finds them up to date and compiles the sketch only. The dependency files of the objects contain the path of the object, this is
+ * rewritten to the build path of the program. The cache itself is never written by a compile<br>
+ * - the warm-up is run in the background at server startup. Compiles started before it is finished don't use the cache<br>
+ * - the cache is invalidated and rebuilt, if <code>revisions.txt</code> of the Arduino resources changes
+ */
+public class ArduinoBuildCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ArduinoBuildCache.class);
+    private static final String[] CACHED_DIRS = {
+        "core",
+        "libraries"
+    };
+    private static final String DEPENDENCY_SUFFIX = ".d";
+    private static final String STAMP_FILE = "revisions.stamp";
+
+    private final List<String> builderCommand;
+    private final String warmUpSketch;
+    private final File revisionsFile;
+    private final File cacheDir;
+    private final File buildDir;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean isWarmingUp = new AtomicBoolean(false);
+    private volatile String readyRevision = null; // the revision the cache was built for; null, if the cache is not usable
+
+    /**
+     * create the cache. It is empty until {@link #warmUp()} is called
+     *
+     * @param cacheBaseDir the directory for all Arduino caches
+     * @param builderCommand the <code>arduino-builder</code> executable and all its options except <code>-build-path</code> and the sketch
+     * @param warmUpSketch the sketch to build the cache; should include the libraries used by the generated programs
+     * @param revisionsFile the <code>revisions.txt</code> of the Arduino resources
+     */
+    public ArduinoBuildCache(String cacheBaseDir, List<String> builderCommand, String warmUpSketch, String revisionsFile) {
+        this.builderCommand = new ArrayList<>(builderCommand);
+        this.warmUpSketch = warmUpSketch;
+        this.revisionsFile = new File(revisionsFile);
+        String fqbn =
+            builderCommand.stream().filter(option -> option.startsWith("-fqbn=")).map(option -> option.substring(6)).findFirst().orElse("unknown");
+        String key = fqbn.replaceAll("[^A-Za-z0-9]", "_") + "-" + sha256(String.join("\n", builderCommand) + "\n" + warmUpSketch).substring(0, 12);
+        this.cacheDir = new File(cacheBaseDir, key).getAbsoluteFile().toPath().normalize().toFile();
+        this.buildDir = new File(this.cacheDir, "build");
+    }
+
+    /**
+     * build the cache (or bring it up to date) in a background thread. Does nothing, if this is already running.
+     */
+    public void warmUp() {
+        if ( this.isWarmingUp.compareAndSet(false, true) ) {
+            Thread warmUp = new Thread(() -> {
+                try {
+                    build();
+                } finally {
+                    this.isWarmingUp.set(false);
+                }
+            }, "arduinoBuildCache");
+            warmUp.setDaemon(true);
+            warmUp.start();
+        }
+    }
+
+    /**
+     * copy the cached objects into the build path of a program. If the cache is not usable, nothing is copied. If <code>revisions.txt</code> has
+     * changed, the cache is rebuilt in the background.
+     *
+     * @param buildPath the build path of the program
+     * @return true, if the objects were copied; false, if the program is compiled without the cache
+     */
+    public boolean prepare(String buildPath) {
+        String revision = this.readyRevision;
+        if ( revision == null ) {
+            return false;
+        }
+        if ( !revision.equals(revisionStamp()) ) {
+            LOG.info("revisions.txt changed, the Arduino build cache " + this.cacheDir + " is rebuilt");
+            this.readyRevision = null;
+            warmUp();
+            return false;
+        }
+        if ( !this.lock.readLock().tryLock() ) {
+            return false;
+        }
+        try {
+            Path target = new File(buildPath).getAbsoluteFile().toPath().normalize();
+            for ( String dir : CACHED_DIRS ) {
+                copyTree(this.buildDir.toPath().resolve(dir), target.resolve(dir), this.buildDir + File.separator, target + File.separator);
+            }
+            return true;
+        } catch ( Exception e ) {
+            LOG.error("the Arduino build cache " + this.cacheDir + " could not be copied to " + buildPath, e);
+            return false;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * run <code>arduino-builder</code> on the warm-up sketch in the build directory of the cache. The cache is usable afterwards, if this succeeds.
+     *
+     * @return true, if the cache is usable
+     */
+    boolean build() {
+        Clock clock = Clock.start();
+        this.lock.writeLock().lock();
+        try {
+            String revision = revisionStamp();
+            File stampFile = new File(this.cacheDir, STAMP_FILE);
+            if ( !stampFile.exists() || !revision.equals(FileUtils.readFileToString(stampFile, StandardCharsets.UTF_8.displayName())) ) {
+                FileUtils.deleteQuietly(this.cacheDir);
+            }
+            File sketch = new File(this.cacheDir, "warmup/warmup.ino");
+            FileUtils.writeStringToFile(sketch, this.warmUpSketch, StandardCharsets.UTF_8.displayName());
+            Files.createDirectories(this.buildDir.toPath());
+            List<String> command = new ArrayList<>(this.builderCommand);
+            command.add("-build-path=" + this.buildDir.getAbsolutePath() + "/");
+            command.add(sketch.getAbsolutePath());
+            ProcessBuilder procBuilder = new ProcessBuilder(command);
+            procBuilder.redirectInput(Redirect.INHERIT);
+            procBuilder.redirectErrorStream(true);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            int ecode = CompilerScheduler.getInstance().runProcess(procBuilder, output);
+            if ( ecode != 0 ) {
+                LOG.error("the Arduino build cache " + this.cacheDir + " could not be built:\n" + output.toString(StandardCharsets.UTF_8.name()));
+                return false;
+            }
+            FileUtils.writeStringToFile(stampFile, revision, StandardCharsets.UTF_8.displayName());
+            this.readyRevision = revision;
+            LOG.info("the Arduino build cache " + this.cacheDir + " is ready after " + clock.elapsedMsecFormatted());
+            return true;
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch ( Exception e ) {
+            LOG.error("the Arduino build cache " + this.cacheDir + " could not be built", e);
+            return false;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * copy a directory tree. The timestamps are kept, otherwise <code>arduino-builder</code> would consider the objects out of date. In dependency
+     * files the path of the cache is replaced by the build path of the program
+     */
+    private static void copyTree(Path source, Path target, String cachePath, String buildPath) throws IOException {
+        if ( !Files.isDirectory(source) ) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(source)) {
+            files = walk.collect(Collectors.toList());
+        }
+        for ( Path file : files ) {
+            Path copy = target.resolve(source.relativize(file).toString());
+            if ( Files.isDirectory(file) ) {
+                Files.createDirectories(copy);
+            } else if ( file.toString().endsWith(DEPENDENCY_SUFFIX) ) {
+                String dependencies = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                Files.write(copy, dependencies.replace(cachePath, buildPath).getBytes(StandardCharsets.UTF_8));
+                Files.setLastModifiedTime(copy, Files.getLastModifiedTime(file));
+            } else {
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+    }
+
+    /**
+     * @return identifies the version of <code>revisions.txt</code>. Cheap enough to be checked for every compile
+     */
+    private String revisionStamp() {
+        return this.revisionsFile.lastModified() + ":" + this.revisionsFile.length();
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for ( byte b : digest ) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new DbcException("SHA-256 is not available", e);
+        }
+    }
+}
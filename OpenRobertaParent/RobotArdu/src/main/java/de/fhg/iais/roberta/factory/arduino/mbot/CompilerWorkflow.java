@@ -1,10 +1,14 @@
 package de.fhg.iais.roberta.factory.arduino.mbot;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.SystemUtils;
@@ -15,27 +19,49 @@ import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.components.Configuration;
 import de.fhg.iais.roberta.components.arduino.MbotConfiguration;
 import de.fhg.iais.roberta.factory.AbstractCompilerWorkflow;
+import de.fhg.iais.roberta.factory.CompilationResult;
+import de.fhg.iais.roberta.factory.CompilerScheduler;
 import de.fhg.iais.roberta.factory.IRobotFactory;
+import de.fhg.iais.roberta.factory.arduino.ArduinoBuildCache;
 import de.fhg.iais.roberta.inter.mode.action.ILanguage;
 import de.fhg.iais.roberta.syntax.codegen.arduino.mbot.CppVisitor;
 import de.fhg.iais.roberta.transformer.BlocklyProgramAndConfigTransformer;
 import de.fhg.iais.roberta.transformers.arduino.Jaxb2MakeBlockConfigurationTransformer;
 import de.fhg.iais.roberta.util.Key;
+import de.fhg.iais.roberta.util.RobertaProperties;
 import de.fhg.iais.roberta.util.jaxb.JaxbHelper;
 
 public class CompilerWorkflow extends AbstractCompilerWorkflow {
     private static final Logger LOG = LoggerFactory.getLogger(CompilerWorkflow.class);
+    /**
+     * the libraries included by the generated programs (see <code>CppVisitor</code>), compiled once into the build cache
+     */
+    private static final String WARM_UP_SKETCH =
+        ""
+            + "#include <math.h>\n"
+            + "#include <MeMCore.h>\n"
+            + "#include <Wire.h>\n"
+            + "#include <SoftwareSerial.h>\n"
+            + "#include <RobertaFunctions.h>\n"
+            + "#include \"MeDrive.h\"\n"
+            + "void setup() {\n}\n"
+            + "void loop() {\n}\n";
 
     public final String pathToCrosscompilerBaseDir;
     public final String robotCompilerResourcesDir;
     public final String robotCompilerDir;
-
-    private String compiledHex = "";
+    private final ArduinoBuildCache buildCache;
 
     public CompilerWorkflow(String pathToCrosscompilerBaseDir, String robotCompilerResourcesDir, String robotCompilerDir) {
         this.pathToCrosscompilerBaseDir = pathToCrosscompilerBaseDir;
         this.robotCompilerResourcesDir = robotCompilerResourcesDir;
         this.robotCompilerDir = robotCompilerDir;
+        this.buildCache =
+            new ArduinoBuildCache(
+                RobertaProperties.getTempDirFor("arduinoBuildCache"),
+                builderCommand(),
+                WARM_UP_SKETCH,
+                robotCompilerResourcesDir + "/revisions.txt");
     }
 
     @Override
@@ -48,32 +74,42 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
     }
 
     @Override
-    public Key compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
+    public CompilationResult compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
         try {
             storeGeneratedProgram(token, programName, sourceCode, this.pathToCrosscompilerBaseDir, ".ino");
         } catch ( Exception e ) {
             LOG.error("Storing the generated program into directory " + token + " failed", e);
-            return Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED;
+            return CompilationResult.failure(Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED, null, 0);
         }
-        Key messageKey = runBuild(token, programName, "generated.main");
-        if ( messageKey == Key.COMPILERWORKFLOW_SUCCESS ) {
+        File hexFile = new File(this.pathToCrosscompilerBaseDir + token + "/" + programName + "/target/" + programName + ".ino.hex");
+        CompilationResult result =
+            compileCached(
+                token,
+                programName,
+                this.robotCompilerResourcesDir,
+                sourceCode,
+                flagProvider,
+                messages -> runBuild(token, programName, "generated.main", messages) == Key.COMPILERWORKFLOW_SUCCESS ? FileUtils.readFileToByteArray(hexFile) : null,
+                artifact -> FileUtils.writeByteArrayToFile(hexFile, artifact),
+                artifact -> Base64.getEncoder().encodeToString(artifact));
+        if ( result.isSuccess() ) {
             CompilerWorkflow.LOG.info("hex for program {} generated successfully", programName);
         } else {
-            CompilerWorkflow.LOG.info(messageKey.toString());
+            CompilerWorkflow.LOG.info(result.getKey().toString());
         }
-        return messageKey;
+        return result;
     }
 
     @Override
-    public Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception {
-        BlockSet project = JaxbHelper.xml2BlockSet(blocklyXml);
-        Jaxb2MakeBlockConfigurationTransformer transformer = new Jaxb2MakeBlockConfigurationTransformer(factory);
-        return transformer.transform(project);
+    public void warmUp() {
+        this.buildCache.warmUp();
     }
 
     @Override
-    public String getCompiledCode() {
-        return this.compiledHex;
+    public Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception {
+        BlockSet project = JaxbHelper.configuration2BlockSet(factory, blocklyXml);
+        Jaxb2MakeBlockConfigurationTransformer transformer = new Jaxb2MakeBlockConfigurationTransformer(factory);
+        return transformer.transform(project);
     }
 
     /**
@@ -86,53 +122,35 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
      * @param mainFile
      * @param mainPackage
      */
-    private Key runBuild(String token, String mainFile, String mainPackage) {
-        final StringBuilder sb = new StringBuilder();
-
-        String scriptName = this.robotCompilerResourcesDir + "/linux/arduino-builder";
-        String os = "linux";
-
-        if ( SystemUtils.IS_OS_WINDOWS ) {
-            scriptName = this.robotCompilerResourcesDir + "/windows/arduino-builder.exe";
-            os = "windows";
-        } else if ( SystemUtils.IS_OS_MAC ) {
-            scriptName = this.robotCompilerResourcesDir + "/osx/arduino-builder";
-            os = "osx";
-        }
-
+    private Key runBuild(String token, String mainFile, String mainPackage, StringBuilder sb) {
         Path path = Paths.get(this.pathToCrosscompilerBaseDir + token + "/" + mainFile);
         Path base = Paths.get("");
 
         try {
             System.out.println(this.robotCompilerResourcesDir);
-            ProcessBuilder procBuilder =
-                new ProcessBuilder(
-                    new String[] {
-                        scriptName,
-                        "-hardware=" + this.robotCompilerResourcesDir + "/hardware",
-                        "-tools=" + this.robotCompilerResourcesDir + "/" + os + "/tools-builder",
-                        "-libraries=" + this.robotCompilerResourcesDir + "/libraries",
-                        "-fqbn=arduino:avr:uno",
-                        "-prefs=compiler.path=" + this.robotCompilerDir,
-                        "-build-path=" + base.resolve(path).toAbsolutePath().normalize().toString() + "/target/",
-                        "-verbose",
-                        base.resolve(path).toAbsolutePath().normalize().toString() + "/src/" + mainFile + ".ino"
-                    });
+            String buildPath = base.resolve(path).toAbsolutePath().normalize().toString() + "/target/";
+            if ( !this.buildCache.prepare(buildPath) ) {
+                CompilerWorkflow.LOG.info("the Arduino build cache is not ready, the core and libraries are compiled for {}", mainFile);
+            }
+            List<String> command = builderCommand();
+            command.add("-build-path=" + buildPath);
+            command.add("-verbose");
+            command.add(base.resolve(path).toAbsolutePath().normalize().toString() + "/src/" + mainFile + ".ino");
+            ProcessBuilder procBuilder = new ProcessBuilder(command);
 
             procBuilder.redirectInput(Redirect.INHERIT);
-            procBuilder.redirectOutput(Redirect.INHERIT);
-            procBuilder.redirectError(Redirect.INHERIT);
-            Process p = procBuilder.start();
-            int ecode = p.waitFor();
+            procBuilder.redirectErrorStream(true);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            int ecode = CompilerScheduler.getInstance().runProcess(procBuilder, output);
+            sb.append(output.toString(StandardCharsets.UTF_8.name()));
             System.err.println("Exit code " + ecode);
 
             if ( ecode != 0 ) {
                 return Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED;
             }
-            this.compiledHex = FileUtils.readFileToString(new File(path + "/target/" + mainFile + ".ino.hex"), "UTF-8");
-            Base64.Encoder urec = Base64.getEncoder();
-            this.compiledHex = urec.encodeToString(this.compiledHex.getBytes());
             return Key.COMPILERWORKFLOW_SUCCESS;
+        } catch ( CompilerScheduler.TimeoutException e ) {
+            throw e;
         } catch ( Exception e ) {
             if ( sb.length() > 0 ) {
                 CompilerWorkflow.LOG.error("build exception. Messages from the build script are:\n" + sb.toString(), e);
@@ -142,4 +160,27 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
             return Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED;
         }
     }
+
+    /**
+     * @return the command to run <code>arduino-builder</code> with all options but <code>-build-path</code> and the sketch
+     */
+    private List<String> builderCommand() {
+        String scriptName = this.robotCompilerResourcesDir + "/linux/arduino-builder";
+        String os = "linux";
+        if ( SystemUtils.IS_OS_WINDOWS ) {
+            scriptName = this.robotCompilerResourcesDir + "/windows/arduino-builder.exe";
+            os = "windows";
+        } else if ( SystemUtils.IS_OS_MAC ) {
+            scriptName = this.robotCompilerResourcesDir + "/osx/arduino-builder";
+            os = "osx";
+        }
+        List<String> command = new ArrayList<>();
+        command.add(scriptName);
+        command.add("-hardware=" + this.robotCompilerResourcesDir + "/hardware");
+        command.add("-tools=" + this.robotCompilerResourcesDir + "/" + os + "/tools-builder");
+        command.add("-libraries=" + this.robotCompilerResourcesDir + "/libraries");
+        command.add("-fqbn=arduino:avr:uno");
+        command.add("-prefs=compiler.path=" + this.robotCompilerDir);
+        return command;
+    }
 }
@@ -0,0 +1,88 @@
+package de.fhg.iais.roberta.factory.arduino;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArduinoBuildCacheTest {
+    /**
+     * a fake arduino-builder: compiles the "core" into the build path, as arduino-builder does with a dependency file naming the object
+     */
+    private static final String FAKE_BUILDER =
+        ""
+            + "#!/bin/bash\n"
+            + "for arg in \"$@\"; do case \"$arg\" in -build-path=*) build=\"${arg#-build-path=}\";; esac; done\n"
+            + "echo \"$build\" >> \"$(dirname \"$0\")/calls\"\n"
+            + "mkdir -p \"${build}core\" \"${build}sketch\"\n"
+            + "echo object > \"${build}core/wiring.c.o\"\n"
+            + "printf '%s: \\\\\\n %s\\n' \"${build}core/wiring.c.o\" /arduino/cores/wiring.c > \"${build}core/wiring.c.o.d\"\n"
+            + "echo object > \"${build}sketch/warmup.ino.cpp.o\"\n";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File builder;
+    private File revisions;
+    private ArduinoBuildCache cache;
+
+    @Before
+    public void setup() throws Exception {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        this.builder = this.tempFolder.newFile("arduino-builder");
+        FileUtils.writeStringToFile(this.builder, FAKE_BUILDER, StandardCharsets.UTF_8.displayName());
+        Assert.assertTrue(this.builder.setExecutable(true));
+        this.revisions = this.tempFolder.newFile("revisions.txt");
+        FileUtils.writeStringToFile(this.revisions, "ARDUINO 1.6.10", StandardCharsets.UTF_8.displayName());
+        String cacheBaseDir = this.tempFolder.newFolder("cache").getAbsolutePath();
+        this.cache =
+            new ArduinoBuildCache(
+                cacheBaseDir,
+                Arrays.asList(this.builder.getAbsolutePath(), "-fqbn=arduino:avr:uno"),
+                "#include <Wire.h>\n",
+                this.revisions.getAbsolutePath());
+    }
+
+    @Test
+    public void testTheCoreIsCopiedWithRewrittenDependencies() throws Exception {
+        File buildPath = this.tempFolder.newFolder("token", "main", "target");
+        Assert.assertFalse("not warmed up", this.cache.prepare(buildPath.getAbsolutePath() + "/"));
+
+        Assert.assertTrue(this.cache.build());
+        Assert.assertTrue(this.cache.prepare(buildPath.getAbsolutePath() + "/"));
+        File object = new File(buildPath, "core/wiring.c.o");
+        File cachedObject = new File(FileUtils.readFileToString(calls(), StandardCharsets.UTF_8.displayName()).trim(), "core/wiring.c.o");
+        Assert.assertEquals("the timestamp is kept", cachedObject.lastModified(), object.lastModified());
+        String dependencies = FileUtils.readFileToString(new File(buildPath, "core/wiring.c.o.d"), StandardCharsets.UTF_8.displayName());
+        Assert.assertEquals(object.getAbsolutePath() + ": \\\n /arduino/cores/wiring.c\n", dependencies);
+        Assert.assertFalse("the sketch is not cached", new File(buildPath, "sketch").exists());
+    }
+
+    @Test
+    public void testTheCacheIsRebuiltIfTheRevisionsChange() throws Exception {
+        File buildPath = this.tempFolder.newFolder("target");
+        Assert.assertTrue(this.cache.build());
+        Assert.assertTrue(this.cache.prepare(buildPath.getAbsolutePath()));
+
+        FileUtils.writeStringToFile(this.revisions, "ARDUINO 1.6.11", StandardCharsets.UTF_8.displayName());
+        Assert.assertTrue(this.revisions.setLastModified(this.revisions.lastModified() + 10000));
+        Assert.assertFalse("invalidated", this.cache.prepare(buildPath.getAbsolutePath()));
+        for ( int i = 0; i < 200 && !this.cache.prepare(buildPath.getAbsolutePath()); i++ ) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue("rebuilt in the background", this.cache.prepare(buildPath.getAbsolutePath()));
+        Assert.assertEquals(2, FileUtils.readLines(calls(), StandardCharsets.UTF_8.displayName()).size());
+    }
+
+    private File calls() {
+        return new File(this.builder.getParentFile(), "calls");
+    }
+}
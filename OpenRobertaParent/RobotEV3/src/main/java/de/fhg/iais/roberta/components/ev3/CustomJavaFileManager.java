@@ -8,7 +8,6 @@ import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
-import javax.tools.StandardJavaFileManager;
 
 public class CustomJavaFileManager extends ForwardingJavaFileManager<JavaFileManager> {
 
@@ -24,12 +23,13 @@ public class CustomJavaFileManager extends ForwardingJavaFileManager<JavaFileMan
 
     /**
      * Will initialize the manager with the specified
-     * standard java file manager
+     * file manager, that provides the classpath. The
+     * manager is used for exactly one compilation
      *
-     * @param standardManger
+     * @param classPathManager usually the shared file manager of the {@link JavaCompilerService}
      */
-    public CustomJavaFileManager(StandardJavaFileManager standardManager) {
-        super(standardManager);
+    public CustomJavaFileManager(JavaFileManager classPathManager) {
+        super(classPathManager);
     }
 
     /**
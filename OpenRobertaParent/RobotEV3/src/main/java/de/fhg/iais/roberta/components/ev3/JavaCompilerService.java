@@ -0,0 +1,149 @@
+package de.fhg.iais.roberta.components.ev3;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.util.Clock;
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * a long-lived, thread-safe java compiler for the generated EV3 programs. One service exists for each crosscompiler resources directory, it is created
+ * when it is requested for the first time (usually when the compiler workflow is created at server startup).<br>
+ * <br>
+ * The service opens the classpath jars once and keeps them in a {@link SharedJavaFileManager}. Each compilation gets its own {@link CustomJavaFileManager},
+ * which captures the generated class in memory. Concurrent compilations don't share any mutable state except the (synchronized) shared file manager.
+ */
+public class JavaCompilerService {
+    private static final Logger LOG = LoggerFactory.getLogger(JavaCompilerService.class);
+    private static final Map<String, Optional<JavaCompilerService>> SERVICES = new ConcurrentHashMap<>();
+
+    /**
+     * the jars needed to compile a generated program. They are expected in the crosscompiler resources directory
+     */
+    public static final List<String> CLASSPATH_JARS =
+        Collections.unmodifiableList(Arrays.asList("dbusjava.jar", "ev3classes.jar", "EV3Runtime.jar", "Java-WebSocket.jar", "jna.jar", "json.jar"));
+    private static final List<String> COMPILATION_OPTIONS = Collections.unmodifiableList(Arrays.asList("-source", "1.7", "-target", "1.7", "-proc:none"));
+
+    private final JavaCompiler compiler;
+    private final SharedJavaFileManager sharedFileManager;
+
+    /**
+     * create a service and warm it up, i.e. open and index the classpath jars. Usually {@link #getInstance(String)} should be used.
+     *
+     * @param classPathDir the crosscompiler resources directory, containing the {@link #CLASSPATH_JARS}. Missing jars are ignored (the compilation will fail
+     *        later)
+     */
+    public JavaCompilerService(String classPathDir) {
+        Clock clock = Clock.start();
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        if ( this.compiler == null ) {
+            throw new DbcException("no java compiler found. The server must run on a JDK, not a JRE");
+        }
+        StandardJavaFileManager standardFileManager = this.compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        List<File> classPath = new ArrayList<>();
+        List<String> missingJars = new ArrayList<>();
+        for ( String jar : CLASSPATH_JARS ) {
+            File jarFile = new File(classPathDir + jar);
+            if ( jarFile.isFile() ) {
+                classPath.add(jarFile);
+            } else {
+                missingJars.add(jar);
+            }
+        }
+        if ( !missingJars.isEmpty() ) {
+            LOG.warn("jars needed for compiling EV3 programs are missing in " + classPathDir + ": " + missingJars);
+        }
+        try {
+            standardFileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+            this.sharedFileManager = new SharedJavaFileManager(standardFileManager);
+        } catch ( IOException e ) {
+            throw new DbcException("the classpath for compiling EV3 programs could not be opened", e);
+        }
+        LOG.info(
+            "java compiler service for " + classPathDir + " started in " + clock.elapsedMsec() + " msec. Packages indexed: "
+                + this.sharedFileManager.getNumberOfIndexedPackages());
+    }
+
+    /**
+     * @param classPathDir the crosscompiler resources directory, containing the {@link #CLASSPATH_JARS}
+     * @return the service for this directory; created, if needed. Null, if the service cannot be created (the server runs on a JRE, e.g.). This is
+     *         remembered, the creation is not tried again
+     */
+    public static JavaCompilerService getInstance(String classPathDir) {
+        return SERVICES.computeIfAbsent(classPathDir, JavaCompilerService::create).orElse(null);
+    }
+
+    /**
+     * shut down the service for a directory, if it exists. It is created again by the next {@link #getInstance(String)}.
+     *
+     * @param classPathDir the crosscompiler resources directory
+     */
+    public static void shutdown(String classPathDir) {
+        Optional<JavaCompilerService> service = SERVICES.remove(classPathDir);
+        if ( service != null && service.isPresent() ) {
+            try {
+                service.get().shutdown();
+            } catch ( IOException e ) {
+                LOG.error("the java compiler service for " + classPathDir + " could not be shut down", e);
+            }
+        }
+    }
+
+    private static Optional<JavaCompilerService> create(String classPathDir) {
+        try {
+            return Optional.of(new JavaCompilerService(classPathDir));
+        } catch ( DbcException e ) {
+            LOG.error("the java compiler service for " + classPathDir + " is not available. EV3 programs are compiled without it: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * compile one class. Thread-safe.
+     *
+     * @param className the full qualified name of the class, e.g. <code>generated.main.NEPOprog</code>
+     * @param sourceCode of the class
+     * @param output the file manager of this compilation, receiving the compiled class; must have been created by {@link #newFileManager()}
+     * @return the feedback of the compiler
+     */
+    public CompilerFeedback compile(String className, String sourceCode, CustomJavaFileManager output) {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<JavaFileObject> javaFiles = Collections.<JavaFileObject> singletonList(new SourceJavaFileObject(className, sourceCode));
+        CompilationTask task = this.compiler.getTask(null, output, diagnostics, COMPILATION_OPTIONS, null, javaFiles);
+        Boolean isSuccess = task.call();
+        return new CompilerFeedback(isSuccess, diagnostics);
+    }
+
+    /**
+     * @return a new file manager for exactly one compilation
+     */
+    public CustomJavaFileManager newFileManager() {
+        return new CustomJavaFileManager(this.sharedFileManager);
+    }
+
+    /**
+     * release the jars. The service must not be used afterwards.
+     */
+    public void shutdown() throws IOException {
+        this.sharedFileManager.shutdown();
+    }
+}
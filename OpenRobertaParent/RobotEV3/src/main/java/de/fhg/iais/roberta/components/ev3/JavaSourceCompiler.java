@@ -4,11 +4,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.stream.Collectors;
 
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
@@ -17,16 +20,17 @@ import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
 public class JavaSourceCompiler {
     private static final Logger LOG = LoggerFactory.getLogger(JavaSourceCompiler.class);
 
-    private CustomJavaFileManager fileManager;
+    private final CustomJavaFileManager fileManager;
+    private final JavaCompilerService compilerService;
     private CompilerFeedback feedback;
-    private final JavaCompiler compiler;
     private final String programName;
     private final String sourceCode;
     private final String packageName = "generated.main.";
@@ -37,32 +41,46 @@ public class JavaSourceCompiler {
      *        Name of the program
      * @param sourceCode
      *        Here we specify the source code of the class to be compiled
+     * @param classPath
+     *        the crosscompiler resources directory with the jars needed for compiling, see {@link JavaCompilerService#CLASSPATH_JARS}. If no
+     *        {@link JavaCompilerService} is available for it, the program is compiled with a compiler and classpath of its own
      */
     public JavaSourceCompiler(String programName, String sourceCode, String classPath) {
         this.programName = programName;
         this.sourceCode = sourceCode;
-        this.compiler = ToolProvider.getSystemJavaCompiler();
-        this.fileManager = initFileManager();
         this.classPath = classPath;
+        this.compilerService = JavaCompilerService.getInstance(classPath);
+        if ( this.compilerService != null ) {
+            this.fileManager = this.compilerService.newFileManager();
+        } else {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if ( compiler == null ) {
+                throw new DbcException("no java compiler found. The server must run on a JDK, not a JRE");
+            }
+            this.fileManager = new CustomJavaFileManager(compiler.getStandardFileManager(null, null, null));
+        }
     }
 
-    private CustomJavaFileManager initFileManager() {
-        if ( this.fileManager != null ) {
-            return this.fileManager;
+    private Boolean compile() {
+        if ( this.compilerService != null ) {
+            this.feedback = this.compilerService.compile(this.packageName + this.programName, this.sourceCode, this.fileManager);
         } else {
-            this.fileManager = new CustomJavaFileManager(this.compiler.getStandardFileManager(null, null, null));
-            return this.fileManager;
+            this.feedback = compileWithoutService();
         }
+        return this.feedback.isSuccess();
     }
 
-    private Boolean compile() {
+    /**
+     * the compilation without a {@link JavaCompilerService}: the classpath jars are opened and indexed for this compilation only
+     */
+    private CompilerFeedback compileWithoutService() {
         DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-        List<JavaFileObject> javaFiles = getJavaFiles();
-        List<String> compilationOptions = getCompilerProperties();
-        CompilationTask task = this.compiler.getTask(null, this.fileManager, diagnostics, compilationOptions, null, javaFiles);
-        Boolean isSuccess = task.call();
-        this.feedback = new CompilerFeedback(isSuccess, diagnostics);
-        return isSuccess;
+        List<JavaFileObject> javaFiles = Collections.singletonList(new SourceJavaFileObject(this.packageName + this.programName, this.sourceCode));
+        List<String> compilationOptions = new ArrayList<>(Arrays.asList("-source", "1.7", "-target", "1.7", "-classpath"));
+        compilationOptions.add(
+            JavaCompilerService.CLASSPATH_JARS.stream().map(jar -> this.classPath + jar).collect(Collectors.joining(File.pathSeparator)));
+        CompilationTask task = ToolProvider.getSystemJavaCompiler().getTask(null, this.fileManager, diagnostics, compilationOptions, null, javaFiles);
+        return new CompilerFeedback(task.call(), diagnostics);
     }
 
     public boolean compileAndPackage(String pathToCrosscompilerBaseDir, String token) {
@@ -81,44 +99,6 @@ public class JavaSourceCompiler {
         return isSuccess;
     }
 
-    private List<JavaFileObject> getJavaFiles() {
-        List<JavaFileObject> javaFiles = new ArrayList<>();
-        javaFiles.add(new SourceJavaFileObject(this.packageName + this.programName, this.sourceCode));
-        return javaFiles;
-    }
-
-    private List<String> getCompilerProperties() {
-        List<String> compilationOptions = new ArrayList<>();
-        compilationOptions.add("-source");
-        compilationOptions.add("1.7");
-        compilationOptions.add("-target");
-        compilationOptions.add("1.7");
-        compilationOptions.add("-classpath");
-        String separator = ":";
-        if ( SystemUtils.IS_OS_WINDOWS ) {
-            separator = ";";
-        }
-        compilationOptions.add(
-            this.classPath
-                + "dbusjava.jar"
-                + separator
-                + this.classPath
-                + "ev3classes.jar"
-                + separator
-                + this.classPath
-                + "EV3Runtime.jar"
-                + separator
-                + this.classPath
-                + "Java-WebSocket.jar"
-                + separator
-                + this.classPath
-                + "jna.jar"
-                + separator
-                + this.classPath
-                + "json.jar");
-        return compilationOptions;
-    }
-
     private ByteArrayOutputStream createJarArchive() {
         // Open archive file
         byte[] classToBeJared = this.fileManager.getClassJavaFileObject().getBytes();
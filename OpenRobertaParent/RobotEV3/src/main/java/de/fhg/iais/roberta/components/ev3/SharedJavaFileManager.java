@@ -0,0 +1,212 @@
+package de.fhg.iais.roberta.components.ev3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * a read-only file manager shared by all compilations of one crosscompiler classpath. The classpath jars and the jdk platform classes are opened once.<br>
+ * <br>
+ * The class files of the classpath are read into memory and indexed by package when the manager is created. Requests for the classpath are answered
+ * from this index without locking; each answer contains fresh file objects, because file objects of the standard file manager can be read only once. All
+ * other requests (e.g. for the platform classes) are forwarded to the standard file manager while holding its lock, because the standard file manager is
+ * not thread-safe. The manager is never modified after its creation: options are rejected and output is not supported. Each compilation needs its own
+ * {@link CustomJavaFileManager} for its output.
+ */
+public class SharedJavaFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    private final Map<String, List<ClassPathEntry>> classPathIndex;
+
+    /**
+     * @param standardManager with its class path already set. From now on it is owned by this manager
+     */
+    public SharedJavaFileManager(StandardJavaFileManager standardManager) throws IOException {
+        super(standardManager);
+        this.classPathIndex = indexClassPath();
+    }
+
+    /**
+     * @return the number of packages found on the classpath
+     */
+    public int getNumberOfIndexedPackages() {
+        return this.classPathIndex.size();
+    }
+
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName, Set<Kind> kinds, boolean recurse) throws IOException {
+        if ( location != StandardLocation.CLASS_PATH ) {
+            synchronized ( this ) {
+                return super.list(location, packageName, kinds, recurse);
+            }
+        }
+        List<JavaFileObject> files = new ArrayList<>();
+        if ( !kinds.contains(Kind.CLASS) ) {
+            return files;
+        }
+        if ( !recurse ) {
+            for ( ClassPathEntry entry : this.classPathIndex.getOrDefault(packageName, Collections.<ClassPathEntry> emptyList()) ) {
+                files.add(new ClassPathFileObject(entry));
+            }
+            return files;
+        }
+        for ( Map.Entry<String, List<ClassPathEntry>> indexed : this.classPathIndex.entrySet() ) {
+            String indexedPackage = indexed.getKey();
+            if ( indexedPackage.equals(packageName) || packageName.isEmpty() || indexedPackage.startsWith(packageName + ".") ) {
+                for ( ClassPathEntry entry : indexed.getValue() ) {
+                    files.add(new ClassPathFileObject(entry));
+                }
+            }
+        }
+        return files;
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if ( file instanceof ClassPathFileObject ) {
+            return ((ClassPathFileObject) file).entry.binaryName;
+        }
+        synchronized ( this ) {
+            return super.inferBinaryName(location, file);
+        }
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+        if ( a instanceof ClassPathFileObject || b instanceof ClassPathFileObject ) {
+            return a.toUri().equals(b.toUri());
+        }
+        synchronized ( this ) {
+            return super.isSameFile(a, b);
+        }
+    }
+
+    @Override
+    public synchronized boolean hasLocation(Location location) {
+        return super.hasLocation(location);
+    }
+
+    @Override
+    public synchronized JavaFileObject getJavaFileForInput(Location location, String className, Kind kind) throws IOException {
+        return super.getJavaFileForInput(location, className, kind);
+    }
+
+    @Override
+    public synchronized FileObject getFileForInput(Location location, String packageName, String relativeName) throws IOException {
+        return super.getFileForInput(location, packageName, relativeName);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className, Kind kind, FileObject sibling) throws IOException {
+        throw new UnsupportedOperationException("the shared file manager is read-only, output must be captured per compilation");
+    }
+
+    @Override
+    public FileObject getFileForOutput(Location location, String packageName, String relativeName, FileObject sibling) throws IOException {
+        throw new UnsupportedOperationException("the shared file manager is read-only, output must be captured per compilation");
+    }
+
+    @Override
+    public ClassLoader getClassLoader(Location location) {
+        throw new UnsupportedOperationException("annotation processing is not supported");
+    }
+
+    @Override
+    public boolean handleOption(String current, Iterator<String> remaining) {
+        return false;
+    }
+
+    @Override
+    public int isSupportedOption(String option) {
+        return -1;
+    }
+
+    /**
+     * the shared manager outlives all compilations. Use {@link #shutdown()} to release the jars
+     */
+    @Override
+    public void flush() {
+        // nothing to flush, the manager is read-only
+    }
+
+    /**
+     * the shared manager outlives all compilations. Use {@link #shutdown()} to release the jars
+     */
+    @Override
+    public void close() {
+        // closed by shutdown() only
+    }
+
+    public synchronized void shutdown() throws IOException {
+        super.close();
+    }
+
+    private Map<String, List<ClassPathEntry>> indexClassPath() throws IOException {
+        Map<String, List<ClassPathEntry>> index = new HashMap<>();
+        for ( JavaFileObject file : super.list(StandardLocation.CLASS_PATH, "", EnumSet.of(Kind.CLASS), true) ) {
+            String binaryName = super.inferBinaryName(StandardLocation.CLASS_PATH, file);
+            int lastDot = binaryName.lastIndexOf('.');
+            String packageName = lastDot < 0 ? "" : binaryName.substring(0, lastDot);
+            byte[] content;
+            try ( InputStream input = file.openInputStream() ) {
+                content = IOUtils.toByteArray(input);
+            }
+            index.computeIfAbsent(packageName, p -> new ArrayList<>()).add(new ClassPathEntry(binaryName, file.getName(), content));
+        }
+        for ( Map.Entry<String, List<ClassPathEntry>> entry : index.entrySet() ) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static final class ClassPathEntry {
+        private final String binaryName;
+        private final String origin;
+        private final byte[] content;
+
+        private ClassPathEntry(String binaryName, String origin, byte[] content) {
+            this.binaryName = binaryName;
+            this.origin = origin;
+            this.content = content;
+        }
+    }
+
+    /**
+     * a class file of the classpath. Created for each request, because javac may keep state in file objects. The content is shared and never modified.
+     */
+    private static final class ClassPathFileObject extends SimpleJavaFileObject {
+        private final ClassPathEntry entry;
+
+        private ClassPathFileObject(ClassPathEntry entry) {
+            super(URI.create("string:///" + entry.binaryName.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.entry = entry;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(this.entry.content);
+        }
+
+        @Override
+        public String getName() {
+            return this.entry.origin;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package de.fhg.iais.roberta.factory.ev3.lejos;
 
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.components.Configuration;
 import de.fhg.iais.roberta.components.ev3.EV3Configuration;
+import de.fhg.iais.roberta.components.ev3.JavaCompilerService;
 import de.fhg.iais.roberta.components.ev3.JavaSourceCompiler;
 import de.fhg.iais.roberta.factory.AbstractCompilerWorkflow;
+import de.fhg.iais.roberta.factory.CompilationResult;
 import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.inter.mode.action.ILanguage;
 import de.fhg.iais.roberta.syntax.codegen.ev3.JavaVisitor;
@@ -24,7 +29,10 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
     public CompilerWorkflow(String pathToCrosscompilerBaseDir, String crossCompilerResourcesDir) {
         this.pathToCrosscompilerBaseDir = pathToCrosscompilerBaseDir;
         this.crossCompilerResourcesDir = crossCompilerResourcesDir;
-
+        // open and index the classpath jars now, not when the first user compiles a program. Unit tests run without a resources directory
+        if ( crossCompilerResourcesDir != null ) {
+            JavaCompilerService.getInstance(crossCompilerResourcesDir);
+        }
     }
 
     @Override
@@ -33,35 +41,41 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
     }
 
     @Override
-    public Key compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
+    public CompilationResult compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
         //Ev3CompilerWorkflow.LOG.info("generated code:\n{}", sourceCode); // only needed for EXTREME debugging
         try {
             storeGeneratedProgram(token, programName, sourceCode, this.pathToCrosscompilerBaseDir, ".java");
         } catch ( Exception e ) {
             CompilerWorkflow.LOG.error("Storing the generated program into directory " + token + " failed", e);
-            return Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED;
+            return CompilationResult.failure(Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED, null, 0);
         }
 
-        JavaSourceCompiler scp = new JavaSourceCompiler(programName, sourceCode, this.crossCompilerResourcesDir);
-        boolean isSuccess = scp.compileAndPackage(this.pathToCrosscompilerBaseDir, token);
-        if ( !isSuccess ) {
-            LOG.error("build exception. Messages from the build script are:\n" + scp.getCompilationMessages());
-            return Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED;
-        } else {
-            LOG.info("jar for program {} generated successfully", programName);
-            return Key.COMPILERWORKFLOW_SUCCESS;
+        File jarFile = new File(this.pathToCrosscompilerBaseDir + token + "/target/" + programName + ".jar");
+        return compileCached(token, programName, this.crossCompilerResourcesDir, sourceCode, flagProvider, messages -> {
+            JavaSourceCompiler scp = new JavaSourceCompiler(programName, sourceCode, this.crossCompilerResourcesDir);
+            boolean isSuccess = scp.compileAndPackage(this.pathToCrosscompilerBaseDir, token);
+            messages.append(scp.getCompilationMessages());
+            if ( !isSuccess ) {
+                LOG.error("build exception. Messages from the build script are:\n" + scp.getCompilationMessages());
+                return null;
+            } else {
+                LOG.info("jar for program {} generated successfully", programName);
+                return FileUtils.readFileToByteArray(jarFile);
+            }
+        }, artifact -> FileUtils.writeByteArrayToFile(jarFile, artifact), null);
+    }
+
+    @Override
+    public void shutdown() {
+        if ( this.crossCompilerResourcesDir != null ) {
+            JavaCompilerService.shutdown(this.crossCompilerResourcesDir);
         }
     }
 
     @Override
     public Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception {
-        BlockSet project = JaxbHelper.xml2BlockSet(blocklyXml);
+        BlockSet project = JaxbHelper.configuration2BlockSet(factory, blocklyXml);
         Jaxb2Ev3ConfigurationTransformer transformer = new Jaxb2Ev3ConfigurationTransformer(factory);
         return transformer.transform(project);
     }
-
-    @Override
-    public String getCompiledCode() {
-        return null;
-    }
 }
@@ -1,15 +1,14 @@
 package de.fhg.iais.roberta.javaServer.restServices.robot.ev3.lejos.v0;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +17,7 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
 import de.fhg.iais.roberta.util.AliveData;
+import de.fhg.iais.roberta.util.StaticFileCache;
 
 /**
  * REST service for updating brick libraries and menu.<br>
@@ -36,14 +36,10 @@ public class Update {
     @GET
     @Path("/runtime")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
-    public Response getRuntime() throws FileNotFoundException {
+    public Response getRuntime(@Context Request request) {
         AliveData.rememberRobotCall();
         LOG.info("/update/runtime called");
-        File jar = new File(this.robotUpdateResourcesDir + "/EV3Runtime.jar");
-        ResponseBuilder response = Response.ok(new FileInputStream(jar));
-        response.header("Content-Disposition", "attachment; filename=EV3Runtime.jar");
-        response.header("Filename", "EV3Runtime.jar");
-        return response.build();
+        return StaticFileCache.serve(request, new File(this.robotUpdateResourcesDir + "/EV3Runtime.jar"), "EV3Runtime.jar");
     }
 
     @GET
@@ -54,57 +50,40 @@ public class Update {
      * After restructuring our projects we do not have any more the OpenRobertaShared library
      *
      * @return
-     * @throws FileNotFoundException
      */
-    public Response getShared() throws FileNotFoundException {
+    public Response getShared(@Context Request request) {
         // old versions of the menu will require the OpenRobertaShared.jar
         // since we do not have any more we pass the EV3Runtime twice
         AliveData.rememberRobotCall();
         LOG.info("/update/shared called");
-        File jar = new File(this.robotUpdateResourcesDir + "/EV3Runtime.jar");
-        ResponseBuilder response = Response.ok(new FileInputStream(jar));
-        response.header("Content-Disposition", "attachment; filename=EV3Runtime.jar");
-        response.header("Filename", "EV3Runtime.jar");
-        return response.build();
+        return StaticFileCache.serve(request, new File(this.robotUpdateResourcesDir + "/EV3Runtime.jar"), "EV3Runtime.jar");
 
     }
 
     @GET
     @Path("/jsonlib")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
-    public Response getJsonLib() throws FileNotFoundException {
+    public Response getJsonLib(@Context Request request) {
         AliveData.rememberRobotCall();
         LOG.info("/update/jsonlib called");
-        File jar = new File(this.robotUpdateResourcesDir + "/json.jar");
-        ResponseBuilder response = Response.ok(new FileInputStream(jar));
-        response.header("Content-Disposition", "attachment; filename=json.jar");
-        response.header("Filename", "json.jar");
-        return response.build();
+        return StaticFileCache.serve(request, new File(this.robotUpdateResourcesDir + "/json.jar"), "json.jar");
     }
 
     @GET
     @Path("/websocketlib")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
-    public Response getWebSocketLib() throws FileNotFoundException {
+    public Response getWebSocketLib(@Context Request request) {
         AliveData.rememberRobotCall();
         LOG.info("/update/websocketlib called");
-        File jar = new File(this.robotUpdateResourcesDir + "/Java-WebSocket.jar");
-        ResponseBuilder response = Response.ok(new FileInputStream(jar));
-        response.header("Content-Disposition", "attachment; filename=Java-WebSocket.jar");
-        response.header("Filename", "Java-WebSocket.jar");
-        return response.build();
+        return StaticFileCache.serve(request, new File(this.robotUpdateResourcesDir + "/Java-WebSocket.jar"), "Java-WebSocket.jar");
     }
 
     @GET
     @Path("/ev3menu")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
-    public Response getMenu() throws FileNotFoundException {
+    public Response getMenu(@Context Request request) {
         AliveData.rememberRobotCall();
         LOG.info("/update/ev3menu called");
-        File jar = new File(this.robotUpdateResourcesDir + "/EV3Menu.jar");
-        ResponseBuilder response = Response.ok(new FileInputStream(jar));
-        response.header("Content-Disposition", "attachment; filename=EV3Menu.jar");
-        response.header("Filename", "EV3Menu.jar");
-        return response.build();
+        return StaticFileCache.serve(request, new File(this.robotUpdateResourcesDir + "/EV3Menu.jar"), "EV3Menu.jar");
     }
 }
\ No newline at end of file
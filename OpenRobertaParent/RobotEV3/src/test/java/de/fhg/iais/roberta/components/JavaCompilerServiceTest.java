@@ -0,0 +1,176 @@
+package de.fhg.iais.roberta.components;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.components.ev3.CompilerFeedback;
+import de.fhg.iais.roberta.components.ev3.CustomJavaFileManager;
+import de.fhg.iais.roberta.components.ev3.JavaCompilerService;
+import de.fhg.iais.roberta.components.ev3.SourceJavaFileObject;
+import de.fhg.iais.roberta.util.Clock;
+
+public class JavaCompilerServiceTest {
+    private static final String LIB = "package de.fhg.iais.roberta.runtime;\npublic class Lib {\n    public static int answer() {\n        return 42;\n    }\n}\n";
+
+    private static File classPathDir;
+    private static JavaCompilerService service;
+
+    /**
+     * the real crosscompiler jars are not available in the test environment. A jar with a small runtime class replaces them
+     */
+    @BeforeClass
+    public static void setup() throws Exception {
+        classPathDir = Files.createTempDirectory("ev3classpath").toFile();
+        JavaCompilerService bootstrap = new JavaCompilerService(classPathDir.getAbsolutePath() + "/");
+        CustomJavaFileManager output = bootstrap.newFileManager();
+        Assert.assertTrue(bootstrap.compile("de.fhg.iais.roberta.runtime.Lib", LIB, output).isSuccess());
+        bootstrap.shutdown();
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(new File(classPathDir, "EV3Runtime.jar")))) {
+            jar.putNextEntry(new JarEntry("de/fhg/iais/roberta/runtime/Lib.class"));
+            jar.write(output.getClassJavaFileObject().getBytes());
+        }
+        service = new JavaCompilerService(classPathDir.getAbsolutePath() + "/");
+    }
+
+    @AfterClass
+    public static void teardown() throws IOException {
+        service.shutdown();
+        FileUtils.deleteQuietly(classPathDir);
+    }
+
+    @Test
+    public void testClassPathIsUsed() throws Exception {
+        CustomJavaFileManager output = service.newFileManager();
+        CompilerFeedback feedback = service.compile("generated.main.NEPOprog", program("NEPOprog", "Lib.answer()"), output);
+        Assert.assertTrue(feedback.toString(), feedback.isSuccess());
+        Assert.assertTrue(output.getClassJavaFileObject().getBytes().length > 0);
+
+        output = service.newFileManager();
+        feedback = service.compile("generated.main.NEPOprog", program("NEPOprog", "Lib.question()"), output);
+        Assert.assertFalse(feedback.isSuccess());
+        Assert.assertTrue(feedback.toString().contains("question"));
+    }
+
+    @Test
+    public void testConcurrentCompilationsAreIsolated() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for ( int i = 0; i < 32; i++ ) {
+                String className = "Prog" + i;
+                boolean isCorrect = i % 4 != 0;
+                results.add(executor.submit(() -> {
+                    CustomJavaFileManager output = service.newFileManager();
+                    String call = isCorrect ? "Lib.answer()" : "Lib.answer(" + className + ")";
+                    CompilerFeedback feedback = service.compile("generated.main." + className, program(className, call), output);
+                    if ( feedback.isSuccess() ) {
+                        String classFile = new String(output.getClassJavaFileObject().getBytes(), StandardCharsets.ISO_8859_1);
+                        Assert.assertTrue(classFile.contains("generated/main/" + className));
+                    }
+                    return feedback.isSuccess() == isCorrect;
+                }));
+            }
+            for ( Future<Boolean> result : results ) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testServiceIsSharedPerDirectoryUntilShutdown() throws Exception {
+        String dir = classPathDir.getAbsolutePath() + "/";
+        JavaCompilerService shared = JavaCompilerService.getInstance(dir);
+        Assert.assertSame(shared, JavaCompilerService.getInstance(dir));
+        JavaCompilerService.shutdown(dir);
+        JavaCompilerService restarted = JavaCompilerService.getInstance(dir);
+        Assert.assertNotSame(shared, restarted);
+        CompilerFeedback feedback = restarted.compile("generated.main.NEPOprog", program("NEPOprog", "Lib.answer()"), restarted.newFileManager());
+        Assert.assertTrue(feedback.toString(), feedback.isSuccess());
+        JavaCompilerService.shutdown(dir);
+        JavaCompilerService.shutdown(dir);
+    }
+
+    /**
+     * compares the latency of a compilation with a new file manager (as it was done before the compiler service existed) with the latency using the warmed
+     * up service. Use <code>-Dev3.crosscompiler.resources=.../lejos_v0/</code> to run it with the real crosscompiler jars and
+     * <code>-Dev3.crosscompiler.program=...</code> for a generated program named NEPOprog.
+     */
+    @Ignore("benchmark, run manually")
+    @Test
+    public void benchmark() throws Exception {
+        String dir = System.getProperty("ev3.crosscompiler.resources", classPathDir.getAbsolutePath() + "/");
+        String programFile = System.getProperty("ev3.crosscompiler.program");
+        String source = programFile == null ? program("NEPOprog", "Lib.answer()") : FileUtils.readFileToString(new File(programFile), StandardCharsets.UTF_8);
+        JavaCompilerService warmService = new JavaCompilerService(dir);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int rounds = 50;
+        Callable<Boolean> before = () -> {
+            CustomJavaFileManager fileManager = new CustomJavaFileManager(compiler.getStandardFileManager(null, null, null));
+            StringBuilder classPath = new StringBuilder();
+            for ( String jar : JavaCompilerService.CLASSPATH_JARS ) {
+                classPath.append(classPath.length() == 0 ? "" : File.pathSeparator).append(dir).append(jar);
+            }
+            List<String> options = Arrays.asList("-source", "1.7", "-target", "1.7", "-classpath", classPath.toString());
+            List<JavaFileObject> javaFiles = Arrays.asList(new SourceJavaFileObject("generated.main.NEPOprog", source));
+            return compiler.getTask(null, fileManager, new DiagnosticCollector<JavaFileObject>(), options, null, javaFiles).call();
+        };
+        Callable<Boolean> after = () -> warmService.compile("generated.main.NEPOprog", source, warmService.newFileManager()).isSuccess();
+        for ( int i = 0; i < 10; i++ ) {
+            // warm up the jit
+            Assert.assertTrue(before.call());
+            Assert.assertTrue(after.call());
+        }
+        long beforeMsec = measure(before, rounds);
+        long afterMsec = measure(after, rounds);
+        System.out.println("msec per compilation. Before (new file manager): " + beforeMsec + ", after (shared file manager): " + afterMsec);
+        warmService.shutdown();
+    }
+
+    private static long measure(Callable<Boolean> compilation, int rounds) throws Exception {
+        Clock clock = Clock.start();
+        for ( int i = 0; i < rounds; i++ ) {
+            Assert.assertTrue(compilation.call());
+        }
+        return clock.elapsedMsec() / rounds;
+    }
+
+    private static String program(String className, String call) {
+        return "package generated.main;\n"
+            + "import de.fhg.iais.roberta.runtime.Lib;\n"
+            + "public class "
+            + className
+            + " {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        System.out.println("
+            + call
+            + ");\n"
+            + "    }\n"
+            + "}\n";
+    }
+}
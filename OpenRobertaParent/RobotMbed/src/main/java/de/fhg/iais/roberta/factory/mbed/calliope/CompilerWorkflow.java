@@ -1,5 +1,6 @@
 package de.fhg.iais.roberta.factory.mbed.calliope;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.lang.ProcessBuilder.Redirect;
 import java.nio.charset.StandardCharsets;
@@ -17,12 +18,16 @@ import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.components.Configuration;
 import de.fhg.iais.roberta.components.mbed.CalliopeConfiguration;
 import de.fhg.iais.roberta.factory.AbstractCompilerWorkflow;
+import de.fhg.iais.roberta.factory.CompilationResult;
+import de.fhg.iais.roberta.factory.CompilerScheduler;
 import de.fhg.iais.roberta.factory.IRobotFactory;
+import de.fhg.iais.roberta.factory.WorkspaceManager;
 import de.fhg.iais.roberta.inter.mode.action.ILanguage;
 import de.fhg.iais.roberta.syntax.check.hardware.mbed.UsedHardwareCollectorVisitor;
 import de.fhg.iais.roberta.syntax.codegen.mbed.calliope.CppVisitor;
 import de.fhg.iais.roberta.transformer.BlocklyProgramAndConfigTransformer;
 import de.fhg.iais.roberta.transformer.mbed.Jaxb2CalliopeConfigurationTransformer;
+import de.fhg.iais.roberta.util.Clock;
 import de.fhg.iais.roberta.util.Key;
 import de.fhg.iais.roberta.util.dbc.Assert;
 import de.fhg.iais.roberta.util.jaxb.JaxbHelper;
@@ -35,8 +40,6 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
     public final String robotCompilerResourcesDir;
     public final String robotCompilerDir;
 
-    private String compiledHex = "";
-
     public CompilerWorkflow(String pathToCrosscompilerBaseDir, String robotCompilerResourcesDir, String robotCompilerDir) {
         this.pathToCrosscompilerBaseDir = pathToCrosscompilerBaseDir;
         this.robotCompilerResourcesDir = robotCompilerResourcesDir;
@@ -57,12 +60,12 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
     }
 
     @Override
-    public Key compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
+    public CompilationResult compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
         try {
             storeGeneratedProgram(token, programName, sourceCode, ".cpp");
         } catch ( Exception e ) {
             CompilerWorkflow.LOG.error("Storing the generated program into directory " + token + " failed", e);
-            return Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED;
+            return CompilationResult.failure(Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED, null, 0);
         }
         boolean isRadioUsed;
         if ( flagProvider == null ) {
@@ -73,17 +76,29 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
         } else {
             isRadioUsed = false;
         }
-        Key messageKey = runBuild(token, programName, "generated.main", isRadioUsed);
-        if ( messageKey == Key.COMPILERWORKFLOW_SUCCESS ) {
+        File hexFile = new File(this.pathToCrosscompilerBaseDir + token + "/" + programName + "/target/" + programName + ".hex");
+        CompilationResult result =
+            compileCached(
+                token,
+                programName,
+                this.robotCompilerResourcesDir,
+                sourceCode,
+                flagProvider,
+                messages -> runBuild(token, programName, "generated.main", isRadioUsed, messages) == Key.COMPILERWORKFLOW_SUCCESS
+                    ? FileUtils.readFileToByteArray(hexFile)
+                    : null,
+                artifact -> FileUtils.writeByteArrayToFile(hexFile, artifact),
+                artifact -> new String(artifact, StandardCharsets.UTF_8));
+        if ( result.isSuccess() ) {
             CompilerWorkflow.LOG.info("hex for program {} generated successfully", programName);
         } else {
-            CompilerWorkflow.LOG.info(messageKey.toString());
+            CompilerWorkflow.LOG.info(result.getKey().toString());
         }
-        return messageKey;
+        return result;
     }
 
     @Override
-    public Key generateSourceAndCompile(String token, String programName, BlocklyProgramAndConfigTransformer transformer, ILanguage language) {
+    public CompilationResult generateSourceAndCompile(String token, String programName, BlocklyProgramAndConfigTransformer transformer, ILanguage language) {
         String sourceCode = generateSourceCode(token, programName, transformer, language);
         UsedHardwareCollectorVisitor usedHardwareVisitor =
             new UsedHardwareCollectorVisitor(transformer.getProgramTransformer().getTree(), transformer.getBrickConfiguration());
@@ -95,6 +110,7 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
         Assert.isTrue(token != null && programName != null && sourceCode != null);
         File sourceFile = new File(this.pathToCrosscompilerBaseDir + token + "/" + programName + "/source/" + programName + ext);
         Path path = Paths.get(this.pathToCrosscompilerBaseDir + token + "/" + programName + "/target/");
+        WorkspaceManager.getInstance().use(token, programName);
         Files.createDirectories(path);
         CompilerWorkflow.LOG.info("stored under: " + sourceFile.getPath());
         FileUtils.writeStringToFile(sourceFile, sourceCode, StandardCharsets.UTF_8.displayName());
@@ -102,34 +118,34 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
 
     @Override
     public Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception {
-        BlockSet project = JaxbHelper.xml2BlockSet(blocklyXml);
+        BlockSet project = JaxbHelper.configuration2BlockSet(factory, blocklyXml);
         Jaxb2CalliopeConfigurationTransformer transformer = new Jaxb2CalliopeConfigurationTransformer(factory);
         return transformer.transform(project);
     }
 
-    @Override
-    public String getCompiledCode() {
-        return this.compiledHex;
-    }
-
     /**
      * 1. Make target folder (if not exists).<br>
      * 2. Clean target folder (everything inside).<br>
      * 3. Compile .java files to .class.<br>
      * 4. Make jar from class files and add META-INF entries.<br>
+     * The precompiled header of the libraries and bluetooth variant is used, if available (not on Windows). The timings of the stages are logged.<br>
      *
      * @param token
      * @param mainFile
      * @param mainPackage
      */
-    private Key runBuild(String token, String mainFile, String mainPackage, boolean radioUsed) {
-        final StringBuilder sb = new StringBuilder();
+    private Key runBuild(String token, String mainFile, String mainPackage, boolean radioUsed, StringBuilder sb) {
         String scriptName = this.robotCompilerResourcesDir + "/../compile." + (SystemUtils.IS_OS_WINDOWS ? "bat" : "sh");
         String bluetooth = radioUsed ? "" : "-b";
         Path path = Paths.get(this.pathToCrosscompilerBaseDir + token + "/" + mainFile);
         Path base = Paths.get("");
+        Clock clock = Clock.start();
 
         try {
+            String pchHeader =
+                SystemUtils.IS_OS_WINDOWS
+                    ? null
+                    : PrecompiledHeaders.getHeader(scriptName, this.robotCompilerDir, this.robotCompilerResourcesDir, bluetooth, sb);
             ProcessBuilder procBuilder =
                 new ProcessBuilder(
                     new String[] {
@@ -138,21 +154,29 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
                         mainFile,
                         base.resolve(path).toAbsolutePath().normalize().toString() + "/",
                         this.robotCompilerResourcesDir,
-                        bluetooth
+                        bluetooth,
+                        pchHeader == null ? "" : pchHeader
                     });
 
             procBuilder.redirectInput(Redirect.INHERIT);
-            procBuilder.redirectOutput(Redirect.INHERIT);
-            procBuilder.redirectError(Redirect.INHERIT);
-            Process p = procBuilder.start();
-            int ecode = p.waitFor();
+            procBuilder.redirectErrorStream(true);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            int ecode = CompilerScheduler.getInstance().runProcess(procBuilder, output);
+            sb.append(output.toString(StandardCharsets.UTF_8.name()));
             System.err.println("Exit code " + ecode);
+            CompilerWorkflow.LOG.info(
+                "build of {} took {} msec, stages {}, precompiled header {}",
+                mainFile,
+                clock.elapsedMsec(),
+                PrecompiledHeaders.parseTimings(sb.toString()),
+                pchHeader == null ? "not used" : "used");
 
             if ( ecode != 0 ) {
                 return Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED;
             }
-            this.compiledHex = FileUtils.readFileToString(new File(path + "/target/" + mainFile + ".hex"), "UTF-8");
             return Key.COMPILERWORKFLOW_SUCCESS;
+        } catch ( CompilerScheduler.TimeoutException e ) {
+            throw e;
         } catch ( Exception e ) {
             if ( sb.length() > 0 ) {
                 CompilerWorkflow.LOG.error("build exception. Messages from the build script are:\n" + sb.toString(), e);
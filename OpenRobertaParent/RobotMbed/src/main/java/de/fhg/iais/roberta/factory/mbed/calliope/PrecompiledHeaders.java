@@ -0,0 +1,140 @@
+package de.fhg.iais.roberta.factory.mbed.calliope;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.fhg.iais.roberta.factory.CompilerScheduler;
+import de.fhg.iais.roberta.util.RobertaProperties;
+
+/**
+ * precompiled headers for the Calliope cross compilation. Every generated program starts with the same prefix (see <code>CppVisitor</code>), whose
+ * <code>MicroBit.h</code> pulls in the whole microbit-dal, mbed-classic and nrf51-sdk header graph. Parsing it is most of the compile time. This
+ * prefix is compiled once by <code>compile.sh --pch</code> and then passed to every compile with <code>-include</code>.<br>
+ * <br>
+ * - there is one precompiled header per directory of the libraries (<i>libs2016</i>, <i>libs2017</i>) and bluetooth variant<br>
+ * - it is built lazily by the first compile that needs it and rebuilt once per server start, as the libraries may have been updated<br>
+ * - if it cannot be built, this is remembered and the programs are compiled without it
+ */
+public class PrecompiledHeaders {
+    private static final Logger LOG = LoggerFactory.getLogger(PrecompiledHeaders.class);
+    /**
+     * the prefix of the generated programs. Their own includes are skipped by the include guards, the identical redefinition of _GNU_SOURCE is
+     * allowed
+     */
+    static final String HEADER = "#define _GNU_SOURCE\n\n#include \"MicroBit.h\"\n#include <array>\n#include <stdlib.h>\n";
+    private static final String HEADER_NAME = "calliope.h";
+    private static final Pattern TIMING = Pattern.compile("^\\[timing\\] (\\S+) (\\d+) msec$", Pattern.MULTILINE);
+
+    private static final Map<String, Variant> variants = new ConcurrentHashMap<>();
+
+    private PrecompiledHeaders() {
+        // no objects
+    }
+
+    /**
+     * get the precompiled header for a library directory and bluetooth variant. Builds it, if this is the first request for the variant. Thread-safe,
+     * concurrent requests for the same variant wait for the build.
+     *
+     * @param scriptName the compile script
+     * @param compilerDir the directory of the cross compiler, passed to the compile script
+     * @param compilerResourcesDir the directory of the libraries
+     * @param bluetooth the bluetooth argument of the compile script
+     * @param messages the messages of the build are appended here
+     * @return the header to pass to the compile script; null, if no precompiled header is available
+     */
+    public static String getHeader(String scriptName, String compilerDir, String compilerResourcesDir, String bluetooth, StringBuilder messages) {
+        return getHeader(RobertaProperties.getTempDirFor("calliopePch"), scriptName, compilerDir, compilerResourcesDir, bluetooth, messages);
+    }
+
+    static String getHeader(String pchDir, String scriptName, String compilerDir, String compilerResourcesDir, String bluetooth, StringBuilder messages) {
+        String libs = new File(compilerResourcesDir).getName();
+        File header = new File(pchDir + libs + bluetooth, HEADER_NAME);
+        Variant variant = variants.computeIfAbsent(header.getAbsolutePath(), key -> new Variant(header));
+        return variant.get(scriptName, compilerDir, compilerResourcesDir, bluetooth, messages);
+    }
+
+    /**
+     * extract the stage timings reported by the compile script
+     *
+     * @param output the output of the compile script
+     * @return the duration of every stage in msec, in the order of the stages; never null
+     */
+    public static Map<String, Long> parseTimings(String output) {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        Matcher matcher = TIMING.matcher(output);
+        while ( matcher.find() ) {
+            timings.put(matcher.group(1), Long.valueOf(matcher.group(2)));
+        }
+        return timings;
+    }
+
+    private static final class Variant {
+        private final File header;
+        private boolean built = false;
+        private boolean failed = false;
+
+        private Variant(File header) {
+            this.header = header;
+        }
+
+        private synchronized String get(String scriptName, String compilerDir, String compilerResourcesDir, String bluetooth, StringBuilder messages) {
+            if ( !this.built && !this.failed ) {
+                try {
+                    this.built = build(scriptName, compilerDir, compilerResourcesDir, bluetooth, messages);
+                    this.failed = !this.built;
+                } catch ( CompilerScheduler.TimeoutException e ) {
+                    // the server is busy: compile this program without the header and try again with the next one
+                    LOG.warn("building the precompiled header " + this.header + " timed out");
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return this.built ? this.header.getAbsolutePath() : null;
+        }
+
+        private boolean build(String scriptName, String compilerDir, String compilerResourcesDir, String bluetooth, StringBuilder messages)
+            throws InterruptedException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                FileUtils.writeStringToFile(this.header, HEADER, StandardCharsets.UTF_8.displayName());
+                FileUtils.deleteQuietly(new File(this.header.getPath() + ".gch"));
+                ProcessBuilder procBuilder =
+                    new ProcessBuilder(new String[] {
+                        scriptName,
+                        compilerDir,
+                        "--pch",
+                        this.header.getAbsolutePath(),
+                        compilerResourcesDir,
+                        bluetooth
+                    });
+                procBuilder.redirectInput(Redirect.INHERIT);
+                procBuilder.redirectErrorStream(true);
+                int ecode = CompilerScheduler.getInstance().runProcess(procBuilder, output);
+                String buildMessages = output.toString(StandardCharsets.UTF_8.name());
+                messages.append(buildMessages);
+                if ( ecode != 0 ) {
+                    LOG.error("the precompiled header " + this.header + " could not be built. Programs are compiled without it:\n" + buildMessages);
+                    return false;
+                }
+                LOG.info("precompiled header " + this.header + " built: " + parseTimings(buildMessages));
+                return true;
+            } catch ( InterruptedException | CompilerScheduler.TimeoutException e ) {
+                throw e;
+            } catch ( Exception e ) {
+                LOG.error("the precompiled header " + this.header + " could not be built. Programs are compiled without it", e);
+                return false;
+            }
+        }
+    }
+}
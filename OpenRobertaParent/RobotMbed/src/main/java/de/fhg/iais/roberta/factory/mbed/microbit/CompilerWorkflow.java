@@ -1,8 +1,7 @@
 package de.fhg.iais.roberta.factory.mbed.microbit;
 
-import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,12 +9,12 @@ import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.components.Configuration;
 import de.fhg.iais.roberta.components.mbed.MicrobitConfiguration;
 import de.fhg.iais.roberta.factory.AbstractCompilerWorkflow;
+import de.fhg.iais.roberta.factory.CompilationResult;
 import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.inter.mode.action.ILanguage;
 import de.fhg.iais.roberta.syntax.codegen.mbed.microbit.PythonVisitor;
 import de.fhg.iais.roberta.transformer.BlocklyProgramAndConfigTransformer;
 import de.fhg.iais.roberta.transformer.mbed.Jaxb2MicrobitConfigurationTransformer;
-import de.fhg.iais.roberta.util.Key;
 import de.fhg.iais.roberta.util.jaxb.JaxbHelper;
 
 public class CompilerWorkflow extends AbstractCompilerWorkflow {
@@ -25,12 +24,17 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
     public final String robotCompilerResourcesDir;
     public final String robotCompilerDir;
 
-    private String compiledHex = "";
-
     public CompilerWorkflow(String robotCompilerResourcesDir, String robotCompilerDir) {
         this.robotCompilerResourcesDir = robotCompilerResourcesDir;
         this.robotCompilerDir = robotCompilerDir;
-
+        if ( robotCompilerResourcesDir != null ) {
+            try {
+                // read the MicroPython runtime at startup, not with the first request
+                MicroPythonHexPacker.forCompileScript(robotCompilerResourcesDir + "/compile.py");
+            } catch ( Exception e ) {
+                CompilerWorkflow.LOG.error("the MicroPython runtime could not be read. Programs for the micro:bit can't be compiled", e);
+            }
+        }
     }
 
     @Override
@@ -43,58 +47,48 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
     }
 
     @Override
-    public Key compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
-        Key messageKey = runBuild(sourceCode);
-        if ( messageKey == Key.COMPILERWORKFLOW_SUCCESS ) {
+    public CompilationResult compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
+        CompilationResult result =
+            compileCached(
+                token,
+                programName,
+                this.robotCompilerResourcesDir,
+                sourceCode,
+                flagProvider,
+                messages -> runBuild(sourceCode),
+                null,
+                artifact -> new String(artifact, StandardCharsets.US_ASCII));
+        if ( result.isSuccess() ) {
             CompilerWorkflow.LOG.info("hex for program {} generated successfully", programName);
         } else {
-            CompilerWorkflow.LOG.info(messageKey.toString());
+            CompilerWorkflow.LOG.info(result.getKey().toString());
         }
-        return messageKey;
+        return result;
     }
 
     @Override
     public Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception {
-        BlockSet project = JaxbHelper.xml2BlockSet(blocklyXml);
+        BlockSet project = JaxbHelper.configuration2BlockSet(factory, blocklyXml);
         Jaxb2MicrobitConfigurationTransformer transformer = new Jaxb2MicrobitConfigurationTransformer(factory);
         return transformer.transform(project);
     }
 
-    @Override
-    public String getCompiledCode() {
-        return this.compiledHex;
-    }
-
     /**
-     * run the build and create the complied hex file
+     * pack the python program into the MicroPython runtime. This is done in the JVM, no python interpreter is needed (see
+     * {@link MicroPythonHexPacker})
+     *
+     * @return the hex file; null, if the build failed
      */
-    Key runBuild(String sourceCode) {
-        final StringBuilder sb = new StringBuilder();
-
-        String scriptName = this.robotCompilerResourcesDir + "/compile.py";
-
+    byte[] runBuild(String sourceCode) {
         try {
-            ProcessBuilder procBuilder =
-                new ProcessBuilder(
-                    new String[] {
-                        this.robotCompilerDir + "python",
-                        scriptName,
-                        sourceCode
-                    });
-
-            procBuilder.redirectInput(Redirect.INHERIT);
-            procBuilder.redirectError(Redirect.INHERIT);
-            Process p = procBuilder.start();
-
-            this.compiledHex = IOUtils.toString(p.getInputStream(), "US-ASCII");
-            return Key.COMPILERWORKFLOW_SUCCESS;
-        } catch ( Exception e ) {
-            if ( sb.length() > 0 ) {
-                CompilerWorkflow.LOG.error("build exception. Messages from the build script are:\n" + sb.toString(), e);
-            } else {
-                CompilerWorkflow.LOG.error("exception when preparing the build", e);
+            byte[] compiledHex = MicroPythonHexPacker.forCompileScript(this.robotCompilerResourcesDir + "/compile.py").pack(sourceCode);
+            if ( compiledHex == null ) {
+                CompilerWorkflow.LOG.error("the python program is too large for the micro:bit");
             }
-            return Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED;
+            return compiledHex;
+        } catch ( Exception e ) {
+            CompilerWorkflow.LOG.error("exception when packing the python program", e);
+            return null;
         }
     }
 
@@ -0,0 +1,149 @@
+package de.fhg.iais.roberta.factory.mbed.microbit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.fhg.iais.roberta.util.dbc.DbcException;
+
+/**
+ * packs a python script into the MicroPython runtime hex of the micro:bit. This is a port of <code>uflash.hexlify</code> and
+ * <code>uflash.embed_hex</code>, as called by <code>resources/compile.py</code>, and produces the same bytes as <code>compile.py</code>:<br>
+ * - the script is prefixed by "MP" and its length (2 bytes, little endian) and padded with 1 to 16 zero bytes to a multiple of 16<br>
+ * - it is written as Intel hex records of 16 bytes starting at address 0x3E000<br>
+ * - these records are inserted into the runtime hex before its last 5 lines<br>
+ * <br>
+ * The runtime hex is read from <code>compile.py</code> and split once. Packing a script copies the two parts of the runtime and encodes the records of
+ * the script directly into the result.
+ */
+public class MicroPythonHexPacker {
+    private static final int SCRIPT_ADDRESS = 0x3E000;
+    private static final int MAX_SIZE = 8188;
+    private static final int RUNTIME_LINES_AFTER_SCRIPT = 5;
+    private static final byte[] EXTENDED_ADDRESS_RECORD = ":020000040003F7\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int RECORD_LENGTH = 1 + 2 * (4 + 16) + 2 + 1; // colon, header and data, checksum, newline
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final String RUNTIME_START = "_RUNTIME = \"\"\"";
+    private static final String RUNTIME_END = "\"\"\"";
+
+    private static final Map<String, MicroPythonHexPacker> packers = new ConcurrentHashMap<>();
+
+    private final byte[] runtimeHead;
+    private final byte[] runtimeTail;
+
+    /**
+     * @param runtimeHex the MicroPython runtime as Intel hex, one record per line
+     */
+    public MicroPythonHexPacker(String runtimeHex) {
+        String[] lines = runtimeHex.trim().split("\\s+");
+        if ( lines.length < RUNTIME_LINES_AFTER_SCRIPT ) {
+            throw new DbcException("the MicroPython runtime hex is too short");
+        }
+        int split = lines.length - RUNTIME_LINES_AFTER_SCRIPT;
+        this.runtimeHead = joinLines(lines, 0, split, "");
+        // compile.py prints the hex, this adds a second newline at the end
+        this.runtimeTail = joinLines(lines, split, lines.length, "\n");
+    }
+
+    /**
+     * get the packer for the runtime contained in a <code>compile.py</code> script. The script is read and the runtime is split only once.
+     *
+     * @param compileScript path of the compile.py script
+     * @return the packer, never null
+     * @throws DbcException if the script cannot be read or doesn't contain the runtime
+     */
+    public static MicroPythonHexPacker forCompileScript(String compileScript) {
+        return packers.computeIfAbsent(compileScript, MicroPythonHexPacker::readCompileScript);
+    }
+
+    /**
+     * pack a python script into the runtime
+     *
+     * @param script the python script
+     * @return the hex file as ASCII bytes; null, if the script is too large
+     */
+    public byte[] pack(String script) {
+        byte[] scriptBytes = script.replace("\r\n", "\n").replace('\r', '\n').getBytes(StandardCharsets.UTF_8);
+        if ( scriptBytes.length == 0 ) {
+            return concat(this.runtimeHead, this.runtimeTail);
+        }
+        int dataLength = 4 + scriptBytes.length;
+        int paddedLength = dataLength + 16 - dataLength % 16;
+        if ( paddedLength > MAX_SIZE ) {
+            return null;
+        }
+        byte[] data = new byte[paddedLength];
+        data[0] = 'M';
+        data[1] = 'P';
+        data[2] = (byte) scriptBytes.length;
+        data[3] = (byte) (scriptBytes.length >> 8);
+        System.arraycopy(scriptBytes, 0, data, 4, scriptBytes.length);
+
+        int records = paddedLength / 16;
+        byte[] hex = new byte[this.runtimeHead.length + EXTENDED_ADDRESS_RECORD.length + records * RECORD_LENGTH + this.runtimeTail.length];
+        System.arraycopy(this.runtimeHead, 0, hex, 0, this.runtimeHead.length);
+        int pos = this.runtimeHead.length;
+        System.arraycopy(EXTENDED_ADDRESS_RECORD, 0, hex, pos, EXTENDED_ADDRESS_RECORD.length);
+        pos += EXTENDED_ADDRESS_RECORD.length;
+        for ( int record = 0; record < records; record++ ) {
+            pos = writeRecord(hex, pos, (SCRIPT_ADDRESS + record * 16) & 0xFFFF, data, record * 16);
+        }
+        System.arraycopy(this.runtimeTail, 0, hex, pos, this.runtimeTail.length);
+        return hex;
+    }
+
+    private static int writeRecord(byte[] hex, int pos, int address, byte[] data, int offset) {
+        hex[pos++] = ':';
+        int checksum = 16 + (address >> 8) + (address & 0xFF);
+        pos = writeByte(hex, pos, 16);
+        pos = writeByte(hex, pos, address >> 8);
+        pos = writeByte(hex, pos, address & 0xFF);
+        pos = writeByte(hex, pos, 0);
+        for ( int i = offset; i < offset + 16; i++ ) {
+            checksum += data[i] & 0xFF;
+            pos = writeByte(hex, pos, data[i] & 0xFF);
+        }
+        pos = writeByte(hex, pos, -checksum & 0xFF);
+        hex[pos++] = '\n';
+        return pos;
+    }
+
+    private static int writeByte(byte[] hex, int pos, int value) {
+        hex[pos] = HEX_DIGITS[value >> 4];
+        hex[pos + 1] = HEX_DIGITS[value & 0xF];
+        return pos + 2;
+    }
+
+    private static byte[] joinLines(String[] lines, int from, int to, String suffix) {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = from; i < to; i++ ) {
+            sb.append(lines[i]).append('\n');
+        }
+        return sb.append(suffix).toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static MicroPythonHexPacker readCompileScript(String compileScript) {
+        String content;
+        try {
+            content = new String(Files.readAllBytes(Paths.get(compileScript)), StandardCharsets.US_ASCII);
+        } catch ( IOException e ) {
+            throw new DbcException("the MicroPython compile script could not be read: " + compileScript, e);
+        }
+        int start = content.indexOf(RUNTIME_START);
+        int end = start < 0 ? -1 : content.indexOf(RUNTIME_END, start + RUNTIME_START.length());
+        if ( end < 0 ) {
+            throw new DbcException("the MicroPython runtime was not found in " + compileScript);
+        }
+        return new MicroPythonHexPacker(content.substring(start + RUNTIME_START.length(), end));
+    }
+}
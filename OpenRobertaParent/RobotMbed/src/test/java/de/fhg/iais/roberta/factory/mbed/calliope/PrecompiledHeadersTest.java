@@ -0,0 +1,63 @@
+package de.fhg.iais.roberta.factory.mbed.calliope;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PrecompiledHeadersTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testTimingsAreParsedInTheOrderOfTheStages() throws Exception {
+        String output = "[1/3] Building the main.\n[timing] compile 1234 msec\n[2/3] Linking CXX executable\n[timing] link 56 msec\n[timing] hex 7 msec\n";
+        Map<String, Long> timings = PrecompiledHeaders.parseTimings(output);
+        Assert.assertEquals("{compile=1234, link=56, hex=7}", timings.toString());
+        Assert.assertTrue(PrecompiledHeaders.parseTimings("Error in building !!!\n").isEmpty());
+    }
+
+    @Test
+    public void testTheHeaderIsBuiltOncePerVariant() throws Exception {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        File calls = this.tempFolder.newFile("calls");
+        File script = fakeCompileScript("echo \"$5\" >> " + calls.getAbsolutePath() + "\ntouch \"$3.gch\"\necho \"[timing] pch 42 msec\"\n");
+        String pchDir = this.tempFolder.getRoot().getAbsolutePath() + "/pch/";
+
+        StringBuilder messages = new StringBuilder();
+        String header = PrecompiledHeaders.getHeader(pchDir, script.getAbsolutePath(), "", "/opt/libs2017", "-b", messages);
+        Assert.assertEquals(pchDir + "libs2017-b/calliope.h", header);
+        Assert.assertEquals(PrecompiledHeaders.HEADER, FileUtils.readFileToString(new File(header), StandardCharsets.UTF_8.displayName()));
+        Assert.assertTrue(messages.toString().contains("[timing] pch 42 msec"));
+        Assert.assertEquals(header, PrecompiledHeaders.getHeader(pchDir, script.getAbsolutePath(), "", "/opt/libs2017", "-b", new StringBuilder()));
+        String noBluetooth = PrecompiledHeaders.getHeader(pchDir, script.getAbsolutePath(), "", "/opt/libs2017", "", new StringBuilder());
+        Assert.assertEquals(pchDir + "libs2017/calliope.h", noBluetooth);
+        Assert.assertEquals("-b\n\n", FileUtils.readFileToString(calls, StandardCharsets.UTF_8.displayName()));
+    }
+
+    @Test
+    public void testAFailedBuildIsRememberedAndNoHeaderIsUsed() throws Exception {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        File calls = this.tempFolder.newFile("calls");
+        File script = fakeCompileScript("echo fail >> " + calls.getAbsolutePath() + "\nexit 1\n");
+        String pchDir = this.tempFolder.getRoot().getAbsolutePath() + "/pch/";
+
+        Assert.assertNull(PrecompiledHeaders.getHeader(pchDir, script.getAbsolutePath(), "", "/opt/libs2016", "-b", new StringBuilder()));
+        Assert.assertNull(PrecompiledHeaders.getHeader(pchDir, script.getAbsolutePath(), "", "/opt/libs2016", "-b", new StringBuilder()));
+        Assert.assertEquals("fail\n", FileUtils.readFileToString(calls, StandardCharsets.UTF_8.displayName()));
+    }
+
+    private File fakeCompileScript(String body) throws Exception {
+        File script = this.tempFolder.newFile("compile.sh");
+        FileUtils.writeStringToFile(script, "#!/bin/bash\n" + body, StandardCharsets.UTF_8.displayName());
+        Assert.assertTrue(script.setExecutable(true));
+        return script;
+    }
+}
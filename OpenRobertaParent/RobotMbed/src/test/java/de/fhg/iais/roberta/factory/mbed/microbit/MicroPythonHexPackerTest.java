@@ -0,0 +1,106 @@
+package de.fhg.iais.roberta.factory.mbed.microbit;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.util.Clock;
+
+public class MicroPythonHexPackerTest {
+    private static final String COMPILE_SCRIPT = "resources/compile.py";
+    private static final String RUNTIME =
+        ""
+            + ":020000040000FA\n"
+            + ":1000000000400020895301000000000000000000BF\n"
+            + ":020000040003F7\n"
+            + ":10B20000780004000404881301000100010001011A\n"
+            + ":10B21000010302040100000039010000BD610100CA\n"
+            + ":10B220007D780100B57F01009D8F01000D010000B8\n"
+            + ":04000005000153891A\n"
+            + ":00000001FF\n";
+
+    /**
+     * the expected hex follows uflash.hexlify and uflash.embed_hex, as called by compile.py. The script has 44 bytes, with the header these are
+     * 48 bytes, thus a full record of zeros is added as padding
+     */
+    @Test
+    public void testTheHexIsTheSameAsFromCompilePy() throws Exception {
+        String expected =
+            ""
+                + ":020000040000FA\n"
+                + ":1000000000400020895301000000000000000000BF\n"
+                + ":020000040003F7\n"
+                + ":020000040003F7\n"
+                + ":10E000004D502C0066726F6D206D6963726F62698E\n"
+                + ":10E010007420696D706F7274202A0A646973706C61\n"
+                + ":10E0200061792E7363726F6C6C2827486927290AFF\n"
+                + ":10E0300000000000000000000000000000000000E0\n"
+                + ":10B20000780004000404881301000100010001011A\n"
+                + ":10B21000010302040100000039010000BD610100CA\n"
+                + ":10B220007D780100B57F01009D8F01000D010000B8\n"
+                + ":04000005000153891A\n"
+                + ":00000001FF\n"
+                + "\n";
+        byte[] hex = new MicroPythonHexPacker(RUNTIME).pack("from microbit import *\r\ndisplay.scroll('Hi')\n");
+        Assert.assertEquals(expected, new String(hex, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testEmptyAndTooLargeScripts() throws Exception {
+        MicroPythonHexPacker packer = new MicroPythonHexPacker(RUNTIME);
+        Assert.assertEquals(RUNTIME + "\n", new String(packer.pack(""), StandardCharsets.US_ASCII));
+        StringBuilder script = new StringBuilder();
+        for ( int i = 0; i < 8171; i++ ) {
+            script.append('#');
+        }
+        Assert.assertNotNull("8171 bytes, the header and 1 byte of padding fit", packer.pack(script.toString()));
+        Assert.assertNull(packer.pack(script.append('#').toString()));
+    }
+
+    @Test
+    public void testTheRuntimeOfCompilePy() throws Exception {
+        MicroPythonHexPacker packer = MicroPythonHexPacker.forCompileScript(COMPILE_SCRIPT);
+        Assert.assertSame(packer, MicroPythonHexPacker.forCompileScript(COMPILE_SCRIPT));
+        String[] lines = new String(packer.pack("from microbit import *\ndisplay.scroll('Hi')\n"), StandardCharsets.US_ASCII).split("\n");
+        Assert.assertEquals(":020000040000FA", lines[0]);
+        Assert.assertEquals(":00000001FF", lines[lines.length - 1]);
+        for ( String line : lines ) {
+            Assert.assertTrue("invalid checksum: " + line, isValidRecord(line));
+        }
+    }
+
+    @Ignore("benchmark, run manually")
+    @Test
+    public void benchmark() throws Exception {
+        MicroPythonHexPacker packer = MicroPythonHexPacker.forCompileScript(COMPILE_SCRIPT);
+        StringBuilder script = new StringBuilder("from microbit import *\n");
+        for ( int i = 0; i < 100; i++ ) {
+            script.append("display.scroll('Hello " + i + "')\n");
+        }
+        int rounds = 2000;
+        for ( int i = 0; i < rounds; i++ ) {
+            // warm up the jit
+            packer.pack(script.toString());
+        }
+        Clock clock = Clock.start();
+        long bytes = 0;
+        for ( int i = 0; i < rounds; i++ ) {
+            bytes += packer.pack(script.toString()).length;
+        }
+        long msec = Math.max(1, clock.elapsedMsec());
+        System.out.println("hex files per sec: " + rounds * 1000 / msec + ", MB per sec: " + bytes / 1000 / msec);
+    }
+
+    private static boolean isValidRecord(String line) {
+        if ( !line.startsWith(":") || line.length() % 2 == 0 ) {
+            return false;
+        }
+        int sum = 0;
+        for ( int i = 1; i < line.length(); i += 2 ) {
+            sum += Integer.parseInt(line.substring(i, i + 2), 16);
+        }
+        return (sum & 0xFF) == 0;
+    }
+}
@@ -7,6 +7,7 @@ import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.components.Configuration;
 import de.fhg.iais.roberta.components.nao.NAOConfiguration;
 import de.fhg.iais.roberta.factory.AbstractCompilerWorkflow;
+import de.fhg.iais.roberta.factory.CompilationResult;
 import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.inter.mode.action.ILanguage;
 import de.fhg.iais.roberta.syntax.codegen.nao.PythonVisitor;
@@ -36,37 +37,31 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
     }
 
     @Override
-    public Key compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
+    public CompilationResult compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
         //Ev3CompilerWorkflow.LOG.info("generated code:\n{}", sourceCode); // only needed for EXTREME debugging
         try {
             storeGeneratedProgram(token, programName, sourceCode, this.pathToCrosscompilerBaseDir, ".py");
         } catch ( final Exception e ) {
             CompilerWorkflow.LOG.error("Storing the generated program into directory " + token + " failed", e);
-            return Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED;
+            return CompilationResult.failure(Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED, null, 0);
         }
 
         // maybe copy from /src/ to /target/
         // python -c "import py_compile; py_compile.compile('.../src/...py','.../target/....pyc')"
-        return Key.COMPILERWORKFLOW_SUCCESS;
+        return CompilationResult.success(null, null, 0);
 
     }
 
     @Override
     public Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception {
-        final BlockSet project = JaxbHelper.xml2BlockSet(blocklyXml);
+        final BlockSet project = JaxbHelper.configuration2BlockSet(factory, blocklyXml);
         final Jaxb2NaoConfigurationTransformer transformer = new Jaxb2NaoConfigurationTransformer(factory);
         return transformer.transform(project);
     }
 
-    @Override
-    public String getCompiledCode() {
-        return null;
-    }
-
     private String generateProgram(String programName, BlocklyProgramAndConfigTransformer data, ILanguage language) {
         String sourceCode = PythonVisitor.generate((NAOConfiguration) data.getBrickConfiguration(), data.getProgramTransformer().getTree(), true, language);
         CompilerWorkflow.LOG.info("generating {} code", toString().toLowerCase());
         return sourceCode;
     }
-
 }
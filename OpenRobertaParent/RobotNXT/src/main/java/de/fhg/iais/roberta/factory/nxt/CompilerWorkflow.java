@@ -1,9 +1,13 @@
 package de.fhg.iais.roberta.factory.nxt;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +16,8 @@ import de.fhg.iais.roberta.blockly.generated.BlockSet;
 import de.fhg.iais.roberta.components.Configuration;
 import de.fhg.iais.roberta.components.nxt.NxtConfiguration;
 import de.fhg.iais.roberta.factory.AbstractCompilerWorkflow;
+import de.fhg.iais.roberta.factory.CompilationResult;
+import de.fhg.iais.roberta.factory.CompilerScheduler;
 import de.fhg.iais.roberta.factory.IRobotFactory;
 import de.fhg.iais.roberta.inter.mode.action.ILanguage;
 import de.fhg.iais.roberta.syntax.codegen.nxt.NxcVisitor;
@@ -42,35 +48,40 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
     }
 
     @Override
-    public Key compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
+    public CompilationResult compileSourceCode(String token, String programName, String sourceCode, ILanguage language, Object flagProvider) {
         try {
             storeGeneratedProgram(token, programName, sourceCode, this.pathToCrosscompilerBaseDir, ".nxc");
         } catch ( Exception e ) {
             CompilerWorkflow.LOG.error("Storing the generated program into directory " + token + " failed", e);
-            return Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED;
+            return CompilationResult.failure(Key.COMPILERWORKFLOW_ERROR_PROGRAM_STORE_FAILED, null, 0);
         }
 
-        Key messageKey = runBuild(token, programName, "generated.main");
-        if ( messageKey == Key.COMPILERWORKFLOW_SUCCESS ) {
+        File rxeFile = new File(this.pathToCrosscompilerBaseDir + token + "/" + programName + "/target/" + programName + ".rxe");
+        CompilationResult result =
+            compileCached(
+                token,
+                programName,
+                this.robotCompilerResourcesDir,
+                sourceCode,
+                flagProvider,
+                messages -> runBuild(token, programName, "generated.main", messages) == Key.COMPILERWORKFLOW_SUCCESS ? FileUtils.readFileToByteArray(rxeFile) : null,
+                artifact -> FileUtils.writeByteArrayToFile(rxeFile, artifact),
+                null);
+        if ( result.isSuccess() ) {
             CompilerWorkflow.LOG.info("rxc for program {} generated successfully", programName);
         } else {
-            CompilerWorkflow.LOG.info(messageKey.toString());
+            CompilerWorkflow.LOG.info(result.getKey().toString());
         }
-        return messageKey;
+        return result;
     }
 
     @Override
     public Configuration generateConfiguration(IRobotFactory factory, String blocklyXml) throws Exception {
-        BlockSet project = JaxbHelper.xml2BlockSet(blocklyXml);
+        BlockSet project = JaxbHelper.configuration2BlockSet(factory, blocklyXml);
         Jaxb2NxtConfigurationTransformer transformer = new Jaxb2NxtConfigurationTransformer(factory);
         return transformer.transform(project);
     }
 
-    @Override
-    public String getCompiledCode() {
-        return null;
-    }
-
     /**
      * 1. Make target folder (if not exists).<br>
      * 2. Clean target folder (everything inside).<br>
@@ -81,9 +92,7 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
      * @param mainFile
      * @param mainPackage
      */
-    Key runBuild(String token, String mainFile, String mainPackage) {
-        final StringBuilder sb = new StringBuilder();
-
+    Key runBuild(String token, String mainFile, String mainPackage, StringBuilder sb) {
         Path path = Paths.get(this.robotCompilerResourcesDir);
         Path base = Paths.get("");
 
@@ -105,16 +114,18 @@ public class CompilerWorkflow extends AbstractCompilerWorkflow {
                         "-I=" + base.resolve(path).toAbsolutePath().normalize().toString()
                     });
             procBuilder.redirectInput(Redirect.INHERIT);
-            procBuilder.redirectOutput(Redirect.INHERIT);
-            procBuilder.redirectError(Redirect.INHERIT);
-            Process p = procBuilder.start();
-            int ecode = p.waitFor();
+            procBuilder.redirectErrorStream(true);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            int ecode = CompilerScheduler.getInstance().runProcess(procBuilder, output);
+            sb.append(output.toString(StandardCharsets.UTF_8.name()));
             System.err.println("Exit code " + ecode);
 
             if ( ecode != 0 ) {
                 return Key.COMPILERWORKFLOW_ERROR_PROGRAM_COMPILE_FAILED;
             }
             return Key.COMPILERWORKFLOW_SUCCESS;
+        } catch ( CompilerScheduler.TimeoutException e ) {
+            throw e;
         } catch ( Exception e ) {
             if ( sb.length() > 0 ) {
                 CompilerWorkflow.LOG.error("build exception. Messages from the build script are:\n" + sb.toString(), e);
@@ -0,0 +1,21 @@
+package de.fhg.iais.roberta.transformer;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.fhg.iais.roberta.util.test.nxt.Helper;
+
+public class StaxBlocklyProgramReaderTest {
+    private static final int COMPARED_PROGRAMS = 317;
+
+    Helper h = new Helper();
+
+    @Test
+    public void testStaxAndJaxbReadersAreEquivalent() throws Exception {
+        Path resources = Paths.get(StaxBlocklyProgramReaderTest.class.getResource("/ast").toURI()).getParent();
+        Assert.assertEquals(COMPARED_PROGRAMS, this.h.assertStaxAndJaxbReadersAreEquivalent(resources));
+    }
+}